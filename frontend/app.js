@@ -1,6 +1,6 @@
 /**
  * @file app.js
- * @brief JavaScript code for interacting with the backend via REST and WebSockets.
+ * @brief JavaScript code for interacting with the backend via REST and Server-Sent Events.
  * @details This file contains code to handle the user login, controller loading, and game start/stop functionalities using AJAX requests to the backend.
  */
 
@@ -18,13 +18,14 @@ $(document).ready(function() {
      * @name handleLoginFormSubmit
      * @description Handles login form submission.
      * @param {Event} event - The form submission event object.
-     * @details Prevents the default form submission, retrieves the username and controller ID, and sends a POST request to '/api/login'.
+     * @details Prevents the default form submission, retrieves the username, controller ID and optional game room, and sends a POST request to '/api/login'.
      */
     $('#login-form').submit(function(event) {
         event.preventDefault();
 
         const username = $('#username').val();
         const controllerId = $('#controller').val();
+        const room = $('#room').val();
 
         if (!username || !controllerId) {
             $('#login-result').text('Please provide a username and select a controller.');
@@ -36,7 +37,8 @@ $(document).ready(function() {
             method: 'POST',
             data: {
                 username: username,
-                controller: controllerId
+                controller: controllerId,
+                room: room
             },
              /**
          * @function
@@ -86,11 +88,11 @@ $(document).ready(function() {
      /**
      * @function
      * @name handleStartGame
-     * @description Start the game by sending a request to the backend.
+     * @description Start the game in the selected room by sending a request to the backend.
      */
     $('#start-game').click(function() {
         $.ajax({
-            url: '/api/generate-sequence',
+            url: '/api/generate-sequence?room=' + encodeURIComponent($('#room').val() || 'default'),
             method: 'POST',
             /**
              * @function
@@ -100,7 +102,7 @@ $(document).ready(function() {
              */
             success: function(response) {
                 $('#info-display').html('<p>Game has started!</p>');
-                startWinnerPolling();
+                startEventStream();
             },
             /**
              * @function
@@ -123,10 +125,81 @@ $(document).ready(function() {
      * @description Stops the game and clears the winner polling.
      */
     $('#stop-game').click(function() {
+        stopEventStream();
         stopWinnerPolling();
         $('#info-display').html('<p>Game stopped</p>');
     });
 
+    let eventSource;
+
+    /**
+     * @function
+     * @name startEventStream
+     * @description Subscribes to the game events of the selected room pushed by the backend.
+     * @details Opens an EventSource on '/api/events' and renders 'scores', 'winner', 'round' and 'game_over' events.
+     *          Falls back to polling '/api/round-winner' if the browser does not support Server-Sent Events
+     *          or the stream cannot be established.
+     */
+    function startEventStream() {
+        stopEventStream();
+        stopWinnerPolling();
+
+        if (!window.EventSource) {
+            startWinnerPolling();
+            return;
+        }
+
+        const room = $('#room').val() || 'default';
+        eventSource = new EventSource('/api/events?room=' + encodeURIComponent(room));
+
+        eventSource.addEventListener('winner', function(event) {
+            const winner = JSON.parse(event.data);
+            $('#round-winner').text(`Round ${winner.round} Winner: ${winner.name}`);
+        });
+
+        eventSource.addEventListener('scores', function(event) {
+            const scores = JSON.parse(event.data);
+            const rows = scores.players.map(player => `<li>${player.username}: ${player.points}</li>`).join('');
+            $('#scoreboard').html(`<p>Round ${scores.round}</p><ul>${rows}</ul>`);
+        });
+
+        eventSource.addEventListener('round', function(event) {
+            const round = JSON.parse(event.data);
+            $('#round-winner').text(`Round ${round.round} started`);
+        });
+
+        eventSource.addEventListener('game_over', function(event) {
+            const gameOver = JSON.parse(event.data);
+            $('#round-winner').text(`Game over after ${gameOver.round} rounds`);
+        });
+
+        eventSource.onopen = function() {
+            stopWinnerPolling();
+        };
+
+        eventSource.onerror = function() {
+            // The browser reconnects on its own unless the stream was refused
+            if (eventSource.readyState === EventSource.CLOSED) {
+                console.error('Event stream closed, falling back to polling');
+                startWinnerPolling();
+            }
+        };
+
+        $('#info-display').html('<p>Game has started!</p><p id="round-winner">Waiting for round results...</p><div id="scoreboard"></div>');
+    }
+
+    /**
+     * @function
+     * @name stopEventStream
+     * @description Closes the event stream if one is open.
+     */
+    function stopEventStream() {
+        if (eventSource) {
+            eventSource.close();
+            eventSource = undefined;
+        }
+    }
+
 
      /**
      * @function
@@ -0,0 +1,133 @@
+/**
+ * @file GameHotPathBenchmark.java
+ * @brief JMH benchmarks of the per-message work of a game: sequence generation, payload parsing, scoring
+ * and display-info encoding, for the JSON and the binary sequence protocol.
+ *
+ * Build and run with the benchmarks profile:
+ *   mvn -P benchmarks package
+ *   java -jar target/benchmarks.jar GameHotPathBenchmark -prof gc
+ *
+ * Pass -p logLevel=DEBUG to include the cost of the debug logging on these paths.
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.game.ColorSequence;
+import com.example.mqtt.SequenceWireFormat;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @ingroup ObjectService
+ * Benchmarks of the code run for every color_sequence message and every awarded point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameHotPathBenchmark {
+
+    @Param({"INFO"})
+    public String logLevel;
+
+    private ObjectService objectService;
+    private Buffer colorSequencePayload;
+    private ColorSequence storedSequence;
+    private ColorSequence matchingSequence;
+    private ColorSequence mismatchingSequence;
+    private PlayerState playerState;
+    private Buffer binaryAnswer;
+
+    @Setup
+    public void setup() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.toLevel(logLevel));
+
+        objectService = new ObjectService(null);
+        storedSequence = ColorSequence.fromJson(new JsonArray().add("RED").add("GREEN").add("BLUE").add("YELLOW"));
+        // Same shape as the messages the ESP32 firmware publishes on controller/color_sequence
+        colorSequencePayload = Buffer.buffer(new JsonObject()
+            .put("controllerId", "esp32-0001")
+            .put("sequence", storedSequence.toJsonArray())
+            .encode());
+        matchingSequence = ColorSequence.fromJson(colorSequencePayload.toJsonObject().getJsonArray("sequence"));
+        mismatchingSequence = storedSequence.withColorAt(3, 0);
+        binaryAnswer = SequenceWireFormat.encodeAnswer(storedSequence, 1, 42, "esp32-0001");
+        playerState = new PlayerState("esp32-0001", 1, "player-one", "RFID", 3, 7);
+    }
+
+    @Benchmark
+    public ColorSequence generateColorSequence() {
+        return objectService.generateColorSequence();
+    }
+
+    @Benchmark
+    public void parseColorSequencePayload(Blackhole blackhole) {
+        JsonObject payloadJson = colorSequencePayload.toJsonObject();
+        blackhole.consume(payloadJson.getString("controllerId"));
+        blackhole.consume(payloadJson.getJsonArray("sequence"));
+    }
+
+    @Benchmark
+    public boolean compareMatchingSequences() {
+        return ObjectService.compareSequences(storedSequence, matchingSequence);
+    }
+
+    @Benchmark
+    public boolean compareMismatchingSequences() {
+        return ObjectService.compareSequences(storedSequence, mismatchingSequence);
+    }
+
+    @Benchmark
+    public boolean parseAndCompare() {
+        ColorSequence received = ColorSequence.fromJson(colorSequencePayload.toJsonObject().getJsonArray("sequence"));
+        return ObjectService.compareSequences(storedSequence, received);
+    }
+
+    @Benchmark
+    public boolean readAndCompareBinary(Blackhole blackhole) {
+        // What handleColorSequence does with a binary answer frame
+        blackhole.consume(SequenceWireFormat.controllerId(binaryAnswer));
+        return SequenceWireFormat.nonce(binaryAnswer) == 42
+            && SequenceWireFormat.matches(binaryAnswer, storedSequence);
+    }
+
+    @Benchmark
+    public Buffer encodeJsonSequence() {
+        // A copy has no cached encodings yet, like every newly generated sequence
+        return storedSequence.withColorAt(0, 0).toJsonBuffer();
+    }
+
+    @Benchmark
+    public Buffer encodeBinarySequence() {
+        return SequenceWireFormat.encodeSequence(storedSequence.withColorAt(0, 0), 1, 42);
+    }
+
+    @Benchmark
+    public Buffer encodeDisplayInfo() {
+        // What sendDisplayInfoToController publishes to oled/display/<id>
+        return Buffer.buffer(playerState.toDisplayInfo().encode());
+    }
+}
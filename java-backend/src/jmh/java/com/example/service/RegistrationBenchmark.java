@@ -0,0 +1,193 @@
+/**
+ * @file RegistrationBenchmark.java
+ * @brief JMH benchmark of concurrent RFID registrations through the asynchronous path and through the
+ * virtual-thread services.
+ *
+ * The repository is replaced by one that answers every statement after a Vert.x timer of dbLatencyMs, so the
+ * benchmark measures the execution model (callbacks and Futures versus virtual threads parked in Future.await)
+ * rather than the database. Every operation starts `concurrency` registrations at once from an event loop, as
+ * the MQTT handler does, and waits until all of them completed.
+ *
+ * Build and run with the benchmarks profile:
+ *   mvn -P benchmarks package
+ *   java -jar target/benchmarks.jar RegistrationBenchmark -prof gc -p concurrency=1000,10000
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+import com.example.repository.DatabaseMetrics;
+import com.example.repository.ObjectRepository;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+
+/**
+ * @ingroup ObjectService
+ * Benchmarks of a burst of registrations, e.g. a room full of players scanning their tags at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistrationBenchmark {
+
+    /** "callback": ObjectService's Future chain; "virtual": VirtualThreadServices. */
+    @Param({"callback", "virtual"})
+    public String mode;
+
+    @Param({"1000"})
+    public int concurrency;
+
+    @Param({"1"})
+    public long dbLatencyMs;
+
+    /** Virtual-thread contexts in "virtual" mode; 0 uses one per core. */
+    @Param({"0"})
+    public int instances;
+
+    private Vertx vertx;
+    private Context context;
+    private ObjectService objectService;
+    private String[] controllerIds;
+    private String[] rfidTags;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        // Registration logs at INFO level would dominate the measurement
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+        SimulatedRepository repository = new SimulatedRepository(vertx, dbLatencyMs);
+        objectService = new ObjectService(repository);
+        objectService.loadGameState().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        if ("virtual".equals(mode)) {
+            int contexts = instances > 0 ? instances : Runtime.getRuntime().availableProcessors();
+            objectService.useVirtualThreads(VirtualThreadServices.deploy(vertx, objectService, repository, contexts)
+                .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+        }
+
+        controllerIds = new String[concurrency];
+        rfidTags = new String[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            controllerIds[i] = String.format("bench-%05d", i);
+            rfidTags[i] = "tag-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Invocation)
+    public void releaseControllers() {
+        for (String controllerId : controllerIds) {
+            objectService.releaseController(controllerId);
+        }
+    }
+
+    @Benchmark
+    public void registerConcurrently() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+        LongAdder failures = new LongAdder();
+        context.runOnContext(v -> {
+            for (int i = 0; i < concurrency; i++) {
+                objectService.registerPlayerWithRfid("player-" + i, rfidTags[i], controllerIds[i], ar -> {
+                    if (ar.failed()) {
+                        failures.increment();
+                    }
+                    done.countDown();
+                });
+            }
+        });
+        if (!done.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(done.getCount() + " registrations did not complete");
+        }
+        if (failures.sum() > 0) {
+            throw new IllegalStateException(failures.sum() + " registrations failed");
+        }
+    }
+
+    /**
+     * @brief Repository without a database: every statement completes after a timer.
+     */
+    static class SimulatedRepository extends ObjectRepository {
+        private final Vertx vertx;
+        private final long latencyMs;
+        private final AtomicInteger playerIds = new AtomicInteger();
+
+        SimulatedRepository(Vertx vertx, long latencyMs) {
+            super(null, DatabaseMetrics.detached());
+            this.vertx = vertx;
+            this.latencyMs = latencyMs;
+        }
+
+        private <T> Future<T> after(T result) {
+            if (latencyMs <= 0) {
+                return Future.succeededFuture(result);
+            }
+            Promise<T> promise = Promise.promise();
+            vertx.setTimer(latencyMs, id -> promise.complete(result));
+            return promise.future();
+        }
+
+        @Override
+        public Future<JsonArray> loadActiveSessions() {
+            return Future.succeededFuture(new JsonArray());
+        }
+
+        @Override
+        public Future<JsonArray> loadDisplayInfo() {
+            return Future.succeededFuture(new JsonArray());
+        }
+
+        @Override
+        public Future<JsonArray> loadHighScores() {
+            return Future.succeededFuture(new JsonArray());
+        }
+
+        @Override
+        public Future<Set<String>> loadAssignedControllers() {
+            return Future.succeededFuture(Set.of());
+        }
+
+        @Override
+        public Future<Boolean> isControllerAssigned(String controllerId) {
+            return after(false);
+        }
+
+        @Override
+        public Future<Integer> registerRfidPlayer(String username, String rfidTag, String controllerId) {
+            return after(playerIds.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/**
+ * @file AppServices.java
+ * @brief Components shared by all MainVerticle instances: database pool, MQTT client, services and game lobby.
+ *
+ * The backend deploys one HTTP verticle per core. Everything that holds state or a connection is created
+ * exactly once here, on the single shared Vert.x instance, and handed to every verticle instance.
+ *
+ * @date 2024
+ * @ingroup MainVerticleGroup
+ */
+
+package com.example;
+
+import static com.example.MainVerticle.getEnv;
+import static com.example.MainVerticle.getEnvInt;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.controller.GameEventBroadcaster;
+import com.example.controller.ObjectController;
+import com.example.game.GameLobby;
+import com.example.journal.GameJournal;
+import com.example.metrics.GameMetrics;
+import com.example.metrics.MqttMetrics;
+import com.example.mqtt.IngressMode;
+import com.example.mqtt.IngressPartitioner;
+import com.example.mqtt.IngressQueue;
+import com.example.mqtt.MqttCapture;
+import com.example.repository.DatabaseCircuitBreaker;
+import com.example.repository.DatabaseMetrics;
+import com.example.repository.ObjectRepository;
+import com.example.service.ControllerPresenceRegistry;
+import com.example.service.HistoryArchiver;
+import com.example.service.ObjectService;
+import com.example.service.ScoreWriteBehindBuffer;
+import com.example.service.VirtualThreadServices;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.jdbcclient.JDBCPool;
+import io.vertx.micrometer.backends.BackendRegistries;
+import io.vertx.mqtt.MqttClient;
+import io.vertx.mqtt.MqttClientOptions;
+import io.vertx.mysqlclient.MySQLBuilder;
+import io.vertx.mysqlclient.MySQLConnectOptions;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.SqlClient;
+
+/**
+ * @class AppServices
+ * @brief Creates and owns the application-wide components.
+ *
+ * All members are safe to use from any event loop: the clients are thread-safe and the controller keeps its
+ * state in concurrent structures or in game rooms bound to their own context.
+ *
+ * @ingroup MainVerticleGroup
+ */
+public class AppServices {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppServices.class);
+
+    private static final int DEFAULT_DB_POOL_SIZE = 5;
+    private static final int DEFAULT_DB_PIPELINING_LIMIT = 256;
+    private static final int DEFAULT_DB_MAX_WAIT_QUEUE = 256;
+    private static final int DEFAULT_DB_CONNECTION_TIMEOUT_MS = 2000;
+    private static final int DEFAULT_DB_BREAKER_OPEN_MS = 5000;
+    private static final int DEFAULT_DB_BREAKER_SLOW_CALL_MS = 1000;
+    private static final int DEFAULT_INGRESS_QUEUE_CAPACITY = 10000;
+    private static final int DEFAULT_INGRESS_MAX_IN_FLIGHT = 256;
+    private static final int DEFAULT_SCORE_FLUSH_INTERVAL_MS = 200;
+    private static final int DEFAULT_SCORE_FLUSH_MAX_ROWS = 100;
+    private static final int DEFAULT_SCORE_MAX_PENDING_ROWS = 10000;
+    private static final int DEFAULT_HEARTBEAT_TIMEOUT_MS = 30000;
+    private static final int DEFAULT_PRESENCE_TICK_MS = 1000;
+    private static final int DEFAULT_PRESENCE_FLUSH_INTERVAL_MS = 5000;
+    private static final int DEFAULT_ARCHIVE_INTERVAL_MS = 60000;
+    private static final int DEFAULT_ARCHIVE_AFTER_SECONDS = 3600;
+    private static final int DEFAULT_ARCHIVE_BATCH_SIZE = 500;
+    private static final int DEFAULT_ARCHIVE_MAX_BATCHES = 20;
+    private static final int DEFAULT_JOURNAL_SEGMENT_BYTES = 8 * 1024 * 1024;
+    private static final int DEFAULT_JOURNAL_FSYNC_INTERVAL_MS = 100;
+    private static final int CAPTURE_FLUSH_INTERVAL_MS = 100;
+    private static final long CAPTURE_MAX_PENDING_BYTES = 64L * 1024 * 1024;
+
+    private final Vertx vertx;
+    private final GameLobby gameLobby = new GameLobby();
+    private final GameEventBroadcaster eventBroadcaster;
+    private final MeterRegistry meterRegistry;
+    private MqttClient mqttClient;
+    private Pool dbPool;
+    private SqlClient dbPipelinedClient;
+    private ScoreWriteBehindBuffer scoreBuffer;
+    private ControllerPresenceRegistry presenceRegistry;
+    private HistoryArchiver historyArchiver;
+    private GameJournal journal = GameJournal.disabled();
+    private MqttCapture mqttCapture;
+    private ObjectService objectService;
+    private ObjectController objectController;
+    private Future<Void> closeFuture;
+
+    /**
+     * @brief Constructor for AppServices.
+     *
+     * @param vertx The Vert.x instance shared by all verticles.
+     */
+    public AppServices(Vertx vertx) {
+        this.vertx = vertx;
+        this.eventBroadcaster = new GameEventBroadcaster(vertx);
+        // The Prometheus registry set up by MainVerticle.main, or a private one when Vert.x runs without metrics
+        MeterRegistry defaultRegistry = BackendRegistries.getDefaultNow();
+        this.meterRegistry = defaultRegistry != null ? defaultRegistry : new SimpleMeterRegistry();
+    }
+
+    /**
+     * @brief Reads the configuration from the environment and creates all shared components.
+     *
+     * @return A Future that completes once the components are ready to serve requests.
+     * @ingroup MainVerticleGroup
+     */
+    public Future<Void> start() {
+        // Retrieve environment variables
+        String mqttUsername = System.getenv("MQTT_USERNAME");
+        logger.info("MQTT_USERNAME: {}", mqttUsername);
+
+        String mqttPassword = System.getenv("MQTT_PASSWORD");
+        logger.info("MQTT_PASSWORD: {}", mqttPassword);
+
+        String dbHost = System.getenv("DB_HOST");
+        logger.info("DB_HOST: {}", dbHost);
+
+        int dbPort = Integer.parseInt(System.getenv("DB_PORT"));
+        logger.info("DB_PORT: {}", dbPort);
+
+        String dbName = System.getenv("DB_NAME");
+        logger.info("DB_NAME: {}", dbName);
+
+        String dbUser = System.getenv("DB_USER");
+        logger.info("DB_USER: {}", dbUser);
+
+        String dbPassword = System.getenv("DB_PASSWORD");
+        logger.info("DB_PASSWORD: {}", dbPassword);
+
+        // "jdbc" (default) keeps the blocking MariaDB driver, "mysql" selects the reactive client
+        String dbClient = getEnv("DB_CLIENT", "jdbc");
+        logger.info("DB_CLIENT: {}", dbClient);
+
+        int dbPoolSize = getEnvInt("DB_POOL_SIZE", DEFAULT_DB_POOL_SIZE);
+        logger.info("DB_POOL_SIZE: {}", dbPoolSize);
+
+        // Callers beyond the wait queue, or waiting longer than the timeout, fail instead of piling up
+        int dbMaxWaitQueue = getEnvInt("DB_MAX_WAIT_QUEUE", DEFAULT_DB_MAX_WAIT_QUEUE);
+        int dbConnectionTimeoutMs = getEnvInt("DB_CONNECTION_TIMEOUT_MS", DEFAULT_DB_CONNECTION_TIMEOUT_MS);
+        logger.info("DB_MAX_WAIT_QUEUE: {}, DB_CONNECTION_TIMEOUT_MS: {}", dbMaxWaitQueue, dbConnectionTimeoutMs);
+        PoolOptions poolOptions = new PoolOptions()
+                .setMaxSize(dbPoolSize)
+                .setMaxWaitQueueSize(dbMaxWaitQueue)
+                .setConnectionTimeout(dbConnectionTimeoutMs)
+                .setConnectionTimeoutUnit(TimeUnit.MILLISECONDS);
+
+        int gameShards = getEnvInt("GAME_SHARDS", Runtime.getRuntime().availableProcessors());
+        logger.info("GAME_SHARDS: {}", gameShards);
+
+        // Several backend nodes split the MQTT ingress by game room
+        IngressMode ingressMode = IngressMode.parse(getEnv("INGRESS_MODE", "single"));
+        int nodeId = getEnvInt("NODE_ID", 0);
+        int nodeCount = getEnvInt("NODE_COUNT", 1);
+        IngressPartitioner ingress = new IngressPartitioner(ingressMode, nodeId, nodeCount, getEnv("SHARED_GROUP", "backend"));
+        logger.info("INGRESS_MODE: {}, NODE_ID: {}, NODE_COUNT: {}", ingress.getMode(), nodeId, nodeCount);
+
+        // Start the game lobby first so rooms have their shard contexts before any MQTT message arrives,
+        // then replay the journal so running games are restored before the controllers reconnect
+        return gameLobby.start(vertx, gameShards).compose(v -> openJournal()).onSuccess(v -> {
+            // Setup database client pool
+            if ("mysql".equalsIgnoreCase(dbClient)) {
+                int pipeliningLimit = getEnvInt("DB_PIPELINING_LIMIT", DEFAULT_DB_PIPELINING_LIMIT);
+                logger.info("DB_PIPELINING_LIMIT: {}", pipeliningLimit);
+                MySQLConnectOptions connectOptions = mySqlConnectOptions(dbHost, dbPort, dbName, dbUser, dbPassword, pipeliningLimit);
+                dbPool = setupMySqlClient(connectOptions, poolOptions);
+                dbPipelinedClient = setupMySqlPipelinedClient(connectOptions, poolOptions);
+            } else {
+                dbPool = setupJdbcClient(dbHost, dbPort, dbName, dbUser, dbPassword, poolOptions);
+            }
+
+            ObjectRepository objectRepository = new ObjectRepository(dbPool, dbPipelinedClient, new DatabaseMetrics(meterRegistry, dbPoolSize), createCircuitBreaker());
+            scoreBuffer = new ScoreWriteBehindBuffer(vertx, objectRepository,
+                    getEnvInt("SCORE_FLUSH_INTERVAL_MS", DEFAULT_SCORE_FLUSH_INTERVAL_MS),
+                    getEnvInt("SCORE_FLUSH_MAX_ROWS", DEFAULT_SCORE_FLUSH_MAX_ROWS),
+                    getEnvInt("SCORE_MAX_PENDING_ROWS", DEFAULT_SCORE_MAX_PENDING_ROWS)).start();
+            objectService = new ObjectService(objectRepository, scoreBuffer, journal);
+            deployServiceThreading(objectRepository);
+            objectService.loadGameState()
+                .onSuccess(loaded -> objectService.restorePoints(journal.points()))
+                .onFailure(cause -> logger.error("Failed to rebuild game state, falling back to database lookups: {}", cause.getMessage()));
+
+            presenceRegistry = new ControllerPresenceRegistry(vertx, objectRepository,
+                    getEnvInt("HEARTBEAT_TIMEOUT_MS", DEFAULT_HEARTBEAT_TIMEOUT_MS),
+                    getEnvInt("PRESENCE_TICK_MS", DEFAULT_PRESENCE_TICK_MS),
+                    getEnvInt("PRESENCE_FLUSH_INTERVAL_MS", DEFAULT_PRESENCE_FLUSH_INTERVAL_MS)).start();
+            trackOnlineControllers();
+
+            // Moves finished sessions into the history tables; 0 disables it
+            int archiveIntervalMs = getEnvInt("ARCHIVE_INTERVAL_MS", DEFAULT_ARCHIVE_INTERVAL_MS);
+            logger.info("ARCHIVE_INTERVAL_MS: {}", archiveIntervalMs);
+            if (archiveIntervalMs > 0) {
+                historyArchiver = new HistoryArchiver(vertx, objectRepository, archiveIntervalMs,
+                        getEnvInt("ARCHIVE_AFTER_SECONDS", DEFAULT_ARCHIVE_AFTER_SECONDS),
+                        getEnvInt("ARCHIVE_BATCH_SIZE", DEFAULT_ARCHIVE_BATCH_SIZE),
+                        getEnvInt("ARCHIVE_MAX_BATCHES", DEFAULT_ARCHIVE_MAX_BATCHES)).start();
+            }
+            new GameMetrics(gameLobby, presenceRegistry, journal, objectService).bindTo(meterRegistry);
+
+            // Setup MQTT client; the handlers are installed once the connection is up
+            mqttClient = setupMqttClient(mqttUsername, mqttPassword);
+            objectController = new ObjectController(vertx, objectService, mqttClient, gameLobby, presenceRegistry, eventBroadcaster, ingress, journal);
+            objectController.restoreGames();
+            connectMqtt();
+        });
+    }
+
+    /**
+     * @brief Writes buffered data and the MQTT capture, waits for a running archival batch and closes the database pool. Safe to call more than once.
+     *
+     * @return A Future that completes once everything has been flushed.
+     * @ingroup MainVerticleGroup
+     */
+    public synchronized Future<Void> close() {
+        if (closeFuture == null) {
+            Future<Void> presence = presenceRegistry != null ? presenceRegistry.close() : Future.succeededFuture();
+            Future<Void> flush = scoreBuffer != null ? scoreBuffer.close() : Future.succeededFuture();
+            Future<Void> archive = historyArchiver != null ? historyArchiver.close() : Future.succeededFuture();
+            Future<Void> capture = mqttCapture != null ? mqttCapture.close() : Future.succeededFuture();
+            closeFuture = Future.join(presence, flush, archive, journal.close(), capture)
+                .<Void>mapEmpty()
+                .onFailure(cause -> logger.error("Failed to flush buffered writes on shutdown: {}", cause.getMessage()))
+                .eventually(() -> Future.join(
+                    dbPool != null ? dbPool.close() : Future.succeededFuture(),
+                    dbPipelinedClient != null ? dbPipelinedClient.close() : Future.succeededFuture()));
+        }
+        return closeFuture;
+    }
+
+    /**
+     * @brief Opens and replays the game journal in JOURNAL_DIR on a worker thread.
+     *
+     * Without JOURNAL_DIR, or if the journal cannot be opened, the backend runs without one.
+     *
+     * @return A Future that completes once the journal has been replayed.
+     * @ingroup MainVerticleGroup
+     */
+    private Future<Void> openJournal() {
+        String journalDir = getEnv("JOURNAL_DIR", "");
+        logger.info("JOURNAL_DIR: {}", journalDir);
+        if (journalDir.isBlank()) {
+            return Future.succeededFuture();
+        }
+        int segmentBytes = getEnvInt("JOURNAL_SEGMENT_BYTES", DEFAULT_JOURNAL_SEGMENT_BYTES);
+        int fsyncIntervalMs = getEnvInt("JOURNAL_FSYNC_INTERVAL_MS", DEFAULT_JOURNAL_FSYNC_INTERVAL_MS);
+        return vertx.executeBlocking(() -> GameJournal.open(vertx, Path.of(journalDir), segmentBytes, fsyncIntervalMs))
+            .onSuccess(opened -> journal = opened)
+            .onFailure(cause -> logger.error("Failed to open the game journal, running without it: {}", cause.getMessage()))
+            .<Void>mapEmpty()
+            .otherwiseEmpty();
+    }
+
+    /**
+     * @brief Moves the registrations onto virtual threads when SERVICE_THREADING is "virtual".
+     *
+     * Until the verticle is deployed, and if the deployment fails, registrations keep the asynchronous path.
+     *
+     * @param objectRepository Repository of the object service.
+     * @ingroup MainVerticleGroup
+     */
+    private void deployServiceThreading(ObjectRepository objectRepository) {
+        String serviceThreading = getEnv("SERVICE_THREADING", "event-loop");
+        logger.info("SERVICE_THREADING: {}", serviceThreading);
+        if (!"virtual".equalsIgnoreCase(serviceThreading)) {
+            return;
+        }
+        VirtualThreadServices.deploy(vertx, objectService, objectRepository, Runtime.getRuntime().availableProcessors())
+            .onSuccess(services -> objectService.useVirtualThreads(services))
+            .onFailure(cause -> logger.error("Failed to deploy the virtual-thread services, registrations stay asynchronous: {}", cause.getMessage()));
+    }
+
+    /**
+     * @brief Creates the circuit breaker of the repository from DB_BREAKER_OPEN_MS and DB_BREAKER_SLOW_CALL_MS.
+     *
+     * @return The breaker, or null if DB_BREAKER_OPEN_MS is 0.
+     * @ingroup MainVerticleGroup
+     */
+    private DatabaseCircuitBreaker createCircuitBreaker() {
+        int openMs = getEnvInt("DB_BREAKER_OPEN_MS", DEFAULT_DB_BREAKER_OPEN_MS);
+        int slowCallMs = getEnvInt("DB_BREAKER_SLOW_CALL_MS", DEFAULT_DB_BREAKER_SLOW_CALL_MS);
+        logger.info("DB_BREAKER_OPEN_MS: {}, DB_BREAKER_SLOW_CALL_MS: {}", openMs, slowCallMs);
+        if (openMs <= 0) {
+            return null;
+        }
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(openMs, slowCallMs);
+        breaker.bindTo(meterRegistry);
+        return breaker;
+    }
+
+    /**
+     * @brief Creates the MQTT ingress queue from INGRESS_QUEUE_CAPACITY and INGRESS_MAX_IN_FLIGHT.
+     *
+     * @return The queue, or null if INGRESS_MAX_IN_FLIGHT is 0.
+     * @ingroup MainVerticleGroup
+     */
+    private IngressQueue createIngressQueue() {
+        int capacity = getEnvInt("INGRESS_QUEUE_CAPACITY", DEFAULT_INGRESS_QUEUE_CAPACITY);
+        int maxInFlight = getEnvInt("INGRESS_MAX_IN_FLIGHT", DEFAULT_INGRESS_MAX_IN_FLIGHT);
+        logger.info("INGRESS_QUEUE_CAPACITY: {}, INGRESS_MAX_IN_FLIGHT: {}", capacity, maxInFlight);
+        return maxInFlight > 0 ? new IngressQueue(capacity, maxInFlight) : null;
+    }
+
+    /**
+     * @brief Parses the subscription QoS per controller message kind, e.g. "color_sequence=1,rfid=1".
+     *
+     * Invalid entries are logged and skipped, so the kind keeps its default QoS.
+     *
+     * @param value Value of MQTT_TOPIC_QOS.
+     * @return QoS by message kind.
+     * @ingroup MainVerticleGroup
+     */
+    private static Map<String, MqttQoS> parseTopicQos(String value) {
+        Map<String, MqttQoS> topicQos = new HashMap<>();
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            try {
+                int qos = Integer.parseInt(parts[1].trim());
+                if (qos < 0 || qos > 2) {
+                    throw new NumberFormatException();
+                }
+                topicQos.put(parts[0].trim(), MqttQoS.valueOf(qos));
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                logger.warn("Invalid MQTT_TOPIC_QOS entry '{}', expected <kind>=<0|1|2>", entry.trim());
+            }
+        }
+        logger.info("MQTT_TOPIC_QOS: {}", topicQos);
+        return topicQos;
+    }
+
+    /**
+     * @brief Hands the controllers the database still marks online to the presence registry.
+     *
+     * Controllers that went away while the backend was down never send another heartbeat, so the registry
+     * expires them and their status flips to offline.
+     *
+     * @ingroup MainVerticleGroup
+     */
+    private void trackOnlineControllers() {
+        objectService.getAvailableControllers(ar -> {
+            if (ar.succeeded()) {
+                List<String> controllerIds = new ArrayList<>();
+                for (Object controller : ar.result()) {
+                    controllerIds.add(((JsonObject) controller).getString("controller_id"));
+                }
+                presenceRegistry.track(controllerIds);
+                logger.info("Tracking {} controllers marked online", controllerIds.size());
+            } else {
+                logger.error("Failed to load online controllers: {}", ar.cause().getMessage());
+            }
+        });
+    }
+
+    public ObjectController getObjectController() {
+        return objectController;
+    }
+
+    public ObjectService getObjectService() {
+        return objectService;
+    }
+
+    public GameLobby getGameLobby() {
+        return gameLobby;
+    }
+
+    public GameEventBroadcaster getEventBroadcaster() {
+        return eventBroadcaster;
+    }
+
+    /**
+     * @brief Configures and creates an MQTT client.
+     *
+     * @param username MQTT username.
+     * @param password MQTT password.
+     * @return Configured MqttClient instance.
+     * @ingroup MainVerticleGroup
+     */
+    private MqttClient setupMqttClient(String username, String password) {
+        // MQTT client configuration options
+        MqttClientOptions options = new MqttClientOptions()
+                .setAutoKeepAlive(true)
+                .setUsername(username)
+                .setPassword(password);
+
+        return MqttClient.create(vertx, options);
+    }
+
+    /**
+     * @brief Connects the MQTT client to the broker and installs the message handlers.
+     *
+     * With MQTT_CAPTURE_FILE set, every inbound message is recorded to that file for TrafficReplay.
+     *
+     * @ingroup MainVerticleGroup
+     */
+    private void connectMqtt() {
+        openCapture().onComplete(opened ->
+            // Connect to MQTT broker
+            mqttClient.connect(getEnvInt("MQTT_PORT", 1883), getEnv("MQTT_HOST", "mosquitto"), ar -> {
+                if (ar.succeeded()) {
+                    logger.info("Connected to the MQTT broker successfully!");
+                    // Setup MQTT subscription and handlers
+                    objectController.setupMqttHandlers(mqttCapture, createIngressQueue(), parseTopicQos(getEnv("MQTT_TOPIC_QOS", "")));
+                    new MqttMetrics(objectController.getTopicRouter(), objectController.getSequenceAcks(), objectController.getDuplicates())
+                        .bindTo(meterRegistry);
+                } else {
+                    logger.error("Failed to connect to the MQTT broker: {}", ar.cause().getMessage());
+                }
+            }));
+    }
+
+    /**
+     * @brief Opens the capture file named by MQTT_CAPTURE_FILE, truncating an existing one.
+     *
+     * Without MQTT_CAPTURE_FILE, or if the file cannot be opened, nothing is captured.
+     *
+     * @return A Future that completes once the capture is ready.
+     * @ingroup MainVerticleGroup
+     */
+    private Future<Void> openCapture() {
+        String captureFile = getEnv("MQTT_CAPTURE_FILE", "");
+        if (captureFile.isBlank()) {
+            return Future.succeededFuture();
+        }
+        return MqttCapture.open(vertx, Path.of(captureFile), CAPTURE_FLUSH_INTERVAL_MS, CAPTURE_MAX_PENDING_BYTES)
+            .onSuccess(capture -> mqttCapture = capture)
+            .onFailure(cause -> logger.error("Failed to open the MQTT capture {}, running without it: {}", captureFile, cause.getMessage()))
+            .<Void>mapEmpty()
+            .otherwiseEmpty();
+    }
+
+    /**
+     * @brief Configures and creates a JDBC client pool.
+     *
+     * @param host Database host.
+     * @param port Database port.
+     * @param dbName Database name.
+     * @param user Database user.
+     * @param password Database password.
+     * @param poolOptions Pool size, wait queue and connection timeout.
+     * @return Configured JDBCPool instance.
+     * @ingroup MainVerticleGroup
+     */
+    private JDBCPool setupJdbcClient(String host, int port, String dbName, String user, String password, PoolOptions poolOptions) {
+        // JDBC client pool configuration options
+        return JDBCPool.pool(vertx,
+                new io.vertx.jdbcclient.JDBCConnectOptions()
+                        .setJdbcUrl(String.format("jdbc:mariadb://%s:%d/%s", host, port, dbName))
+                        .setUser(user)
+                        .setPassword(password),
+                poolOptions
+        );
+    }
+
+    /**
+     * @brief Connect options of the reactive MySQL clients.
+     *
+     * @param host Database host.
+     * @param port Database port.
+     * @param dbName Database name.
+     * @param user Database user.
+     * @param password Database password.
+     * @param pipeliningLimit Maximum number of in-flight queries per connection of the pipelined client.
+     * @return The connect options.
+     * @ingroup MainVerticleGroup
+     */
+    private MySQLConnectOptions mySqlConnectOptions(String host, int port, String dbName, String user, String password, int pipeliningLimit) {
+        return new MySQLConnectOptions()
+                .setHost(host)
+                .setPort(port)
+                .setDatabase(dbName)
+                .setUser(user)
+                .setPassword(password)
+                .setCachePreparedStatements(true)
+                .setPipeliningLimit(pipeliningLimit);
+    }
+
+    /**
+     * @brief Configures and creates a reactive MySQL client pool.
+     *
+     * Uses the non-blocking MySQL wire protocol (which MariaDB speaks), so queries run on the
+     * event loop instead of worker threads. Connections borrowed from a pool run one query at a time;
+     * the repository borrows them for transactions only.
+     *
+     * @param connectOptions Database address and credentials.
+     * @param poolOptions Pool size, wait queue and connection timeout.
+     * @return Configured Pool instance.
+     * @ingroup MainVerticleGroup
+     */
+    private Pool setupMySqlClient(MySQLConnectOptions connectOptions, PoolOptions poolOptions) {
+        return MySQLBuilder.pool()
+                .with(poolOptions)
+                .connectingTo(connectOptions)
+                .using(vertx)
+                .build();
+    }
+
+    /**
+     * @brief Configures and creates the pipelined reactive MySQL client for single statements.
+     *
+     * Pipelining lets several queries share one connection without waiting for each response, up to the
+     * pipelining limit of the connect options. The client keeps its own connections next to the pool's.
+     *
+     * @param connectOptions Database address, credentials and pipelining limit.
+     * @param poolOptions Pool size, wait queue and connection timeout.
+     * @return Configured SqlClient instance.
+     * @ingroup MainVerticleGroup
+     */
+    private SqlClient setupMySqlPipelinedClient(MySQLConnectOptions connectOptions, PoolOptions poolOptions) {
+        return MySQLBuilder.client()
+                .with(poolOptions)
+                .connectingTo(connectOptions)
+                .using(vertx)
+                .build();
+    }
+}
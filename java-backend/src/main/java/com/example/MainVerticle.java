@@ -1,13 +1,16 @@
 /**
  * @file MainVerticle.java
- * @brief Verticle for setting up MQTT client, JDBC client, and HTTP server in a Vert.x application.
+ * @brief Verticle for setting up the HTTP server in a Vert.x application, and entry point of the backend.
  *
  * This class configures and starts the necessary components for the application:
  * - MQTT client for messaging
- * - JDBC client for database operations
+ * - JDBC or reactive MySQL client for database operations
  * - HTTP server with routing and CORS support
+ * - Prometheus metrics on /metrics
  * 
- * It also handles the deployment of the Vert.x application.
+ * It also handles the deployment of the Vert.x application. The shared components (MQTT client, database
+ * pool, services) are created once by AppServices; MainVerticle is deployed once per core and each instance
+ * runs its own HTTP server on the shared port.
  * 
  * @date 2024
  
@@ -30,28 +33,29 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.example.controller.ObjectController;
-import com.example.repository.ObjectRepository;
-import com.example.service.ObjectService;
-
+import com.example.controller.EventStreamHandler;
+import com.example.controller.LogLevelController;
 
+import ch.qos.logback.classic.LoggerContext;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
-import io.vertx.jdbcclient.JDBCPool;
-import io.vertx.mqtt.MqttClient;
-import io.vertx.mqtt.MqttClientOptions;
-import io.vertx.sqlclient.PoolOptions;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.PrometheusScrapingHandler;
+import io.vertx.micrometer.VertxPrometheusOptions;
 
 
 /**
  * @class MainVerticle
- * @brief Verticle for initializing and managing MQTT, JDBC, and HTTP server.
+ * @brief Verticle serving the HTTP API on top of the shared application services.
  * 
- * This verticle handles the setup of MQTT and JDBC clients, HTTP routing, and server creation.
+ * This verticle handles HTTP routing and server creation. Several instances run in parallel, one per event loop,
+ * and all of them share the same AppServices.
  * 
  * @ingroup MainVerticleGroup
  */
@@ -59,47 +63,34 @@ public class MainVerticle extends AbstractVerticle {
 
     private static final Logger logger = LoggerFactory.getLogger(MainVerticle.class);
 
-    ObjectController objectController;
+    private final AppServices services;
+    private EventStreamHandler eventStream;
+
+    /**
+     * @brief Constructor for MainVerticle.
+     * 
+     * @param services Components shared by all instances of this verticle.
+     * @ingroup MainVerticleGroup
+     */
+    public MainVerticle(AppServices services) {
+        this.services = services;
+    }
 
     /**
-     * @brief Starts the verticle by initializing MQTT client, JDBC client, and HTTP server.
+     * @brief Starts the verticle by creating the router and the HTTP server.
      * 
      * @param startPromise Promise used to signal completion of the startup process.
      * @ingroup MainVerticleGroup
      */
     @Override
     public void start(Promise<Void> startPromise) {
-        // Retrieve environment variables
-        String mqttUsername = System.getenv("MQTT_USERNAME");
-        logger.info("MQTT_USERNAME: {}", mqttUsername);
-
-        String mqttPassword = System.getenv("MQTT_PASSWORD");
-        logger.info("MQTT_PASSWORD: {}", mqttPassword);
-
-        String dbHost = System.getenv("DB_HOST");
-        logger.info("DB_HOST: {}", dbHost);
-
-        int dbPort = Integer.parseInt(System.getenv("DB_PORT"));
-        logger.info("DB_PORT: {}", dbPort);
-
-        String dbName = System.getenv("DB_NAME");
-        logger.info("DB_NAME: {}", dbName);
-
-        String dbUser = System.getenv("DB_USER");
-        logger.info("DB_USER: {}", dbUser);
+        // Browsers connected to this instance receive game events through its own stream handler
+        eventStream = new EventStreamHandler(vertx, services.getEventBroadcaster());
 
-        String dbPassword = System.getenv("DB_PASSWORD");
-        logger.info("DB_PASSWORD: {}", dbPassword);
-
-        // Setup MQTT client
-        MqttClient mqttClient = setupMqttClient(mqttUsername, mqttPassword);
-        
-        // Setup JDBC client pool
-        JDBCPool jdbcPool = setupJdbcClient(dbHost, dbPort, dbName, dbUser, dbPassword);
         // Setup HTTP server router
-        Router router = setupRouter(mqttClient, jdbcPool);
+        Router router = setupRouter();
 
-        // Create and start the HTTP server
+        // Create and start the HTTP server; instances on other event loops share the port
         vertx.createHttpServer()
                 .requestHandler(router)
                 .listen(8080, http -> {
@@ -112,72 +103,60 @@ public class MainVerticle extends AbstractVerticle {
                     }
                 });
     }
-    
+
     /**
-     * @brief Configures and creates an MQTT client.
+     * @brief Closes the event streams of this instance.
      * 
-     * @param username MQTT username.
-     * @param password MQTT password.
-     * @return Configured MqttClient instance.
      * @ingroup MainVerticleGroup
      */
-    private MqttClient setupMqttClient(String username, String password) {
-        // MQTT client configuration options
-        MqttClientOptions options = new MqttClientOptions()
-                .setAutoKeepAlive(true)
-                .setUsername(username)
-                .setPassword(password);
-
-        MqttClient mqttClient = MqttClient.create(vertx, options);
-
-        // Connect to MQTT broker
-        mqttClient.connect(1883, "mosquitto", ar -> {
-            if (ar.succeeded()) {
-                logger.info("Connected to the MQTT broker successfully!");
-                // Setup MQTT subscription and handlers
-                this.objectController.setupMqttHandlers();
-                //this.objectController.setupMqttHandlers2();
-                
-            } else {
-                logger.error("Failed to connect to the MQTT broker: {}", ar.cause().getMessage());
-            }
-        });
+    @Override
+    public void stop() {
+        if (eventStream != null) {
+            eventStream.close();
+        }
+    }
 
-        return mqttClient;
+    /**
+     * @brief Reads an environment variable, falling back to a default when it is unset or blank.
+     * 
+     * @param name Name of the environment variable.
+     * @param defaultValue Value used when the variable is missing.
+     * @return The configured value or the default.
+     * @ingroup MainVerticleGroup
+     */
+    static String getEnv(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
     }
 
-    
     /**
-     * @brief Configures and creates a JDBC client pool.
+     * @brief Reads an integer environment variable, falling back to a default when it is unset or invalid.
      * 
-     * @param host Database host.
-     * @param port Database port.
-     * @param dbName Database name.
-     * @param user Database user.
-     * @param password Database password.
-     * @return Configured JDBCPool instance.
+     * @param name Name of the environment variable.
+     * @param defaultValue Value used when the variable is missing or not a number.
+     * @return The configured value or the default.
      * @ingroup MainVerticleGroup
      */
-    private JDBCPool setupJdbcClient(String host, int port, String dbName, String user, String password) {
-        // JDBC client pool configuration options
-        return JDBCPool.pool(vertx,
-                new io.vertx.jdbcclient.JDBCConnectOptions()
-                        .setJdbcUrl(String.format("jdbc:mariadb://%s:%d/%s", host, port, dbName))
-                        .setUser(user)
-                        .setPassword(password),
-                new PoolOptions().setMaxSize(5)
-        );
+    static int getEnvInt(String name, int defaultValue) {
+        String value = getEnv(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '{}' for {}, using default {}", value, name, defaultValue);
+            return defaultValue;
+        }
     }
     
     /**
      * @brief Sets up the HTTP server router with CORS support and routes.
      * 
-     * @param mqttClient MQTT client instance.
-     * @param jdbcPool JDBC client pool instance.
      * @return Configured Router instance.
      * @ingroup MainVerticleGroup
      */
-    private Router setupRouter(MqttClient mqttClient, JDBCPool jdbcPool) {
+    private Router setupRouter() {
         Router router = Router.router(vertx);
         router.route().handler(BodyHandler.create());
 
@@ -201,7 +180,10 @@ public class MainVerticle extends AbstractVerticle {
                 .allowedMethods(allowedMethods));
 
         // Setup controllers
-        this.objectController = new ObjectController(router, new ObjectService(new ObjectRepository(jdbcPool)), mqttClient);
+        services.getObjectController().registerRoutes(router);
+        router.get("/api/events").handler(eventStream);
+        router.get("/metrics").handler(PrometheusScrapingHandler.create());
+        new LogLevelController(getEnv("ADMIN_TOKEN", null)).registerRoutes(router);
 
         return router;
     }
@@ -209,18 +191,43 @@ public class MainVerticle extends AbstractVerticle {
     /**
      * @brief Main method for deploying MainVerticle.
      * 
+     * Starts the shared services and deploys HTTP_INSTANCES instances of MainVerticle (default: one per core).
+     * 
      * @ingroup MainVerticleGroup
      */
     public static void main(String[] args) {
-        // Create Vertx instance and deploy MainVerticle
-        Vertx vertx = Vertx.vertx();
-        vertx.deployVerticle(new MainVerticle(), res -> {
-            if (res.succeeded()) {
-                logger.info("Verticle deployment succeeded");
-            } else {
-                logger.error("Verticle deployment failed: {}", res.cause().getMessage());
+        // Create the single Vertx instance shared by all verticles and services, with metrics scraped on /metrics
+        Vertx vertx = Vertx.vertx(new VertxOptions().setMetricsOptions(new MicrometerMetricsOptions()
+                .setPrometheusOptions(new VertxPrometheusOptions().setEnabled(true))
+                .setJvmMetricsEnabled(true)
+                .setEnabled(true)));
+        AppServices services = new AppServices(vertx);
+
+        int httpInstances = getEnvInt("HTTP_INSTANCES", Runtime.getRuntime().availableProcessors());
+        logger.info("HTTP_INSTANCES: {}", httpInstances);
+
+        services.start()
+            .compose(v -> vertx.deployVerticle(() -> new MainVerticle(services), new DeploymentOptions().setInstances(httpInstances)))
+            .onComplete(res -> {
+                if (res.succeeded()) {
+                    logger.info("Verticle deployment succeeded");
+                } else {
+                    logger.error("Verticle deployment failed: {}", res.cause().getMessage());
+                }
+            });
+
+        // Flush buffered writes and close Vert.x on SIGTERM (docker stop)
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                services.close().eventually(() -> vertx.close())
+                    .toCompletionStage().toCompletableFuture().get(10, java.util.concurrent.TimeUnit.SECONDS);
+            } catch (Exception e) {
+                logger.error("Failed to shut down cleanly: {}", e.getMessage());
+            } finally {
+                // Writes out the events still queued in the async appender
+                ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
             }
-        });
+        }));
     }
 }
 
@@ -0,0 +1,105 @@
+/**
+ * @file EventStreamHandler.java
+ * @brief Server-Sent Events endpoint streaming game events to the browsers of one HTTP verticle instance.
+ *
+ * @date 2024
+ * @ingroup ObjectController
+ */
+
+package com.example.controller;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * @class EventStreamHandler
+ * @brief Keeps the open event streams of one verticle instance and forwards broadcast frames to them.
+ *
+ * Created once per HTTP verticle instance, so the streams are only ever written from that instance's event loop.
+ * Optional query parameter "room" limits a stream to the events of one room.
+ *
+ * @ingroup ObjectController
+ */
+public class EventStreamHandler implements Handler<RoutingContext> {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventStreamHandler.class);
+    private static final long KEEP_ALIVE_INTERVAL = 15000; // 15 seconds
+
+    private final Vertx vertx;
+    private final GameEventBroadcaster broadcaster;
+    // Open streams and the room they are limited to ("" for all rooms)
+    private final Map<HttpServerResponse, String> streams = new ConcurrentHashMap<>();
+    private final MessageConsumer<String> consumer;
+    private final long keepAliveTimerId;
+
+    /**
+     * @brief Constructor for EventStreamHandler. Must be called on the event loop of the owning verticle.
+     *
+     * @param vertx The Vert.x instance.
+     * @param broadcaster Broadcaster publishing the frames and holding the latest state.
+     */
+    public EventStreamHandler(Vertx vertx, GameEventBroadcaster broadcaster) {
+        this.vertx = vertx;
+        this.broadcaster = broadcaster;
+        this.consumer = vertx.eventBus().localConsumer(GameEventBroadcaster.ADDRESS, message ->
+            fanOut(message.headers().get(GameEventBroadcaster.ROOM_HEADER), message.body()));
+        // Comment lines keep idle streams from being closed by proxies
+        this.keepAliveTimerId = vertx.setPeriodic(KEEP_ALIVE_INTERVAL, id -> fanOut(null, ": keep-alive\n\n"));
+    }
+
+    /**
+     * @brief Opens an event stream and replays the current state of the requested room.
+     *
+     * @param ctx RoutingContext of the HTTP request.
+     */
+    @Override
+    public void handle(RoutingContext ctx) {
+        String roomId = ctx.request().getParam("room");
+        String filter = roomId == null || roomId.isBlank() ? "" : roomId;
+
+        HttpServerResponse response = ctx.response()
+            .setChunked(true)
+            .putHeader("content-type", "text/event-stream")
+            .putHeader("cache-control", "no-cache")
+            .putHeader("x-accel-buffering", "no");
+
+        streams.put(response, filter);
+        response.closeHandler(v -> streams.remove(response));
+        response.exceptionHandler(cause -> streams.remove(response));
+
+        response.write("retry: 3000\n\n");
+        broadcaster.snapshot(filter.isEmpty() ? null : filter).forEach(response::write);
+        logger.debug("Event stream opened for room '{}', {} streams open", filter, streams.size());
+    }
+
+    /**
+     * @brief Stops forwarding events and closes all open streams.
+     */
+    public void close() {
+        consumer.unregister();
+        vertx.cancelTimer(keepAliveTimerId);
+        streams.keySet().forEach(HttpServerResponse::end);
+        streams.clear();
+    }
+
+    private void fanOut(String roomId, String frame) {
+        streams.forEach((response, filter) -> {
+            if (roomId != null && !filter.isEmpty() && !filter.equals(roomId)) {
+                return;
+            }
+            // Browsers that cannot keep up miss intermediate frames; the next scoreboard supersedes them
+            if (!response.writeQueueFull()) {
+                response.write(frame);
+            }
+        });
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * @file GameEventBroadcaster.java
+ * @brief Publishes score and round-winner changes to all connected browsers.
+ *
+ * Every change is encoded exactly once as a Server-Sent Events frame and published on the event bus. Each HTTP
+ * verticle instance forwards the frame to the browsers connected to it (see EventStreamHandler), so the cost of an
+ * update does not grow with the number of open pages.
+ *
+ * @date 2024
+ * @ingroup ObjectController
+ */
+
+package com.example.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @class GameEventBroadcaster
+ * @brief Single publisher of game events, shared by the whole application.
+ *
+ * The last frame of each event type and room is kept, so a browser that connects in the middle of a game
+ * immediately receives the current scores and winner.
+ *
+ * @ingroup ObjectController
+ */
+public class GameEventBroadcaster {
+
+    /** Event bus address the encoded frames are published on. */
+    public static final String ADDRESS = "game.events";
+    /** Delivery header carrying the room an event belongs to. */
+    public static final String ROOM_HEADER = "room";
+
+    private final Vertx vertx;
+    // Key "<event>/<room>", value the encoded frame
+    private final Map<String, String> latestFrames = new ConcurrentHashMap<>();
+    private final Map<String, String> latestWinners = new ConcurrentHashMap<>();
+
+    /**
+     * @brief Constructor for GameEventBroadcaster.
+     *
+     * @param vertx The Vert.x instance whose event bus carries the frames.
+     */
+    public GameEventBroadcaster(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * @brief Publishes the scoreboard of a room and, if the leader changed, the new round winner.
+     *
+     * @param roomId Name of the room.
+     * @param round Current round of the room.
+     * @param scores Scoreboard of the room, best player first (see ObjectService.scoreboard).
+     */
+    public void publishScores(String roomId, int round, JsonArray scores) {
+        publish("scores", roomId, new JsonObject()
+            .put("room", roomId)
+            .put("round", round)
+            .put("players", scores));
+
+        JsonObject leader = scores.isEmpty() ? null : scores.getJsonObject(0);
+        if (leader != null && leader.getInteger("points", 0) > 0) {
+            String name = leader.getString("username");
+            String previous = latestWinners.put(roomId, round + "/" + name);
+            if (!(round + "/" + name).equals(previous)) {
+                publish("winner", roomId, new JsonObject()
+                    .put("room", roomId)
+                    .put("round", round)
+                    .put("name", name)
+                    .put("points", leader.getInteger("points")));
+            }
+        }
+    }
+
+    /**
+     * @brief Publishes the start of a new round in a room.
+     *
+     * @param roomId Name of the room.
+     * @param round Number of the round that starts.
+     */
+    public void publishRound(String roomId, int round) {
+        latestWinners.remove(roomId);
+        latestFrames.remove("winner/" + roomId);
+        publish("round", roomId, new JsonObject().put("room", roomId).put("round", round));
+    }
+
+    /**
+     * @brief Publishes the end of the game in a room.
+     *
+     * @param roomId Name of the room.
+     * @param roundsPlayed Number of rounds the game lasted.
+     */
+    public void publishGameOver(String roomId, int roundsPlayed) {
+        publish("game_over", roomId, new JsonObject().put("room", roomId).put("round", roundsPlayed));
+    }
+
+    /**
+     * @brief Returns the last frames of a room, or of all rooms, to replay to a newly connected browser.
+     *
+     * @param roomId Name of the room, or null for all rooms.
+     * @return The encoded frames.
+     */
+    public List<String> snapshot(String roomId) {
+        List<String> frames = new ArrayList<>();
+        latestFrames.forEach((key, frame) -> {
+            if (roomId == null || key.endsWith("/" + roomId)) {
+                frames.add(frame);
+            }
+        });
+        return frames;
+    }
+
+    private void publish(String event, String roomId, JsonObject data) {
+        String frame = "event: " + event + "\ndata: " + data.encode() + "\n\n";
+        latestFrames.put(event + "/" + roomId, frame);
+        vertx.eventBus().publish(ADDRESS, frame, new DeliveryOptions().setLocalOnly(true).addHeader(ROOM_HEADER, roomId));
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * @file LogLevelController.java
+ * @brief Admin endpoints to inspect and change log levels at runtime.
+ *
+ * GET /admin/loggers lists the loggers with an explicit level and the events the hot-path sampling dropped.
+ * PUT /admin/loggers/<name> with {"level":"DEBUG"} sets the level of a logger; {"level":null} makes it inherit
+ * its parent's level again. Changes are not persisted and last until the next restart.
+ *
+ * @date 2024
+ * @ingroup ObjectController
+ */
+
+package com.example.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.slf4j.LoggerFactory;
+
+import com.example.logging.RateLimitingTurboFilter;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * @class LogLevelController
+ * @brief Reads and writes logback logger levels.
+ *
+ * Requests must carry the admin token as "Authorization: Bearer <token>". Without a configured token the endpoints
+ * are disabled and answer 403, so a missing ADMIN_TOKEN never leaves them open.
+ *
+ * @ingroup ObjectController
+ */
+public class LogLevelController {
+
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(LogLevelController.class);
+
+    private final String adminToken;
+
+    /**
+     * @brief Constructor for LogLevelController.
+     *
+     * @param adminToken Token required in the Authorization header; null or blank disables the endpoints.
+     */
+    public LogLevelController(String adminToken) {
+        this.adminToken = adminToken == null || adminToken.isBlank() ? null : adminToken;
+        if (this.adminToken == null) {
+            logger.warn("ADMIN_TOKEN is not set, the /admin endpoints are disabled");
+        }
+    }
+
+    /**
+     * @brief Registers the admin routes.
+     *
+     * @param router Vert.x router to register HTTP routes.
+     * @ingroup ObjectController
+     */
+    public void registerRoutes(Router router) {
+        router.route("/admin/*").handler(this::authorize);
+        router.get("/admin/loggers").handler(this::handleFetchLoggers);
+        router.put("/admin/loggers/:name").handler(this::handleSetLevel);
+    }
+
+    private void authorize(RoutingContext ctx) {
+        if (adminToken == null) {
+            ctx.response().setStatusCode(403).end(new JsonObject().put("error", "Admin endpoints are disabled, set ADMIN_TOKEN").encode());
+            return;
+        }
+        String authorization = ctx.request().getHeader("Authorization");
+        if (authorization == null || !MessageDigest.isEqual(("Bearer " + adminToken).getBytes(StandardCharsets.UTF_8),
+                authorization.getBytes(StandardCharsets.UTF_8))) {
+            ctx.response().setStatusCode(401).end(new JsonObject().put("error", "Unauthorized").encode());
+            return;
+        }
+        ctx.next();
+    }
+
+    /**
+     * @brief Lists the loggers that have an explicit level, with their effective level.
+     *
+     * @param ctx RoutingContext of the HTTP request.
+     * @ingroup ObjectController
+     */
+    private void handleFetchLoggers(RoutingContext ctx) {
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        JsonObject loggers = new JsonObject();
+        for (Logger candidate : loggerContext.getLoggerList()) {
+            if (candidate.getLevel() != null) {
+                loggers.put(candidate.getName(), new JsonObject()
+                    .put("level", candidate.getLevel().toString())
+                    .put("effectiveLevel", candidate.getEffectiveLevel().toString()));
+            }
+        }
+        JsonObject suppressed = new JsonObject();
+        RateLimitingTurboFilter.suppressedEvents().forEach(suppressed::put);
+        ctx.response()
+            .putHeader("content-type", "application/json")
+            .end(new JsonObject()
+                .put("loggers", loggers)
+                .put("suppressed", suppressed)
+                .encode());
+    }
+
+    /**
+     * @brief Sets or clears the level of one logger.
+     *
+     * @param ctx RoutingContext of the HTTP request; the body is {"level": "<level>"} or {"level": null}.
+     * @ingroup ObjectController
+     */
+    private void handleSetLevel(RoutingContext ctx) {
+        String name = ctx.pathParam("name");
+        String levelName;
+        try {
+            JsonObject body = ctx.body().asJsonObject();
+            levelName = body == null ? null : body.getString("level");
+        } catch (DecodeException | ClassCastException e) {
+            ctx.response().setStatusCode(400).end(new JsonObject().put("error", "Expected {\"level\": \"<level>\"}").encode());
+            return;
+        }
+
+        Level level = levelName == null ? null : Level.toLevel(levelName, null);
+        if (levelName != null && level == null) {
+            ctx.response().setStatusCode(400).end(new JsonObject().put("error", "Unknown level " + levelName).encode());
+            return;
+        }
+        Logger target = (Logger) LoggerFactory.getLogger(name);
+        if (level == null && Logger.ROOT_LOGGER_NAME.equals(target.getName())) {
+            ctx.response().setStatusCode(400).end(new JsonObject().put("error", "The root logger needs a level").encode());
+            return;
+        }
+
+        target.setLevel(level);
+        logger.warn("Log level of {} set to {} (effective {})", name, level, target.getEffectiveLevel());
+        ctx.response()
+            .putHeader("content-type", "application/json")
+            .end(new JsonObject()
+                .put("name", target.getName())
+                .put("level", level == null ? null : level.toString())
+                .put("effectiveLevel", target.getEffectiveLevel().toString())
+                .encode());
+    }
+}
@@ -24,11 +24,29 @@
 package com.example.controller;
 
 import io.vertx.core.Vertx;
+import com.example.game.ColorSequence;
+import com.example.game.GameLobby;
+import com.example.game.GameRoom;
+import com.example.journal.GameJournal;
+import com.example.journal.RoomSnapshot;
+import com.example.mqtt.DuplicateFilter;
+import com.example.mqtt.IngressMode;
+import com.example.mqtt.IngressQueue;
+import com.example.mqtt.IngressQueue.Priority;
+import com.example.mqtt.IngressPartitioner;
+import com.example.mqtt.MqttCapture;
+import com.example.mqtt.MqttTopicRouter;
+import com.example.mqtt.PublishAckTracker;
+import com.example.mqtt.SequenceWireFormat;
+import com.example.service.ControllerPresenceRegistry;
+import com.example.service.Leaderboard;
 import com.example.service.ObjectService;
+import com.example.service.PlayerState;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.mqtt.MqttClient;
+import io.vertx.mqtt.messages.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
@@ -37,11 +55,15 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
@@ -51,6 +73,7 @@ import io.vertx.core.json.JsonObject;
  * 
  * This class sets up HTTP routes, listens to MQTT messages from controllers, and 
  * manages player and controller interactions, including color sequence generation for games.
+ * Game state lives in GameRoom objects; every game step runs on the context of the room it belongs to.
  * 
  * @ingroup ObjectController
  */
@@ -59,30 +82,105 @@ public class ObjectController {
     private static final Logger logger = LoggerFactory.getLogger(ObjectController.class);
     private final ObjectService objectService;
     private final MqttClient mqttClient;
-    private Vertx vertx;
-    private Map<String, Long> lastHeartbeat = new HashMap<>();
-    private static final long HEARTBEAT_TIMEOUT = 30000; // 30 seconds
+    private final GameLobby lobby;
+    private final Vertx vertx;
+    // Written from MQTT callbacks and read from HTTP handlers on other event loops
+    private final ControllerPresenceRegistry presence;
+    private final GameEventBroadcaster events;
+    private final MqttTopicRouter topicRouter = new MqttTopicRouter();
+    private final DuplicateFilter duplicates = new DuplicateFilter();
+    private final PublishAckTracker sequenceAcks;
+    private final IngressPartitioner ingress;
+    private final GameJournal journal;
+    // Payload handlers by message kind, used for messages forwarded by other nodes
+    private final Map<String, Function<ControllerMessage, Future<?>>> controllerHandlers = new HashMap<>();
+    // Controllers that negotiated the binary sequence protocol or the room sequence topics at connect;
+    // written by MQTT callbacks, read on room contexts
+    private final Set<String> binaryControllers = ConcurrentHashMap.newKeySet();
+    private final Set<String> broadcastControllers = ConcurrentHashMap.newKeySet();
+    private static final int DEFAULT_LEADERBOARD_LIMIT = 10;
+    private static final int MAX_LEADERBOARD_LIMIT = 100;
     
     /**
      * @brief Constructor for ObjectController class.
      * 
-     * Initializes the controller with necessary services and sets up HTTP routes.
+     * Initializes the controller with necessary services. One controller is shared by all HTTP verticle instances.
      * 
-     * @param router Vert.x router to register HTTP routes.
+     * @param vertx The Vert.x instance shared by the application, used for timers.
      * @param objectService Service for interacting with controllers and players.
      * @param mqttClient MQTT client for handling MQTT messages.
+     * @param lobby Lobby holding the game rooms and the controller assignments.
+     * @param presence Registry of the controllers that are alive.
+     * @param events Broadcaster pushing score and winner changes to the browsers.
+     * @param ingress Decides which node handles the messages of a room when several backend nodes run.
+     * @param journal Journal the game events are recorded in.
      * @ingroup ObjectController
      */
-    public ObjectController(Router router, ObjectService objectService, MqttClient mqttClient) {
+    public ObjectController(Vertx vertx, ObjectService objectService, MqttClient mqttClient, GameLobby lobby,
+            ControllerPresenceRegistry presence, GameEventBroadcaster events, IngressPartitioner ingress, GameJournal journal) {
+        this.vertx = vertx;
         this.objectService = objectService;
         this.mqttClient = mqttClient;
-        this.vertx = Vertx.vertx();
-        // Register routes
+        this.lobby = lobby;
+        this.presence = presence;
+        this.events = events;
+        this.ingress = ingress;
+        this.journal = journal;
+        this.sequenceAcks = new PublishAckTracker(mqttClient);
+        presence.onOffline(this::handleControllerOffline);
+    }
+
+    /**
+     * @brief Restores the room assignments and running games replayed from the journal.
+     * 
+     * Call once before the MQTT handlers are installed.
+     * 
+     * @ingroup ObjectController
+     */
+    public void restoreGames() {
+        journal.assignments().forEach(lobby::assign);
+        for (RoomSnapshot snapshot : journal.rooms()) {
+            GameRoom room = lobby.room(snapshot.getRoomId());
+            room.run(() -> room.restore(snapshot));
+            if (snapshot.getCurrentSequence() != null) {
+                logger.info("Restored game in room {} at round {} with {} active players",
+                    room.getId(), snapshot.getRoundsPlayed(), snapshot.getActivePlayers().size());
+            }
+        }
+    }
+
+    /**
+     * @return Filter dropping controller messages that were delivered more than once.
+     * @ingroup ObjectController
+     */
+    public DuplicateFilter getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return Acknowledgement latency of the color sequences published to the controllers.
+     * @ingroup ObjectController
+     */
+    public PublishAckTracker getSequenceAcks() {
+        return sequenceAcks;
+    }
 
+    /**
+     * @brief Registers the HTTP routes of this controller.
+     * 
+     * Called once per HTTP verticle instance, each with its own router.
+     * 
+     * @param router Vert.x router to register HTTP routes.
+     * @ingroup ObjectController
+     */
+    public void registerRoutes(Router router) {
         router.get("/api/controllers").handler(this::handleFetchControllers);
         router.post("/api/login").handler(this::handleLogin);
         router.post("/api/generate-sequence").handler(this::handleGenerateSequence);
         router.get("/api/round-winner").handler(this::handleFetchRoundWinner);         
+        router.get("/api/rooms").handler(this::handleFetchRooms);
+        router.get("/api/leaderboard").handler(this::handleFetchLeaderboard);
+        router.get("/api/mqtt/stats").handler(this::handleFetchMqttStats);
        
     }
 
@@ -91,156 +189,392 @@ public class ObjectController {
      * @brief Sets up MQTT message handlers for controller interactions.
      * 
      * Handles MQTT messages for controller connections, RFID scans, color sequences, and heartbeats.
+     * All topics are routed through the topic router and subscribed with a single SUBSCRIBE packet.
+     * With an ingress queue, game play is handled before connects and logins, and heartbeats last.
+     * Duplicates of the messages that change state are dropped by their sequence number (see DuplicateFilter),
+     * so those topics may be subscribed with QoS 1 instead of 2.
+     * @param capture Capture recording every inbound message before it is routed, or null to record nothing.
+     * @param queue Queue bounding the handlers in flight, or null to start every handler at once.
+     * @param topicQos Subscription QoS by message kind, e.g. "color_sequence", overriding the defaults.
      * @ingroup ObjectController
      */
-    public void setupMqttHandlers() {
+    public void setupMqttHandlers(MqttCapture capture, IngressQueue queue, Map<String, MqttQoS> topicQos) {
 
         logger.debug("Setting up MQTT Handlers");
-        // Subscribe to the topic for controller connections with QoS level 1
-        mqttClient.publishHandler(message -> {
-            logger.debug("Received Message: {}", message);
-            if ("controller/connect".equals(message.topicName())) {
-                handleControllerConnect(message.payload());
-            }
-            else if("controller/rfid".equals(message.topicName())){
-               handleRfidScan(message.payload());
-            }else if("controller/color_sequence".equals(message.topicName())){
-                handleColorSequence(message.payload());
-            }else if ("controller/request_sequence".equals(message.topicName())) {
-                handleSequenceRequest(message.payload());
-            }else if("controller/playerstatus".equals(message.topicName())){
-                handlePlayerStatus(message.payload());
-            }else if("controller/status".equals(message.topicName())){
-                handleControllerStatus(message.payload());
-            }else if("controller/heartbeat".equals(message.topicName())){
-                handleControllerHeartbeat(message.payload());
-            }   
+        topicRouter.ingressQueue(queue);
+        routeControllerTopic("connect", topicQos.getOrDefault("connect", MqttQoS.EXACTLY_ONCE), Priority.NORMAL, message -> handleControllerConnect(message.json()));
+        routeControllerTopic("rfid", topicQos.getOrDefault("rfid", MqttQoS.EXACTLY_ONCE), Priority.NORMAL, message -> handleRfidScan(message.json()));
+        routeControllerTopic("color_sequence", topicQos.getOrDefault("color_sequence", MqttQoS.EXACTLY_ONCE), Priority.HIGH, this::handleColorSequence);
+        routeControllerTopic("request_sequence", topicQos.getOrDefault("request_sequence", MqttQoS.AT_LEAST_ONCE), Priority.HIGH, message -> {
+            handleSequenceRequest(message.payload());
+            return null;
         });
-        mqttClient.subscribe("controller/connect", MqttQoS.EXACTLY_ONCE.value())
-        .onSuccess(packetId -> {
-            logger.info("Subscribed to controller/connect topic successfully with packet id {}", packetId);
-        })
-        .onFailure(cause -> {
-            logger.error("Failed to subscribe to controller/connect topic: {}", cause.getMessage());
-        });
-        mqttClient.subscribe("controller/rfid", MqttQoS.EXACTLY_ONCE.value())
-        .onSuccess(packetId -> {
-            logger.info("Subscribed to controller/rfid topic successfully with packet id {}", packetId);
-        })
-        .onFailure(cause -> {
-            logger.error("Failed to subscribe to controller/rfid topic: {}", cause.getMessage());
-        });
-        mqttClient.subscribe("controller/color_sequence", MqttQoS.EXACTLY_ONCE.value())
-        .onSuccess(packetId -> {
-            logger.info("Subscribed to controller/color_sequence topic successfully with packet id {}", packetId);
-        })
-        .onFailure(cause -> {
-            logger.error("Failed to subscribe to controller/color_sequence topic: {}", cause.getMessage());
-        });
-        mqttClient.subscribe("controller/request_sequence", MqttQoS.AT_LEAST_ONCE.value())
-            .onSuccess(packetId -> {
-                logger.info("Subscribed to controller/request_sequence topic successfully with packet id {}", packetId);
-            })
-            .onFailure(cause -> {
-                logger.error("Failed to subscribe to controller/request_sequence topic: {}", cause.getMessage());
-        });
-        mqttClient.subscribe("controller/playerstatus", MqttQoS.AT_LEAST_ONCE.value())
-            .onSuccess(packetId -> {
-                logger.info("Subscribed to controller/playerstatus topic successfully with packet id {}", packetId);
-            })
-            .onFailure(cause -> {
-                logger.error("Failed to subscribe to controller/playerstatus topic: {}", cause.getMessage());
+        routeControllerTopic("playerstatus", topicQos.getOrDefault("playerstatus", MqttQoS.AT_LEAST_ONCE), Priority.HIGH, message -> {
+            handlePlayerStatus(message.json());
+            return null;
         });
-        mqttClient.subscribe("controller/status", MqttQoS.AT_LEAST_ONCE.value())
-            .onSuccess(packetId -> {
-                logger.info("Subscribed to controller/status topic successfully with packet id {}", packetId);
-            })
-            .onFailure(cause -> {
-                logger.error("Failed to subscribe to controller/status topic: {}", cause.getMessage());
+        routeControllerTopic("status", topicQos.getOrDefault("status", MqttQoS.AT_LEAST_ONCE), Priority.NORMAL, message -> {
+            handleControllerStatus(message.json());
+            return null;
         });
-        mqttClient.subscribe("controller/heartbeat", MqttQoS.AT_LEAST_ONCE.value())
-            .onSuccess(packetId -> {
-                logger.info("Subscribed to controller/heartbeat topic successfully with packet id {}", packetId);
-            })
-            .onFailure(cause -> {
-                logger.error("Failed to subscribe to controller/heartbeat topic: {}", cause.getMessage());
+        routeControllerTopic("heartbeat", topicQos.getOrDefault("heartbeat", MqttQoS.AT_LEAST_ONCE), Priority.LOW, message -> {
+            handleControllerHeartbeat(message.json());
+            return null;
         });
-    }  
-   
-    
+        for (Map.Entry<String, MqttQoS> entry : topicQos.entrySet()) {
+            if (controllerHandlers.containsKey(entry.getKey())) {
+                logger.info("Subscribing controller {} messages with QoS {}", entry.getKey(), entry.getValue().value());
+            } else {
+                logger.warn("Ignoring QoS for unknown controller message kind {}", entry.getKey());
+            }
+        }
+
+        if (ingress.isClustered()) {
+            int nodeId = ingress.getNodeId();
+            topicRouter
+                .route(IngressPartitioner.ROOM_ASSIGNMENT_TOPIC, MqttQoS.AT_LEAST_ONCE, message -> handleRoomAssignment(message.payload()))
+                .routeAsync(ingress.inboxPrefix(nodeId) + "#", MqttQoS.AT_LEAST_ONCE, this::handleForwardedMessage)
+                .routeAsync(ingress.startGameTopic(nodeId), MqttQoS.AT_LEAST_ONCE, message -> startGame(message.payload().toString()));
+            logger.info("Ingress mode {} as node {}", ingress.getMode(), nodeId);
+        }
+        if (capture != null) {
+            topicRouter.tap(capture::record);
+        }
+        topicRouter.install(mqttClient, ingress::subscriptionFor);
+    }
+
+    /**
+     * @brief Routes one kind of controller message, on the legacy topic controller/<kind> and on the
+     * controller-scoped topic controller/<controllerId>/<kind>. Both carry the same payload.
+     * 
+     * @param kind Last topic level, e.g. "heartbeat".
+     * @param qos QoS of the subscription.
+     * @param priority Priority in the ingress queue. LOW messages only refresh state, so a waiting one is replaced
+     *                 by a newer message of the same controller, and duplicates are harmless; messages of the
+     *                 other priorities are checked for duplicates by the node that handles them.
+     * @param handler Handler of the message; the payload is decoded once and shared with the coalescing key and
+     *                the ownership and duplicate checks.
+     * @ingroup ObjectController
+     */
+    private void routeControllerTopic(String kind, MqttQoS qos, Priority priority, Function<ControllerMessage, Future<?>> handler) {
+        Function<ControllerMessage, Future<?>> deduplicated = priority == Priority.LOW ? handler
+            : message -> isDuplicate(message) ? null : handler.apply(message);
+        controllerHandlers.put(kind, deduplicated);
+        Function<MqttPublishMessage, ControllerMessage> decoder = message -> new ControllerMessage(kind, message.payload());
+        BiFunction<MqttPublishMessage, ControllerMessage, Future<?>> owned = (message, parsed) -> handleIfOwned(message, parsed, deduplicated);
+        BiFunction<MqttPublishMessage, ControllerMessage, String> coalesceKey = priority == Priority.LOW ? (message, parsed) -> {
+            String controllerId = controllerIdOf(message.topicName(), parsed);
+            return controllerId == null ? null : kind + "/" + controllerId;
+        } : null;
+        topicRouter
+            .routeDecoded("controller/" + kind, qos, decoder, owned, coalesceKey)
+            .routeDecoded("controller/+/" + kind, qos, decoder, owned, coalesceKey)
+            .prioritize("controller/" + kind, priority)
+            .prioritize("controller/+/" + kind, priority);
+    }
+
+    /**
+     * @brief Handles a controller message if this node owns the room of the controller.
+     * 
+     * Messages of other rooms are dropped in PARTITIONED mode (their owner received them too) and forwarded
+     * to the owner's inbox in SHARED mode (the broker delivered them to this node only).
+     * 
+     * @param message The MQTT message.
+     * @param parsed The message as decoded by its route.
+     * @param handler Handler of the message.
+     * @return The result of the handler or of the forwarding, null if the message was dropped.
+     * @ingroup ObjectController
+     */
+    private Future<?> handleIfOwned(MqttPublishMessage message, ControllerMessage parsed, Function<ControllerMessage, Future<?>> handler) {
+        if (!ingress.isClustered()) {
+            return handler.apply(parsed);
+        }
+        String controllerId = controllerIdOf(message.topicName(), parsed);
+        int owner = controllerId == null ? ingress.getNodeId() : ingress.ownerOf(lobby.roomIdOf(controllerId));
+        if (owner == ingress.getNodeId()) {
+            return handler.apply(parsed);
+        }
+        if (ingress.getMode() == IngressMode.SHARED) {
+            return mqttClient.publish(ingress.inboxPrefix(owner) + message.topicName(), message.payload(), message.qosLevel(), false, false);
+        }
+        return null;
+    }
+
+    /**
+     * @brief Returns the controller a message belongs to, from the topic if it is controller-scoped, from the payload otherwise.
+     * 
+     * @param topic Topic the message was published to.
+     * @param message The controller message.
+     * @return The controller ID, or null if it cannot be determined.
+     * @ingroup ObjectController
+     */
+    private String controllerIdOf(String topic, ControllerMessage message) {
+        String controllerId = IngressPartitioner.controllerIdOfTopic(topic);
+        if (controllerId != null) {
+            return controllerId;
+        }
+        // request_sequence carries the plain controller ID, the other kinds a JSON object (see ControllerMessage.json);
+        // color_sequence may also be a binary answer frame
+        if ("request_sequence".equals(message.kind())) {
+            return message.payload().toString();
+        }
+        if (message.isBinary()) {
+            return SequenceWireFormat.controllerId(message.payload());
+        }
+        try {
+            return message.json().getString("controllerId");
+        } catch (DecodeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @brief Checks whether a controller message was already handled.
+     * 
+     * JSON payloads are checked by their "seq" field, binary answers by the nonce of the answered sequence.
+     * A connect starts a new window for its controller.
+     * Messages without either, such as the plain ID of request_sequence or payloads of older firmware, are
+     * always handled.
+     * 
+     * @param message The controller message.
+     * @return true if the message is a duplicate and must be dropped.
+     * @ingroup ObjectController
+     */
+    private boolean isDuplicate(ControllerMessage message) {
+        String kind = message.kind();
+        if ("request_sequence".equals(kind)) {
+            return false;
+        }
+        String controllerId;
+        boolean accepted;
+        if (message.isBinary()) {
+            controllerId = SequenceWireFormat.controllerId(message.payload());
+            accepted = controllerId == null || duplicates.acceptNonce(controllerId, SequenceWireFormat.nonce(message.payload()));
+        } else {
+            JsonObject json;
+            try {
+                json = message.json();
+            } catch (DecodeException e) {
+                // The handler reports the invalid payload
+                return false;
+            }
+            controllerId = json.getString("controllerId");
+            if ("connect".equals(kind) && controllerId != null) {
+                // A connecting controller may have rebooted and restarted its counter below the old highest number
+                duplicates.forget(controllerId);
+            }
+            Object seq = json.getValue("seq");
+            accepted = controllerId == null || !(seq instanceof Number)
+                || duplicates.acceptSequence(controllerId, ((Number) seq).longValue());
+        }
+        if (!accepted) {
+            logger.debug("Dropping duplicate {} message of controller {}", kind, controllerId);
+        }
+        return !accepted;
+    }
+
+    /**
+     * @brief Handles a controller message another node forwarded to this node's inbox.
+     * 
+     * @param message The forwarded message; its topic is the inbox prefix followed by the original topic.
+     * @return The result of the handler, null if the kind is unknown.
+     * @ingroup ObjectController
+     */
+    private Future<?> handleForwardedMessage(MqttPublishMessage message) {
+        String originalTopic = message.topicName().substring(ingress.inboxPrefix(ingress.getNodeId()).length());
+        String kind = originalTopic.substring(originalTopic.lastIndexOf('/') + 1);
+        Function<ControllerMessage, Future<?>> handler = controllerHandlers.get(kind);
+        if (handler == null) {
+            logger.warn("Dropping forwarded message with unknown topic {}", originalTopic);
+            return null;
+        }
+        return handler.apply(new ControllerMessage(kind, message.payload()));
+    }
+
+    /**
+     * @brief Applies a room assignment made on any node, so all nodes agree on the owner of the controller's messages.
+     * 
+     * The assignment also carries the sequence delivery the controller negotiated, because the new owner of its
+     * messages may not have seen its connect message.
+     * 
+     * @param payload JSON object with controllerId, room, binary and broadcast.
+     * @ingroup ObjectController
+     */
+    private void handleRoomAssignment(Buffer payload) {
+        JsonObject assignment = payload.toJsonObject();
+        String controllerId = assignment.getString("controllerId");
+        GameRoom room = lobby.assign(controllerId, assignment.getString("room"));
+        journal.roomAssigned(controllerId, room.getId());
+        setMember(binaryControllers, controllerId, assignment.getBoolean("binary", false));
+        setMember(broadcastControllers, controllerId, assignment.getBoolean("broadcast", false));
+    }
+
+    private static void setMember(Set<String> controllers, String controllerId, boolean member) {
+        if (member) {
+            controllers.add(controllerId);
+        } else {
+            controllers.remove(controllerId);
+        }
+    }
+
+    /**
+     * @brief Assigns a controller to a room and, with several nodes, tells the other nodes.
+     * 
+     * @param controllerId ID of the controller.
+     * @param roomId Name of the room, or null for the default room.
+     * @return The room the controller now belongs to.
+     * @ingroup ObjectController
+     */
+    private GameRoom assignRoom(String controllerId, String roomId) {
+        GameRoom room = lobby.assign(controllerId, roomId);
+        journal.roomAssigned(controllerId, room.getId());
+        if (ingress.isClustered()) {
+            JsonObject assignment = new JsonObject()
+                .put("controllerId", controllerId)
+                .put("room", room.getId())
+                .put("binary", binaryControllers.contains(controllerId))
+                .put("broadcast", broadcastControllers.contains(controllerId));
+            mqttClient.publish(IngressPartitioner.ROOM_ASSIGNMENT_TOPIC, Buffer.buffer(assignment.encode()), MqttQoS.AT_LEAST_ONCE, false, false)
+                .onFailure(cause -> logger.error("Failed to broadcast room assignment of {}: {}", controllerId, cause.getMessage()));
+        }
+        return room;
+    }
+
+    /**
+     * @return The router dispatching the MQTT messages of this controller, with its per-topic statistics.
+     * @ingroup ObjectController
+     */
+    public MqttTopicRouter getTopicRouter() {
+        return topicRouter;
+    }
+
+    /**
+     * @brief Serves the per-topic MQTT statistics (message and failure counts, handling latency), the state of
+     * the ingress queue and the dropped duplicates via HTTP GET.
+     * 
+     * @param ctx RoutingContext of the HTTP request.
+     * @ingroup ObjectController
+     */
+    private void handleFetchMqttStats(RoutingContext ctx) {
+        ctx.response()
+            .putHeader("content-type", "application/json")
+            .end(topicRouter.stats()
+                .put("sequenceAcks", sequenceAcks.toJson())
+                .put("duplicates", duplicates.toJson())
+                .encode());
+    }
+
+    /**
+     * @brief Reads a connect payload: the plain controller ID, or a JSON object with controllerId and protocol.
+     * 
+     * @param payload MQTT message payload of controller/connect.
+     * @return JSON object with controllerId and, if the controller asked for one, protocol.
+     * @throws DecodeException if the payload looks like JSON but is not.
+     * @ingroup ObjectController
+     */
+    private static JsonObject parseConnect(Buffer payload) {
+        String text = payload.toString();
+        return text.startsWith("{") ? new JsonObject(text) : new JsonObject().put("controllerId", text);
+    }
+
     /**
      * @brief Handles controller connection via MQTT message.
      * 
-     * Registers the controller and publishes an acknowledgment message.
+     * Registers the controller and publishes an acknowledgment message. A controller that connects with
+     * {"controllerId": "<id>", "protocol": "binary"} receives its sequences as binary frames (see SequenceWireFormat)
+     * once the acknowledgment names that protocol; controllers sending the plain ID keep the JSON sequences.
+     * With "broadcast": true the controller has subscribed to the sequence topic of its room (see roomSequenceTopic)
+     * and receives the sequences of a game round there instead of on its own topic.
      * 
-     * @param payload MQTT message payload containing controller ID.
+     * @param connect Connect payload as read by parseConnect.
+     * @return A Future that completes once the controller is registered.
      * @ingroup ObjectController
      */
     // Handle incoming connection messages from controllers
-    private void handleControllerConnect(Buffer payload) {
-        String controllerId = payload.toString();
+    private Future<Void> handleControllerConnect(JsonObject connect) {
+        String controllerId = connect.getString("controllerId");
+        if (controllerId == null) {
+            logger.error("Invalid connect payload: controllerId is missing");
+            return Future.succeededFuture();
+        }
+        boolean negotiated = connect.containsKey("protocol") || connect.containsKey("broadcast");
+        boolean binary = "binary".equals(connect.getString("protocol"));
+        boolean broadcast = Boolean.TRUE.equals(connect.getValue("broadcast"));
         logger.debug("Received connection from controller: {}", controllerId);
 
         // Register the controller in the service
+        Promise<Void> registered = Promise.promise();
         objectService.registerController(controllerId, res -> {
             if (res.succeeded()) {
-                logger.info("Controller registered: {}", controllerId);
-                connectedControllers.add(controllerId);
-                lastHeartbeat.put(controllerId, System.currentTimeMillis());
-                // Optionally publish an acknowledgment back to the controller
-                mqttClient.publish("controller/ack", Buffer.buffer("Connected: " + controllerId), MqttQoS.AT_LEAST_ONCE, false, false);
+                logger.info("Controller registered: {}{}{}", controllerId, binary ? " (binary protocol)" : "",
+                    broadcast ? " (room broadcast)" : "");
+                presence.heartbeat(controllerId);
+                setMember(binaryControllers, controllerId, binary);
+                setMember(broadcastControllers, controllerId, broadcast);
+                // Controllers that asked for a protocol learn the outcome from the acknowledgment
+                String ack = negotiated
+                    ? new JsonObject()
+                        .put("controllerId", controllerId)
+                        .put("protocol", binary ? "binary" : "json")
+                        .put("broadcast", broadcast)
+                        .encode()
+                    : "Connected: " + controllerId;
+                mqttClient.publish("controller/ack", Buffer.buffer(ack), MqttQoS.AT_LEAST_ONCE, false, false);
+                registered.complete();
             } else {
                 logger.error("Failed to register controller: {}", res.cause().getMessage());
+                registered.fail(res.cause());
             }
         });
+        return registered.future();
     }
 
     /**
      * @brief Handles heartbeats from controllers via MQTT message.
      * 
-     * Updates the heartbeat timestamp for the controller.
+     * Only touches the presence registry; the database is updated by the registry in batches.
      * 
-     * @param payload MQTT message payload containing controller heartbeat information.
+     * @param heartbeatJson MQTT message payload containing controller heartbeat information.
      * @ingroup ObjectController
      */
-    private void handleControllerHeartbeat(Buffer payload) {
-        JsonObject heartbeatJson = payload.toJsonObject();
+    private void handleControllerHeartbeat(JsonObject heartbeatJson) {
         String controllerId = heartbeatJson.getString("controllerId");
         if (controllerId != null) {
-            lastHeartbeat.put(controllerId, System.currentTimeMillis());
-            logger.debug("Received heartbeat from controller: {}", controllerId);
+            presence.heartbeat(controllerId);
         }
     }
 
-    private void handleControllerStatus(Buffer payload) {
-        JsonObject statusJson = payload.toJsonObject();
+    private void handleControllerStatus(JsonObject statusJson) {
         String controllerId = statusJson.getString("controllerId");
         String status = statusJson.getString("status");
 
         if (controllerId != null && status != null) {
             if ("reconnected".equals(status)) {
                 logger.info("Controller reconnected: {}", controllerId);
-                connectedControllers.add(controllerId);
-                lastHeartbeat.put(controllerId, System.currentTimeMillis());
+                presence.heartbeat(controllerId);
             } else if ("disconnected".equals(status)) {
                 logger.info("Controller disconnected: {}", controllerId);
-                connectedControllers.remove(controllerId);
-                lastHeartbeat.remove(controllerId);
+                presence.disconnect(controllerId);
             }
         }
     }
-    
+
     /**
-     * @brief Handles heartbeats from controllers via MQTT message.
+     * @brief Called by the presence registry when a controller went offline.
      * 
-     * Updates the heartbeat timestamp for the controller.
+     * A player whose controller disappears mid-round counts as having lost, so the round does not wait for them.
      * 
-     * @param payload MQTT message payload containing controller heartbeat information.
+     * @param controllerId ID of the controller that went offline.
      * @ingroup ObjectController
      */
-    private boolean isControllerActive(String controllerId) {
-        Long lastBeat = lastHeartbeat.get(controllerId);
-        return lastBeat != null && (System.currentTimeMillis() - lastBeat) < HEARTBEAT_TIMEOUT;
+    private void handleControllerOffline(String controllerId) {
+        duplicates.forget(controllerId);
+        GameRoom room = lobby.roomOf(controllerId);
+        room.run(() -> {
+            if (room.isActivePlayer(controllerId)) {
+                handlePlayerLoss(room, controllerId);
+            }
+        });
     }
 
      /**
@@ -280,6 +614,8 @@ public class ObjectController {
         // Extract username and controllerId from the HTTP request parameters
         String username = ctx.request().getParam("username");
         String controllerId = ctx.request().getParam("controller");
+        // Optional game room, controllers without one play in the default room
+        String roomId = ctx.request().getParam("room");
     
         // Check if username and controllerId are provided, if not return a 400 Bad Request
         if (username == null || controllerId == null) {
@@ -293,9 +629,10 @@ public class ObjectController {
         // Call the service method to register the player and create a session
         objectService.registerPlayerAndCreateSession(username, controllerId, res -> {
             if (res.succeeded()) {
+                GameRoom room = assignRoom(controllerId, roomId);
                 // On success, send a 200 OK response with a success message
                 ctx.response().setStatusCode(200).end("Player registered and session created successfully");
-                logger.info("Player {} logged in with controller {}", username, controllerId);
+                logger.info("Player {} logged in with controller {} in room {}", username, controllerId, room.getId());
             } else {
                 // On failure, send a 500 Internal Server Error response with an error message
                 ctx.response().setStatusCode(500).end("Failed to register player or create session");
@@ -307,29 +644,31 @@ public class ObjectController {
      /**
      * @brief Handles incoming RFID scan messages from controllers via MQTT.
      * 
-     * Converts the payload to extract the controller ID and username, then registers the player.
+     * Reads the RFID tag, controller ID and username from the decoded payload, then registers the player.
      * Notifies the frontend upon successful registration of the controller.
      * 
-     * @param payload MQTT message payload containing RFID scan information.
+     * @param json The MQTT message payload containing RFID scan information, as JSON object.
+     * @return A Future that completes once the player is registered.
      * @ingroup ObjectController
      */
         // Handle incoming RFID scan messages
-    private void handleRfidScan(Buffer payload) {
-        // Convert the payload to a string to get the RFID tag
-        String payloadStr = payload.toString();
-        JsonObject json = new JsonObject(payloadStr);
+    private Future<Void> handleRfidScan(JsonObject json) {
+        String rfidTag = json.getString("rfidTag");
         String controllerId = json.getString("controllerId");
         String username = json.getString("username");
+        String roomId = json.getString("room");
 
         
         // Log the received RFID scan for debugging purposes
-        logger.debug("Received RFID scan with tag: {}", payloadStr);
+        logger.debug("Received RFID scan with tag: {}", rfidTag);
 
         // Call the service method to register the player using the RFID tag
-        objectService.registerPlayerWithRfid(payloadStr, res -> {
+        Promise<Void> registered = Promise.promise();
+        objectService.registerPlayerWithRfid(username, rfidTag, controllerId, res -> {
             if (res.succeeded()) {
                 // On success, log that the RFID scan was processed successfully
-                logger.info("RFID scan processed successfully for tag: {}", payloadStr);
+                logger.info("RFID scan processed successfully for tag: {}", rfidTag);
+                assignRoom(controllerId, roomId);
 
                 // Construct the message to notify the frontend
                 JsonObject message = new JsonObject()
@@ -338,140 +677,202 @@ public class ObjectController {
 
                 // Publish the message to the "frontend/notifications" topic
                 mqttClient.publish("frontend/notifications", Buffer.buffer(message.encode()), MqttQoS.AT_LEAST_ONCE, false, false);
+                registered.complete();
 
             } else {
                 // On failure, log the error with the failure cause
                 logger.error("Failed to process RFID scan: {}", res.cause().getMessage());
+                registered.fail(res.cause());
             }
         });
+        return registered.future();
     }
 
-
-    private AtomicBoolean isWaitingForResponse = new AtomicBoolean(false);
-    private JsonArray currentColorSequence;
-    private AtomicInteger activePlayers = new AtomicInteger(0);
-    // Add a variable to track the number of rounds played
-    private AtomicInteger roundsPlayed = new AtomicInteger(0);
-    private List<String> connectedControllers = new ArrayList<>();
-    private List<String> controllersWaitingForSequence = new ArrayList<>();
     
    /**
      * @brief Handles the generation of a color sequence for a game.
      * 
-     * Fetches connected controllers and starts the game sequence generation process.
+     * Fetches connected controllers of the requested room (query parameter "room", default room otherwise)
+     * and starts the game sequence generation process in that room.
      * 
      * @param routingContext RoutingContext of the HTTP request.
      * @ingroup ObjectController
      */
     private void handleGenerateSequence(RoutingContext routingContext) {
+        String requestedRoom = routingContext.request().getParam("room");
+        String roomId = requestedRoom == null || requestedRoom.isBlank() ? GameLobby.DEFAULT_ROOM : requestedRoom;
+
+        // With several backend nodes the game loop runs on the node owning the room
+        if (!ingress.owns(roomId)) {
+            int owner = ingress.ownerOf(roomId);
+            mqttClient.publish(ingress.startGameTopic(owner), Buffer.buffer(roomId), MqttQoS.AT_LEAST_ONCE, false, false)
+                .onSuccess(packetId -> routingContext.response()
+                    .setStatusCode(202)
+                    .end(new JsonObject().put("message", "Game start forwarded to node " + owner).put("room", roomId).encode()))
+                .onFailure(cause -> {
+                    logger.error("Failed to forward game start of room {} to node {}: {}", roomId, owner, cause.getMessage());
+                    routingContext.response()
+                        .setStatusCode(500)
+                        .end(new JsonObject().put("error", "Failed to start sequence generation").encode());
+                });
+            return;
+        }
+
+        startGame(roomId).onComplete(ar -> {
+            if (ar.succeeded()) {
+                routingContext.response()
+                    .setStatusCode(200)
+                    .end(ar.result().encode());
+            } else {
+                routingContext.response()
+                    .setStatusCode(500)
+                    .end(new JsonObject().put("error", "Failed to start sequence generation").encode());
+            }
+        });
+    }
+
+    /**
+     * @brief Starts a game with the connected controllers of a room. The room must be owned by this node.
+     * 
+     * @param roomId Name of the room.
+     * @return A Future with the status message (message, room).
+     * @ingroup ObjectController
+     */
+    private Future<JsonObject> startGame(String roomId) {
+        Promise<JsonObject> promise = Promise.promise();
+
         // Retrieve the list of connected controllers
         objectService.getConnectedControllers(connectedControllersResult -> {
             if (connectedControllersResult.succeeded()) {
-                List<String> connectedControllers = connectedControllersResult.result();
-                activePlayers.set(connectedControllers.size());
+                List<String> roomControllers = lobby.membersOf(roomId, connectedControllersResult.result());
 
-                if (connectedControllers.isEmpty()) {
-                    routingContext.response()
-                        .setStatusCode(200)
-                        .end(new JsonObject().put("message", "No connected controllers associated with users").encode());
+                if (roomControllers.isEmpty()) {
+                    promise.complete(new JsonObject().put("message", "No connected controllers associated with users").put("room", roomId));
                     return;
                 }
 
-                // Send countdown and start the first round
-                sendCountdownToAllControllers(connectedControllers);
-                // Start the sequence generation and sending process
-                
-                try {
-                    sendNextSequence(connectedControllers);
-                    routingContext.response()
-                        .setStatusCode(200)
-                        .end(new JsonObject().put("message", "Game sequence generation started").encode());
-                } catch (Exception e) {
-                    logger.error("Error while generating sequence: ", e);
-                    routingContext.response()
-                        .setStatusCode(500)
-                        .end(new JsonObject().put("error", "Failed to start sequence generation").encode());
-                }
+                GameRoom room = lobby.room(roomId);
+                room.call(() -> {
+                    room.startGame(roomControllers);
+                    journal.gameStarted(roomId, roomControllers);
+                    // Send countdown and start the first round
+                    sendCountdownToAllControllers(roomControllers);
+                    // Start the sequence generation and sending process
+                    sendNextSequence(room, roomControllers, true);
+                    return Future.succeededFuture();
+                }).onComplete(ar -> {
+                    if (ar.succeeded()) {
+                        promise.complete(new JsonObject().put("message", "Game sequence generation started").put("room", roomId));
+                    } else {
+                        logger.error("Error while generating sequence: ", ar.cause());
+                        promise.fail(ar.cause());
+                    }
+                });
                 
             } else {
-                routingContext.response()
-                    .setStatusCode(500)
-                    .end(new JsonObject().put("error", "Failed to retrieve connected controllers").encode());
                 logger.error("Failed to retrieve connected controllers", connectedControllersResult.cause());
+                promise.fail(connectedControllersResult.cause());
             }
         });
+        return promise.future();
+    }
+
+    /**
+     * @brief Handles fetching the game rooms via HTTP GET.
+     * 
+     * Lists every room together with the controllers assigned to it.
+     * 
+     * @param ctx RoutingContext of the HTTP request.
+     * @ingroup ObjectController
+     */
+    private void handleFetchRooms(RoutingContext ctx) {
+        ctx.response()
+            .putHeader("content-type", "application/json")
+            .end(lobby.describe().encode());
     }
 
 
     /**
      * @brief Handles a request from the controller for the next color sequence.
      * 
-     * Adds the controller to the waiting list and sends the next sequence if possible.
+     * Adds the controller to the waiting list of its room and sends the next sequence if possible.
      * 
      * @param payload MQTT message payload containing the controller ID.
      * @ingroup ObjectController
      */
     private void handleSequenceRequest(Buffer payload) {
-    String controllerId = payload.toString();
-    logger.debug("Received sequence request from controller: {}", controllerId);
+        String controllerId = payload.toString();
+        logger.debug("Received sequence request from controller: {}", controllerId);
 
-    // Add the controller to the list of controllers waiting for the sequence
-    controllersWaitingForSequence.add(controllerId);
+        GameRoom room = lobby.roomOf(controllerId);
+        room.run(() -> {
+            // Add the controller to the list of controllers waiting for the sequence
+            room.getControllersWaitingForSequence().add(controllerId);
 
-        // If we're not already waiting for a response, start the sequence generation process
-        if (!isWaitingForResponse.get()) {
-            isWaitingForResponse.set(true);
-            sendNextSequence(Arrays.asList(controllerId));
-        }
+            // If we're not already waiting for a response, start the sequence generation process
+            if (!room.isWaitingForResponse()) {
+                room.setWaitingForResponse(true);
+                sendNextSequence(room, Arrays.asList(controllerId), false);
+            }
+        });
     }
     
     /**
      * @brief Sends the next color sequence to the list of controllers.
      * 
-     * Generates a color sequence and publishes it to the active controllers.
+     * Generates a color sequence, stores it in the room and publishes it to the active controllers.
+     * When the whole round is addressed, controllers that subscribed to the room topics get one publish per
+     * encoding on those topics; all other controllers get one publish each on neopixel/display<id>.
+     * Must be called on the room's context.
      * 
+     * @param room Game room the sequence belongs to.
      * @param controllers List of active controllers.
+     * @param toRound True if the controllers are the players of the round, false for a single requesting controller,
+     * which must not make the others in the room receive the sequence.
      * @return A future representing the completion of the operation.
      * @ingroup ObjectController
      */
-    private Future<Void> sendNextSequence(List<String> controllers) {
+    private Future<Void> sendNextSequence(GameRoom room, List<String> controllers, boolean toRound) {
     Promise<Void> promise = Promise.promise();
     
     // Generate a single color sequence for this round
-    currentColorSequence = objectService.generateColorSequence();
-    String message = currentColorSequence.encode();
+    ColorSequence currentColorSequence = objectService.generateColorSequence();
+    int nonce = ThreadLocalRandom.current().nextInt();
+    room.setCurrentSequence(currentColorSequence, nonce);
+    int round = room.getRoundsPlayed();
+    journal.sequenceIssued(room.getId(), round, nonce, currentColorSequence);
+    // Each encoding is built once and the same Buffer is published to every controller using it
+    Buffer message = currentColorSequence.toJsonBuffer();
+    Buffer binaryMessage = binaryControllers.isEmpty() ? null : SequenceWireFormat.encodeSequence(currentColorSequence, round, nonce);
     
     List<Future<Void>> publishFutures = new ArrayList<>();
+    boolean broadcastJson = false;
+    boolean broadcastBinary = false;
     
     for (String controllerId : controllers) {
-        if (isControllerActive(controllerId)) {
-            String topic = "neopixel/display" + controllerId;
-            Promise<Void> publishPromise = Promise.promise();
-            
-            mqttClient.publish(topic,
-                Buffer.buffer(message),
-                MqttQoS.AT_LEAST_ONCE,
-                false,
-                false,
-                ar -> {
-                    if (ar.succeeded()) {
-                        logger.info("Color sequence sent to controller {}: {}", controllerId, message);
-                        publishPromise.complete();
-                    } else {
-                        logger.error("Failed to send color sequence to controller {}", controllerId, ar.cause());
-                        publishPromise.fail(ar.cause());
-                    }
-                });
-            publishFutures.add(publishPromise.future());
-        } else {
+        if (!presence.isActive(controllerId)) {
             logger.warn("Controller {} is not active, skipping sequence send", controllerId);
+            continue;
         }
+        boolean binary = binaryMessage != null && binaryControllers.contains(controllerId);
+        if (toRound && broadcastControllers.contains(controllerId)) {
+            broadcastBinary |= binary;
+            broadcastJson |= !binary;
+        } else {
+            publishFutures.add(publishSequence("neopixel/display" + controllerId, binary ? binaryMessage : message, currentColorSequence));
+        }
+    }
+    if (broadcastJson) {
+        publishFutures.add(publishSequence(roomSequenceTopic(room.getId(), false), message, currentColorSequence));
+    }
+    if (broadcastBinary) {
+        publishFutures.add(publishSequence(roomSequenceTopic(room.getId(), true), binaryMessage, currentColorSequence));
     }
     
     // Wait for all publish operations to complete
     Future.all(publishFutures).onComplete(ar -> {
         if (ar.succeeded()) {
-            logger.info("Sequence sent to all active controllers for round {}", roundsPlayed.get());
+            logger.info("Sequence sent to all active controllers of room {} for round {}", room.getId(), round);
             promise.complete();
         } else {
             logger.error("Failed to send sequence to all controllers", ar.cause());
@@ -481,6 +882,35 @@ public class ObjectController {
     
     return promise.future();
     }
+
+    /**
+     * @brief Publishes a sequence to one controller topic or room topic and measures the broker acknowledgement.
+     * 
+     * @param topic Topic to publish to.
+     * @param payload Encoded sequence, shared by all publishes of the sequence.
+     * @param sequence The sequence, for logging.
+     * @return A future completing once the message is written.
+     * @ingroup ObjectController
+     */
+    private Future<Void> publishSequence(String topic, Buffer payload, ColorSequence sequence) {
+        long publishedAt = System.nanoTime();
+        return sequenceAcks.track(mqttClient.publish(topic, payload, MqttQoS.AT_LEAST_ONCE, false, false), publishedAt)
+            .onSuccess(packetId -> logger.debug("Color sequence sent to {}: {}", topic, sequence))
+            .onFailure(cause -> logger.error("Failed to send color sequence to {}", topic, cause))
+            .mapEmpty();
+    }
+
+    /**
+     * @brief Returns the topic on which the players of a room receive their sequences with room broadcast.
+     * 
+     * @param roomId Name of the room.
+     * @param binary True for the topic of the binary frames, false for the JSON one.
+     * @return game/<room>/sequence or game/<room>/sequence/binary.
+     * @ingroup ObjectController
+     */
+    public static String roomSequenceTopic(String roomId, boolean binary) {
+        return "game/" + roomId + (binary ? "/sequence/binary" : "/sequence");
+    }
     
    /**
  * @brief Notifies a controller when a player has lost the game.
@@ -519,67 +949,172 @@ public class ObjectController {
      * Compares the received sequence with the correct one and updates points accordingly.
      * Notifies the controller if they lost or won the round.
      * 
-     * @param payload MQTT message payload containing the controller ID and received color sequence.
+     * @param payload MQTT message payload containing the controller ID and received color sequence, as JSON or as
+     * a binary answer frame.
      * @return A Future<Boolean> indicating the success or failure of the sequence comparison.
      * @ingroup ObjectController
      */
     public Future<Boolean> handleColorSequence(Buffer payload) {
+        return handleColorSequence(new ControllerMessage("color_sequence", payload));
+    }
+
+    private Future<Boolean> handleColorSequence(ControllerMessage message) {
+        if (message.isBinary()) {
+            return handleBinaryColorSequence(message.payload());
+        }
         Promise<Boolean> promise = Promise.promise();
 
-        JsonObject payloadJson = payload.toJsonObject();
+        JsonObject payloadJson = message.json();
         String controllerId = payloadJson.getString("controllerId");
-        JsonArray receivedSequence = payloadJson.getJsonArray("sequence");
+        JsonArray sequenceJson = payloadJson.getJsonArray("sequence");
 
-        if (controllerId == null || receivedSequence == null) {
+        if (controllerId == null || sequenceJson == null) {
             logger.error("Invalid payload: controllerId or sequence is missing");
             promise.complete(false);
             return promise.future();
         }
 
-        logger.debug("Received sequence for controller {}: {}", controllerId, receivedSequence.encode());
+        ColorSequence receivedSequence = parseSequence(controllerId, sequenceJson);
+        logger.debug("Received sequence for controller {}: {}", controllerId, receivedSequence);
 
-        objectService.compareSequenceAndAwardPoints(controllerId, receivedSequence)
+        GameRoom room = lobby.roomOf(controllerId);
+        room.call(() -> receivedSequence == null
+                ? objectService.awardPointIfMatched(controllerId, false)
+                : objectService.compareSequenceAndAwardPoints(controllerId, room.getCurrentSequence(), receivedSequence))
             .onSuccess(isMatch -> {
-                if (isMatch) {
-                    logger.info("Sequence match! Points updated for controller: {}", controllerId);
-                    sendDisplayInfoToController(controllerId);
-                    promise.complete(true);
-                } else {
-                    logger.info("Sequence did not match for controller: {}", controllerId);
-                    notifyControllerOfLoss(controllerId);
-                    handlePlayerLoss(controllerId);
-                    promise.complete(true);
-                }
-                isWaitingForResponse.set(false);
-                    promise.complete(isMatch);
+                applySequenceResult(room, controllerId, isMatch);
+                promise.complete(isMatch);
             })
             .onFailure(cause -> {
                 logger.error("Failed to compare sequence or update points: {}", cause.getMessage());
-                isWaitingForResponse.set(false);
+                room.setWaitingForResponse(false);
                 promise.fail(cause);
             });
 
         return promise.future();
     }
+
+    /**
+     * @brief Parses the color names of a JSON answer.
+     * 
+     * @param controllerId ID of the controller that answered, for logging.
+     * @param sequenceJson Color names as sent by the controller.
+     * @return The sequence, or null if it holds a color the game does not know and therefore cannot match.
+     * @ingroup ObjectController
+     */
+    private static ColorSequence parseSequence(String controllerId, JsonArray sequenceJson) {
+        try {
+            return ColorSequence.fromJson(sequenceJson);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Sequence of controller {} is not valid: {}", controllerId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @brief Handles a binary answer frame.
+     * 
+     * The packed colors are compared with the stored sequence in place. Answers whose nonce is not the one of the
+     * room's current sequence belong to an earlier sequence and are dropped without costing the player the round.
+     * 
+     * @param payload Binary answer frame.
+     * @return A Future<Boolean> with the outcome; false for dropped answers.
+     * @ingroup ObjectController
+     */
+    private Future<Boolean> handleBinaryColorSequence(Buffer payload) {
+        String controllerId = SequenceWireFormat.controllerId(payload);
+        if (controllerId == null) {
+            logger.error("Invalid payload: binary sequence without controller ID");
+            return Future.succeededFuture(false);
+        }
+
+        GameRoom room = lobby.roomOf(controllerId);
+        return room.call(() -> {
+            ColorSequence expected = room.getCurrentSequence();
+            if (expected == null || SequenceWireFormat.nonce(payload) != room.getSequenceNonce()) {
+                logger.debug("Dropping stale sequence answer of controller {}", controllerId);
+                return Future.succeededFuture((Boolean) null);
+            }
+            boolean match = SequenceWireFormat.matches(payload, expected);
+            return objectService.awardPointIfMatched(controllerId, match);
+        })
+            .map(isMatch -> {
+                if (isMatch == null) {
+                    return false;
+                }
+                applySequenceResult(room, controllerId, isMatch);
+                return isMatch;
+            })
+            .onFailure(cause -> {
+                logger.error("Failed to compare sequence or update points: {}", cause.getMessage());
+                room.setWaitingForResponse(false);
+            });
+    }
+
+    /**
+     * @brief Rewards a matching answer or takes the player out of the round. Must be called on the room's context.
+     * 
+     * @param room Game room of the controller.
+     * @param controllerId ID of the controller that answered.
+     * @param isMatch Whether the answer matched the room's sequence.
+     * @ingroup ObjectController
+     */
+    private void applySequenceResult(GameRoom room, String controllerId, boolean isMatch) {
+        journal.answerReceived(room.getId(), controllerId, isMatch);
+        if (isMatch) {
+            PlayerState state = objectService.getGameStateStore().get(controllerId);
+            if (state != null) {
+                journal.pointAwarded(controllerId, state.getRound(), state.getPoints());
+            }
+            logger.debug("Sequence match! Points updated for controller: {}", controllerId);
+            sendDisplayInfoToController(controllerId);
+            publishScores(room);
+        } else {
+            logger.debug("Sequence did not match for controller: {}", controllerId);
+            notifyControllerOfLoss(controllerId);
+            handlePlayerLoss(room, controllerId);
+        }
+        room.setWaitingForResponse(false);
+    }
      
+    /**
+     * @brief Pushes the current scoreboard of a room to the browsers. Must be called on the room's context.
+     * 
+     * @param room Game room whose scores changed.
+     * @ingroup ObjectController
+     */
+    private void publishScores(GameRoom room) {
+        events.publishScores(room.getId(), room.getRoundsPlayed(), objectService.scoreboard(room.getPlayers()));
+    }
+
     /**
      * @brief Handles the event when a player loses the game.
      * 
-     * Decrements the active player count and removes the disconnected controller from the list.
+     * Removes the player from the active players of its room.
      * If no players are left, starts a new round.
      * 
      * @param controllerId ID of the controller representing the player who lost.
      * @ingroup ObjectController
      */
     private void handlePlayerLoss(String controllerId) {
-        int remainingPlayers = activePlayers.decrementAndGet();
-        logger.info("Player lost: {}. Remaining players: {}", controllerId, remainingPlayers);
-    
-        // Remove the disconnected controller from the connectedControllers list
-        connectedControllers.remove(controllerId);
+        GameRoom room = lobby.roomOf(controllerId);
+        room.run(() -> handlePlayerLoss(room, controllerId));
+    }
+
+    /**
+     * @brief Removes a player from the active players of a room. Must be called on the room's context.
+     * 
+     * @param room Game room of the player.
+     * @param controllerId ID of the controller representing the player who lost.
+     * @ingroup ObjectController
+     */
+    private void handlePlayerLoss(GameRoom room, String controllerId) {
+        int remainingPlayers = room.removeActivePlayer(controllerId);
+        journal.playerLost(room.getId(), controllerId);
+        logger.info("Player lost: {}. Remaining players in room {}: {}", controllerId, room.getId(), remainingPlayers);
     
         if (remainingPlayers <= 0 ) {
-            startNewRound();
+            startNewRound(room);
         } else {
             logger.info("Waiting for other players to complete their turns.");
         }
@@ -590,11 +1125,10 @@ public class ObjectController {
      * 
      * Processes status messages, such as a player losing the game.
      * 
-     * @param payload MQTT message payload containing controller ID and player status.
+     * @param payloadJson MQTT message payload containing controller ID and player status.
      * @ingroup ObjectController
      */
-    private void handlePlayerStatus(Buffer payload) {
-        JsonObject payloadJson = payload.toJsonObject();
+    private void handlePlayerStatus(JsonObject payloadJson) {
         String controllerId = payloadJson.getString("controllerId");
         String status = payloadJson.getString("status");
 
@@ -623,7 +1157,7 @@ public class ObjectController {
         objectService.getRoundWinner(ar -> {
             if (ar.succeeded()) {
                 JsonObject winner = ar.result();
-                if (winner != null) {
+                if (winner != null && winner.containsKey("round")) {
                     int round = winner.getInteger("round");
                     String name = winner.getString("name");
                     ctx.response()
@@ -649,30 +1183,84 @@ public class ObjectController {
     }
 
     /**
-     * @brief Starts a new game round after all players have lost or the round limit is reached.
+     * @brief Serves the leaderboard from memory via an HTTP GET request.
      * 
-     * Resets the game state, increments the round counter, and starts a new round for all connected controllers.
+     * Query parameters: "round" selects a round (default: the latest round, "all" for all-time high scores)
+     * and "limit" the number of entries (default 10, at most 100). Responses carry an ETag derived from the
+     * leaderboard version, so unchanged leaderboards are answered with 304 Not Modified.
      * 
+     * @param ctx RoutingContext of the HTTP request.
      * @ingroup ObjectController
      */
-    private void startNewRound() {
+    private void handleFetchLeaderboard(RoutingContext ctx) {
+        Leaderboard leaderboard = objectService.getLeaderboard();
+        String roundParam = ctx.request().getParam("round");
+        String limitParam = ctx.request().getParam("limit");
+
+        int limit;
+        int round;
+        boolean allTime = "all".equalsIgnoreCase(roundParam);
+        try {
+            limit = limitParam == null ? DEFAULT_LEADERBOARD_LIMIT : Math.max(1, Math.min(MAX_LEADERBOARD_LIMIT, Integer.parseInt(limitParam)));
+            round = allTime ? 0 : roundParam == null ? leaderboard.latestRound() : Integer.parseInt(roundParam);
+        } catch (NumberFormatException e) {
+            ctx.response().setStatusCode(400).end("round and limit must be numbers");
+            return;
+        }
+
+        // The version changes with every point award; round and limit select the view
+        String etag = "W/\"" + leaderboard.version() + "-" + (allTime ? "all" : round) + "-" + limit + "\"";
+        if (etag.equals(ctx.request().getHeader("If-None-Match"))) {
+            ctx.response().setStatusCode(304).putHeader("ETag", etag).end();
+            return;
+        }
+
+        JsonArray entries = new JsonArray();
+        for (Leaderboard.Entry entry : allTime ? leaderboard.topHighScores(limit) : leaderboard.top(round, limit)) {
+            entries.add(entry.toJson());
+        }
+        JsonObject body = new JsonObject().put("entries", entries);
+        if (!allTime) {
+            body.put("round", round);
+        }
+
+        ctx.response()
+            .putHeader("content-type", "application/json")
+            .putHeader("ETag", etag)
+            .putHeader("Cache-Control", "no-cache")
+            .end(body.encode());
+    }
+
+    /**
+     * @brief Starts a new game round after all players of a room have lost or the round limit is reached.
+     * 
+     * Increments the round counter of the room and starts a new round for its connected controllers.
+     * Must be called on the room's context.
+     * 
+     * @param room Game room to advance.
+     * @ingroup ObjectController
+     */
+    private void startNewRound(GameRoom room) {
     
-        logger.info("All players have lost. Starting a new round.");
+        logger.info("All players of room {} have lost. Starting a new round.", room.getId());
 
         // Increment the round counter
-        int currentRound = roundsPlayed.incrementAndGet();
+        int currentRound = room.nextRound();
         logger.info("Starting round number: {}", currentRound);
 
         // Check if the round limit has been reached
         if (currentRound > 4) {
-            stopGame();
+            stopGame(room);
             return;
         }
 
         objectService.getConnectedControllers(ar -> {
             if (ar.succeeded()) {
-                List<String> connectedControllers = ar.result();
-                activePlayers.set(connectedControllers.size());
+                List<String> connectedControllers = lobby.membersOf(room.getId(), ar.result());
+                room.run(() -> {
+                    room.startRound(connectedControllers);
+                    journal.roundAdvanced(room.getId(), room.getRoundsPlayed(), connectedControllers);
+                });
                 
                 // Send countdown signal to all controllers
                 sendCountdownToAllControllers(connectedControllers)
@@ -684,19 +1272,15 @@ public class ObjectController {
                         });
                         return timerPromise.future();
                     })
-                    .compose(v -> {
-                        List<Future<Void>> futures = new ArrayList<>();
-                        for (String controllerId : connectedControllers) {
-                            futures.add(objectService.createNewRound(controllerId)
-                                .compose(v2 -> {
-                                    sendNextSequence(connectedControllers);
-                                    return Future.succeededFuture();
-                                }));
-                        }
-                        return Future.all(futures);
-                    })
+                    // All players move to the next round together, then the round gets exactly one sequence
+                    .compose(v -> objectService.advanceRound(connectedControllers))
+                    .compose(v -> room.call(() -> sendNextSequence(room, connectedControllers, true)))
                     .onSuccess(v -> {
-                        logger.info("New round started successfully for all controllers");
+                        logger.info("New round started successfully for all controllers of room {}", room.getId());
+                        room.run(() -> {
+                            events.publishRound(room.getId(), currentRound);
+                            publishScores(room);
+                        });
                     })
                     .onFailure(cause -> {
                         logger.error("Failed to start new round", cause);
@@ -737,7 +1321,7 @@ public class ObjectController {
             false,
             ar -> {
                 if (ar.succeeded()) {
-                    logger.info("Countdown signal sent to controller: {}", controllerId);
+                    logger.debug("Countdown signal sent to controller: {}", controllerId);
                     promise.complete();
                 } else {
                     logger.error("Failed to send countdown signal to controller: {}", controllerId, ar.cause());
@@ -750,18 +1334,13 @@ public class ObjectController {
      /**
      * @brief Sends display information to a specific controller.
      * 
-     * Fetches the current round and corresponding display information from the service, then publishes it to the controller's display topic.
+     * Fetches the display information of the current round from the service's game state, then publishes it to the controller's display topic.
      * 
      * @param controllerId ID of the controller to send the display information to.
      * @ingroup ObjectController
      */
     public void sendDisplayInfoToController(String controllerId) {
-        // First, fetch the current round
-        objectService.fetchCurrentRound(controllerId)
-            .compose(currentRound -> 
-                // Then fetch the display info for that round
-                objectService.fetchDisplayInfo(controllerId, currentRound)
-            )
+        objectService.fetchDisplayInfo(controllerId)
             .onSuccess(displayInfo -> {
                 if (displayInfo != null && !displayInfo.isEmpty()) {
                     String message = displayInfo.encode();
@@ -774,7 +1353,7 @@ public class ObjectController {
                         false,
                         ar -> {
                             if (ar.succeeded()) {
-                                logger.info("Display info sent to controller {}: {}", controllerId, message);
+                                logger.debug("Display info sent to controller {}: {}", controllerId, message);
                             } else {
                                 logger.error("Failed to send display info to controller {}: {}", controllerId, ar.cause());
                             }
@@ -788,22 +1367,28 @@ public class ObjectController {
 
     
     /**
-     * @brief Stops the game after the game has reached the round limit (5 rounds).
+     * @brief Stops the game of a room after it has reached the round limit (5 rounds).
      * 
-     * Retrieves all connected controllers, sends a game-over message, and updates the high scores for each player.
+     * Retrieves the connected controllers of the room, sends a game-over message, and updates the high scores for each player.
+     * Must be called on the room's context.
      * 
+     * @param room Game room whose game is over.
      * @ingroup ObjectController
      */
-    private void stopGame() {
-        logger.info("Game has reached 5 rounds. Stopping the game.");
+    private void stopGame(GameRoom room) {
+        logger.info("Game in room {} has reached 5 rounds. Stopping the game.", room.getId());
+        int roundsPlayed = room.getRoundsPlayed();
+        room.endGame();
+        journal.gameEnded(room.getId(), roundsPlayed);
+        events.publishGameOver(room.getId(), roundsPlayed);
         
         objectService.getConnectedControllers(ar -> {
             if (ar.succeeded()) {
-                List<String> connectedControllers = ar.result();
+                List<String> connectedControllers = lobby.membersOf(room.getId(), ar.result());
                 List<Future<Void>> futures = new ArrayList<>();
                 
                 for (String controllerId : connectedControllers) {
-                    notifyControllerOfGameEnd(controllerId);
+                    notifyControllerOfGameEnd(controllerId, roundsPlayed);
                     // Assuming updatePlayerHighScore returns Future<Void>
                     futures.add(objectService.updatePlayerHighScore(controllerId));
                 }
@@ -827,12 +1412,13 @@ public class ObjectController {
      * Sends a "Game Over" message with the current round number to the controller's display topic.
      * 
      * @param controllerId ID of the controller to notify.
+     * @param round Number of rounds played in the game.
      * @ingroup ObjectController
      */
     // Method to notify a specific controller that the game has ended
-    private void notifyControllerOfGameEnd(String controllerId) {
+    private void notifyControllerOfGameEnd(String controllerId, int round) {
         JsonObject endGameMessage = new JsonObject()
-            .put("round", roundsPlayed.get())
+            .put("round", round)
             .put("message", "Game Over!");
 
         String topic = "oled/display/" + controllerId;
@@ -852,6 +1438,58 @@ public class ObjectController {
     }
 
 
+    /**
+     * @brief A controller message with its payload decoded at most once.
+     *
+     * The ownership check, the duplicate check and the handler all read the controller ID, so the JSON object is
+     * decoded on first use and shared. A payload that is not valid JSON fails every call with the same
+     * DecodeException.
+     */
+    private static final class ControllerMessage {
+        private final String kind;
+        private final Buffer payload;
+        private JsonObject json;
+        private DecodeException invalid;
+
+        ControllerMessage(String kind, Buffer payload) {
+            this.kind = kind;
+            this.payload = payload;
+        }
+
+        String kind() {
+            return kind;
+        }
+
+        Buffer payload() {
+            return payload;
+        }
+
+        /**
+         * @return true for a binary answer frame on color_sequence.
+         */
+        boolean isBinary() {
+            return "color_sequence".equals(kind) && SequenceWireFormat.isBinary(payload);
+        }
+
+        /**
+         * @return The payload as JSON object; connect payloads are read by parseConnect.
+         * @throws DecodeException if the payload is not valid JSON.
+         */
+        JsonObject json() {
+            if (json == null) {
+                if (invalid != null) {
+                    throw invalid;
+                }
+                try {
+                    json = "connect".equals(kind) ? parseConnect(payload) : payload.toJsonObject();
+                } catch (DecodeException e) {
+                    invalid = e;
+                    throw e;
+                }
+            }
+            return json;
+        }
+    }
 }
 
 /** @} */
@@ -0,0 +1,227 @@
+/**
+ * @file ColorSequence.java
+ * @brief Immutable color sequence stored as one byte per color.
+ *
+ * @date 2024
+ * @ingroup GameRoom
+ */
+
+package com.example.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+
+/**
+ * @class ColorSequence
+ * @brief The colors of a round as codes 0 to 3 (see COLORS), with lazily cached encodings.
+ *
+ * The JSON text, the JSON Buffer and the packed 2-bit form are built on first use and then shared. The Buffer may
+ * be published to any number of controllers: Vert.x publishes a slice of it and never releases heap buffers.
+ * Sequences are safe to share between threads; a cache may be built twice under contention, with equal results.
+ *
+ * @ingroup GameRoom
+ */
+public final class ColorSequence {
+
+    /** Color names in the order of their codes. */
+    public static final List<String> COLORS = List.of("RED", "GREEN", "BLUE", "YELLOW");
+
+    private final byte[] codes;
+    private volatile String json;
+    private volatile Buffer jsonBuffer;
+    private volatile byte[] packed;
+
+    private ColorSequence(byte[] codes) {
+        this.codes = codes;
+    }
+
+    /**
+     * @param codes Color codes, copied.
+     * @return The sequence of the given colors.
+     * @throws IllegalArgumentException if a code is not between 0 and 3.
+     */
+    public static ColorSequence of(byte... codes) {
+        for (byte code : codes) {
+            if (code < 0 || code >= COLORS.size()) {
+                throw new IllegalArgumentException("Invalid color code " + code);
+            }
+        }
+        return new ColorSequence(codes.clone());
+    }
+
+    /**
+     * @param random Source of the colors.
+     * @param length Number of colors.
+     * @return A sequence of random colors.
+     */
+    public static ColorSequence random(Random random, int length) {
+        byte[] codes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            codes[i] = (byte) random.nextInt(COLORS.size());
+        }
+        return new ColorSequence(codes);
+    }
+
+    /**
+     * @brief Parses a JSON array of color names, as sent by the firmware.
+     *
+     * @param names Color names, in any case.
+     * @return The sequence.
+     * @throws IllegalArgumentException if an entry is not a known color name.
+     */
+    public static ColorSequence fromJson(JsonArray names) {
+        byte[] codes = new byte[names.size()];
+        for (int i = 0; i < codes.length; i++) {
+            Object name = names.getValue(i);
+            int code = name instanceof String ? codeOf((String) name) : -1;
+            if (code < 0) {
+                throw new IllegalArgumentException("Unknown color " + name);
+            }
+            codes[i] = (byte) code;
+        }
+        return new ColorSequence(codes);
+    }
+
+    /**
+     * @param name Name of a color, in any case.
+     * @return The code of the color, -1 if it is not one of COLORS.
+     */
+    public static int codeOf(String name) {
+        for (int code = 0; code < COLORS.size(); code++) {
+            if (COLORS.get(code).equalsIgnoreCase(name)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    public int length() {
+        return codes.length;
+    }
+
+    /**
+     * @param index Position in the sequence.
+     * @return The code of the color at the position.
+     */
+    public int colorAt(int index) {
+        return codes[index];
+    }
+
+    /**
+     * @param index Position in the sequence.
+     * @param code New color code.
+     * @return A copy of this sequence with one color replaced.
+     */
+    public ColorSequence withColorAt(int index, int code) {
+        byte[] copy = codes.clone();
+        copy[index] = (byte) code;
+        return of(copy);
+    }
+
+    /**
+     * @param prefix Another sequence, e.g. the colors a player entered so far.
+     * @return true if this sequence begins with all colors of the other one.
+     */
+    public boolean startsWith(ColorSequence prefix) {
+        return prefix.codes.length <= codes.length
+            && Arrays.equals(codes, 0, prefix.codes.length, prefix.codes, 0, prefix.codes.length);
+    }
+
+    /**
+     * @param index Index of a byte of the packed form.
+     * @return Byte of the packed form: 4 colors of 2 bits, the first in the high bits; unused bits are zero.
+     */
+    public byte packedByte(int index) {
+        return packed()[index];
+    }
+
+    /**
+     * @return Number of bytes of the packed form.
+     */
+    public int packedLength() {
+        return (codes.length + 3) / 4;
+    }
+
+    /**
+     * @brief Appends the packed form to a buffer.
+     *
+     * @param buffer Buffer to append to.
+     * @return The buffer.
+     */
+    public Buffer appendPacked(Buffer buffer) {
+        return buffer.appendBytes(packed());
+    }
+
+    private byte[] packed() {
+        byte[] result = packed;
+        if (result == null) {
+            result = new byte[packedLength()];
+            for (int i = 0; i < codes.length; i++) {
+                result[i >> 2] |= (byte) (codes[i] << (6 - 2 * (i & 3)));
+            }
+            packed = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return The JSON array of color names, e.g. ["RED","GREEN"].
+     */
+    public String toJson() {
+        String result = json;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder(codes.length * 9 + 2).append('[');
+            for (int i = 0; i < codes.length; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append('"').append(COLORS.get(codes[i])).append('"');
+            }
+            result = builder.append(']').toString();
+            json = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return The JSON encoding as a Buffer, built once and shared by all publishes of the sequence.
+     */
+    public Buffer toJsonBuffer() {
+        Buffer result = jsonBuffer;
+        if (result == null) {
+            result = Buffer.buffer(toJson());
+            jsonBuffer = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return A new JSON array of the color names.
+     */
+    public JsonArray toJsonArray() {
+        JsonArray names = new JsonArray();
+        for (byte code : codes) {
+            names.add(COLORS.get(code));
+        }
+        return names;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ColorSequence sequence && Arrays.equals(codes, sequence.codes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(codes);
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
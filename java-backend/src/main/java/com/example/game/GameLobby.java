@@ -0,0 +1,166 @@
+/**
+ * @file GameLobby.java
+ * @brief Registry of game rooms and of the room each controller is assigned to.
+ *
+ * Rooms are sharded across a fixed set of event-loop contexts. The shard of a room is derived from its ID,
+ * so all messages of one game are processed on the same event loop while different games run in parallel.
+ *
+ * @date 2024
+ * @ingroup GameRoom
+ */
+
+package com.example.game;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @class GameLobby
+ * @brief Creates rooms on their shard context and maps controllers to rooms.
+ *
+ * Controllers that were never assigned explicitly play in the default room, which keeps the single-game
+ * behaviour of earlier versions.
+ *
+ * @ingroup GameRoom
+ */
+public class GameLobby {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameLobby.class);
+
+    /** Room used by controllers without an explicit assignment. */
+    public static final String DEFAULT_ROOM = "default";
+
+    private final List<Context> shards = new CopyOnWriteArrayList<>();
+    private final Map<String, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final Map<String, String> controllerRooms = new ConcurrentHashMap<>();
+
+    /**
+     * @brief Deploys one shard verticle per event loop and records their contexts.
+     *
+     * @param vertx Vert.x instance to deploy the shards on.
+     * @param shardCount Number of event-loop contexts rooms are spread over.
+     * @return A Future that completes once all shards are running.
+     */
+    public Future<Void> start(Vertx vertx, int shardCount) {
+        return vertx.deployVerticle(() -> new ShardVerticle(shards), new DeploymentOptions().setInstances(Math.max(1, shardCount)))
+            .onSuccess(id -> logger.info("Game lobby started with {} shards", shards.size()))
+            .mapEmpty();
+    }
+
+    /**
+     * @brief Returns a room, creating it on its shard if it does not exist yet.
+     *
+     * @param roomId Name of the room.
+     * @return The room.
+     */
+    public GameRoom room(String roomId) {
+        if (shards.isEmpty()) {
+            throw new IllegalStateException("Game lobby has not been started");
+        }
+        return rooms.computeIfAbsent(roomId, id -> new GameRoom(id, shards.get(Math.floorMod(id.hashCode(), shards.size()))));
+    }
+
+    /**
+     * @brief Assigns a controller to a room.
+     *
+     * @param controllerId ID of the controller.
+     * @param roomId Name of the room, or null for the default room.
+     * @return The room the controller now belongs to.
+     */
+    public GameRoom assign(String controllerId, String roomId) {
+        String target = roomId == null || roomId.isBlank() ? DEFAULT_ROOM : roomId;
+        controllerRooms.put(controllerId, target);
+        return room(target);
+    }
+
+    /**
+     * @brief Returns the name of the room a controller belongs to.
+     *
+     * @param controllerId ID of the controller.
+     * @return The room name, DEFAULT_ROOM if the controller was never assigned.
+     */
+    public String roomIdOf(String controllerId) {
+        return controllerRooms.getOrDefault(controllerId, DEFAULT_ROOM);
+    }
+
+    /**
+     * @brief Returns the room a controller belongs to.
+     *
+     * @param controllerId ID of the controller.
+     * @return The room.
+     */
+    public GameRoom roomOf(String controllerId) {
+        return room(roomIdOf(controllerId));
+    }
+
+    /**
+     * @brief Filters a list of controllers down to the members of one room.
+     *
+     * @param roomId Name of the room.
+     * @param controllers Controllers to filter.
+     * @return The controllers assigned to the room, in their original order.
+     */
+    public List<String> membersOf(String roomId, List<String> controllers) {
+        List<String> members = new ArrayList<>();
+        for (String controllerId : controllers) {
+            if (roomId.equals(roomIdOf(controllerId))) {
+                members.add(controllerId);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * @return All rooms created so far.
+     */
+    public Collection<GameRoom> rooms() {
+        return Collections.unmodifiableCollection(rooms.values());
+    }
+
+    /**
+     * @brief Describes all rooms and their controller assignments.
+     *
+     * @return A JsonArray with one object per room (room, controllers).
+     */
+    public JsonArray describe() {
+        Map<String, JsonArray> members = new ConcurrentHashMap<>();
+        rooms.keySet().forEach(roomId -> members.put(roomId, new JsonArray()));
+        controllerRooms.forEach((controllerId, roomId) -> members.computeIfAbsent(roomId, id -> new JsonArray()).add(controllerId));
+
+        JsonArray result = new JsonArray();
+        members.forEach((roomId, controllers) -> result.add(new JsonObject().put("room", roomId).put("controllers", controllers)));
+        return result;
+    }
+
+    /**
+     * @brief Verticle whose only purpose is to own an event-loop context that rooms can be pinned to.
+     */
+    private static class ShardVerticle extends AbstractVerticle {
+        private final List<Context> shards;
+
+        ShardVerticle(List<Context> shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        public void start() {
+            shards.add(context);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * @file GameRoom.java
+ * @brief State of a single game: its color sequence, round counter and players.
+ *
+ * Each room is pinned to one event-loop context (its shard). All reads and writes of the room state happen on
+ * that context, so rooms never contend with each other and need no locking.
+ *
+ * @date 2024
+ *
+ * @defgroup GameRoom Game Rooms
+ * @brief Lobby and per-game state that allow several games to run on one backend.
+ * @{
+ */
+
+package com.example.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.example.journal.RoomSnapshot;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+/**
+ * @class GameRoom
+ * @brief Holds the sequence, round counter and player set of one game.
+ *
+ * State accessors must only be called from the room's context, i.e. inside run() or call().
+ *
+ * @ingroup GameRoom
+ */
+public class GameRoom {
+
+    private final String id;
+    private final Context context;
+
+    private final Set<String> players = new LinkedHashSet<>();
+    private final Set<String> activePlayers = new LinkedHashSet<>();
+    private final List<String> controllersWaitingForSequence = new ArrayList<>();
+    private ColorSequence currentSequence;
+    // Nonce that binary answers to the current sequence must carry
+    private int sequenceNonce;
+    private int roundsPlayed = 0;
+    private boolean waitingForResponse = false;
+
+    /**
+     * @brief Constructor for GameRoom.
+     *
+     * @param id Unique name of the room.
+     * @param context Event-loop context that owns the room state.
+     */
+    public GameRoom(String id, Context context) {
+        this.id = id;
+        this.context = context;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    /**
+     * @brief Runs an action on the room's context.
+     *
+     * @param action Action that may read and modify the room state.
+     */
+    public void run(Runnable action) {
+        if (Context.isOnEventLoopThread() && context == Vertx.currentContext()) {
+            action.run();
+        } else {
+            context.runOnContext(v -> action.run());
+        }
+    }
+
+    /**
+     * @brief Runs an asynchronous action on the room's context and completes the result on that context as well.
+     *
+     * Continuations registered on the returned future may therefore access the room state directly.
+     *
+     * @param action Action that may read and modify the room state.
+     * @return A Future with the result of the action.
+     */
+    public <T> Future<T> call(Supplier<Future<T>> action) {
+        Promise<T> promise = Promise.promise();
+        run(() -> {
+            Future<T> result;
+            try {
+                result = action.get();
+            } catch (RuntimeException e) {
+                result = Future.failedFuture(e);
+            }
+            result.onComplete(ar -> run(() -> promise.handle(ar)));
+        });
+        return promise.future();
+    }
+
+    /**
+     * @brief Starts a game with the given players, resetting the round counter.
+     *
+     * @param gamePlayers Controllers taking part in the game.
+     */
+    public void startGame(List<String> gamePlayers) {
+        roundsPlayed = 0;
+        waitingForResponse = false;
+        controllersWaitingForSequence.clear();
+        startRound(gamePlayers);
+    }
+
+    /**
+     * @brief Marks all given players as active for the next round.
+     *
+     * @param roundPlayers Controllers taking part in the round.
+     */
+    public void startRound(List<String> roundPlayers) {
+        players.addAll(roundPlayers);
+        activePlayers.clear();
+        activePlayers.addAll(roundPlayers);
+    }
+
+    /**
+     * @brief Removes a player from the current round.
+     *
+     * @param controllerId Controller of the player who lost.
+     * @return Number of players still active in the round.
+     */
+    public int removeActivePlayer(String controllerId) {
+        activePlayers.remove(controllerId);
+        return activePlayers.size();
+    }
+
+    /**
+     * @param controllerId Controller of a player.
+     * @return true if the player is still in the current round.
+     */
+    public boolean isActivePlayer(String controllerId) {
+        return activePlayers.contains(controllerId);
+    }
+
+    /**
+     * @brief Increments the round counter.
+     *
+     * @return The new number of rounds played.
+     */
+    public int nextRound() {
+        return ++roundsPlayed;
+    }
+
+    /**
+     * @brief Clears the game state once a game is over. Room membership is kept.
+     */
+    public void endGame() {
+        activePlayers.clear();
+        controllersWaitingForSequence.clear();
+        currentSequence = null;
+        waitingForResponse = false;
+    }
+
+    /**
+     * @brief Takes over the state of a room replayed from the journal.
+     *
+     * Controllers waiting for a sequence are not journaled; they ask again once they reconnect.
+     *
+     * @param snapshot State of the room at the end of the journal.
+     */
+    public void restore(RoomSnapshot snapshot) {
+        players.clear();
+        players.addAll(snapshot.getPlayers());
+        activePlayers.clear();
+        activePlayers.addAll(snapshot.getActivePlayers());
+        controllersWaitingForSequence.clear();
+        currentSequence = snapshot.getCurrentSequence();
+        sequenceNonce = snapshot.getSequenceNonce();
+        roundsPlayed = snapshot.getRoundsPlayed();
+        waitingForResponse = false;
+    }
+
+    public Set<String> getPlayers() {
+        return Collections.unmodifiableSet(players);
+    }
+
+    public int getActivePlayerCount() {
+        return activePlayers.size();
+    }
+
+    public List<String> getControllersWaitingForSequence() {
+        return controllersWaitingForSequence;
+    }
+
+    public ColorSequence getCurrentSequence() {
+        return currentSequence;
+    }
+
+    /**
+     * @brief Stores the sequence of the current round.
+     *
+     * @param currentSequence Colors of the sequence.
+     * @param sequenceNonce Nonce identifying the sequence in binary answers.
+     */
+    public void setCurrentSequence(ColorSequence currentSequence, int sequenceNonce) {
+        this.currentSequence = currentSequence;
+        this.sequenceNonce = sequenceNonce;
+    }
+
+    public int getSequenceNonce() {
+        return sequenceNonce;
+    }
+
+    public int getRoundsPlayed() {
+        return roundsPlayed;
+    }
+
+    public boolean isWaitingForResponse() {
+        return waitingForResponse;
+    }
+
+    public void setWaitingForResponse(boolean waitingForResponse) {
+        this.waitingForResponse = waitingForResponse;
+    }
+}
+
+/** @} */
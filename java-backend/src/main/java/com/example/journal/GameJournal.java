@@ -0,0 +1,816 @@
+/**
+ * @file GameJournal.java
+ * @brief Append-only journal of game events in memory-mapped segment files, replayed on startup.
+ *
+ * The state of running games lives in the game rooms and is lost when the backend restarts. The journal records
+ * every change to it: games started and ended, sequences issued, answers received, points awarded, players lost,
+ * rounds advanced and controllers assigned to rooms. On startup the segments are replayed into room snapshots,
+ * so a game continues where it stopped without a query per table.
+ *
+ * Record layout, all numbers big-endian:
+ * @code
+ * offset  size  field
+ * 0       4     length L of type and payload, 0 marks the end of the segment
+ * 4       4     CRC32 of type and payload
+ * 8       1     event type
+ * 9       L-1   payload; strings are a 2-byte length followed by UTF-8
+ * @endcode
+ *
+ * Appending copies the record into the mapped segment; the operating system writes it back, and a periodic
+ * force() on a worker thread bounds what a power loss can take. A process crash loses nothing that was appended.
+ * Creating, mapping, forcing and deleting segment files happens on worker threads too, so recording an event never
+ * blocks the room that reports it.
+ *
+ * @date 2024
+ *
+ * @defgroup Journal Game Journal
+ * @brief Crash recovery of the game state.
+ * @{
+ */
+
+package com.example.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.game.ColorSequence;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+/**
+ * @class GameJournal
+ * @brief Writes game events to the current segment and keeps the state they add up to.
+ *
+ * Every event is applied to the journal's own room snapshots before it is written, with the same code that
+ * replays it. When a segment is full, the next one starts with a snapshot of that state and the older segments
+ * are deleted, so the journal never holds more than about one segment of history.
+ *
+ * The next segment is created and mapped on a worker while the current one fills up, and swapped in once the
+ * current one is full. If it is not ready yet, or the journal fails otherwise, the journal is degraded: events are
+ * still applied to the state but not written, until a new segment starts with a snapshot that covers them. A crash
+ * while degraded loses the events since the journal degraded. Failures are logged and never reach the rooms.
+ *
+ * All methods are thread-safe; appends from different rooms serialize on the journal.
+ *
+ * @ingroup Journal
+ */
+public class GameJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(GameJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int RECORD_HEADER = 8;
+    private static final int MIN_SEGMENT_BYTES = 64 * 1024;
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final byte GAME_STARTED = 1;
+    private static final byte SEQUENCE_ISSUED = 2;
+    private static final byte ANSWER_RECEIVED = 3;
+    private static final byte POINT_AWARDED = 4;
+    private static final byte PLAYER_LOST = 5;
+    private static final byte ROUND_ADVANCED = 6;
+    private static final byte GAME_ENDED = 7;
+    private static final byte ROOM_ASSIGNED = 8;
+    private static final byte ROOM_STATE = 9;
+
+    private final Vertx vertx;
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean enabled;
+    private final Map<String, RoomSnapshot> rooms = new LinkedHashMap<>();
+    private final Map<String, PointsSnapshot> points = new LinkedHashMap<>();
+    private final Map<String, String> assignments = new LinkedHashMap<>();
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+    private long segmentIndex;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private Segment next;
+    private boolean preparing = false;
+    private long retryAt;
+    // The current segment takes no more records, the next one has to start with a snapshot
+    private boolean full = false;
+    private boolean degraded = false;
+    private boolean dirty = false;
+    private boolean syncing = false;
+    private boolean closed = false;
+    private long timerId = -1;
+
+    private GameJournal(Vertx vertx, Path directory, int segmentBytes, boolean enabled) {
+        this.vertx = vertx;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @brief Replays the journal in a directory and starts a new segment for the events to come.
+     *
+     * Blocks on file I/O, so it must run on a worker thread. A record with a wrong checksum, e.g. one torn by a
+     * power loss, ends the replay of its segment.
+     *
+     * @param vertx Vert.x instance used for the fsync timer and worker.
+     * @param directory Directory of the segment files, created if missing.
+     * @param segmentBytes Size of one segment file.
+     * @param fsyncIntervalMs How often written records are forced to disk; 0 leaves it to the operating system.
+     * @return The journal, holding the replayed state.
+     * @throws IOException if the directory or a segment cannot be read or written.
+     */
+    public static GameJournal open(Vertx vertx, Path directory, int segmentBytes, long fsyncIntervalMs) throws IOException {
+        GameJournal journal = new GameJournal(vertx, directory, Math.max(MIN_SEGMENT_BYTES, segmentBytes), true);
+        journal.recover();
+        if (fsyncIntervalMs > 0) {
+            journal.timerId = vertx.setPeriodic(fsyncIntervalMs, id -> journal.sync());
+        }
+        return journal;
+    }
+
+    /**
+     * @return A journal that records nothing and restores nothing.
+     */
+    public static GameJournal disabled() {
+        return new GameJournal(null, null, 0, false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true while events are not written, until a new segment has caught up with the state.
+     */
+    public synchronized boolean isDegraded() {
+        return degraded;
+    }
+
+    private synchronized void recover() throws IOException {
+        long startedAt = System.nanoTime();
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        int events = 0;
+        for (Path file : segments) {
+            events += replay(file);
+        }
+        if (!segments.isEmpty()) {
+            segmentIndex = indexOf(segments.get(segments.size() - 1));
+        }
+        // Appending behind a torn record could make it look valid again, so writing continues in a new segment
+        startSegment(openSegment(segmentIndex + 1));
+        retire(null, segment, segmentIndex);
+        dirty = false;
+        prepareNext();
+        logger.info("Replayed {} journal events from {} segments in {} ms: {} rooms, {} controllers with points",
+            events, segments.size(), (System.nanoTime() - startedAt) / 1_000_000, rooms.size(), points.size());
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static long indexOf(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Path segmentFile(long index) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private int replay(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int events = 0;
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                logger.warn("Journal segment {} has a damaged record at offset {}, ignoring the rest", file.getFileName(), buffer.position() - RECORD_HEADER);
+                break;
+            }
+            ByteBuffer record = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            apply(record);
+            events++;
+        }
+        return events;
+    }
+
+    /**
+     * @brief Creates and maps a segment file. Blocks on file I/O.
+     */
+    private Segment openSegment(long index) throws IOException {
+        FileChannel file = FileChannel.open(segmentFile(index),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new Segment(index, file, file.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @brief Continues in a mapped segment, starting it with a snapshot of the current state.
+     */
+    private void startSegment(Segment started) {
+        channel = started.channel;
+        segment = started.buffer;
+        segmentIndex = started.index;
+        // Until the snapshot is complete the new segment does not cover the state
+        full = true;
+        writeSnapshot();
+        full = false;
+        logger.debug("Journal continues in segment {}", segmentIndex);
+    }
+
+    /**
+     * @brief Forces a started segment to disk, then closes the previous one and deletes the older segments. Blocks
+     *        on file I/O.
+     */
+    private void retire(FileChannel previous, MappedByteBuffer started, long index) throws IOException {
+        // The snapshot replaces the older segments only once it is on disk
+        started.force();
+        if (previous != null) {
+            previous.close();
+        }
+        for (Path file : listSegments()) {
+            if (indexOf(file) < index) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * @brief Creates the segment after the current one on a worker thread, unless it exists or is on its way.
+     *
+     * After a failure the next attempt waits RETRY_NANOS. Must be called holding the journal's lock.
+     */
+    private void prepareNext() {
+        if (closed || preparing || next != null || System.nanoTime() - retryAt < 0) {
+            return;
+        }
+        preparing = true;
+        long index = segmentIndex + 1;
+        vertx.executeBlocking(() -> openSegment(index), false).onComplete(ar -> {
+            synchronized (this) {
+                preparing = false;
+                if (ar.failed()) {
+                    retryAt = System.nanoTime() + RETRY_NANOS;
+                    fail("Failed to create journal segment " + index, ar.cause());
+                    return;
+                }
+                if (closed || index != segmentIndex + 1) {
+                    closeLater(ar.result().channel);
+                    return;
+                }
+                next = ar.result();
+                if (full) {
+                    // Events arrived while the segment was being created, the snapshot covers them
+                    rollToNext();
+                }
+            }
+        });
+    }
+
+    /**
+     * @brief Swaps in the prepared segment, or marks the current one full until the prepared one is ready.
+     *
+     * Must be called holding the journal's lock.
+     */
+    private void rollToNext() {
+        full = true;
+        if (next == null) {
+            if (!degraded) {
+                degraded = true;
+                logger.warn("Journal segment {} is full before the next one is ready, events are not written until it is", segmentIndex);
+            }
+            prepareNext();
+            return;
+        }
+        Segment started = next;
+        next = null;
+        FileChannel previous = channel;
+        try {
+            startSegment(started);
+        } catch (RuntimeException e) {
+            // The older segments stay, the incomplete snapshot only repeats what they hold
+            retryAt = System.nanoTime() + RETRY_NANOS;
+            closeLater(previous);
+            fail("Failed to start journal segment " + started.index, e);
+            return;
+        }
+        if (degraded) {
+            degraded = false;
+            logger.info("Journal caught up with the game state in segment {}", started.index);
+        }
+        vertx.executeBlocking(() -> {
+            retire(previous, started.buffer, started.index);
+            return null;
+        }, false).onFailure(cause -> logger.error("Failed to retire the journal segments before {}: {}", started.index, cause.getMessage()));
+        prepareNext();
+    }
+
+    private void closeLater(FileChannel unused) {
+        vertx.executeBlocking(() -> {
+            unused.close();
+            return null;
+        }, false).onFailure(cause -> logger.warn("Failed to close a journal segment: {}", cause.getMessage()));
+    }
+
+    /**
+     * @brief Logs a failure and marks the journal degraded. Must be called holding the journal's lock.
+     */
+    private void fail(String message, Throwable cause) {
+        degraded = true;
+        logger.error("{}, the journal is degraded: {}", message, cause.toString());
+    }
+
+    private void writeSnapshot() {
+        assignments.forEach((controllerId, roomId) -> {
+            begin(ROOM_ASSIGNED);
+            putString(controllerId);
+            putString(roomId);
+            writeRecord();
+        });
+        for (RoomSnapshot room : rooms.values()) {
+            begin(ROOM_STATE);
+            putString(room.getRoomId());
+            putInt(room.getRoundsPlayed());
+            putStrings(room.getPlayers());
+            putStrings(room.getActivePlayers());
+            putInt(room.getSequenceNonce());
+            putSequence(room.getCurrentSequence());
+            writeRecord();
+        }
+        for (PointsSnapshot snapshot : points.values()) {
+            begin(POINT_AWARDED);
+            putString(snapshot.getControllerId());
+            putInt(snapshot.getRound());
+            putInt(snapshot.getPoints());
+            writeRecord();
+        }
+    }
+
+    /**
+     * @brief Records that a game started with the given players.
+     *
+     * @param roomId Room of the game.
+     * @param players Controllers taking part.
+     */
+    public void gameStarted(String roomId, Collection<String> players) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                begin(GAME_STARTED);
+                putString(roomId);
+                putStrings(players);
+                append();
+            } catch (RuntimeException e) {
+                fail("Failed to journal an event", e);
+            }
+        }
+    }
+
+    /**
+     * @brief Records the sequence sent to the players of a room.
+     *
+     * @param roomId Room of the game.
+     * @param round Round the sequence belongs to.
+     * @param nonce Nonce binary answers must carry.
+     * @param sequence Colors of the sequence.
+     */
+    public void sequenceIssued(String roomId, int round, int nonce, ColorSequence sequence) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                begin(SEQUENCE_ISSUED);
+                putString(roomId);
+                putInt(round);
+                putInt(nonce);
+                putSequence(sequence);
+                append();
+            } catch (RuntimeException e) {
+                fail("Failed to journal an event", e);
+            }
+        }
+    }
+
+    /**
+     * @brief Records the outcome of an answer.
+     *
+     * @param roomId Room of the game.
+     * @param controllerId Controller that answered.
+     * @param match Whether the answer matched the sequence.
+     */
+    public void answerReceived(String roomId, String controllerId, boolean match) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                begin(ANSWER_RECEIVED);
+                putString(roomId);
+                putString(controllerId);
+                scratch.put((byte) (match ? 1 : 0));
+                append();
+            } catch (RuntimeException e) {
+                fail("Failed to journal an event", e);
+            }
+        }
+    }
+
+    /**
+     * @brief Records the points a controller has after a point award.
+     *
+     * @param controllerId Controller that scored.
+     * @param round Round of the session.
+     * @param total Points of the controller in that round, including the new one.
+     */
+    public void pointAwarded(String controllerId, int round, int total) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                begin(POINT_AWARDED);
+                putString(controllerId);
+                putInt(round);
+                putInt(total);
+                append();
+            } catch (RuntimeException e) {
+                fail("Failed to journal an event", e);
+            }
+        }
+    }
+
+    /**
+     * @brief Records that a player dropped out of the current round.
+     *
+     * @param roomId Room of the game.
+     * @param controllerId Controller of the player.
+     */
+    public void playerLost(String roomId, String controllerId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                begin(PLAYER_LOST);
+                putString(roomId);
+                putString(controllerId);
+                append();
+            } catch (RuntimeException e) {
+                fail("Failed to journal an event", e);
+            }
+        }
+    }
+
+    /**
+     * @brief Records the start of a new round.
+     *
+     * @param roomId Room of the game.
+     * @param roundsPlayed Round counter of the room.
+     * @param players Controllers taking part in the round.
+     */
+    public void roundAdvanced(String roomId, int roundsPlayed, Collection<String> players) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                begin(ROUND_ADVANCED);
+                putString(roomId);
+                putInt(roundsPlayed);
+                putStrings(players);
+                append();
+            } catch (RuntimeException e) {
+                fail("Failed to journal an event", e);
+            }
+        }
+    }
+
+    /**
+     * @brief Records the end of a game.
+     *
+     * @param roomId Room of the game.
+     * @param roundsPlayed Number of rounds played.
+     */
+    public void gameEnded(String roomId, int roundsPlayed) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                begin(GAME_ENDED);
+                putString(roomId);
+                putInt(roundsPlayed);
+                append();
+            } catch (RuntimeException e) {
+                fail("Failed to journal an event", e);
+            }
+        }
+    }
+
+    /**
+     * @brief Records the room a controller was assigned to.
+     *
+     * @param controllerId ID of the controller.
+     * @param roomId Name of the room.
+     */
+    public void roomAssigned(String controllerId, String roomId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                begin(ROOM_ASSIGNED);
+                putString(controllerId);
+                putString(roomId);
+                append();
+            } catch (RuntimeException e) {
+                fail("Failed to journal an event", e);
+            }
+        }
+    }
+
+    /**
+     * @return Copies of the room states.
+     */
+    public synchronized List<RoomSnapshot> rooms() {
+        List<RoomSnapshot> copies = new ArrayList<>(rooms.size());
+        rooms.values().forEach(room -> copies.add(room.copy()));
+        return copies;
+    }
+
+    /**
+     * @return The last journaled points of every controller.
+     */
+    public synchronized List<PointsSnapshot> points() {
+        return new ArrayList<>(points.values());
+    }
+
+    /**
+     * @return The room of every controller that was assigned to one.
+     */
+    public synchronized Map<String, String> assignments() {
+        return new LinkedHashMap<>(assignments);
+    }
+
+    private void apply(ByteBuffer record) {
+        byte type = record.get();
+        switch (type) {
+            case GAME_STARTED -> room(getString(record)).startGame(getStrings(record));
+            case SEQUENCE_ISSUED -> {
+                RoomSnapshot room = room(getString(record));
+                record.getInt(); // round, kept for readers of the journal
+                int nonce = record.getInt();
+                room.setCurrentSequence(getSequence(record), nonce);
+            }
+            case ANSWER_RECEIVED -> {
+                // Outcomes are journaled as point awards and losses; the answer itself changes no state
+            }
+            case POINT_AWARDED -> {
+                String controllerId = getString(record);
+                points.put(controllerId, new PointsSnapshot(controllerId, record.getInt(), record.getInt()));
+            }
+            case PLAYER_LOST -> room(getString(record)).removeActivePlayer(getString(record));
+            case ROUND_ADVANCED -> {
+                RoomSnapshot room = room(getString(record));
+                room.setRoundsPlayed(record.getInt());
+                room.startRound(getStrings(record));
+            }
+            case GAME_ENDED -> room(getString(record)).endGame(record.getInt());
+            case ROOM_ASSIGNED -> assignments.put(getString(record), getString(record));
+            case ROOM_STATE -> {
+                RoomSnapshot room = room(getString(record));
+                int roundsPlayed = record.getInt();
+                List<String> players = getStrings(record);
+                List<String> active = getStrings(record);
+                int nonce = record.getInt();
+                room.restore(roundsPlayed, players, active, getSequence(record), nonce);
+            }
+            default -> logger.warn("Skipping journal record of unknown type {}", type);
+        }
+    }
+
+    private RoomSnapshot room(String roomId) {
+        return rooms.computeIfAbsent(roomId, RoomSnapshot::new);
+    }
+
+    /**
+     * @brief Applies the event in the scratch buffer and writes it to the segment.
+     *
+     * An event that does not fit into the segment anymore is covered by the snapshot of the next one. Once the
+     * segment is full, later events must not go into it either, or a replay would skip the one that did not fit.
+     */
+    private void append() {
+        if (closed) {
+            return;
+        }
+        scratch.flip();
+        apply(scratch.duplicate());
+        if (full) {
+            if (next == null) {
+                prepareNext();
+            }
+            return;
+        }
+        if (segment.remaining() < RECORD_HEADER + scratch.remaining()) {
+            rollToNext();
+            return;
+        }
+        writeRecord(scratch);
+    }
+
+    private void writeRecord() {
+        scratch.flip();
+        if (segment.remaining() < RECORD_HEADER + scratch.remaining()) {
+            throw new IllegalStateException("Journal segments of " + segmentBytes + " bytes cannot hold the game state, increase JOURNAL_SEGMENT_BYTES");
+        }
+        writeRecord(scratch);
+    }
+
+    private void writeRecord(ByteBuffer record) {
+        crc.reset();
+        crc.update(record.duplicate());
+        segment.putInt(record.remaining());
+        segment.putInt((int) crc.getValue());
+        segment.put(record);
+        dirty = true;
+    }
+
+    private void begin(byte type) {
+        scratch.clear();
+        scratch.put(type);
+    }
+
+    private void ensure(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            grown.put(scratch);
+            scratch = grown;
+        }
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        scratch.putInt(value);
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Journal strings are limited to 65535 bytes");
+        }
+        ensure(2 + bytes.length);
+        scratch.putShort((short) bytes.length).put(bytes);
+    }
+
+    private void putStrings(Collection<String> values) {
+        putInt(values.size());
+        values.forEach(this::putString);
+    }
+
+    private void putSequence(ColorSequence sequence) {
+        int length = sequence == null ? 0 : sequence.length();
+        ensure(2 + length);
+        scratch.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            scratch.put((byte) sequence.colorAt(i));
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        byte[] bytes = new byte[Short.toUnsignedInt(record.getShort())];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> getStrings(ByteBuffer record) {
+        int count = record.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(getString(record));
+        }
+        return values;
+    }
+
+    private static ColorSequence getSequence(ByteBuffer record) {
+        byte[] codes = new byte[Short.toUnsignedInt(record.getShort())];
+        record.get(codes);
+        return codes.length == 0 ? null : ColorSequence.of(codes);
+    }
+
+    /**
+     * @brief Forces the records written since the last sync to disk, on a worker thread.
+     */
+    private void sync() {
+        MappedByteBuffer toSync;
+        synchronized (this) {
+            if (!dirty || syncing || closed) {
+                return;
+            }
+            dirty = false;
+            syncing = true;
+            toSync = segment;
+        }
+        vertx.executeBlocking(() -> {
+            toSync.force();
+            return null;
+        }, false).onComplete(ar -> {
+            synchronized (this) {
+                syncing = false;
+            }
+            if (ar.failed()) {
+                logger.error("Failed to sync the journal: {}", ar.cause().getMessage());
+            }
+        });
+    }
+
+    /**
+     * @brief Stops the fsync timer, forces the current segment to disk and closes it and a prepared one.
+     *
+     * @return A Future that completes once the segment is closed.
+     */
+    public Future<Void> close() {
+        if (!enabled) {
+            return Future.succeededFuture();
+        }
+        synchronized (this) {
+            if (closed) {
+                return Future.succeededFuture();
+            }
+            closed = true;
+        }
+        vertx.cancelTimer(timerId);
+        return vertx.executeBlocking(() -> {
+            synchronized (this) {
+                segment.force();
+                channel.close();
+                if (next != null) {
+                    next.close();
+                    next = null;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @brief A segment file and its mapping.
+     */
+    private static final class Segment {
+        final long index;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        Segment(long index, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
+
+/** @} */
@@ -0,0 +1,40 @@
+/**
+ * @file PointsSnapshot.java
+ * @brief Last points a controller reached according to the journal.
+ *
+ * @date 2024
+ * @ingroup Journal
+ */
+
+package com.example.journal;
+
+/**
+ * @class PointsSnapshot
+ * @brief Points of a controller in a round, as of its last journaled point award.
+ *
+ * @ingroup Journal
+ */
+public class PointsSnapshot {
+
+    private final String controllerId;
+    private final int round;
+    private final int points;
+
+    PointsSnapshot(String controllerId, int round, int points) {
+        this.controllerId = controllerId;
+        this.round = round;
+        this.points = points;
+    }
+
+    public String getControllerId() {
+        return controllerId;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+}
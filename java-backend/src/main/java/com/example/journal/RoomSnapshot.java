@@ -0,0 +1,115 @@
+/**
+ * @file RoomSnapshot.java
+ * @brief State of one game room as reconstructed from the journal.
+ *
+ * @date 2024
+ * @ingroup Journal
+ */
+
+package com.example.journal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.example.game.ColorSequence;
+
+/**
+ * @class RoomSnapshot
+ * @brief Players, round counter and current sequence of a room at the end of the journal.
+ *
+ * The journal changes its snapshots under its own lock; callers only ever get copies.
+ *
+ * @ingroup Journal
+ */
+public class RoomSnapshot {
+
+    private final String roomId;
+    private final Set<String> players = new LinkedHashSet<>();
+    private final Set<String> activePlayers = new LinkedHashSet<>();
+    private ColorSequence currentSequence;
+    private int sequenceNonce;
+    private int roundsPlayed;
+
+    RoomSnapshot(String roomId) {
+        this.roomId = roomId;
+    }
+
+    RoomSnapshot copy() {
+        RoomSnapshot copy = new RoomSnapshot(roomId);
+        copy.players.addAll(players);
+        copy.activePlayers.addAll(activePlayers);
+        copy.currentSequence = currentSequence;
+        copy.sequenceNonce = sequenceNonce;
+        copy.roundsPlayed = roundsPlayed;
+        return copy;
+    }
+
+    void startGame(Collection<String> gamePlayers) {
+        roundsPlayed = 0;
+        startRound(gamePlayers);
+    }
+
+    void startRound(Collection<String> roundPlayers) {
+        players.addAll(roundPlayers);
+        activePlayers.clear();
+        activePlayers.addAll(roundPlayers);
+    }
+
+    void setRoundsPlayed(int rounds) {
+        roundsPlayed = rounds;
+    }
+
+    void removeActivePlayer(String controllerId) {
+        activePlayers.remove(controllerId);
+    }
+
+    void endGame(int rounds) {
+        roundsPlayed = rounds;
+        activePlayers.clear();
+        currentSequence = null;
+    }
+
+    void setCurrentSequence(ColorSequence sequence, int nonce) {
+        currentSequence = sequence;
+        sequenceNonce = nonce;
+    }
+
+    void restore(int rounds, Collection<String> allPlayers, Collection<String> active, ColorSequence sequence, int nonce) {
+        roundsPlayed = rounds;
+        players.clear();
+        players.addAll(allPlayers);
+        activePlayers.clear();
+        activePlayers.addAll(active);
+        currentSequence = sequence;
+        sequenceNonce = nonce;
+    }
+
+    public String getRoomId() {
+        return roomId;
+    }
+
+    public Set<String> getPlayers() {
+        return Collections.unmodifiableSet(players);
+    }
+
+    public Set<String> getActivePlayers() {
+        return Collections.unmodifiableSet(activePlayers);
+    }
+
+    /**
+     * @return The sequence of the current round, null if no game is running.
+     */
+    public ColorSequence getCurrentSequence() {
+        return currentSequence;
+    }
+
+    public int getSequenceNonce() {
+        return sequenceNonce;
+    }
+
+    public int getRoundsPlayed() {
+        return roundsPlayed;
+    }
+}
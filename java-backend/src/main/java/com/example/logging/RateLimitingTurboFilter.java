@@ -0,0 +1,133 @@
+/**
+ * @file RateLimitingTurboFilter.java
+ * @brief Logback filter that caps the number of log events per logger and second on the hot paths.
+ *
+ * Under load the MQTT handlers log once or more per message. The filter lets the first events of every second
+ * through and drops the rest, so the logs stay readable and the event loops stop formatting lines nobody reads.
+ * Dropped events are counted per logger and reported by the logger admin endpoint.
+ *
+ * Configured in logback.xml:
+ * @code
+ * <turboFilter class="com.example.logging.RateLimitingTurboFilter">
+ *     <loggerPrefix>com.example.controller</loggerPrefix>
+ *     <eventsPerSecond>50</eventsPerSecond>
+ *     <maxLevel>INFO</maxLevel>
+ * </turboFilter>
+ * @endcode
+ *
+ * @date 2024
+ *
+ *
+ * @defgroup Logging Logging
+ * @brief Logging configuration helpers: hot-path sampling and runtime log levels.
+ *
+ * @{
+ */
+
+package com.example.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * @class RateLimitingTurboFilter
+ * @brief Fixed one-second windows per logger; events above eventsPerSecond in a window are denied.
+ *
+ * Only events of loggers whose name starts with one of the configured prefixes and whose level is at most
+ * maxLevel are limited, so warnings and errors always get through. Events that the logger's level disables
+ * anyway and isXxxEnabled() checks are left alone and do not use up the window.
+ *
+ * @ingroup Logging
+ */
+public class RateLimitingTurboFilter extends TurboFilter {
+
+    private static final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    private final List<String> loggerPrefixes = new ArrayList<>();
+    private int eventsPerSecond = 50;
+    private Level maxLevel = Level.INFO;
+
+    /**
+     * @brief Events counted in the current second of one logger, and the events it dropped so far.
+     */
+    private static final class Window {
+        private final AtomicLong second = new AtomicLong(-1);
+        private final AtomicInteger events = new AtomicInteger();
+        private final LongAdder suppressed = new LongAdder();
+    }
+
+    public void addLoggerPrefix(String loggerPrefix) {
+        loggerPrefixes.add(loggerPrefix.trim());
+    }
+
+    public void setEventsPerSecond(int eventsPerSecond) {
+        this.eventsPerSecond = eventsPerSecond;
+    }
+
+    public void setMaxLevel(String maxLevel) {
+        this.maxLevel = Level.toLevel(maxLevel, Level.INFO);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format is null for isXxxEnabled() checks
+        if (!isStarted() || format == null || level.toInt() > maxLevel.toInt()) {
+            return FilterReply.NEUTRAL;
+        }
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel()) || !isLimited(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+
+        Window window = windows.computeIfAbsent(logger.getName(), name -> new Window());
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long current = window.second.get();
+        if (current != second && window.second.compareAndSet(current, second)) {
+            window.events.set(0);
+        }
+        if (window.events.incrementAndGet() <= eventsPerSecond) {
+            return FilterReply.NEUTRAL;
+        }
+        window.suppressed.increment();
+        return FilterReply.DENY;
+    }
+
+    private boolean isLimited(String loggerName) {
+        for (int i = 0; i < loggerPrefixes.size(); i++) {
+            if (loggerName.startsWith(loggerPrefixes.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Number of events dropped so far, by logger name; loggers that never hit the limit are omitted.
+     */
+    public static Map<String, Long> suppressedEvents() {
+        Map<String, Long> suppressed = new TreeMap<>();
+        windows.forEach((name, window) -> {
+            long count = window.suppressed.sum();
+            if (count > 0) {
+                suppressed.put(name, count);
+            }
+        });
+        return Collections.unmodifiableMap(suppressed);
+    }
+}
+
+/** @} */
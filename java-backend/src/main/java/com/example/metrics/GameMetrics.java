@@ -0,0 +1,105 @@
+/**
+ * @file GameMetrics.java
+ * @brief Gauges of the running games and the live controllers.
+ *
+ * @date 2024
+ * @ingroup Metrics
+ */
+
+package com.example.metrics;
+
+import com.example.game.GameLobby;
+import com.example.game.GameRoom;
+import com.example.journal.GameJournal;
+import com.example.service.ControllerPresenceRegistry;
+import com.example.service.ObjectService;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * @class GameMetrics
+ * @brief Reads the lobby and the presence registry when Prometheus scrapes.
+ *
+ * - game.rooms: rooms that exist.
+ * - game.rooms.active: rooms with a sequence in play.
+ * - game.players.active: players still in the current round, summed over all rooms.
+ * - controllers.active: controllers that sent a sign of life within the heartbeat timeout.
+ * - journal.degraded: 1 while the game journal does not write events, 0 otherwise.
+ * - game.points.rejected: points taken back because the score buffer or the database refused them at once.
+ * - game.points.dropped: points taken back because writing them failed after they were accepted.
+ *
+ * Room state is owned by the room's context; the gauges read it without synchronization and may be
+ * off by a message, which is fine for monitoring.
+ *
+ * @ingroup Metrics
+ */
+public class GameMetrics implements MeterBinder {
+
+    private final GameLobby lobby;
+    private final ControllerPresenceRegistry presence;
+    private final GameJournal journal;
+    private final ObjectService service;
+
+    /**
+     * @brief Constructor for GameMetrics.
+     *
+     * @param lobby Lobby holding the game rooms.
+     * @param presence Registry of the controllers that are alive.
+     * @param journal Journal of the game events.
+     * @param service Service awarding the points.
+     */
+    public GameMetrics(GameLobby lobby, ControllerPresenceRegistry presence, GameJournal journal, ObjectService service) {
+        this.lobby = lobby;
+        this.presence = presence;
+        this.journal = journal;
+        this.service = service;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("game.rooms", lobby, l -> l.rooms().size())
+            .description("Game rooms")
+            .register(registry);
+        Gauge.builder("game.rooms.active", lobby, GameMetrics::activeRooms)
+            .description("Game rooms with a sequence in play")
+            .register(registry);
+        Gauge.builder("game.players.active", lobby, GameMetrics::activePlayers)
+            .description("Players still in the current round")
+            .register(registry);
+        Gauge.builder("controllers.active", presence, p -> p.activeControllers().size())
+            .description("Controllers that sent a heartbeat within the timeout")
+            .register(registry);
+        FunctionCounter.builder("game.points.rejected", service, ObjectService::getRejectedPoints)
+            .description("Points taken back because their write was rejected at once")
+            .register(registry);
+        FunctionCounter.builder("game.points.dropped", service, ObjectService::getDroppedPoints)
+            .description("Points taken back because their write failed")
+            .register(registry);
+        if (journal.isEnabled()) {
+            Gauge.builder("journal.degraded", journal, j -> j.isDegraded() ? 1 : 0)
+                .description("1 while the game journal does not write events")
+                .register(registry);
+        }
+    }
+
+    private static double activeRooms(GameLobby lobby) {
+        int active = 0;
+        for (GameRoom room : lobby.rooms()) {
+            if (room.getCurrentSequence() != null) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    private static double activePlayers(GameLobby lobby) {
+        int players = 0;
+        for (GameRoom room : lobby.rooms()) {
+            players += room.getActivePlayerCount();
+        }
+        return players;
+    }
+}
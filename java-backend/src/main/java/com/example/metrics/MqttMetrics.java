@@ -0,0 +1,155 @@
+/**
+ * @file MqttMetrics.java
+ * @brief Exposes the MQTT routing statistics as Micrometer meters.
+ *
+ * The topic router and the acknowledgement tracker already count and time every message in lock-free
+ * structures; the meters read those values when Prometheus scrapes, so nothing is recorded twice on the hot path.
+ *
+ * @date 2024
+ *
+ *
+ * @defgroup Metrics Metrics
+ * @brief Meters exposed on /metrics for Prometheus.
+ *
+ * @{
+ */
+
+package com.example.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import com.example.mqtt.DuplicateFilter;
+import com.example.mqtt.IngressQueue;
+import com.example.mqtt.LatencyHistogram;
+import com.example.mqtt.MqttTopicRouter;
+import com.example.mqtt.PublishAckTracker;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * @class MqttMetrics
+ * @brief Per-topic message counts and handling latency, and the acknowledgement latency of the color sequences.
+ *
+ * - mqtt.messages{topic}: messages handled per routed filter; rate() gives messages per second.
+ * - mqtt.handler.failures{topic}: handlers that threw or whose Future failed.
+ * - mqtt.handler{topic}: count and total handling time.
+ * - mqtt.handler.latency{topic, quantile}: handling latency percentiles since start, in seconds.
+ * - mqtt.messages.unrouted: messages no filter matched.
+ * - mqtt.messages.duplicate: controller messages dropped because they were delivered before.
+ * - mqtt.messages.shed{topic}: messages the ingress queue shed or coalesced before their handler ran.
+ * - mqtt.ingress.queued{priority}, mqtt.ingress.shed{priority}, mqtt.ingress.wait{priority}: waiting messages,
+ *   messages shed because the queue was full, and the time spent waiting; mqtt.ingress.in_flight and
+ *   mqtt.ingress.coalesced. Only with an ingress queue.
+ * - mqtt.publish.ack{topic="neopixel/display"}: time until the broker acknowledged a color sequence.
+ *
+ * @ingroup Metrics
+ */
+public class MqttMetrics implements MeterBinder {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final MqttTopicRouter router;
+    private final PublishAckTracker sequenceAcks;
+    private final DuplicateFilter duplicates;
+
+    /**
+     * @brief Constructor for MqttMetrics.
+     *
+     * @param router Router whose routes are exposed; routes must be registered before bindTo is called.
+     * @param sequenceAcks Tracker of the color sequence publishes.
+     * @param duplicates Filter of the controller messages delivered more than once.
+     */
+    public MqttMetrics(MqttTopicRouter router, PublishAckTracker sequenceAcks, DuplicateFilter duplicates) {
+        this.router = router;
+        this.sequenceAcks = sequenceAcks;
+        this.duplicates = duplicates;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (MqttTopicRouter.Route route : router.routes().values()) {
+            Tags tags = Tags.of("topic", route.getFilter());
+            FunctionCounter.builder("mqtt.messages", route, MqttTopicRouter.Route::getMessages)
+                .description("MQTT messages handled")
+                .tags(tags)
+                .register(registry);
+            FunctionCounter.builder("mqtt.handler.failures", route, MqttTopicRouter.Route::getFailures)
+                .description("MQTT messages whose handler failed")
+                .tags(tags)
+                .register(registry);
+            FunctionCounter.builder("mqtt.messages.shed", route, MqttTopicRouter.Route::getShed)
+                .description("MQTT messages shed by the ingress queue")
+                .tags(tags)
+                .register(registry);
+            bindLatency(registry, "mqtt.handler", "Time to handle an MQTT message", route.getLatency(), tags);
+        }
+        IngressQueue queue = router.getIngressQueue();
+        if (queue != null) {
+            bindIngress(registry, queue);
+        }
+        FunctionCounter.builder("mqtt.messages.unrouted", router, MqttTopicRouter::getUnroutedMessages)
+            .description("MQTT messages without a matching route")
+            .register(registry);
+        FunctionCounter.builder("mqtt.messages.duplicate", duplicates, DuplicateFilter::getDuplicates)
+            .description("Controller messages dropped as duplicates")
+            .register(registry);
+
+        Tags sequenceTags = Tags.of("topic", "neopixel/display");
+        bindLatency(registry, "mqtt.publish.ack", "Time until the broker acknowledged a publish", sequenceAcks.getLatency(), sequenceTags);
+        FunctionCounter.builder("mqtt.publish.ack.expired", sequenceAcks, PublishAckTracker::getExpired)
+            .description("Publishes the broker never acknowledged")
+            .tags(sequenceTags)
+            .register(registry);
+        Gauge.builder("mqtt.publish.ack.in_flight", sequenceAcks, PublishAckTracker::getInFlight)
+            .description("Publishes waiting for their acknowledgement")
+            .tags(sequenceTags)
+            .register(registry);
+    }
+
+    private static void bindIngress(MeterRegistry registry, IngressQueue queue) {
+        for (IngressQueue.Priority priority : IngressQueue.Priority.values()) {
+            Tags tags = Tags.of("priority", priority.name().toLowerCase());
+            Gauge.builder("mqtt.ingress.queued", queue, q -> q.getQueued(priority))
+                .description("MQTT messages waiting in the ingress queue")
+                .tags(tags)
+                .register(registry);
+            FunctionCounter.builder("mqtt.ingress.shed", queue, q -> q.getShed(priority))
+                .description("MQTT messages shed because the ingress queue was full")
+                .tags(tags)
+                .register(registry);
+            bindLatency(registry, "mqtt.ingress.wait", "Time an MQTT message waited in the ingress queue", queue.getWait(priority), tags);
+        }
+        Gauge.builder("mqtt.ingress.in_flight", queue, IngressQueue::getInFlight)
+            .description("MQTT handlers running")
+            .register(registry);
+        FunctionCounter.builder("mqtt.ingress.coalesced", queue, IngressQueue::getCoalesced)
+            .description("Waiting MQTT messages replaced by a newer one with the same key")
+            .register(registry);
+    }
+
+    private static void bindLatency(MeterRegistry registry, String name, String description, LatencyHistogram histogram, Tags tags) {
+        FunctionTimer.builder(name, histogram, LatencyHistogram::count, h -> h.mean() * h.count(), TimeUnit.NANOSECONDS)
+            .description(description)
+            .tags(tags)
+            .register(registry);
+        for (double quantile : QUANTILES) {
+            Gauge.builder(name + ".latency", histogram, h -> h.percentile(quantile * 100) / 1e9)
+                .description(description + ", percentile since start")
+                .tags(tags.and("quantile", Double.toString(quantile)))
+                .baseUnit("seconds")
+                .register(registry);
+        }
+        Gauge.builder(name + ".latency", histogram, h -> h.max() / 1e9)
+            .description(description + ", maximum since start")
+            .tags(tags.and("quantile", "1.0"))
+            .baseUnit("seconds")
+            .register(registry);
+    }
+}
+
+/** @} */
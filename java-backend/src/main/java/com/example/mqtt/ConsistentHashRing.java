@@ -0,0 +1,88 @@
+/**
+ * @file ConsistentHashRing.java
+ * @brief Consistent-hash ring mapping keys (game rooms) to backend nodes.
+ *
+ * Every node is placed on the ring many times (virtual nodes), so keys spread evenly and adding or removing a
+ * node only moves the keys of the affected ring segments.
+ *
+ * @date 2024
+ * @ingroup MqttRouting
+ */
+
+package com.example.mqtt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * @class ConsistentHashRing
+ * @brief Immutable ring over the nodes 0..nodeCount-1.
+ *
+ * All nodes build the same ring from the same node count, so they agree on the owner of every key without
+ * talking to each other.
+ *
+ * @ingroup MqttRouting
+ */
+public class ConsistentHashRing {
+
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+    private final int nodeCount;
+
+    /**
+     * @brief Constructor for ConsistentHashRing.
+     *
+     * @param nodeCount Number of nodes, at least 1.
+     * @param virtualNodes Number of ring positions per node.
+     */
+    public ConsistentHashRing(int nodeCount, int virtualNodes) {
+        if (nodeCount < 1) {
+            throw new IllegalArgumentException("nodeCount must be at least 1");
+        }
+        this.nodeCount = nodeCount;
+        for (int node = 0; node < nodeCount; node++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                ring.put(hash("node-" + node + "#" + replica), node);
+            }
+        }
+    }
+
+    /**
+     * @brief Returns the node owning a key.
+     *
+     * @param key Key to place, e.g. a room ID.
+     * @return The owning node, between 0 and nodeCount-1.
+     */
+    public int nodeFor(String key) {
+        if (nodeCount == 1) {
+            return 0;
+        }
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * @return Number of nodes on the ring.
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @brief 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer for an even spread.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
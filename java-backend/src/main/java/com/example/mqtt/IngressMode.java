@@ -0,0 +1,37 @@
+/**
+ * @file IngressMode.java
+ * @brief How several backend nodes split the MQTT messages of the controllers.
+ *
+ * @date 2024
+ * @ingroup MqttRouting
+ */
+
+package com.example.mqtt;
+
+/**
+ * @enum IngressMode
+ * @brief Selected with the INGRESS_MODE environment variable.
+ *
+ * @ingroup MqttRouting
+ */
+public enum IngressMode {
+    /** One node receives and handles every message (default). */
+    SINGLE,
+    /** Every node receives every message and handles those of the rooms it owns on the hash ring. */
+    PARTITIONED,
+    /**
+     * The broker spreads messages over the nodes through a shared subscription; a node forwards messages of
+     * rooms it does not own to the owner, so all messages of a game are handled on one node.
+     */
+    SHARED;
+
+    /**
+     * @brief Parses a mode name, case-insensitively.
+     *
+     * @param value Mode name, or null.
+     * @return The mode, SINGLE if the value is null or blank.
+     */
+    public static IngressMode parse(String value) {
+        return value == null || value.isBlank() ? SINGLE : valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * @file IngressPartitioner.java
+ * @brief Decides which backend node handles the MQTT messages of a game room.
+ *
+ * Controllers publish either to the legacy topics (controller/<kind>, controller ID in the payload) or to their
+ * own topics (controller/<controllerId>/<kind>). The owner of a message is the node that owns the room of its
+ * controller on the consistent-hash ring, so all messages of one game are handled by the same node.
+ *
+ * @date 2024
+ * @ingroup MqttRouting
+ */
+
+package com.example.mqtt;
+
+/**
+ * @class IngressPartitioner
+ * @brief Ownership and topic naming for multi-node ingress.
+ *
+ * Besides the controller topics, nodes talk to each other on backend/... topics, which are never shared:
+ * - backend/room_assignment: every node learns which room a controller was assigned to.
+ * - backend/node/<id>/inbox/<original topic>: messages forwarded to their owner in SHARED mode.
+ * - backend/node/<id>/start_game: game starts requested over HTTP on a node that does not own the room.
+ *
+ * @ingroup MqttRouting
+ */
+public class IngressPartitioner {
+
+    /** Topic on which room assignments are broadcast to all nodes. */
+    public static final String ROOM_ASSIGNMENT_TOPIC = "backend/room_assignment";
+
+    private static final int VIRTUAL_NODES = 128;
+
+    private final IngressMode mode;
+    private final int nodeId;
+    private final String sharedGroup;
+    private final ConsistentHashRing ring;
+
+    /**
+     * @brief Constructor for IngressPartitioner.
+     *
+     * @param mode How messages are split over the nodes.
+     * @param nodeId ID of this node, between 0 and nodeCount-1.
+     * @param nodeCount Number of backend nodes.
+     * @param sharedGroup Name of the shared-subscription group used in SHARED mode.
+     */
+    public IngressPartitioner(IngressMode mode, int nodeId, int nodeCount, String sharedGroup) {
+        if (nodeId < 0 || nodeId >= nodeCount) {
+            throw new IllegalArgumentException("NODE_ID must be between 0 and NODE_COUNT-1, got " + nodeId + " of " + nodeCount);
+        }
+        this.mode = nodeCount > 1 ? mode : IngressMode.SINGLE;
+        this.nodeId = nodeId;
+        this.sharedGroup = sharedGroup;
+        this.ring = new ConsistentHashRing(nodeCount, VIRTUAL_NODES);
+    }
+
+    /**
+     * @return A partitioner for a single node that owns every room.
+     */
+    public static IngressPartitioner single() {
+        return new IngressPartitioner(IngressMode.SINGLE, 0, 1, null);
+    }
+
+    public IngressMode getMode() {
+        return mode;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return true if several nodes share the ingress and must agree on room ownership.
+     */
+    public boolean isClustered() {
+        return mode != IngressMode.SINGLE;
+    }
+
+    /**
+     * @param roomId Name of the room.
+     * @return The node owning the room.
+     */
+    public int ownerOf(String roomId) {
+        return isClustered() ? ring.nodeFor(roomId) : nodeId;
+    }
+
+    /**
+     * @param roomId Name of the room.
+     * @return true if this node handles the messages of the room.
+     */
+    public boolean owns(String roomId) {
+        return ownerOf(roomId) == nodeId;
+    }
+
+    /**
+     * @brief Returns the filter to subscribe for a routed controller topic filter.
+     *
+     * @param filter Routed filter.
+     * @return The filter wrapped in a shared subscription in SHARED mode for controller topics, the filter itself otherwise.
+     */
+    public String subscriptionFor(String filter) {
+        if (mode == IngressMode.SHARED && filter.startsWith("controller/")) {
+            return "$share/" + sharedGroup + "/" + filter;
+        }
+        return filter;
+    }
+
+    /**
+     * @param node ID of a node.
+     * @return Prefix of the topics messages are forwarded to that node on, ending with "/".
+     */
+    public String inboxPrefix(int node) {
+        return "backend/node/" + node + "/inbox/";
+    }
+
+    /**
+     * @param node ID of a node.
+     * @return Topic on which game starts are forwarded to that node.
+     */
+    public String startGameTopic(int node) {
+        return "backend/node/" + node + "/start_game";
+    }
+
+    /**
+     * @brief Extracts the controller ID from a controller-scoped topic.
+     *
+     * @param topic Topic name, e.g. controller/<controllerId>/<kind>.
+     * @return The controller ID, or null for legacy topics (controller/<kind>).
+     */
+    public static String controllerIdOfTopic(String topic) {
+        int first = topic.indexOf('/');
+        int second = topic.indexOf('/', first + 1);
+        if (first < 0 || second < 0) {
+            return null;
+        }
+        return topic.substring(first + 1, second);
+    }
+}
@@ -0,0 +1,311 @@
+/**
+ * @file IngressQueue.java
+ * @brief Bounded, prioritized stage between the MQTT dispatch and the message handlers.
+ *
+ * Without it every message starts its handler at once, and when the database slows down the handlers pile up
+ * behind the connection pool without limit, game messages behind heartbeats. The queue caps the number of
+ * handlers in flight, starts waiting messages by priority, coalesces queued messages that only refresh state and
+ * sheds the least important messages when it is full.
+ *
+ * @date 2024
+ * @ingroup MqttRouting
+ */
+
+package com.example.mqtt;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @class IngressQueue
+ * @brief Runs message handlers with bounded concurrency, highest priority first.
+ *
+ * A message is handled at once while fewer than maxInFlight handlers are running; a handler counts as running
+ * until the Future it returned completes. Other messages wait in one FIFO per priority, at most capacity in total.
+ * When the queue is full, the oldest message of the lowest waiting priority is shed to make room, unless the new
+ * message is not more important, in which case the new one is shed. A message with a coalescing key replaces the
+ * waiting message with the same key instead of queueing behind it.
+ *
+ * Messages are submitted on the MQTT client's context, and queued handlers are started on that context as well.
+ *
+ * @ingroup MqttRouting
+ */
+public class IngressQueue {
+
+    /**
+     * @brief Importance of a message; the order of the constants is the order in which queued messages start.
+     */
+    public enum Priority {
+        /** Game play: answers, sequence requests, lost players. */
+        HIGH,
+        /** Connects, logins and status changes. */
+        NORMAL,
+        /** Messages that only refresh state, e.g. heartbeats. */
+        LOW
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final int capacity;
+    private final int maxInFlight;
+    private final Map<Priority, ArrayDeque<Task>> waiting = new HashMap<>();
+    private final Map<String, Task> coalescable = new HashMap<>();
+    private final Map<Priority, LongAdder> shed = new HashMap<>();
+    private final Map<Priority, LatencyHistogram> waits = new HashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private volatile Context context;
+    private int queued;
+    private int inFlight;
+
+    /**
+     * @brief Constructor for IngressQueue.
+     *
+     * @param capacity Maximum number of waiting messages.
+     * @param maxInFlight Maximum number of handlers running at the same time.
+     */
+    public IngressQueue(int capacity, int maxInFlight) {
+        this.capacity = Math.max(1, capacity);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        for (Priority priority : PRIORITIES) {
+            waiting.put(priority, new ArrayDeque<>());
+            shed.put(priority, new LongAdder());
+            waits.put(priority, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @brief Handles a message now or queues it.
+     *
+     * @param priority Importance of the message.
+     * @param coalesceKey Supplies the key under which waiting messages are coalesced, or null if the message is
+     *                    never coalesced; only called if the message has to wait.
+     * @param handler Starts the handler; its Future (null if it finished synchronously) ends the handling.
+     * @param onShed Called if the message is shed or replaced by a newer one and its handler never runs.
+     */
+    public void submit(Priority priority, Supplier<String> coalesceKey, Supplier<Future<?>> handler, Runnable onShed) {
+        if (context == null) {
+            context = Vertx.currentContext();
+        }
+        Runnable shedNow = null;
+        synchronized (this) {
+            if (queued == 0 && inFlight < maxInFlight) {
+                inFlight++;
+            } else {
+                String key = coalesceKey != null ? coalesceKey.get() : null;
+                Task existing = key != null ? coalescable.get(key) : null;
+                if (existing != null) {
+                    // The newer message carries the same information; it takes the older one's place in the queue
+                    shedNow = existing.onShed;
+                    existing.handler = handler;
+                    existing.onShed = onShed;
+                    coalesced.increment();
+                } else {
+                    shedNow = enqueue(new Task(priority, key, handler, onShed));
+                }
+                handler = null;
+            }
+        }
+        if (shedNow != null) {
+            shedNow.run();
+        }
+        if (handler != null) {
+            start(handler);
+            drain();
+        }
+    }
+
+    /**
+     * @return The onShed callback of the message shed to make room, or null.
+     */
+    private Runnable enqueue(Task task) {
+        if (queued >= capacity) {
+            Priority lowest = lowestWaiting();
+            if (lowest == null || task.priority.compareTo(lowest) >= 0) {
+                shed.get(task.priority).increment();
+                return task.onShed;
+            }
+            Task evicted = waiting.get(lowest).pollFirst();
+            queued--;
+            forget(evicted);
+            shed.get(lowest).increment();
+            waiting.get(task.priority).addLast(task);
+            remember(task);
+            queued++;
+            return evicted.onShed;
+        }
+        waiting.get(task.priority).addLast(task);
+        remember(task);
+        queued++;
+        return null;
+    }
+
+    private Priority lowestWaiting() {
+        for (int i = PRIORITIES.length - 1; i >= 0; i--) {
+            if (!waiting.get(PRIORITIES[i]).isEmpty()) {
+                return PRIORITIES[i];
+            }
+        }
+        return null;
+    }
+
+    private void remember(Task task) {
+        if (task.key != null) {
+            coalescable.put(task.key, task);
+        }
+    }
+
+    private void forget(Task task) {
+        if (task.key != null) {
+            coalescable.remove(task.key, task);
+        }
+    }
+
+    /**
+     * @brief Starts waiting handlers while there is room.
+     */
+    private void drain() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                if (queued == 0 || inFlight >= maxInFlight) {
+                    return;
+                }
+                task = poll();
+                forget(task);
+                queued--;
+                inFlight++;
+            }
+            waits.get(task.priority).record(System.nanoTime() - task.enqueuedAt);
+            start(task.handler);
+        }
+    }
+
+    private Task poll() {
+        for (Priority priority : PRIORITIES) {
+            Task task = waiting.get(priority).pollFirst();
+            if (task != null) {
+                return task;
+            }
+        }
+        throw new IllegalStateException("Queued count out of sync");
+    }
+
+    private void start(Supplier<Future<?>> handler) {
+        Future<?> result;
+        try {
+            result = handler.get();
+        } catch (RuntimeException e) {
+            // The route records the failure; the slot is free again
+            result = null;
+        }
+        if (result == null || result.isComplete()) {
+            release();
+        } else {
+            result.onComplete(ar -> {
+                release();
+                Context mqttContext = context;
+                if (mqttContext == null || mqttContext == Vertx.currentContext()) {
+                    drain();
+                } else {
+                    mqttContext.runOnContext(v -> drain());
+                }
+            });
+        }
+    }
+
+    private synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * @return Number of messages waiting.
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     * @param priority A priority.
+     * @return Number of messages of that priority waiting.
+     */
+    public synchronized int getQueued(Priority priority) {
+        return waiting.get(priority).size();
+    }
+
+    /**
+     * @return Number of handlers running.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @param priority A priority.
+     * @return Number of messages of that priority shed because the queue was full.
+     */
+    public long getShed(Priority priority) {
+        return shed.get(priority).sum();
+    }
+
+    /**
+     * @return Number of waiting messages replaced by a newer message with the same key.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @param priority A priority.
+     * @return Time the messages of that priority waited before their handler started.
+     */
+    public LatencyHistogram getWait(Priority priority) {
+        return waits.get(priority);
+    }
+
+    /**
+     * @brief Describes the state of the queue.
+     *
+     * @return A JsonObject with capacity, maxInFlight, inFlight, coalesced and, per priority, queued, shed and wait.
+     */
+    public JsonObject toJson() {
+        JsonObject priorities = new JsonObject();
+        for (Priority priority : PRIORITIES) {
+            priorities.put(priority.name().toLowerCase(), new JsonObject()
+                .put("queued", getQueued(priority))
+                .put("shed", getShed(priority))
+                .put("wait", getWait(priority).toJson()));
+        }
+        return new JsonObject()
+            .put("capacity", capacity)
+            .put("maxInFlight", maxInFlight)
+            .put("inFlight", getInFlight())
+            .put("coalesced", getCoalesced())
+            .put("priorities", priorities);
+    }
+
+    /**
+     * @brief A waiting message.
+     */
+    private static final class Task {
+        private final Priority priority;
+        private final String key;
+        private final long enqueuedAt = System.nanoTime();
+        private Supplier<Future<?>> handler;
+        private Runnable onShed;
+
+        Task(Priority priority, String key, Supplier<Future<?>> handler, Runnable onShed) {
+            this.priority = priority;
+            this.key = key;
+            this.handler = handler;
+            this.onShed = onShed;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * @file LatencyHistogram.java
+ * @brief Lock-free log-linear latency histogram.
+ *
+ * Values are counted in buckets that split every power of two into eight, so a percentile is reported with at
+ * most 12.5% error while recording stays a single atomic increment, cheap enough for every MQTT message.
+ *
+ * @date 2024
+ * @ingroup MqttRouting
+ */
+
+package com.example.mqtt;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @class LatencyHistogram
+ * @brief Records durations in nanoseconds and reports count, mean, max and percentiles.
+ *
+ * @ingroup MqttRouting
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @brief Records one duration.
+     *
+     * @param nanos Duration in nanoseconds; negative values are counted as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return Number of recorded durations.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return Largest recorded duration in nanoseconds.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return Mean of the recorded durations in nanoseconds, 0 if nothing was recorded.
+     */
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @brief Returns the duration below which the given share of all recorded durations falls.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return Upper bound of the bucket containing the percentile, in nanoseconds; 0 if nothing was recorded.
+     */
+    public long percentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * @brief Summarizes the histogram in microseconds.
+     *
+     * @return A JsonObject with count, mean_us, p50_us, p90_us, p99_us, p999_us and max_us.
+     */
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("count", count())
+            .put("mean_us", mean() / 1000.0)
+            .put("p50_us", micros(percentile(50)))
+            .put("p90_us", micros(percentile(90)))
+            .put("p99_us", micros(percentile(99)))
+            .put("p999_us", micros(percentile(99.9)))
+            .put("max_us", micros(max()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
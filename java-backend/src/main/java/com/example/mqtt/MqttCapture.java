@@ -0,0 +1,309 @@
+/**
+ * @file MqttCapture.java
+ * @brief Recording of the inbound MQTT traffic into a compact binary file, and the reader for it.
+ *
+ * The file starts with a header (magic "MQTC", format version, wall-clock start in epoch milliseconds) followed by
+ * one record per message:
+ *
+ *   long   nanoseconds since the start of the capture
+ *   byte   flags: QoS in bits 0-1, retain in bit 2
+ *   short  length of the UTF-8 topic name, then the topic name
+ *   int    length of the payload, then the payload
+ *
+ * All numbers are big-endian. Records are written in arrival order, so the time offsets never decrease.
+ *
+ * @date 2024
+ * @ingroup MqttRouting
+ */
+
+package com.example.mqtt;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+
+/**
+ * @class MqttCapture
+ * @brief Appends every message handed to record() to a capture file.
+ *
+ * Records are collected in memory and written by a timer, or as soon as FLUSH_BYTES have accumulated, so the MQTT
+ * context never waits for the disk. If the disk falls behind by more than maxPendingBytes, new records are dropped
+ * and counted instead of filling the heap; a capture with drops is not a faithful recording and says so on close.
+ *
+ * @ingroup MqttRouting
+ */
+public class MqttCapture {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttCapture.class);
+
+    /** "MQTC" */
+    public static final int MAGIC = 0x4D515443;
+    public static final short VERSION = 1;
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final int RETAIN_FLAG = 0x04;
+
+    private final Vertx vertx;
+    private final Path path;
+    private final AsyncFile file;
+    private final long maxPendingBytes;
+    private final long startNanos;
+    private final long timerId;
+    private final LongAdder dropped = new LongAdder();
+
+    private Buffer buffer = Buffer.buffer(FLUSH_BYTES);
+    private long pendingBytes;
+    private long records;
+    private Future<Void> lastWrite = Future.succeededFuture();
+    private boolean closed = false;
+
+    private MqttCapture(Vertx vertx, Path path, AsyncFile file, long flushIntervalMs, long maxPendingBytes) {
+        this.vertx = vertx;
+        this.path = path;
+        this.file = file;
+        this.maxPendingBytes = maxPendingBytes;
+        this.startNanos = System.nanoTime();
+        buffer.appendInt(MAGIC).appendShort(VERSION).appendLong(System.currentTimeMillis());
+        this.timerId = vertx.setPeriodic(flushIntervalMs, id -> flush());
+    }
+
+    /**
+     * @brief Creates or truncates a capture file.
+     *
+     * @param vertx Vert.x instance used for the file and the flush timer.
+     * @param path Capture file.
+     * @param flushIntervalMs How often collected records are written.
+     * @param maxPendingBytes Collected and unwritten bytes above which records are dropped.
+     * @return A Future with the capture, failed if the file cannot be opened.
+     */
+    public static Future<MqttCapture> open(Vertx vertx, Path path, long flushIntervalMs, long maxPendingBytes) {
+        OpenOptions options = new OpenOptions().setWrite(true).setCreate(true).setTruncateExisting(true);
+        return vertx.fileSystem().open(path.toString(), options)
+            .map(file -> {
+                logger.info("Capturing inbound MQTT traffic to {}", path);
+                return new MqttCapture(vertx, path, file, flushIntervalMs, maxPendingBytes);
+            });
+    }
+
+    /**
+     * @brief Appends a message to the capture. Safe to call from any thread.
+     *
+     * @param message Inbound message, recorded with the current time.
+     */
+    public void record(MqttPublishMessage message) {
+        long offset = System.nanoTime() - startNanos;
+        byte[] topic = message.topicName().getBytes(StandardCharsets.UTF_8);
+        Buffer payload = message.payload();
+        int flags = message.qosLevel().value() | (message.isRetain() ? RETAIN_FLAG : 0);
+        int size = Long.BYTES + 1 + Short.BYTES + topic.length + Integer.BYTES + payload.length();
+        boolean full;
+        synchronized (this) {
+            if (closed || pendingBytes + buffer.length() + size > maxPendingBytes) {
+                dropped.increment();
+                return;
+            }
+            buffer.appendLong(offset)
+                .appendByte((byte) flags)
+                .appendShort((short) topic.length)
+                .appendBytes(topic)
+                .appendInt(payload.length())
+                .appendBuffer(payload);
+            records++;
+            full = buffer.length() >= FLUSH_BYTES;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * @brief Hands the collected records to the file.
+     *
+     * @return A Future that completes once everything recorded so far has been written.
+     */
+    public synchronized Future<Void> flush() {
+        if (buffer.length() == 0) {
+            return lastWrite;
+        }
+        Buffer chunk = buffer;
+        buffer = Buffer.buffer(FLUSH_BYTES);
+        pendingBytes += chunk.length();
+        lastWrite = file.write(chunk)
+            .onComplete(ar -> {
+                synchronized (this) {
+                    pendingBytes -= chunk.length();
+                }
+            })
+            .onFailure(cause -> logger.error("Failed to write the MQTT capture {}: {}", path, cause.getMessage()));
+        return lastWrite;
+    }
+
+    /**
+     * @return Number of records written or waiting to be written.
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return Number of messages dropped because the disk could not keep up.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @brief Stops recording, writes the remaining records and closes the file. Safe to call more than once.
+     *
+     * @return A Future that completes once the file is closed.
+     */
+    public Future<Void> close() {
+        Future<Void> written;
+        synchronized (this) {
+            if (closed) {
+                return lastWrite;
+            }
+            closed = true;
+            vertx.cancelTimer(timerId);
+            written = flush();
+        }
+        if (getDropped() > 0) {
+            logger.warn("MQTT capture {} dropped {} of {} messages", path, getDropped(), getRecords() + getDropped());
+        }
+        Future<Void> result = written.eventually(() -> file.close())
+            .onSuccess(v -> logger.info("Closed MQTT capture {} with {} messages", path, getRecords()));
+        synchronized (this) {
+            lastWrite = result;
+        }
+        return result;
+    }
+
+    /**
+     * @class Record
+     * @brief One captured message.
+     *
+     * @ingroup MqttRouting
+     */
+    public static final class Record {
+        private final long offsetNanos;
+        private final String topic;
+        private final Buffer payload;
+        private final int qos;
+        private final boolean retain;
+
+        Record(long offsetNanos, String topic, Buffer payload, int qos, boolean retain) {
+            this.offsetNanos = offsetNanos;
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+            this.retain = retain;
+        }
+
+        /**
+         * @return Time since the start of the capture in nanoseconds.
+         */
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public Buffer getPayload() {
+            return payload;
+        }
+
+        public int getQos() {
+            return qos;
+        }
+
+        public boolean isRetain() {
+            return retain;
+        }
+    }
+
+    /**
+     * @class Reader
+     * @brief Reads a capture file record by record with blocking I/O; meant for tools, not the event loop.
+     *
+     * @ingroup MqttRouting
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final long startEpochMillis;
+
+        /**
+         * @brief Opens a capture file and checks its header.
+         *
+         * @param path Capture file.
+         * @throws IOException If the file cannot be read or is not a capture of a supported version.
+         */
+        public Reader(Path path) throws IOException {
+            InputStream stream = Files.newInputStream(path);
+            this.in = new DataInputStream(new BufferedInputStream(stream, FLUSH_BYTES));
+            try {
+                int magic = in.readInt();
+                short version = in.readShort();
+                if (magic != MAGIC || version != VERSION) {
+                    throw new IOException(path + " is not an MQTT capture of version " + VERSION);
+                }
+                this.startEpochMillis = in.readLong();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return Wall-clock time the capture started, in epoch milliseconds.
+         */
+        public long getStartEpochMillis() {
+            return startEpochMillis;
+        }
+
+        /**
+         * @brief Reads the next record.
+         *
+         * A record cut off at the end of the file, as left by a backend that was killed, counts as the end.
+         *
+         * @return The record, or null at the end of the capture.
+         * @throws IOException If the file cannot be read.
+         */
+        public Record next() throws IOException {
+            try {
+                long offset = in.readLong();
+                int flags = in.readUnsignedByte();
+                byte[] topic = new byte[in.readUnsignedShort()];
+                in.readFully(topic);
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+                return new Record(offset, new String(topic, StandardCharsets.UTF_8), Buffer.buffer(payload),
+                    flags & 0x03, (flags & RETAIN_FLAG) != 0);
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,501 @@
+/**
+ * @file MqttTopicRouter.java
+ * @brief Dispatches incoming MQTT messages to handlers registered by topic filter.
+ *
+ * Filters without wildcards are resolved with a single hash lookup. Filters with the MQTT wildcards "+" and "#"
+ * are kept in a trie over the topic levels; topics resolved through the trie are cached, so every topic is
+ * matched against the trie at most once. All filters are subscribed with one multi-topic SUBSCRIBE packet.
+ *
+ * @date 2024
+
+
+
+ * @defgroup MqttRouting MqttRouting
+ * @brief MQTT dispatch layer: topic router, per-topic statistics and latency histograms.
+ *
+ * @{
+ */
+
+package com.example.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mqtt.MqttClient;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+
+/**
+ * @class MqttTopicRouter
+ * @brief Registry of topic filters and their handlers, installed as the publish handler of an MQTT client.
+ *
+ * Routes are registered before install() is called and are not changed afterwards. Every route counts its
+ * messages and failures and records the handling latency; handlers registered with routeAsync are timed until
+ * the Future they return completes.
+ *
+ * @ingroup MqttRouting
+ */
+public class MqttTopicRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttTopicRouter.class);
+    private static final int MAX_CACHED_TOPICS = 10000;
+
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+    private final Map<String, List<Route>> exactRoutes = new HashMap<>();
+    private final TrieNode wildcardRoutes = new TrieNode();
+    private final Map<String, List<Route>> resolvedTopics = new ConcurrentHashMap<>();
+    private final LongAdder unroutedMessages = new LongAdder();
+    private volatile Handler<MqttPublishMessage> tap;
+    private IngressQueue ingressQueue;
+
+    /**
+     * @brief Registers a handler whose work is done when it returns.
+     *
+     * @param filter Topic filter, may contain "+" and "#".
+     * @param qos QoS the filter is subscribed with.
+     * @param handler Handler called with every message matching the filter.
+     * @return This router, for chaining.
+     */
+    public MqttTopicRouter route(String filter, MqttQoS qos, Handler<MqttPublishMessage> handler) {
+        return routeAsync(filter, qos, message -> {
+            handler.handle(message);
+            return null;
+        });
+    }
+
+    /**
+     * @brief Registers a handler that completes its work asynchronously.
+     *
+     * @param filter Topic filter, may contain "+" and "#".
+     * @param qos QoS the filter is subscribed with.
+     * @param handler Handler called with every message matching the filter; the latency is recorded when the
+     *                returned Future completes (immediately if it returns null).
+     * @return This router, for chaining.
+     */
+    public MqttTopicRouter routeAsync(String filter, MqttQoS qos, Function<MqttPublishMessage, Future<?>> handler) {
+        return routeDecoded(filter, qos, Function.identity(), (message, same) -> handler.apply(message), null);
+    }
+
+    /**
+     * @brief Registers an asynchronous handler whose messages are decoded once, before they are queued.
+     *
+     * The decoded message is shared by the coalescing key and the handler, so the key can be read from the
+     * payload without decoding it a second time.
+     *
+     * @param filter Topic filter, may contain "+" and "#".
+     * @param qos QoS the filter is subscribed with.
+     * @param decoder Decodes every message matching the filter; should be cheap, it runs on the MQTT context.
+     * @param handler Handler called with the message and its decoded form; timed like the handlers of routeAsync.
+     * @param coalesceKey Key under which waiting messages of the route replace each other, null for none;
+     *                    may return null for messages that must not be coalesced.
+     * @return This router, for chaining.
+     */
+    public <T> MqttTopicRouter routeDecoded(String filter, MqttQoS qos, Function<MqttPublishMessage, T> decoder,
+                                            BiFunction<MqttPublishMessage, T, Future<?>> handler,
+                                            BiFunction<MqttPublishMessage, T, String> coalesceKey) {
+        if (routes.containsKey(filter)) {
+            throw new IllegalArgumentException("Topic filter already routed: " + filter);
+        }
+        Route route = new Route(filter, qos, new Dispatch<>(decoder, handler, coalesceKey));
+        routes.put(filter, route);
+        if (isWildcard(filter)) {
+            wildcardRoutes.insert(filter.split("/", -1), 0, route);
+        } else {
+            exactRoutes.computeIfAbsent(filter, f -> new ArrayList<>()).add(route);
+        }
+        resolvedTopics.clear();
+        return this;
+    }
+
+    /**
+     * @brief Runs the handlers of all routes through a bounded, prioritized queue. Call before install().
+     *
+     * @param queue Queue the handlers are submitted to, or null to start every handler at once.
+     * @return This router, for chaining.
+     */
+    public MqttTopicRouter ingressQueue(IngressQueue queue) {
+        this.ingressQueue = queue;
+        return this;
+    }
+
+    /**
+     * @brief Sets the queue priority of a route and how its waiting messages are coalesced.
+     *
+     * Routes default to NORMAL priority without coalescing. Only used with an ingress queue.
+     *
+     * @param filter A routed filter.
+     * @param priority Priority of the messages of the route.
+     * @param coalesceKey Key under which waiting messages of the route replace each other, null for none;
+     *                    may return null for messages that must not be coalesced.
+     * @return This router, for chaining.
+     * @throws IllegalArgumentException If the filter is not routed.
+     */
+    public MqttTopicRouter prioritize(String filter, IngressQueue.Priority priority, Function<MqttPublishMessage, String> coalesceKey) {
+        Route route = routeOf(filter);
+        route.priority = priority;
+        route.dispatch.coalesceBy(coalesceKey);
+        return this;
+    }
+
+    /**
+     * @brief Sets the queue priority of a route and keeps its coalescing key, e.g. the one given to routeDecoded.
+     *
+     * @param filter A routed filter.
+     * @param priority Priority of the messages of the route.
+     * @return This router, for chaining.
+     * @throws IllegalArgumentException If the filter is not routed.
+     */
+    public MqttTopicRouter prioritize(String filter, IngressQueue.Priority priority) {
+        routeOf(filter).priority = priority;
+        return this;
+    }
+
+    private Route routeOf(String filter) {
+        Route route = routes.get(filter);
+        if (route == null) {
+            throw new IllegalArgumentException("Topic filter not routed: " + filter);
+        }
+        return route;
+    }
+
+    /**
+     * @brief Sets a handler that sees every incoming message before it is routed, e.g. to capture the traffic.
+     *
+     * The tap runs on the MQTT context ahead of the routes, so it must not block; its exceptions are logged and
+     * do not keep the message from being routed.
+     *
+     * @param tap Handler called with every message, or null to remove it.
+     * @return This router, for chaining.
+     */
+    public MqttTopicRouter tap(Handler<MqttPublishMessage> tap) {
+        this.tap = tap;
+        return this;
+    }
+
+    /**
+     * @brief Installs the router as publish handler of a client and subscribes to all filters in one SUBSCRIBE.
+     *
+     * @param client Connected MQTT client.
+     * @return A Future that completes with the packet ID of the SUBSCRIBE.
+     */
+    public Future<Integer> install(MqttClient client) {
+        return install(client, Function.identity());
+    }
+
+    /**
+     * @brief Installs the router and subscribes to all filters, rewriting each filter before subscribing.
+     *
+     * Used to subscribe through MQTT 5 shared subscriptions: messages arrive with their plain topic name,
+     * so routing keeps using the original filter.
+     *
+     * @param client Connected MQTT client.
+     * @param subscription Maps a routed filter to the filter sent in the SUBSCRIBE packet.
+     * @return A Future that completes with the packet ID of the SUBSCRIBE.
+     */
+    public Future<Integer> install(MqttClient client, Function<String, String> subscription) {
+        client.publishHandler(this::dispatch);
+
+        Map<String, Integer> topics = new LinkedHashMap<>();
+        routes.values().forEach(route -> topics.put(subscription.apply(route.filter), route.qos.value()));
+
+        return client.subscribe(topics)
+            .onSuccess(packetId -> logger.info("Subscribed to {} topics with packet id {}: {}", topics.size(), packetId, topics.keySet()))
+            .onFailure(cause -> logger.error("Failed to subscribe to {}: {}", topics.keySet(), cause.getMessage()));
+    }
+
+    /**
+     * @brief Passes a message to every handler whose filter matches its topic.
+     *
+     * @param message Incoming MQTT message.
+     */
+    public void dispatch(MqttPublishMessage message) {
+        Handler<MqttPublishMessage> tap = this.tap;
+        if (tap != null) {
+            try {
+                tap.handle(message);
+            } catch (RuntimeException e) {
+                logger.error("Tap failed on topic {}: {}", message.topicName(), e.getMessage(), e);
+            }
+        }
+        List<Route> matches = resolve(message.topicName());
+        if (matches.isEmpty()) {
+            unroutedMessages.increment();
+            logger.warn("No handler for topic {}", message.topicName());
+            return;
+        }
+        for (int i = 0; i < matches.size(); i++) {
+            matches.get(i).handle(message, ingressQueue);
+        }
+    }
+
+    /**
+     * @brief Returns the routes matching a topic name.
+     *
+     * @param topic Topic name of a message (no wildcards).
+     * @return The matching routes, possibly empty.
+     */
+    List<Route> resolve(String topic) {
+        List<Route> exact = exactRoutes.get(topic);
+        if (wildcardRoutes.isEmpty()) {
+            return exact != null ? exact : Collections.emptyList();
+        }
+
+        List<Route> cached = resolvedTopics.get(topic);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Route> matches = new ArrayList<>();
+        if (exact != null) {
+            matches.addAll(exact);
+        }
+        // Wildcards at the first level do not match topics starting with "$" (MQTT 3.1.1, section 4.7.2)
+        wildcardRoutes.match(topic.split("/", -1), 0, !topic.startsWith("$"), matches);
+        List<Route> result = matches.isEmpty() ? Collections.emptyList() : List.copyOf(matches);
+        if (resolvedTopics.size() < MAX_CACHED_TOPICS) {
+            resolvedTopics.put(topic, result);
+        }
+        return result;
+    }
+
+    /**
+     * @brief Describes the statistics of all routes.
+     *
+     * @return A JsonObject with one entry per filter (qos, priority, messages, failures, shed, latency), the number of
+     *         unrouted messages and, with an ingress queue, its state.
+     */
+    public JsonObject stats() {
+        JsonObject topics = new JsonObject();
+        routes.values().forEach(route -> topics.put(route.filter, route.toJson()));
+        JsonObject stats = new JsonObject()
+            .put("topics", topics)
+            .put("unrouted", unroutedMessages.sum());
+        if (ingressQueue != null) {
+            stats.put("ingress", ingressQueue.toJson());
+        }
+        return stats;
+    }
+
+    /**
+     * @return The ingress queue, or null if handlers start at once.
+     */
+    public IngressQueue getIngressQueue() {
+        return ingressQueue;
+    }
+
+    /**
+     * @return The routed filters and their statistics, in registration order.
+     */
+    public Map<String, Route> routes() {
+        return Collections.unmodifiableMap(routes);
+    }
+
+    /**
+     * @return Number of messages no route matched.
+     */
+    public long getUnroutedMessages() {
+        return unroutedMessages.sum();
+    }
+
+    private static boolean isWildcard(String filter) {
+        return filter.contains("+") || filter.contains("#");
+    }
+
+    /**
+     * @class Route
+     * @brief A topic filter, its handler and its statistics.
+     */
+    public static final class Route {
+        private final String filter;
+        private final MqttQoS qos;
+        private final Dispatch<?> dispatch;
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private IngressQueue.Priority priority = IngressQueue.Priority.NORMAL;
+
+        Route(String filter, MqttQoS qos, Dispatch<?> dispatch) {
+            this.filter = filter;
+            this.qos = qos;
+            this.dispatch = dispatch;
+        }
+
+        void handle(MqttPublishMessage message, IngressQueue queue) {
+            handle(dispatch, message, queue);
+        }
+
+        private <T> void handle(Dispatch<T> dispatch, MqttPublishMessage message, IngressQueue queue) {
+            messages.increment();
+            long start = System.nanoTime();
+            T decoded;
+            try {
+                decoded = dispatch.decoder.apply(message);
+            } catch (RuntimeException e) {
+                failures.increment();
+                latency.record(System.nanoTime() - start);
+                logger.error("Decoder for {} failed on topic {}: {}", filter, message.topicName(), e.getMessage(), e);
+                return;
+            }
+            Supplier<Future<?>> handler = () -> dispatch.handler.apply(message, decoded);
+            if (queue == null) {
+                invoke(message, handler, start);
+                return;
+            }
+            // The latency includes the time the message waited in the queue
+            BiFunction<MqttPublishMessage, T, String> key = dispatch.coalesceKey;
+            queue.submit(priority, key != null ? () -> key.apply(message, decoded) : null, () -> invoke(message, handler, start), shed::increment);
+        }
+
+        private Future<?> invoke(MqttPublishMessage message, Supplier<Future<?>> handler, long start) {
+            Future<?> result;
+            try {
+                result = handler.get();
+            } catch (RuntimeException e) {
+                failures.increment();
+                latency.record(System.nanoTime() - start);
+                logger.error("Handler for {} failed on topic {}: {}", filter, message.topicName(), e.getMessage(), e);
+                return null;
+            }
+            if (result == null) {
+                latency.record(System.nanoTime() - start);
+            } else {
+                result.onComplete(ar -> {
+                    latency.record(System.nanoTime() - start);
+                    if (ar.failed()) {
+                        failures.increment();
+                    }
+                });
+            }
+            return result;
+        }
+
+        public String getFilter() {
+            return filter;
+        }
+
+        public MqttQoS getQos() {
+            return qos;
+        }
+
+        public long getMessages() {
+            return messages.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * @return Number of messages shed or coalesced by the ingress queue, whose handler never ran.
+         */
+        public long getShed() {
+            return shed.sum();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        JsonObject toJson() {
+            return new JsonObject()
+                .put("qos", qos.value())
+                .put("priority", priority.name().toLowerCase())
+                .put("messages", messages.sum())
+                .put("failures", failures.sum())
+                .put("shed", shed.sum())
+                .put("latency", latency.toJson());
+        }
+    }
+
+    /**
+     * @brief The decoder, handler and coalescing key of a route, typed by the decoded form of its messages.
+     */
+    private static final class Dispatch<T> {
+        private final Function<MqttPublishMessage, T> decoder;
+        private final BiFunction<MqttPublishMessage, T, Future<?>> handler;
+        private BiFunction<MqttPublishMessage, T, String> coalesceKey;
+
+        Dispatch(Function<MqttPublishMessage, T> decoder, BiFunction<MqttPublishMessage, T, Future<?>> handler,
+                 BiFunction<MqttPublishMessage, T, String> coalesceKey) {
+            this.decoder = decoder;
+            this.handler = handler;
+            this.coalesceKey = coalesceKey;
+        }
+
+        void coalesceBy(Function<MqttPublishMessage, String> key) {
+            coalesceKey = key == null ? null : (message, decoded) -> key.apply(message);
+        }
+    }
+
+    /**
+     * @brief Node of the wildcard trie; one child per topic level, plus the "+" and "#" wildcards.
+     */
+    private static final class TrieNode {
+        private final Map<String, TrieNode> children = new HashMap<>();
+        private TrieNode singleLevel;
+        private final List<Route> routes = new ArrayList<>();
+        private final List<Route> multiLevelRoutes = new ArrayList<>();
+
+        boolean isEmpty() {
+            return children.isEmpty() && singleLevel == null && routes.isEmpty() && multiLevelRoutes.isEmpty();
+        }
+
+        void insert(String[] levels, int depth, Route route) {
+            if (depth == levels.length) {
+                routes.add(route);
+                return;
+            }
+            String level = levels[depth];
+            if ("#".equals(level)) {
+                if (depth != levels.length - 1) {
+                    throw new IllegalArgumentException("'#' must be the last level of a topic filter: " + route.filter);
+                }
+                multiLevelRoutes.add(route);
+            } else if ("+".equals(level)) {
+                if (singleLevel == null) {
+                    singleLevel = new TrieNode();
+                }
+                singleLevel.insert(levels, depth + 1, route);
+            } else {
+                children.computeIfAbsent(level, l -> new TrieNode()).insert(levels, depth + 1, route);
+            }
+        }
+
+        void match(String[] levels, int depth, boolean wildcardsAllowed, List<Route> matches) {
+            // "a/#" also matches "a" itself
+            if (wildcardsAllowed) {
+                matches.addAll(multiLevelRoutes);
+            }
+            if (depth == levels.length) {
+                // Exact filters are resolved through the hash table, only wildcard filters end here
+                matches.addAll(routes);
+                return;
+            }
+            TrieNode child = children.get(levels[depth]);
+            if (child != null) {
+                child.match(levels, depth + 1, true, matches);
+            }
+            if (wildcardsAllowed && singleLevel != null) {
+                singleLevel.match(levels, depth + 1, true, matches);
+            }
+        }
+    }
+}
+
+/** @} */
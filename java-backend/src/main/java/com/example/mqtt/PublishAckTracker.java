@@ -0,0 +1,97 @@
+/**
+ * @file PublishAckTracker.java
+ * @brief Measures the time from publishing a QoS 1 or 2 message until the broker acknowledges it.
+ *
+ * @date 2024
+ * @ingroup MqttRouting
+ */
+
+package com.example.mqtt;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mqtt.MqttClient;
+
+/**
+ * @class PublishAckTracker
+ * @brief Matches PUBACK/PUBCOMP packets to the publishes they acknowledge.
+ *
+ * The Future returned by MqttClient.publish completes once the packet is written; the broker's acknowledgement
+ * is only reported through the client's publish completion handler, which this tracker takes over. Only
+ * publishes passed to track() are measured.
+ *
+ * @ingroup MqttRouting
+ */
+public class PublishAckTracker {
+
+    private final Map<Integer, Long> inFlight = new ConcurrentHashMap<>();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * @brief Constructor for PublishAckTracker.
+     *
+     * @param client Client whose publish completion handlers are installed.
+     */
+    public PublishAckTracker(MqttClient client) {
+        client.publishCompletionHandler(this::acknowledged);
+        client.publishCompletionExpirationHandler(packetId -> {
+            if (inFlight.remove(packetId) != null) {
+                expired.increment();
+            }
+        });
+    }
+
+    /**
+     * @brief Starts measuring a publish.
+     *
+     * @param publish Future returned by MqttClient.publish for a QoS 1 or 2 message.
+     * @param startNanos System.nanoTime() before the message was published.
+     * @return The publish Future.
+     */
+    public Future<Integer> track(Future<Integer> publish, long startNanos) {
+        return publish.onSuccess(packetId -> inFlight.put(packetId, startNanos));
+    }
+
+    private void acknowledged(int packetId) {
+        Long startNanos = inFlight.remove(packetId);
+        if (startNanos != null) {
+            latency.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * @return Latency of the acknowledged publishes.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return Number of publishes the broker never acknowledged.
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * @return Number of publishes waiting for their acknowledgement.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return Latency, expired and in-flight publishes as JSON.
+     */
+    public JsonObject toJson() {
+        return new JsonObject()
+            .put("latency", latency.toJson())
+            .put("expired", expired.sum())
+            .put("inFlight", inFlight.size());
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * @file SequenceWireFormat.java
+ * @brief Binary encoding of the color sequences, 2 bits per color, for controllers that negotiated it.
+ *
+ * A sequence frame (backend to controller, neopixel/display<id>), all numbers big-endian:
+ * @code
+ * offset  size  field
+ * 0       1     version, always 1
+ * 1       1     number of colors L (1..255)
+ * 2       2     round, modulo 65536
+ * 4       4     nonce of the sequence
+ * 8       P     colors, P = ceil(L / 4); color i sits in bits 7-6, 5-4, 3-2, 1-0 of byte 8 + i / 4
+ * @endcode
+ *
+ * An answer frame (controller to backend, controller/color_sequence) repeats the header with the round and nonce
+ * of the sequence it answers, followed by the entered colors and the controller ID:
+ * @code
+ * 8       P     entered colors, packed as above
+ * 8 + P   1     length N of the controller ID
+ * 9 + P   N     controller ID, ASCII
+ * @endcode
+ *
+ * Color codes are those of ColorSequence: 0 RED, 1 GREEN, 2 BLUE, 3 YELLOW. JSON payloads start with '[' or '{',
+ * so the version byte tells both formats apart.
+ *
+ * @date 2024
+ * @ingroup MqttRouting
+ */
+
+package com.example.mqtt;
+
+import java.nio.charset.StandardCharsets;
+
+import com.example.game.ColorSequence;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * @class SequenceWireFormat
+ * @brief Encodes sequence frames and reads answer frames in place.
+ *
+ * The readers work on the received Buffer directly: checking an answer against the stored sequence compares
+ * packed bytes and allocates nothing.
+ *
+ * @ingroup MqttRouting
+ */
+public final class SequenceWireFormat {
+
+    public static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = 8;
+    public static final int MAX_LENGTH = 255;
+
+    private SequenceWireFormat() {
+    }
+
+    /**
+     * @param length Number of colors.
+     * @return Number of bytes the packed colors take.
+     */
+    public static int packedLength(int length) {
+        return (length + 3) / 4;
+    }
+
+    /**
+     * @brief Builds a sequence frame.
+     *
+     * @param sequence Colors to send.
+     * @param round Round the sequence belongs to.
+     * @param nonce Nonce the controller has to send back with its answer.
+     * @return The frame.
+     */
+    public static Buffer encodeSequence(ColorSequence sequence, int round, int nonce) {
+        return sequence.appendPacked(header(HEADER_LENGTH + sequence.packedLength(), sequence.length(), round, nonce));
+    }
+
+    /**
+     * @brief Builds an answer frame, as a controller would send it.
+     *
+     * @param answer Entered colors.
+     * @param round Round of the answered sequence.
+     * @param nonce Nonce of the answered sequence.
+     * @param controllerId ID of the answering controller.
+     * @return The frame.
+     */
+    public static Buffer encodeAnswer(ColorSequence answer, int round, int nonce, String controllerId) {
+        byte[] id = controllerId.getBytes(StandardCharsets.US_ASCII);
+        if (id.length > 255) {
+            throw new IllegalArgumentException("Controller ID longer than 255 bytes");
+        }
+        return answer.appendPacked(header(HEADER_LENGTH + answer.packedLength() + 1 + id.length, answer.length(), round, nonce))
+            .appendUnsignedByte((short) id.length)
+            .appendBytes(id);
+    }
+
+    private static Buffer header(int frameLength, int length, int round, int nonce) {
+        if (length < 1 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Sequence length must be between 1 and " + MAX_LENGTH + ", got " + length);
+        }
+        return Buffer.buffer(frameLength)
+            .appendByte(VERSION)
+            .appendUnsignedByte((short) length)
+            .appendUnsignedShort(round & 0xFFFF)
+            .appendInt(nonce);
+    }
+
+    /**
+     * @param payload An MQTT payload.
+     * @return true if the payload is a binary frame rather than JSON.
+     */
+    public static boolean isBinary(Buffer payload) {
+        return payload.length() >= HEADER_LENGTH && payload.getByte(0) == VERSION;
+    }
+
+    /**
+     * @param frame A sequence or answer frame.
+     * @return Number of colors in the frame.
+     */
+    public static int length(Buffer frame) {
+        return frame.getUnsignedByte(1);
+    }
+
+    /**
+     * @param frame A sequence or answer frame.
+     * @return Round of the frame, modulo 65536.
+     */
+    public static int round(Buffer frame) {
+        return frame.getUnsignedShort(2);
+    }
+
+    /**
+     * @param frame A sequence or answer frame.
+     * @return Nonce of the frame.
+     */
+    public static int nonce(Buffer frame) {
+        return frame.getInt(4);
+    }
+
+    /**
+     * @param frame A sequence or answer frame.
+     * @param index Position in the sequence.
+     * @return The 2-bit code of the color at the position.
+     */
+    public static int colorAt(Buffer frame, int index) {
+        return (frame.getUnsignedByte(HEADER_LENGTH + (index >> 2)) >> shift(index)) & 0b11;
+    }
+
+    /**
+     * @brief Decodes the colors of a frame.
+     *
+     * @param frame A sequence or answer frame.
+     * @return The colors.
+     * @throws IndexOutOfBoundsException if the frame is truncated.
+     */
+    public static ColorSequence readSequence(Buffer frame) {
+        byte[] codes = new byte[length(frame)];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = (byte) colorAt(frame, i);
+        }
+        return ColorSequence.of(codes);
+    }
+
+    /**
+     * @brief Reads the controller ID of an answer frame.
+     *
+     * @param answer An answer frame.
+     * @return The controller ID, null if the frame is truncated or has no ID.
+     */
+    public static String controllerId(Buffer answer) {
+        int idOffset = HEADER_LENGTH + packedLength(length(answer));
+        if (answer.length() <= idOffset) {
+            return null;
+        }
+        int idLength = answer.getUnsignedByte(idOffset);
+        if (idLength == 0 || answer.length() < idOffset + 1 + idLength) {
+            return null;
+        }
+        return answer.getString(idOffset + 1, idOffset + 1 + idLength, StandardCharsets.US_ASCII.name());
+    }
+
+    /**
+     * @brief Checks an answer against the stored sequence without decoding it.
+     *
+     * The bits after the last color are ignored, so a controller may leave garbage there.
+     *
+     * @param answer An answer frame.
+     * @param expected The stored sequence.
+     * @return true if the answer holds exactly the stored colors.
+     */
+    public static boolean matches(Buffer answer, ColorSequence expected) {
+        int length = expected.length();
+        int last = expected.packedLength() - 1;
+        if (length == 0 || length(answer) != length || answer.length() <= HEADER_LENGTH + last) {
+            return false;
+        }
+        for (int i = 0; i < last; i++) {
+            if (answer.getByte(HEADER_LENGTH + i) != expected.packedByte(i)) {
+                return false;
+            }
+        }
+        // Only the high bits of the last byte hold colors
+        int mask = 0xFF << (2 * (4 - (length - 4 * last))) & 0xFF;
+        return ((answer.getByte(HEADER_LENGTH + last) ^ expected.packedByte(last)) & mask) == 0;
+    }
+
+    private static int shift(int index) {
+        return 6 - 2 * (index & 3);
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * @file BlockingObjectRepository.java
+ * @brief Blocking-style view of the ObjectRepository for code running on virtual threads.
+ *
+ * @date 2024
+ * @ingroup object_repository
+ */
+
+package com.example.repository;
+
+import java.util.Set;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.VertxException;
+
+/**
+ * @class BlockingObjectRepository
+ * @brief Returns the results of the ObjectRepository methods instead of Futures.
+ *
+ * Every method waits with Future.await, which suspends the calling virtual thread without occupying a carrier or
+ * worker thread; the statements themselves still run on the pool exactly as for the asynchronous callers, with the
+ * same metrics. The methods may only be called from a verticle deployed with ThreadingModel.VIRTUAL_THREAD; on any
+ * other thread Future.await throws an IllegalStateException.
+ *
+ * A failed statement is thrown: RuntimeExceptions as they are, other causes wrapped in a VertxException.
+ *
+ * @ingroup object_repository
+ */
+public class BlockingObjectRepository {
+
+    private final ObjectRepository repository;
+
+    /**
+     * @brief Constructor for BlockingObjectRepository.
+     *
+     * @param repository The repository whose statements are run.
+     */
+    public BlockingObjectRepository(ObjectRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * @brief Inserts a controller or sets an existing one online, see ObjectRepository.insertController.
+     *
+     * @param controllerId The unique ID of the controller.
+     */
+    public void insertController(String controllerId) {
+        Promise<Void> inserted = Promise.promise();
+        repository.insertController(controllerId, inserted);
+        await(inserted.future());
+    }
+
+    /**
+     * @return The IDs of all controllers with an RFID or frontend assignment.
+     */
+    public Set<String> loadAssignedControllers() {
+        return await(repository.loadAssignedControllers());
+    }
+
+    /**
+     * @param controllerId The unique ID of the controller.
+     * @return true if the controller has an RFID or frontend assignment.
+     */
+    public boolean isControllerAssigned(String controllerId) {
+        return await(repository.isControllerAssigned(controllerId));
+    }
+
+    /**
+     * @brief Registers a player on the frontend in one transaction, see ObjectRepository.registerFrontendPlayer.
+     *
+     * @param username The name of the player.
+     * @param controllerId The unique ID of the controller.
+     * @return The player ID.
+     */
+    public int registerFrontendPlayer(String username, String controllerId) {
+        return await(repository.registerFrontendPlayer(username, controllerId));
+    }
+
+    /**
+     * @brief Registers a player by RFID tag in one transaction, see ObjectRepository.registerRfidPlayer.
+     *
+     * @param username The name of a new player.
+     * @param rfidTag The RFID tag of the player.
+     * @param controllerId The unique ID of the controller.
+     * @return The player ID.
+     */
+    public int registerRfidPlayer(String username, String rfidTag, String controllerId) {
+        return await(repository.registerRfidPlayer(username, rfidTag, controllerId));
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return Future.await(future);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable cause) {
+            // Future.await rethrows checked causes undeclared
+            throw new VertxException(cause);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * @file ControllerStatus.java
+ * @brief Status and last sign of life of one controller, written by ObjectRepository.updateControllerStatuses.
+ *
+ * @ingroup object_repository
+ */
+package com.example.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * @ingroup object_repository
+ * @brief Row of the Controllers table as tracked by the presence registry.
+ */
+public class ControllerStatus {
+
+    private final String controllerId;
+    private final String status;
+    private final LocalDateTime lastHeartbeat;
+
+    /**
+     * @brief Constructor for ControllerStatus
+     *
+     * @param controllerId The unique ID of the controller.
+     * @param status Either 'online' or 'offline'.
+     * @param lastHeartbeat When the status was observed.
+     */
+    public ControllerStatus(String controllerId, String status, LocalDateTime lastHeartbeat) {
+        this.controllerId = controllerId;
+        this.status = status;
+        this.lastHeartbeat = lastHeartbeat;
+    }
+
+    public String getControllerId() {
+        return controllerId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getLastHeartbeat() {
+        return lastHeartbeat;
+    }
+}
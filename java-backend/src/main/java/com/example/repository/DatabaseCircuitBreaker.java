@@ -0,0 +1,267 @@
+/**
+ * @file DatabaseCircuitBreaker.java
+ * @brief Circuit breaker in front of the database pool of the ObjectRepository.
+ *
+ * When the database is down or overloaded, every repository call waits for a connection until the pool times out,
+ * and the callers pile up behind it. The breaker watches the outcome of the recent calls and, once too many of them
+ * failed or were slow, rejects new calls at once for a while instead of adding to the backlog.
+ *
+ * @date 2024
+ * @ingroup object_repository
+ */
+package com.example.repository;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.vertx.core.VertxException;
+import io.vertx.sqlclient.DatabaseException;
+import io.vertx.sqlclient.TransactionRollbackException;
+
+/**
+ * @class DatabaseCircuitBreaker
+ * @brief Count-based circuit breaker: CLOSED, OPEN for openMs, then HALF_OPEN with a single trial call.
+ *
+ * The outcomes of the last WINDOW calls are kept in a ring. A call counts as failed if it could not get a
+ * connection, if its statements failed, or if it took longer than slowCallMs including the wait for the
+ * connection. Only failures of the database itself count (see isDatabaseFailure); a statement rejected because of
+ * its input, e.g. a duplicate key, says nothing about the health of the database and counts as a success.
+ * Once at least MIN_CALLS outcomes are known and FAILURE_PERCENT of them failed, the breaker opens.
+ * After openMs one trial call is let through; its success closes the breaker, its failure opens it again.
+ *
+ * Every admitted call gets the epoch of the state it was admitted in, and outcomes of calls admitted before the
+ * last state change are ignored, so a late answer of an old call neither reopens nor closes the breaker.
+ *
+ * Meters, registered by bindTo:
+ * - db.circuit.state: 0 closed, 1 open, 2 half-open.
+ * - db.circuit.rejected: calls rejected while open.
+ * - db.circuit.opened: times the breaker opened.
+ *
+ * @ingroup object_repository
+ */
+public class DatabaseCircuitBreaker implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseCircuitBreaker.class);
+
+    /** Number of recent outcomes the failure rate is computed over. */
+    public static final int WINDOW = 20;
+    /** Outcomes needed before the breaker may open. */
+    public static final int MIN_CALLS = 10;
+    /** Failure rate in percent at which the breaker opens. */
+    public static final int FAILURE_PERCENT = 50;
+
+    /**
+     * @brief State of the breaker; the ordinal is the value of the db.circuit.state gauge.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final long openNanos;
+    private final long slowCallNanos;
+    private final boolean[] outcomes = new boolean[WINDOW];
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private State state = State.CLOSED;
+    private long epoch;
+    private long openUntil;
+    private boolean trialInFlight;
+    private int recorded;
+    private int next;
+    private int failures;
+
+    /**
+     * @brief Constructor for DatabaseCircuitBreaker.
+     *
+     * @param openMs Time the breaker rejects calls after opening.
+     * @param slowCallMs Duration above which a call counts as failed.
+     */
+    public DatabaseCircuitBreaker(long openMs, long slowCallMs) {
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("db.circuit.state", this, breaker -> breaker.getState().ordinal())
+            .description("State of the database circuit breaker: 0 closed, 1 open, 2 half-open")
+            .register(registry);
+        FunctionCounter.builder("db.circuit.rejected", this, DatabaseCircuitBreaker::getRejected)
+            .description("Database calls rejected by the open circuit breaker")
+            .register(registry);
+        FunctionCounter.builder("db.circuit.opened", this, DatabaseCircuitBreaker::getOpened)
+            .description("Times the database circuit breaker opened")
+            .register(registry);
+    }
+
+    /**
+     * @brief Asks for permission to call the database.
+     *
+     * @return The permit to pass to record(), or -1 if the call is rejected.
+     */
+    public synchronized long tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return epoch;
+            case OPEN:
+                if (System.nanoTime() - openUntil < 0) {
+                    rejected.increment();
+                    return -1;
+                }
+                transition(State.HALF_OPEN);
+                trialInFlight = true;
+                return epoch;
+            default:
+                if (trialInFlight) {
+                    rejected.increment();
+                    return -1;
+                }
+                trialInFlight = true;
+                return epoch;
+        }
+    }
+
+    /**
+     * @brief Reports the outcome of an admitted call.
+     *
+     * @param permit The value tryAcquire() returned for the call.
+     * @param nanos Duration of the call including the wait for a connection.
+     * @param succeeded true if the call got a connection and its statements succeeded or failed for reasons other
+     *                  than the database, see isDatabaseFailure.
+     */
+    public synchronized void record(long permit, long nanos, boolean succeeded) {
+        if (permit != epoch) {
+            return;
+        }
+        boolean failed = !succeeded || nanos > slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+            if (failed) {
+                open();
+            } else {
+                logger.info("Database circuit breaker closed after a successful trial call");
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (recorded == WINDOW && outcomes[next]) {
+            failures--;
+        }
+        outcomes[next] = failed;
+        next = (next + 1) % WINDOW;
+        recorded = Math.min(recorded + 1, WINDOW);
+        if (failed) {
+            failures++;
+        }
+        if (recorded >= MIN_CALLS && failures * 100 >= FAILURE_PERCENT * recorded) {
+            logger.warn("Database circuit breaker opened: {} of the last {} calls failed or took longer than {} ms",
+                failures, recorded, TimeUnit.NANOSECONDS.toMillis(slowCallNanos));
+            open();
+        }
+    }
+
+    private void open() {
+        opened.increment();
+        openUntil = System.nanoTime() + openNanos;
+        transition(State.OPEN);
+    }
+
+    private void transition(State target) {
+        state = target;
+        epoch++;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+
+    /**
+     * @brief Tells failures of the database apart from statements rejected because of their input.
+     *
+     * Server errors are classified by SQLSTATE: integrity constraint violations (class 23), data exceptions (22),
+     * syntax and access rule violations (42), cardinality (21), check option (44) and transaction conflicts (40) are
+     * caused by the application. Any other SQLSTATE, closed connections, timeouts and I/O errors count as database
+     * failures. Other exceptions are raised by the repository code itself and do not count.
+     *
+     * @param cause Cause of a failed call.
+     * @return true if the failure should count against the database.
+     */
+    public static boolean isDatabaseFailure(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof DatabaseException) {
+                return isServerFailure(((DatabaseException) t).getSqlState());
+            }
+            if (t instanceof SQLException) {
+                return isServerFailure(((SQLException) t).getSQLState());
+            }
+            if (t instanceof TransactionRollbackException) {
+                // An earlier statement of the transaction failed and was classified already
+                return false;
+            }
+            if (t instanceof TimeoutException || t instanceof IOException || t instanceof VertxException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isServerFailure(String sqlState) {
+        if (sqlState == null || sqlState.length() < 2) {
+            return true;
+        }
+        switch (sqlState.substring(0, 2)) {
+            case "21":
+            case "22":
+            case "23":
+            case "40":
+            case "42":
+            case "44":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return The current state; an expired OPEN state turns HALF_OPEN with the next call only.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return Number of calls rejected while the breaker was open.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return Number of times the breaker opened.
+     */
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    /**
+     * @brief Failure of a call the open circuit breaker rejected without touching the pool.
+     *
+     * Thrown often while the database is unavailable, so it carries no stack trace.
+     */
+    public static class CircuitOpenException extends VertxException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException() {
+            super("Database circuit breaker is open", true);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * @file DatabaseMetrics.java
+ * @brief Connection pool and query metrics of the ObjectRepository.
+ *
+ * Neither the JDBC pool nor the reactive MySQL pool reports how long callers wait for a connection, so the
+ * repository borrows its connections explicitly and reports the wait, the connections in use and the duration
+ * of every repository method here.
+ *
+ * @ingroup object_repository
+ */
+package com.example.repository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * @brief Meters of the database pool, registered once per pool.
+ *
+ * - db.pool.size: maximum number of connections.
+ * - db.pool.in_use: connections borrowed by the repository.
+ * - db.pool.pending: callers waiting for a connection.
+ * - db.pool.wait: time until a connection was handed out.
+ * - db.pool.acquire.failures: connections that could not be borrowed.
+ * - db.query: time a repository method held its connection, or took on the pipelined client, tagged with the
+ *   method and its outcome.
+ *
+ * @ingroup object_repository
+ */
+public class DatabaseMetrics {
+
+    private static final Duration[] SLOS = {
+        Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(10), Duration.ofMillis(25),
+        Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofMillis(1000)
+    };
+
+    private final MeterRegistry registry;
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter acquireFailures;
+    private final Map<String, Timer> succeededQueries = new ConcurrentHashMap<>();
+    private final Map<String, Timer> failedQueries = new ConcurrentHashMap<>();
+
+    /**
+     * @brief Constructor for DatabaseMetrics.
+     *
+     * @param registry Registry the meters are registered in.
+     * @param poolSize Maximum number of pooled connections.
+     */
+    public DatabaseMetrics(MeterRegistry registry, int poolSize) {
+        this.registry = registry;
+        Gauge.builder("db.pool.size", () -> poolSize)
+            .description("Maximum number of pooled database connections")
+            .register(registry);
+        Gauge.builder("db.pool.in_use", inUse, AtomicInteger::get)
+            .description("Database connections currently borrowed")
+            .register(registry);
+        Gauge.builder("db.pool.pending", pending, AtomicInteger::get)
+            .description("Callers waiting for a database connection")
+            .register(registry);
+        this.waitTimer = Timer.builder("db.pool.wait")
+            .description("Time spent waiting for a database connection")
+            .serviceLevelObjectives(SLOS)
+            .register(registry);
+        this.acquireFailures = Counter.builder("db.pool.acquire.failures")
+            .description("Database connections that could not be borrowed")
+            .register(registry);
+    }
+
+    /**
+     * @return Metrics kept in a private registry, for code paths that are not scraped.
+     */
+    public static DatabaseMetrics detached() {
+        return new DatabaseMetrics(new SimpleMeterRegistry(), 0);
+    }
+
+    /**
+     * @brief Called before a connection is requested from the pool.
+     */
+    void requested() {
+        pending.incrementAndGet();
+    }
+
+    /**
+     * @brief Called when the pool handed out a connection.
+     *
+     * @param waitNanos Time since requested() in nanoseconds.
+     */
+    void acquired(long waitNanos) {
+        pending.decrementAndGet();
+        inUse.incrementAndGet();
+        waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @brief Called when the pool failed to hand out a connection.
+     */
+    void acquireFailed() {
+        pending.decrementAndGet();
+        acquireFailures.increment();
+    }
+
+    /**
+     * @brief Called when a repository method gave its connection back.
+     *
+     * @param query Name of the repository method.
+     * @param nanos Time the connection was held in nanoseconds.
+     * @param succeeded true if the method's statements succeeded.
+     */
+    void released(String query, long nanos, boolean succeeded) {
+        inUse.decrementAndGet();
+        executed(query, nanos, succeeded);
+    }
+
+    /**
+     * @brief Called when a repository method completed, directly for statements on the pipelined client.
+     *
+     * @param query Name of the repository method.
+     * @param nanos Duration of the method in nanoseconds.
+     * @param succeeded true if the method's statements succeeded.
+     */
+    void executed(String query, long nanos, boolean succeeded) {
+        Map<String, Timer> timers = succeeded ? succeededQueries : failedQueries;
+        Timer timer = timers.get(query);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(query, name -> Timer.builder("db.query")
+                .description("Duration of repository methods, connection wait excluded")
+                .tag("query", name)
+                .tag("outcome", succeeded ? "success" : "failure")
+                .serviceLevelObjectives(SLOS)
+                .register(registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -22,14 +22,24 @@ import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.jdbcclient.JDBCPool;
+import io.vertx.mysqlclient.MySQLClient;
 import io.vertx.sqlclient.Pool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
 import io.vertx.sqlclient.Tuple;
 
 
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 
 import org.slf4j.Logger;
@@ -40,21 +50,169 @@ import org.slf4j.LoggerFactory;
  * 
  * This class contains methods for handling database CRUD operations for controllers, players, sessions,
  * and RFID or frontend assignments. Each method is designed to interact with the database using Vert.x JDBC or SQL clients.
+ * The pool may be either a JDBCPool or a reactive MySQL pool; both expose the same Pool API.
+ * With the reactive MySQL client, single statements go through a pipelined client instead, so several of them
+ * share a connection; transactions always borrow a connection of the pool.
  */
 public class ObjectRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(ObjectRepository.class);
 
-    private final Pool jdbcPool;
+    private final Pool pool;
+    private final SqlClient pipelined;
+    private final DatabaseMetrics metrics;
+    private final DatabaseCircuitBreaker breaker;
     /**
      * @brief Constructor for ObjectRepository
      * 
-     * Initializes the repository with the provided JDBC pool.
+     * Initializes the repository with the provided pool.
      * 
-     * @param jdbcPool The JDBC pool used for database queries.
+     * @param pool The pool used for database queries, a JDBCPool or a reactive MySQL pool.
+     * @param metrics Pool and query metrics of the pool.
      */
-    public ObjectRepository(Pool jdbcPool) {
-        this.jdbcPool = jdbcPool;
+    public ObjectRepository(Pool pool, DatabaseMetrics metrics) {
+        this(pool, metrics, null);
+    }
+
+    /**
+     * @brief Constructor for ObjectRepository with a circuit breaker in front of the pool.
+     * 
+     * @param pool The pool used for database queries, a JDBCPool or a reactive MySQL pool.
+     * @param metrics Pool and query metrics of the pool.
+     * @param breaker Circuit breaker rejecting calls while the database fails, or null to always call it.
+     */
+    public ObjectRepository(Pool pool, DatabaseMetrics metrics, DatabaseCircuitBreaker breaker) {
+        this(pool, null, metrics, breaker);
+    }
+
+    /**
+     * @brief Constructor for ObjectRepository with a pipelined client for single statements.
+     * 
+     * @param pool The pool transactions borrow their connections from, a JDBCPool or a reactive MySQL pool.
+     * @param pipelined Pipelined client running the statements outside of transactions, or null to borrow a
+     *                  connection of the pool for them as well.
+     * @param metrics Pool and query metrics of the pool.
+     * @param breaker Circuit breaker rejecting calls while the database fails, or null to always call it.
+     */
+    public ObjectRepository(Pool pool, SqlClient pipelined, DatabaseMetrics metrics, DatabaseCircuitBreaker breaker) {
+        this.pool = pool;
+        this.pipelined = pipelined;
+        this.metrics = metrics;
+        this.breaker = breaker;
+    }
+
+    /**
+     * @brief Runs the statements of one repository method outside of a transaction.
+     * 
+     * With a pipelined client the statements are sent on it at once, and may share a connection with statements
+     * of other calls; the time until they completed is recorded under the method name. Without one they run on a
+     * borrowed connection, see lease(). While the circuit breaker is open the call fails at once with a
+     * CircuitOpenException.
+     * 
+     * @param query Name of the repository method, used as metric tag.
+     * @param statements Statements to run; they must not depend on running on the same connection.
+     * @return A Future with the result of the statements.
+     */
+    private <T> Future<T> run(String query, Function<SqlClient, Future<T>> statements) {
+        if (pipelined == null) {
+            return lease(query, statements::apply);
+        }
+        long permit = breaker != null ? breaker.tryAcquire() : 0;
+        if (permit < 0) {
+            return Future.failedFuture(new DatabaseCircuitBreaker.CircuitOpenException());
+        }
+        long startedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = statements.apply(pipelined);
+        } catch (RuntimeException e) {
+            result = Future.failedFuture(e);
+        }
+        return result.andThen(ar -> {
+            long nanos = System.nanoTime() - startedAt;
+            metrics.executed(query, nanos, ar.succeeded());
+            if (breaker != null) {
+                breaker.record(permit, nanos, ar.succeeded() || !DatabaseCircuitBreaker.isDatabaseFailure(ar.cause()));
+            }
+        });
+    }
+
+    /**
+     * @brief Runs the statements of one repository method on a borrowed connection.
+     * 
+     * Records the time spent waiting for the connection and the time the statements held it under the
+     * method name. The connection goes back to the pool once the returned Future of the statements completes.
+     * While the circuit breaker is open the call fails at once with a CircuitOpenException.
+     * 
+     * @param query Name of the repository method, used as metric tag.
+     * @param statements Statements to run on the connection.
+     * @return A Future with the result of the statements.
+     */
+    private <T> Future<T> lease(String query, Function<SqlConnection, Future<T>> statements) {
+        long permit = breaker != null ? breaker.tryAcquire() : 0;
+        if (permit < 0) {
+            return Future.failedFuture(new DatabaseCircuitBreaker.CircuitOpenException());
+        }
+        long requestedAt = System.nanoTime();
+        metrics.requested();
+        return pool.getConnection().compose(connection -> {
+            long acquiredAt = System.nanoTime();
+            metrics.acquired(acquiredAt - requestedAt);
+            Future<T> result;
+            try {
+                result = statements.apply(connection);
+            } catch (RuntimeException e) {
+                result = Future.failedFuture(e);
+            }
+            return result.andThen(ar -> {
+                long releasedAt = System.nanoTime();
+                metrics.released(query, releasedAt - acquiredAt, ar.succeeded());
+                if (breaker != null) {
+                    breaker.record(permit, releasedAt - requestedAt,
+                        ar.succeeded() || !DatabaseCircuitBreaker.isDatabaseFailure(ar.cause()));
+                }
+                connection.close();
+            });
+        }, cause -> {
+            metrics.acquireFailed();
+            if (breaker != null) {
+                breaker.record(permit, System.nanoTime() - requestedAt, false);
+            }
+            return Future.failedFuture(cause);
+        });
+    }
+
+    /**
+     * @brief Runs the statements of one repository method in a transaction on a borrowed connection.
+     * 
+     * Commits when the Future of the statements succeeds and rolls back otherwise.
+     * 
+     * @param query Name of the repository method, used as metric tag.
+     * @param statements Statements to run in the transaction.
+     * @return A Future with the result of the statements.
+     */
+    private <T> Future<T> runInTransaction(String query, Function<SqlConnection, Future<T>> statements) {
+        return lease(query, connection -> connection.begin()
+            .compose(transaction -> statements.apply(connection)
+                .compose(result -> transaction.commit().map(result),
+                    cause -> transaction.rollback().transform(v -> Future.<T>failedFuture(cause)))));
+    }
+
+    /**
+     * @brief Extracts the auto-generated key of an INSERT.
+     * 
+     * The JDBC client reports generated keys as a row, the reactive MySQL client as the
+     * LAST_INSERT_ID value of the OK packet. Both honour LAST_INSERT_ID(expr) in ON DUPLICATE KEY clauses.
+     * 
+     * @param rows The result of the INSERT statement.
+     * @return The generated (or re-used) key.
+     */
+    private int generatedId(RowSet<Row> rows) {
+        Long lastInsertId = rows.property(MySQLClient.LAST_INSERTED_ID);
+        if (lastInsertId != null) {
+            return lastInsertId.intValue();
+        }
+        return rows.property(JDBCPool.GENERATED_KEYS).getInteger(0);
     }
     
     /**
@@ -73,10 +231,10 @@ public class ObjectRepository {
 
         logger.debug("Attempting to insert/update controller with ID: {}", controllerId);
     
-        jdbcPool.preparedQuery(sql)
-                .execute(Tuple.of(controllerId), ar -> {
+        run("insertController", connection -> connection.preparedQuery(sql).execute(Tuple.of(controllerId)))
+                .onComplete(ar -> {
                     if (ar.succeeded()) {
-                        logger.info("Controller inserted/updated successfully: {}", controllerId);
+                        logger.debug("Controller inserted/updated successfully: {}", controllerId);
                         resultHandler.handle(Future.succeededFuture());
                     } else {
                         logger.error("Failed to insert/update controller: {}", ar.cause().getMessage());
@@ -100,7 +258,7 @@ public class ObjectRepository {
         String sql = "SELECT controller_id, status FROM Controllers WHERE status = 'online'";
     
         // Execute the SQL query using the JDBC client
-        jdbcPool.query(sql).execute(ar -> {
+        run("fetchControllers", connection -> connection.query(sql).execute()).onComplete(ar -> {
             if (ar.succeeded()) {
                 // If the query is successful, retrieve the result set
                 RowSet<Row> rows = ar.result();
@@ -124,6 +282,36 @@ public class ObjectRepository {
         });
     }
     
+    /**
+     * @ingroup object_repository
+     * @brief Writes the status and last heartbeat of several controllers in one statement.
+     * 
+     * Controllers that do not exist yet are inserted, so a heartbeat from an unknown controller is recorded too.
+     * 
+     * @param statuses The statuses to write, at most one per controller.
+     * @return A Future indicating the result of the batch.
+     */
+    public Future<Void> updateControllerStatuses(List<ControllerStatus> statuses) {
+        if (statuses.isEmpty()) {
+            return Future.succeededFuture();
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO Controllers (controller_id, status, last_heartbeat) VALUES ");
+        Tuple params = Tuple.tuple();
+        for (int i = 0; i < statuses.size(); i++) {
+            ControllerStatus status = statuses.get(i);
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+            params.addString(status.getControllerId())
+                .addString(status.getStatus())
+                .addLocalDateTime(status.getLastHeartbeat());
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE status = VALUES(status), last_heartbeat = VALUES(last_heartbeat)");
+
+        return run("updateControllerStatuses", connection -> connection.preparedQuery(sql.toString())
+            .execute(params))
+            .mapEmpty();
+    }
+
     /**
      * @ingroup object_repository
      * @brief Retrieves a list of connected controllers.
@@ -136,7 +324,7 @@ public class ObjectRepository {
         // SQL query to retrieve all controller IDs from active sessions (with a player associated)
         String query = "SELECT controller_id FROM Sessions WHERE end_time IS NULL AND player_id IS NOT NULL";
     
-        jdbcPool.query(query).execute(ar -> {
+        run("getConnectedControllers", connection -> connection.query(query).execute()).onComplete(ar -> {
             if (ar.succeeded()) {
                 List<String> connectedControllers = new ArrayList<>();
                 RowSet<Row> rows = ar.result();
@@ -152,233 +340,96 @@ public class ObjectRepository {
 
     /**
      * @ingroup object_repository
-     * @brief Checks if a controller is in use based on RFID assignments.
-     * 
-     * This method checks the database to determine if a controller is currently in use based on RFID assignments.
-     * 
-     * @param controllerId The unique ID of the controller.
-     * @param resultHandler The result handler that returns true if the controller is in use, otherwise false.
-     */
-    public void isControllerInUse(String controllerId, Handler<AsyncResult<Boolean>> resultHandler) {
-        // Query the database to check if the controller is already in use
-        String query = "SELECT COUNT(*) FROM RfidAssignments WHERE controller_id = ?";
-        jdbcPool.preparedQuery(query)
-              .execute(Tuple.of(controllerId), ar -> {
-                  if (ar.succeeded()) {
-                      RowSet<Row> rows = ar.result();
-                      if (rows.iterator().hasNext()) {
-                          Row row = rows.iterator().next();
-                          int count = row.getInteger(0);
-                          resultHandler.handle(Future.succeededFuture(count > 0));
-                      } else {
-                          resultHandler.handle(Future.succeededFuture(false));
-                      }
-                  } else {
-                      resultHandler.handle(Future.failedFuture(ar.cause()));
-                  }
-              });
-    }
-    
-
-    public void isControllerInUseInFrontend(String controllerId, Handler<AsyncResult<Boolean>> resultHandler) {
-        // Query the database to check if the controller is already in use in frontend assignments
-        String query = "SELECT COUNT(*) FROM FrontendAssignments WHERE controller_id = ?";
-        jdbcPool.preparedQuery(query)
-                .execute(Tuple.of(controllerId), ar -> {
-                    if (ar.succeeded()) {
-                        RowSet<Row> rows = ar.result();
-                        if (rows.iterator().hasNext()) {
-                            Row row = rows.iterator().next();
-                            int count = row.getInteger(0);
-                            resultHandler.handle(Future.succeededFuture(count > 0));
-                        } else {
-                            resultHandler.handle(Future.succeededFuture(false));
-                        }
-                    } else {
-                        resultHandler.handle(Future.failedFuture(ar.cause()));
-                    }
-                });
-    }
-    
-    /**
-     * @ingroup object_repository
-     * @brief Inserts a new player into the database.
-     * 
-     * This method registers a player with a given username and returns the player's unique ID.
-     * If the username already exists, it updates the existing player's record.
-     * 
-     * @param username The name of the player.
-     * @param resultHandler The result handler that returns the player ID or a failure.
-     */
-     public void insertPlayer(String username, Handler<AsyncResult<Integer>> resultHandler) {
-        // SQL query to insert a player into the Players table with username.
-       // If the username already exists, update the existing record's username.
-      // Uses LAST_INSERT_ID() to get the player_id of the existing or new row.
-        String sql = "INSERT INTO Players (user_name) VALUES (?) ON DUPLICATE KEY UPDATE user_name = VALUES(user_name), player_id = LAST_INSERT_ID(player_id)";
-
-        // Execute the prepared SQL query using a tuple containing the username
-        jdbcPool.preparedQuery(sql)
-                .execute(Tuple.of(username), ar -> {
-                    if (ar.succeeded()) {
-                    // Successfully executed SQL, now get the auto-generated player ID
-                       int playerID = ar.result().property(JDBCPool.GENERATED_KEYS).getInteger(0);
-                      // Pass the player ID to the result handler
-                       resultHandler.handle(Future.succeededFuture(playerID));
-                    } else {
-                        // Log and handle any errors encountered during query execution
-                        logger.error("Failed to register player: {}", ar.cause().getMessage());
-                        resultHandler.handle(Future.failedFuture(ar.cause()));
-                    }
-                });
-    }
-    
-    /**
-     * @ingroup object_repository
-     * @brief Creates a new session in the database.
+     * @brief Loads every controller that has an RFID or frontend assignment.
      * 
-     * This method creates a new session entry in the Sessions table with the given player ID, controller ID,
-     * and login method.
+     * Assignment rows are never deleted, so a controller that appears here stays in use.
      * 
-     * @param playerId The unique ID of the player.
-     * @param controllerId The unique ID of the controller.
-     * @param loginMethod The method used for login.
-     * @param resultHandler The result handler that returns success or failure.
+     * @return A Future containing the IDs of the assigned controllers.
      */
-    public void createSession(int playerId, String controllerId, String loginMethod, Handler<AsyncResult<Void>> resultHandler) {
-        // SQL query to create a new session in the Sessions table
-        String sql = "INSERT INTO Sessions (player_id, controller_id, login_method) VALUES (?, ?, ?)";
-    
-        logger.info("Trying to insert: {}", playerId);
-        logger.info("Trying to insert: {}", controllerId);
-        logger.info("Trying to insert: {}", loginMethod);
-    
-        // Execute the prepared SQL query using a tuple containing playerId, controllerId, and loginMethod
-        jdbcPool.preparedQuery(sql)
-            .execute(Tuple.of(playerId, controllerId, loginMethod), ar -> {
-                if (ar.succeeded()) {
-                    // Successfully executed SQL
-                    logger.info("Session created successfully for player ID: {} with controller ID: {}", playerId, controllerId);
-                    resultHandler.handle(Future.succeededFuture());
-                } else {
-                    // Log and handle any errors encountered during query execution
-                    logger.error("Failed to create session: {}", ar.cause().getMessage());
-                    resultHandler.handle(Future.failedFuture(ar.cause()));
+    public Future<Set<String>> loadAssignedControllers() {
+        String query = "SELECT controller_id FROM RfidAssignments UNION SELECT controller_id FROM FrontendAssignments";
+        return run("loadAssignedControllers", connection -> connection.query(query).execute())
+            .map(rows -> {
+                Set<String> controllerIds = new HashSet<>();
+                for (Row row : rows) {
+                    controllerIds.add(row.getString("controller_id"));
                 }
-            });
+                return controllerIds;
+            })
+            .onFailure(cause -> logger.error("Failed to load controller assignments: {}", cause.getMessage()));
     }
+
     /**
      * @ingroup object_repository
-     * @brief Records a frontend assignment for a player and controller.
+     * @brief Checks if a controller has an RFID or frontend assignment.
      * 
-     * This method inserts a new record into the FrontendAssignments table for the given player ID and controller ID.
-     * 
-     * @param playerId The unique ID of the player.
      * @param controllerId The unique ID of the controller.
-     * @param resultHandler The result handler that returns success or failure.
-     */
-    public void recordFrontendAssignment(int playerId, String controllerId, Handler<AsyncResult<Void>> resultHandler) {
-        // SQL query to record an assignment in the FrontendAssignments table
-        String sql = "INSERT INTO FrontendAssignments (player_id, controller_id) VALUES (?, ?)";
-        
-        // Execute the prepared SQL query using a tuple containing playerId and controllerId
-        jdbcPool.preparedQuery(sql)
-            .execute(Tuple.of(playerId, controllerId), ar -> {
-                if (ar.succeeded()) {
-                    // Successfully executed SQL
-                    logger.info("Frontend assignment recorded successfully for player ID: {} with controller ID: {}", playerId, controllerId);
-                    resultHandler.handle(Future.succeededFuture());
-                } else {
-                    // Log and handle any errors encountered during query execution
-                    logger.error("Failed to record frontend assignment: {}", ar.cause().getMessage());
-                    resultHandler.handle(Future.failedFuture(ar.cause()));
-                }
-            });
-    }
-    /**
-     * @ingroup object_repository
-     * @brief Finds a player by RFID tag.
-     * 
-     * This method retrieves the player ID associated with the given RFID tag from the Players table.
-     * 
-     * @param rfidTag The RFID tag of the player.
-     * @param resultHandler The result handler that returns the player ID or -1 if not found.
+     * @return A Future containing true if the controller is in use, otherwise false.
      */
-    public void findPlayerByRfid(String rfidTag, Handler<AsyncResult<Integer>> resultHandler) {
-        // SQL query to find a player by RFID tag in the Players table
-        String sql = "SELECT player_id FROM Players WHERE rfid_tag = ?";
-        
-        // Execute the prepared SQL query using a tuple containing the rfidTag
-        jdbcPool.preparedQuery(sql).execute(Tuple.of(rfidTag), ar -> {
-            if (ar.succeeded()) {
-                RowSet<Row> rows = ar.result();
-                if (rows.rowCount() > 0) {
-                    // Player found, retrieve player ID from the first row
-                    int playerId = rows.iterator().next().getInteger("player_id");
-                    resultHandler.handle(Future.succeededFuture(playerId));
-                } else {
-                    // Player not found, return -1
-                    resultHandler.handle(Future.succeededFuture(-1));
-                }
-            } else {
-                // Log and handle any errors encountered during query execution
-                resultHandler.handle(Future.failedFuture(ar.cause()));
-            }
-        });
+    public Future<Boolean> isControllerAssigned(String controllerId) {
+        String query = "SELECT EXISTS(SELECT 1 FROM RfidAssignments WHERE controller_id = ?)"
+            + " OR EXISTS(SELECT 1 FROM FrontendAssignments WHERE controller_id = ?)";
+        return run("isControllerAssigned", connection -> connection.preparedQuery(query).execute(Tuple.of(controllerId, controllerId)))
+            .map(rows -> rows.iterator().next().getInteger(0) > 0);
     }
+
     /**
      * @ingroup object_repository
-     * @brief Inserts a player with an RFID tag.
+     * @brief Registers a player on the frontend in one transaction.
      * 
-     * This method inserts a new player with the specified username and RFID tag into the Players table.
-     * If the player already exists, it updates the existing record and returns the player ID.
+     * Inserts a new player, then creates the session and records the frontend assignment. Players.user_name is not
+     * a unique key, so every registration creates its own player, even for a name that is already known. The
+     * statements share one connection; if one fails, none of them is applied.
      * 
      * @param username The name of the player.
-     * @param rfidTag The RFID tag associated with the player.
-     * @param resultHandler The result handler that returns the player ID or a failure.
+     * @param controllerId The unique ID of the controller.
+     * @return A Future containing the player ID.
      */
-    public void insertPlayerWithRfid(String username,String rfidTag, Handler<AsyncResult<Integer>> resultHandler) {
-        
-        // SQL query to insert a player with an RFID tag into the Players table
-        // Uses LAST_INSERT_ID() to get the player_id of the existing or new row.
-        String sql = "INSERT INTO Players (user_name, rfid_tag) VALUES (?, ?) ON DUPLICATE KEY UPDATE player_id = LAST_INSERT_ID(player_id)";
-        
-        // Execute the prepared SQL query using a tuple containing defaultName and rfidTag
-        jdbcPool.preparedQuery(sql).execute(Tuple.of(username, rfidTag), ar -> {
-            if (ar.succeeded()) {
-                // Retrieve the auto-generated player ID
-                int playerID = ar.result().property(JDBCPool.GENERATED_KEYS).getInteger(0);
-                resultHandler.handle(Future.succeededFuture(playerID));
-            } else {
-                // Log and handle any errors encountered during query execution
-                resultHandler.handle(Future.failedFuture(ar.cause()));
-            }
-        });
+    public Future<Integer> registerFrontendPlayer(String username, String controllerId) {
+        // Only the primary key could clash, so the ON DUPLICATE KEY clause does not apply and the new ID is returned
+        String insertPlayer = "INSERT INTO Players (user_name) VALUES (?) ON DUPLICATE KEY UPDATE user_name = VALUES(user_name), player_id = LAST_INSERT_ID(player_id)";
+        String insertAssignment = "INSERT INTO FrontendAssignments (player_id, controller_id) VALUES (?, ?)";
+
+        return runInTransaction("registerFrontendPlayer", connection -> connection.preparedQuery(insertPlayer)
+            .execute(Tuple.of(username))
+            .map(this::generatedId)
+            .compose(playerId -> createSession(connection, playerId, controllerId, "Frontend")
+                .compose(v -> connection.preparedQuery(insertAssignment).execute(Tuple.of(playerId, controllerId)))
+                .map(playerId)))
+            .onSuccess(playerId -> logger.debug("Player {} registered on controller {} via frontend", playerId, controllerId))
+            .onFailure(cause -> logger.error("Failed to register player on controller {}: {}", controllerId, cause.getMessage()));
     }
+
     /**
      * @ingroup object_repository
-     * @brief Records an RFID assignment.
+     * @brief Registers a player by RFID tag in one transaction.
      * 
-     * This method records an assignment of an RFID tag to a player and controller in the RfidAssignments table.
+     * Inserts a player for an unknown tag, or re-uses the player the tag belongs to, then creates the session and
+     * records the RFID assignment. The statements share one connection; if one fails, none of them is applied.
      * 
-     * @param playerId The unique ID of the player.
+     * @param username The name of a new player.
+     * @param rfidTag The RFID tag of the player.
      * @param controllerId The unique ID of the controller.
-     * @param rfidTag The RFID tag associated with the assignment.
-     * @param resultHandler The result handler that returns success or failure.
+     * @return A Future containing the player ID.
      */
-    public void RfidAssignments(int playerId, String controllerId, String rfidTag, Handler<AsyncResult<Void>> resultHandler) {
-        // SQL query to record an RFID assignment in the RfidAssignments table
-        String sql = "INSERT INTO RfidAssignments (player_id, controller_id, rfid_tag) VALUES (?, ?, ?)";
-        
-        // Execute the prepared SQL query using a tuple containing playerId, controllerId, and rfidTag
-        jdbcPool.preparedQuery(sql).execute(Tuple.of(playerId, controllerId, rfidTag), ar -> {
-            if (ar.succeeded()) {
-                // Successfully executed SQL
-                resultHandler.handle(Future.succeededFuture());
-            } else {
-                // Log and handle any errors encountered during query execution
-                resultHandler.handle(Future.failedFuture(ar.cause()));
-            }
-        });
+    public Future<Integer> registerRfidPlayer(String username, String rfidTag, String controllerId) {
+        // rfid_tag is unique: a known tag hits the duplicate key and returns its player
+        String insertPlayer = "INSERT INTO Players (user_name, rfid_tag) VALUES (?, ?) ON DUPLICATE KEY UPDATE player_id = LAST_INSERT_ID(player_id)";
+        String insertAssignment = "INSERT INTO RfidAssignments (player_id, controller_id, rfid_tag) VALUES (?, ?, ?)";
+
+        return runInTransaction("registerRfidPlayer", connection -> connection.preparedQuery(insertPlayer)
+            .execute(Tuple.of(username, rfidTag))
+            .map(this::generatedId)
+            .compose(playerId -> createSession(connection, playerId, controllerId, "RFID")
+                .compose(v -> connection.preparedQuery(insertAssignment).execute(Tuple.of(playerId, controllerId, rfidTag)))
+                .map(playerId)))
+            .onSuccess(playerId -> logger.debug("Player {} registered on controller {} via RFID", playerId, controllerId))
+            .onFailure(cause -> logger.error("Failed to register RFID tag on controller {}: {}", controllerId, cause.getMessage()));
+    }
+
+    private Future<RowSet<Row>> createSession(SqlConnection connection, int playerId, String controllerId, String loginMethod) {
+        return connection.preparedQuery("INSERT INTO Sessions (player_id, controller_id, login_method) VALUES (?, ?, ?)")
+            .execute(Tuple.of(playerId, controllerId, loginMethod));
     }
     /**
      * @ingroup object_repository
@@ -395,7 +446,7 @@ public class ObjectRepository {
                        "FROM DisplayInfo d " +
                        "JOIN Players p ON d.player_id = p.player_id " +
                        "WHERE d.controller_id = ?";
-        jdbcPool.preparedQuery(query).execute(Tuple.of(controllerId), ar -> {
+        run("fetchDisplayInfoByControllerId", connection -> connection.preparedQuery(query).execute(Tuple.of(controllerId))).onComplete(ar -> {
             if (ar.succeeded()) {
                 RowSet<Row> resultSet = ar.result();
                 if (resultSet.size() > 0) {
@@ -426,8 +477,8 @@ public class ObjectRepository {
      */
     public Future<Integer> fetchPlayerIdByControllerId(String controllerId) {
         String query = "SELECT player_id FROM Sessions WHERE controller_id = ? AND end_time IS NULL";
-        return jdbcPool.preparedQuery(query)
-            .execute(Tuple.of(controllerId))
+        return run("fetchPlayerIdByControllerId", connection -> connection.preparedQuery(query)
+            .execute(Tuple.of(controllerId)))
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return rows.iterator().next().getInteger("player_id");
@@ -451,8 +502,8 @@ public class ObjectRepository {
     public Future<Integer> fetchCurrentRoundByControllerId(String controllerId, int playerId) {
         String selectQuery = "SELECT round FROM Sessions WHERE controller_id = ? AND player_id = ? AND end_time IS NULL";
     
-        return jdbcPool.preparedQuery(selectQuery)
-            .execute(Tuple.of(controllerId, playerId))
+        return run("fetchCurrentRoundByControllerId", connection -> connection.preparedQuery(selectQuery)
+            .execute(Tuple.of(controllerId, playerId)))
             .compose(rows -> {
                 if (rows.size() > 0) {
                     // Return the round number if found
@@ -481,21 +532,75 @@ public class ObjectRepository {
      */
     public Future<Void> updatePoints(String controllerId, int playerId, int round) {
         return fetchUsernameByPlayerId(playerId)  // Fetch the username
-            .compose(username -> {
-                String updateQuery = "UPDATE DisplayInfo SET points = points + 1, username = ? WHERE controller_id = ? AND player_id = ? AND round = ?";
-                return jdbcPool.preparedQuery(updateQuery)
-                    .execute(Tuple.of(username, controllerId, playerId, round))
-                    .onFailure(cause -> logger.error("Failed to update points for controller {}: {}", controllerId, cause.getMessage()))
-                    .compose(result -> {
-                        if (result.rowCount() == 0) {
-                            // No existing record, insert a new one
-                            return insertDisplayInfo(controllerId, playerId, round, username);
-                        } else {
-                            return Future.succeededFuture();
-                        }
-                    });
+            .compose(username -> updatePoints(controllerId, playerId, round, username));
+    }
+
+    /**
+     * @ingroup object_repository
+     * @brief Updates the points for a given player and controller when the username is already known.
+     * 
+     * Same as updatePoints(String, int, int) but skips the username lookup, which saves a round-trip
+     * when the caller holds the session in memory.
+     * 
+     * @param controllerId The unique ID of the controller.
+     * @param playerId The unique ID of the player.
+     * @param round The current round number.
+     * @param username The username of the player.
+     * @return A Future indicating the result of the update operation.
+     */
+    public Future<Void> updatePoints(String controllerId, int playerId, int round, String username) {
+        String updateQuery = "UPDATE DisplayInfo SET points = points + 1, username = ? WHERE controller_id = ? AND player_id = ? AND round = ?";
+        return run("updatePoints", connection -> connection.preparedQuery(updateQuery)
+            .execute(Tuple.of(username, controllerId, playerId, round)))
+            .onFailure(cause -> logger.error("Failed to update points for controller {}: {}", controllerId, cause.getMessage()))
+            .compose(result -> {
+                if (result.rowCount() == 0) {
+                    // No existing record, insert a new one
+                    return insertDisplayInfo(controllerId, playerId, round, username);
+                } else {
+                    return Future.succeededFuture();
+                }
             });
     }
+    /**
+     * @ingroup object_repository
+     * @brief Adds accumulated points to several DisplayInfo rows in one statement.
+     * 
+     * Builds a single multi-row INSERT ... ON DUPLICATE KEY UPDATE, so rows that already exist get
+     * their points increased and missing rows are created with the delta as initial value.
+     * 
+     * @param increments The point deltas, at most one per (controller_id, round).
+     * @return A Future indicating the result of the batch.
+     */
+    public Future<Void> upsertPoints(List<PointsIncrement> increments) {
+        if (increments.isEmpty()) {
+            return Future.succeededFuture();
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO DisplayInfo (controller_id, player_id, round, points, username) VALUES ");
+        Tuple params = Tuple.tuple();
+        for (int i = 0; i < increments.size(); i++) {
+            PointsIncrement increment = increments.get(i);
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+            params.addString(increment.getControllerId())
+                .addInteger(increment.getPlayerId())
+                .addInteger(increment.getRound())
+                .addInteger(increment.getDelta())
+                .addString(increment.getUsername());
+        }
+        sql.append(" ON DUPLICATE KEY UPDATE points = points + VALUES(points), username = VALUES(username)");
+
+        return run("upsertPoints", connection -> connection.preparedQuery(sql.toString())
+            .execute(params))
+            .onFailure(cause -> {
+                // The open breaker is reported once by the breaker itself; the caller retries
+                if (!(cause instanceof DatabaseCircuitBreaker.CircuitOpenException)) {
+                    logger.error("Failed to write {} point updates: {}", increments.size(), cause.getMessage());
+                }
+            })
+            .mapEmpty();
+    }
+
     /**
      * @ingroup object_repository
      * @brief Inserts new display information for a player and controller.
@@ -510,8 +615,8 @@ public class ObjectRepository {
      */
     private Future<Void> insertDisplayInfo(String controllerId, int playerId, int round, String username) {
         String insertQuery = "INSERT INTO DisplayInfo (controller_id, player_id, round, points, username) VALUES (?, ?, 1, ?, ?)";
-        return jdbcPool.preparedQuery(insertQuery)
-            .execute(Tuple.of(controllerId, playerId, round, username))
+        return run("insertDisplayInfo", connection -> connection.preparedQuery(insertQuery)
+            .execute(Tuple.of(controllerId, playerId, round, username)))
             .onFailure(cause -> logger.error("Failed to insert DisplayInfo for controller {}: {}", controllerId, cause.getMessage()))
             .mapEmpty();
     }
@@ -527,8 +632,8 @@ public class ObjectRepository {
      */
     private Future<String> fetchUsernameByPlayerId(int playerId) {
         String query = "SELECT user_name FROM Players WHERE player_id = ?";
-        return jdbcPool.preparedQuery(query)
-            .execute(Tuple.of(playerId))
+        return run("fetchUsernameByPlayerId", connection -> connection.preparedQuery(query)
+            .execute(Tuple.of(playerId)))
             .map(rows -> {
                 if (rows.size() > 0) {
                     return rows.iterator().next().getString("user_name");
@@ -551,8 +656,8 @@ public class ObjectRepository {
      */
     public Future<JsonObject> fetchDisplayInfo(String controllerId, int round) {
         String query = "SELECT username, points, round FROM DisplayInfo WHERE controller_id = ? AND round = ?";
-        return jdbcPool.preparedQuery(query)
-            .execute(Tuple.of(controllerId, round))
+        return run("fetchDisplayInfo", connection -> connection.preparedQuery(query)
+            .execute(Tuple.of(controllerId, round)))
             .map(rows -> {
                 if (rows.size() > 0) {
                     Row row = rows.iterator().next();
@@ -566,58 +671,123 @@ public class ObjectRepository {
             })
             .onFailure(cause -> logger.error("Failed to fetch display info for controller {} and round {}: {}", controllerId, round, cause.getMessage()));
     }
-     /**
+    /**
      * @ingroup object_repository
-     * @brief Creates a new round for a given controller.
+     * @brief Moves several controllers to their next round in one transaction.
      * 
-     * This method updates the end time of the current round and inserts a new session for the next round,
-     * as well as initializes new display information for that round.
+     * Reads the open sessions of all controllers with one SELECT, then ends them, opens the sessions of the next
+     * round and creates their DisplayInfo rows with one batch per statement. The number of round trips does not
+     * grow with the number of players.
      * 
-     * @param controllerId The unique ID of the controller.
-     * @return A Future indicating the result of the operation.
-     */
-    public Future<Void> createNewRound(String controllerId) {
-        return jdbcPool.withTransaction(client -> {
-            // First, get the current session info
-            String getCurrentSessionQuery = "SELECT player_id, MAX(round) as current_round, login_method FROM Sessions WHERE controller_id = ? AND end_time IS NULL";
-            
-            return client.preparedQuery(getCurrentSessionQuery)
-                .execute(Tuple.of(controllerId))
-                .compose(rows -> {
-                    if (rows.iterator().hasNext()) {
-                        Row row = rows.iterator().next();
-                        int playerId = row.getInteger("player_id");
-                        int currentRound = row.getInteger("current_round");
-                        String loginMethod = row.getString("login_method");
-                        int newRound = currentRound + 1;
-    
-                        // Update the end time of the current round
-                        String updateEndTimeQuery = "UPDATE Sessions SET end_time = NOW() WHERE controller_id = ? AND player_id = ? AND round = ?";
-                        
-                        return client.preparedQuery(updateEndTimeQuery)
-                            .execute(Tuple.of(controllerId, playerId, currentRound))
-                            .compose(v -> {
-                                // Insert new session for the new round
-                                String insertNewSessionQuery = "INSERT INTO Sessions (controller_id, player_id, round, start_time, login_method) VALUES (?, ?, ?, NOW(), ?)";
-                                
-                                return client.preparedQuery(insertNewSessionQuery)
-                                    .execute(Tuple.of(controllerId, playerId, newRound, loginMethod));
-                            })
-                            .compose(v -> {
-                                // Insert new DisplayInfo for the new round
-                                String insertDisplayInfoQuery = "INSERT INTO DisplayInfo (controller_id, player_id, round, points, username) SELECT ?, ?, ?, 0, user_name FROM Players WHERE player_id = ?";
-                                
-                                return client.preparedQuery(insertDisplayInfoQuery)
-                                    .execute(Tuple.of(controllerId, playerId, newRound, playerId));
-                            });
-                    } else {
-                        return Future.failedFuture("No active session found for controller: " + controllerId);
-                    }
-                })
-                .mapEmpty();
-        });
+     * @param controllerIds The controllers of a game.
+     * @return A Future mapping every controller that had an active session to its new round; controllers without
+     * one are left out.
+     */
+    public Future<Map<String, Integer>> advanceRound(List<String> controllerIds) {
+        if (controllerIds.isEmpty()) {
+            return Future.succeededFuture(Map.of());
+        }
+
+        StringBuilder sessionsQuery = new StringBuilder(
+            "SELECT controller_id, player_id, round, login_method FROM Sessions WHERE end_time IS NULL AND controller_id IN (");
+        Tuple ids = Tuple.tuple();
+        for (int i = 0; i < controllerIds.size(); i++) {
+            sessionsQuery.append(i == 0 ? "?" : ", ?");
+            ids.addString(controllerIds.get(i));
+        }
+        // Ordered by round, so the latest open session of a controller comes last
+        sessionsQuery.append(") ORDER BY round");
+
+        return runInTransaction("advanceRound", client -> client.preparedQuery(sessionsQuery.toString())
+            .execute(ids)
+            .compose(rows -> {
+                Map<String, Row> sessions = new LinkedHashMap<>();
+                for (Row row : rows) {
+                    sessions.put(row.getString("controller_id"), row);
+                }
+                if (sessions.isEmpty()) {
+                    return Future.succeededFuture(Map.<String, Integer>of());
+                }
+
+                List<Tuple> endSessions = new ArrayList<>(sessions.size());
+                List<Tuple> newSessions = new ArrayList<>(sessions.size());
+                List<Tuple> newDisplayInfo = new ArrayList<>(sessions.size());
+                Map<String, Integer> newRounds = new LinkedHashMap<>();
+                sessions.forEach((controllerId, row) -> {
+                    int playerId = row.getInteger("player_id");
+                    int currentRound = row.getInteger("round");
+                    int newRound = currentRound + 1;
+                    endSessions.add(Tuple.of(controllerId, playerId, currentRound));
+                    newSessions.add(Tuple.of(controllerId, playerId, newRound, row.getString("login_method")));
+                    newDisplayInfo.add(Tuple.of(controllerId, playerId, newRound, playerId));
+                    newRounds.put(controllerId, newRound);
+                });
+
+                return client.preparedQuery("UPDATE Sessions SET end_time = NOW() WHERE controller_id = ? AND player_id = ? AND round = ?")
+                    .executeBatch(endSessions)
+                    .compose(v -> client.preparedQuery("INSERT INTO Sessions (controller_id, player_id, round, start_time, login_method) VALUES (?, ?, ?, NOW(), ?)")
+                        .executeBatch(newSessions))
+                    .compose(v -> client.preparedQuery("INSERT INTO DisplayInfo (controller_id, player_id, round, points, username) SELECT ?, ?, ?, 0, user_name FROM Players WHERE player_id = ?")
+                        .executeBatch(newDisplayInfo))
+                    .map(v -> newRounds);
+            }))
+            .onFailure(cause -> logger.error("Failed to advance the round of {} controllers: {}", controllerIds.size(), cause.getMessage()));
     }
    
+    /**
+     * @ingroup object_repository
+     * @brief Loads the state of every active session.
+     * 
+     * Joins the open Sessions rows with the player name and the DisplayInfo points of the session's round.
+     * A controller may have several open sessions; rows are ordered by round descending, so the latest round of a
+     * controller comes first.
+     * 
+     * @return A Future containing one JsonObject per session (controller_id, player_id, user_name, round, login_method, points).
+     */
+    public Future<JsonArray> loadActiveSessions() {
+        return run("loadActiveSessions", connection -> connection.query(ACTIVE_SESSION_QUERY + " ORDER BY s.round DESC")
+            .execute())
+            .map(this::toSessionArray)
+            .onFailure(cause -> logger.error("Failed to load active sessions: {}", cause.getMessage()));
+    }
+
+    /**
+     * @ingroup object_repository
+     * @brief Loads the state of the active session of one controller.
+     * 
+     * @param controllerId The unique ID of the controller.
+     * @return A Future containing the session as JsonObject, or null if the controller has no active session.
+     */
+    public Future<JsonObject> fetchActiveSession(String controllerId) {
+        return run("fetchActiveSession", connection -> connection.preparedQuery(ACTIVE_SESSION_QUERY + " AND s.controller_id = ? ORDER BY s.round DESC LIMIT 1")
+            .execute(Tuple.of(controllerId)))
+            .map(rows -> {
+                JsonArray sessions = toSessionArray(rows);
+                return sessions.isEmpty() ? null : sessions.getJsonObject(0);
+            });
+    }
+
+    private static final String ACTIVE_SESSION_QUERY =
+        "SELECT s.controller_id, s.player_id, s.round, s.login_method, p.user_name, COALESCE(d.points, 0) AS points " +
+        "FROM Sessions s " +
+        "JOIN Players p ON p.player_id = s.player_id " +
+        "LEFT JOIN DisplayInfo d ON d.controller_id = s.controller_id AND d.round = s.round " +
+        "WHERE s.end_time IS NULL";
+
+    private JsonArray toSessionArray(RowSet<Row> rows) {
+        JsonArray sessions = new JsonArray();
+        for (Row row : rows) {
+            sessions.add(new JsonObject()
+                .put("controller_id", row.getString("controller_id"))
+                .put("player_id", row.getInteger("player_id"))
+                .put("user_name", row.getString("user_name"))
+                .put("round", row.getInteger("round"))
+                .put("login_method", row.getString("login_method"))
+                .put("points", row.getInteger("points")));
+        }
+        return sessions;
+    }
+
     /**
      * @ingroup object_repository
      * @brief Fetches the current round number for a given controller.
@@ -629,8 +799,8 @@ public class ObjectRepository {
      */
     public Future<Integer> fetchCurrentRound(String controllerId) {
         String query = "SELECT MAX(round) as current_round FROM Sessions WHERE controller_id = ? AND end_time IS NULL";
-        return jdbcPool.preparedQuery(query)
-            .execute(Tuple.of(controllerId))
+        return run("fetchCurrentRound", connection -> connection.preparedQuery(query)
+            .execute(Tuple.of(controllerId)))
             .map(rows -> {
                 if (rows.size() > 0) {
                     Row row = rows.iterator().next();
@@ -652,8 +822,8 @@ public class ObjectRepository {
      */
     public Future<Integer> fetchHighestScore(int playerId) {
         String query = "SELECT MAX(points) as highest_score FROM DisplayInfo WHERE player_id = ?";
-        return jdbcPool.preparedQuery(query)
-            .execute(Tuple.of(playerId))
+        return run("fetchHighestScore", connection -> connection.preparedQuery(query)
+            .execute(Tuple.of(playerId)))
             .map(rows -> {
                 if (rows.iterator().hasNext()) {
                     return rows.iterator().next().getInteger("highest_score");
@@ -666,20 +836,79 @@ public class ObjectRepository {
      * @ingroup object_repository
      * @brief Updates the high score for a specific player.
      * 
-     * This method updates the high_score field for a player in the Players table based on the highest score found in DisplayInfo.
+     * This method raises the high_score field for a player in the Players table to the highest score found in DisplayInfo.
      * 
      * @param playerId The unique ID of the player.
      * @return Future indicating the completion of the update.
      */
     public Future<Void> updateHighScore(int playerId) {
+        // Archived rounds are no longer in DisplayInfo, so the stored score is only ever raised
         return fetchHighestScore(playerId)
-            .compose(highestScore -> {
-                String updateQuery = "UPDATE Players SET high_score = ? WHERE player_id = ?";
-                return jdbcPool.preparedQuery(updateQuery)
-                    .execute(Tuple.of(highestScore, playerId))
-                    .mapEmpty();
-            });
+            .compose(highestScore -> saveHighScore(playerId, highestScore == null ? 0 : highestScore));
     }
+    /**
+     * @ingroup object_repository
+     * @brief Stores a player's high score unless the stored one is higher already.
+     * 
+     * @param playerId The unique ID of the player.
+     * @param highScore The best score of the player known to the caller.
+     * @return Future indicating the completion of the update.
+     */
+    public Future<Void> saveHighScore(int playerId, int highScore) {
+        String updateQuery = "UPDATE Players SET high_score = GREATEST(COALESCE(high_score, 0), ?) WHERE player_id = ?";
+        return run("saveHighScore", connection -> connection.preparedQuery(updateQuery)
+            .execute(Tuple.of(highScore, playerId)))
+            .mapEmpty();
+    }
+
+    /**
+     * @ingroup object_repository
+     * @brief Loads the points of all players in all rounds, used to build the leaderboard on startup.
+     * 
+     * @return A Future containing one JsonObject per DisplayInfo row (controller_id, player_id, username, round, points).
+     */
+    public Future<JsonArray> loadDisplayInfo() {
+        String query = "SELECT controller_id, player_id, username, round, points FROM DisplayInfo WHERE player_id IS NOT NULL";
+        return run("loadDisplayInfo", connection -> connection.query(query)
+            .execute())
+            .map(rows -> {
+                JsonArray result = new JsonArray();
+                for (Row row : rows) {
+                    result.add(new JsonObject()
+                        .put("controller_id", row.getString("controller_id"))
+                        .put("player_id", row.getInteger("player_id"))
+                        .put("username", row.getString("username"))
+                        .put("round", row.getInteger("round"))
+                        .put("points", row.getInteger("points")));
+                }
+                return result;
+            })
+            .onFailure(cause -> logger.error("Failed to load DisplayInfo: {}", cause.getMessage()));
+    }
+
+    /**
+     * @ingroup object_repository
+     * @brief Loads the stored high scores of all players that have one.
+     * 
+     * @return A Future containing one JsonObject per player (player_id, user_name, high_score).
+     */
+    public Future<JsonArray> loadHighScores() {
+        String query = "SELECT player_id, user_name, high_score FROM Players WHERE high_score > 0";
+        return run("loadHighScores", connection -> connection.query(query)
+            .execute())
+            .map(rows -> {
+                JsonArray result = new JsonArray();
+                for (Row row : rows) {
+                    result.add(new JsonObject()
+                        .put("player_id", row.getInteger("player_id"))
+                        .put("user_name", row.getString("user_name"))
+                        .put("high_score", row.getInteger("high_score")));
+                }
+                return result;
+            })
+            .onFailure(cause -> logger.error("Failed to load high scores: {}", cause.getMessage()));
+    }
+
     /**
      * @ingroup object_repository
      * @brief Retrieves the winner of the current round.
@@ -690,7 +919,7 @@ public class ObjectRepository {
      */
     public void getRoundWinner(Handler<AsyncResult<JsonObject>> resultHandler) {
         String query = "SELECT round, username FROM DisplayInfo WHERE round = (SELECT MAX(round) FROM DisplayInfo) ORDER BY points DESC LIMIT 1";
-        jdbcPool.preparedQuery(query).execute(ar -> {
+        run("getRoundWinner", connection -> connection.preparedQuery(query).execute()).onComplete(ar -> {
           if (ar.succeeded()) {
             RowSet<Row> rows = ar.result();
             if (rows.size() > 0) {
@@ -711,6 +940,108 @@ public class ObjectRepository {
     }
 
 
+
+    /**
+     * @ingroup object_repository
+     * @brief Moves one batch of finished sessions and their points into the history tables.
+     * 
+     * Locks the oldest sessions that ended more than minAgeSeconds ago, copies them and their DisplayInfo rows to
+     * SessionsHistory and DisplayInfoHistory and deletes them from the live tables, all in one transaction.
+     * The batch size bounds how long the locks are held.
+     * 
+     * @param minAgeSeconds Time a session must have been finished before it is archived.
+     * @param batchSize Maximum number of sessions to move.
+     * @return A Future containing the number of archived sessions.
+     */
+    public Future<Integer> archiveFinishedSessions(int minAgeSeconds, int batchSize) {
+        String selectQuery = "SELECT session_id FROM Sessions WHERE end_time < NOW() - INTERVAL ? SECOND ORDER BY end_time LIMIT ? FOR UPDATE";
+
+        return runInTransaction("archiveFinishedSessions", connection -> connection.preparedQuery(selectQuery)
+            .execute(Tuple.of(minAgeSeconds, batchSize))
+            .compose(rows -> {
+                if (rows.size() == 0) {
+                    return Future.succeededFuture(0);
+                }
+
+                StringBuilder inList = new StringBuilder("(");
+                Tuple ids = Tuple.tuple();
+                for (Row row : rows) {
+                    inList.append(ids.size() == 0 ? "?" : ", ?");
+                    ids.addInteger(row.getInteger("session_id"));
+                }
+                inList.append(")");
+                String sessionJoin = " FROM DisplayInfo d JOIN Sessions s ON s.controller_id = d.controller_id AND s.player_id = d.player_id AND s.round = d.round"
+                    + " WHERE s.session_id IN " + inList;
+
+                // DisplayInfo references Sessions, so its rows go first
+                return connection.preparedQuery("INSERT INTO DisplayInfoHistory (controller_id, player_id, points, round, username, last_update, end_time)"
+                        + " SELECT d.controller_id, d.player_id, d.points, d.round, d.username, d.last_update, s.end_time" + sessionJoin)
+                    .execute(ids)
+                    .compose(v -> connection.preparedQuery("DELETE d" + sessionJoin).execute(ids))
+                    .compose(v -> connection.preparedQuery("INSERT INTO SessionsHistory (session_id, player_id, controller_id, login_method, start_time, end_time, round)"
+                            + " SELECT session_id, player_id, controller_id, login_method, start_time, end_time, round FROM Sessions WHERE session_id IN " + inList)
+                        .execute(ids))
+                    .compose(v -> connection.preparedQuery("DELETE FROM Sessions WHERE session_id IN " + inList).execute(ids))
+                    .map(rows.size());
+            }))
+            .onFailure(cause -> logger.error("Failed to archive finished sessions: {}", cause.getMessage()));
+    }
+
+    /**
+     * @ingroup object_repository
+     * @brief Adds the monthly partitions of the history tables up to a given month.
+     * 
+     * Splits the missing months off the p_future partition of SessionsHistory and DisplayInfoHistory. When a table
+     * has no monthly partition yet, the first one starts with the current month and also takes all older rows.
+     * 
+     * @param through Last month that must have its own partition.
+     * @return A Future indicating the result of the partition changes.
+     */
+    public Future<Void> ensureHistoryPartitions(YearMonth through) {
+        return ensurePartitions("SessionsHistory", through)
+            .compose(v -> ensurePartitions("DisplayInfoHistory", through));
+    }
+
+    private Future<Void> ensurePartitions(String table, YearMonth through) {
+        String query = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+        return run("ensureHistoryPartitions", connection -> connection.preparedQuery(query)
+            .execute(Tuple.of(table))
+            .compose(rows -> {
+                YearMonth latest = null;
+                boolean partitioned = false;
+                for (Row row : rows) {
+                    String name = row.getString("PARTITION_NAME");
+                    if ("p_future".equals(name)) {
+                        partitioned = true;
+                    } else if (name != null && name.startsWith("p")) {
+                        YearMonth month = YearMonth.parse(name.substring(1), PARTITION_MONTH);
+                        latest = latest == null || month.isAfter(latest) ? month : latest;
+                    }
+                }
+                if (!partitioned) {
+                    logger.warn("Table {} has no p_future partition, history partitions are not maintained", table);
+                    return Future.succeededFuture();
+                }
+
+                YearMonth first = latest == null ? YearMonth.now() : latest.plusMonths(1);
+                if (first.isAfter(through)) {
+                    return Future.succeededFuture();
+                }
+                // Partition bounds are generated dates, never user input, so the DDL can be built as text
+                StringBuilder ddl = new StringBuilder("ALTER TABLE ").append(table).append(" REORGANIZE PARTITION p_future INTO (");
+                for (YearMonth month = first; !month.isAfter(through); month = month.plusMonths(1)) {
+                    ddl.append("PARTITION p").append(month.format(PARTITION_MONTH))
+                        .append(" VALUES LESS THAN ('").append(month.plusMonths(1).atDay(1)).append("'), ");
+                }
+                ddl.append("PARTITION p_future VALUES LESS THAN (MAXVALUE))");
+                logger.info("Adding partitions {} to {} of {}", first, through, table);
+                return connection.query(ddl.toString()).execute().<Void>mapEmpty();
+            }))
+            .onFailure(cause -> logger.error("Failed to add partitions to {}: {}", table, cause.getMessage()));
+    }
+
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
 }  
 
   /** @} */ // End of object_repository group  
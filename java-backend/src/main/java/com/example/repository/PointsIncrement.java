@@ -0,0 +1,57 @@
+/**
+ * @file PointsIncrement.java
+ * @brief Accumulated point delta of one controller in one round, written by ObjectRepository.upsertPoints.
+ *
+ * @ingroup object_repository
+ */
+package com.example.repository;
+
+/**
+ * @ingroup object_repository
+ * @brief Points to add to the DisplayInfo row identified by controller ID and round.
+ */
+public class PointsIncrement {
+
+    private final String controllerId;
+    private final int playerId;
+    private final int round;
+    private final String username;
+    private final int delta;
+
+    /**
+     * @brief Constructor for PointsIncrement
+     *
+     * @param controllerId The unique ID of the controller.
+     * @param playerId The unique ID of the player.
+     * @param round The round the points were scored in.
+     * @param username The username of the player.
+     * @param delta The number of points to add.
+     */
+    public PointsIncrement(String controllerId, int playerId, int round, String username, int delta) {
+        this.controllerId = controllerId;
+        this.playerId = playerId;
+        this.round = round;
+        this.username = username;
+        this.delta = delta;
+    }
+
+    public String getControllerId() {
+        return controllerId;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * @file ControllerPresenceRegistry.java
+ * @brief Tracks which controllers are alive and expires silent ones with a hashed timer wheel.
+ *
+ * Heartbeats only touch memory: the registry moves the controller to the wheel slot of its new deadline, which
+ * is O(1). A periodic tick looks at a single slot and expires the controllers whose deadline has passed, again
+ * without scanning all controllers. Status changes and heartbeat timestamps are collected and written to the
+ * Controllers table in batches.
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.repository.ControllerStatus;
+import com.example.repository.ObjectRepository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+/**
+ * @ingroup ObjectService
+ * The ControllerPresenceRegistry keeps the set of live controllers.
+ *
+ * The wheel has one slot per tick of the heartbeat timeout plus one, so every controller in the slot under the
+ * cursor is either expired or has been moved to a later slot by a newer heartbeat.
+ *
+ * A controller's entry is removed and its status queued while holding the lock of its Presence, and a heartbeat
+ * only reschedules an entry that is still registered, so the queued statuses of a controller follow the order of
+ * its state changes. Statuses whose write failed are queued again unless a newer status was queued meanwhile.
+ */
+public class ControllerPresenceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ControllerPresenceRegistry.class);
+    private static final int MAX_ROWS_PER_WRITE = 500;
+
+    private final Vertx vertx;
+    private final ObjectRepository objectRepository;
+    private final long tickMs;
+    private final int ticksPerTimeout;
+    private final List<Set<String>> wheel;
+    private final Map<String, Presence> controllers = new ConcurrentHashMap<>();
+    private final List<Handler<String>> onlineHandlers = new CopyOnWriteArrayList<>();
+    private final List<Handler<String>> offlineHandlers = new CopyOnWriteArrayList<>();
+    private final long flushIntervalMs;
+    private long tickTimerId = -1;
+    private long flushTimerId = -1;
+
+    private volatile long currentTick = 0;
+    private Map<String, ControllerStatus> pendingWrites = new LinkedHashMap<>();
+    private Future<Void> inFlight;
+
+    /**
+     * Constructor for ControllerPresenceRegistry. Controllers only expire once start() has been called.
+     * @param vertx the Vert.x instance used for the wheel and flush timers.
+     * @param objectRepository the repository used to write status changes.
+     * @param heartbeatTimeoutMs time without heartbeat after which a controller is considered offline.
+     * @param tickMs resolution of the timer wheel.
+     * @param flushIntervalMs how often collected status changes are written to the database.
+     */
+    public ControllerPresenceRegistry(Vertx vertx, ObjectRepository objectRepository, long heartbeatTimeoutMs, long tickMs, long flushIntervalMs) {
+        this.vertx = vertx;
+        this.objectRepository = objectRepository;
+        this.tickMs = tickMs;
+        this.ticksPerTimeout = (int) Math.max(1, (heartbeatTimeoutMs + tickMs - 1) / tickMs);
+        this.wheel = new ArrayList<>(ticksPerTimeout + 1);
+        for (int i = 0; i <= ticksPerTimeout; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * Starts the wheel and flush timers. Does nothing if they are running already.
+     * @return this registry.
+     */
+    public synchronized ControllerPresenceRegistry start() {
+        if (tickTimerId >= 0) {
+            return this;
+        }
+        tickTimerId = vertx.setPeriodic(tickMs, id -> tick());
+        flushTimerId = vertx.setPeriodic(flushIntervalMs, id -> {
+            // Skip the tick while the previous write is still running instead of queueing behind it
+            synchronized (this) {
+                if (inFlight != null) {
+                    return;
+                }
+            }
+            flush();
+        });
+        return this;
+    }
+
+    /**
+     * Registers a handler called with the controller ID whenever a controller comes online.
+     * @param handler the handler.
+     */
+    public void onOnline(Handler<String> handler) {
+        onlineHandlers.add(handler);
+    }
+
+    /**
+     * Registers a handler called with the controller ID whenever a controller goes offline.
+     * @param handler the handler.
+     */
+    public void onOffline(Handler<String> handler) {
+        offlineHandlers.add(handler);
+    }
+
+    /**
+     * Records a sign of life from a controller (connect, reconnect or heartbeat).
+     * A controller that was not known yet comes online.
+     * @param controllerId the ID of the controller.
+     */
+    public void heartbeat(String controllerId) {
+        long deadline = currentTick + ticksPerTimeout;
+        boolean cameOnline;
+        Presence presence;
+        do {
+            presence = controllers.get(controllerId);
+            cameOnline = false;
+            if (presence == null) {
+                Presence created = new Presence(deadline);
+                presence = controllers.putIfAbsent(controllerId, created);
+                if (presence == null) {
+                    presence = created;
+                    cameOnline = true;
+                }
+            }
+            // The entry may expire or be disconnected before it is rescheduled; the heartbeat then starts a new one
+        } while (!reschedule(controllerId, presence, deadline, "online"));
+
+        if (cameOnline) {
+            logger.info("Controller online: {}", controllerId);
+            onlineHandlers.forEach(handler -> handler.handle(controllerId));
+        }
+    }
+
+    /**
+     * Starts tracking controllers without emitting online events, e.g. the controllers marked online in the database
+     * at startup. They expire like any other controller if no heartbeat follows.
+     * @param controllerIds the IDs of the controllers.
+     */
+    public void track(List<String> controllerIds) {
+        long deadline = currentTick + ticksPerTimeout;
+        for (String controllerId : controllerIds) {
+            Presence presence = new Presence(deadline);
+            if (controllers.putIfAbsent(controllerId, presence) == null) {
+                reschedule(controllerId, presence, deadline, null);
+            }
+        }
+    }
+
+    /**
+     * Marks a controller offline immediately, e.g. after an explicit disconnect message.
+     * @param controllerId the ID of the controller.
+     */
+    public void disconnect(String controllerId) {
+        Presence presence = controllers.get(controllerId);
+        if (presence == null) {
+            return;
+        }
+        boolean removed;
+        synchronized (presence) {
+            removed = controllers.remove(controllerId, presence);
+            if (removed) {
+                if (presence.slot >= 0) {
+                    wheel.get(presence.slot).remove(controllerId);
+                }
+                queueWrite(controllerId, "offline");
+            }
+        }
+        if (removed) {
+            offlineHandlers.forEach(handler -> handler.handle(controllerId));
+        }
+    }
+
+    /**
+     * @param controllerId the ID of the controller.
+     * @return true if the controller has sent a sign of life within the heartbeat timeout.
+     */
+    public boolean isActive(String controllerId) {
+        return controllers.containsKey(controllerId);
+    }
+
+    /**
+     * @return a read-only view of the IDs of all live controllers.
+     */
+    public Set<String> activeControllers() {
+        return Collections.unmodifiableSet(controllers.keySet());
+    }
+
+    /**
+     * Moves a controller to the wheel slot of its new deadline and queues its status, unless its entry was removed.
+     * @return false if the entry is no longer registered.
+     */
+    private boolean reschedule(String controllerId, Presence presence, long deadline, String status) {
+        int slot = (int) (deadline % wheel.size());
+        synchronized (presence) {
+            if (controllers.get(controllerId) != presence) {
+                return false;
+            }
+            presence.deadline = deadline;
+            if (presence.slot != slot) {
+                if (presence.slot >= 0) {
+                    wheel.get(presence.slot).remove(controllerId);
+                }
+                presence.slot = slot;
+            }
+            wheel.get(slot).add(controllerId);
+            if (status != null) {
+                queueWrite(controllerId, status);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Advances the wheel by one slot and expires the controllers whose deadline has passed.
+     */
+    private void tick() {
+        long tick = ++currentTick;
+        Set<String> bucket = wheel.get((int) (tick % wheel.size()));
+        for (String controllerId : bucket) {
+            Presence presence = controllers.get(controllerId);
+            if (presence == null) {
+                bucket.remove(controllerId);
+                continue;
+            }
+            boolean removed = false;
+            synchronized (presence) {
+                if (presence.deadline <= tick) {
+                    bucket.remove(controllerId);
+                    removed = controllers.remove(controllerId, presence);
+                    if (removed) {
+                        queueWrite(controllerId, "offline");
+                    }
+                }
+            }
+            if (removed) {
+                logger.info("Controller {} missed its heartbeats for {} ms, marking offline", controllerId, ticksPerTimeout * tickMs);
+                offlineHandlers.forEach(handler -> handler.handle(controllerId));
+            }
+        }
+    }
+
+    private synchronized void queueWrite(String controllerId, String status) {
+        pendingWrites.put(controllerId, new ControllerStatus(controllerId, status, LocalDateTime.now()));
+    }
+
+    /**
+     * Queues statuses whose write failed again, unless a newer status of the controller is queued already.
+     */
+    private synchronized void requeue(List<ControllerStatus> statuses) {
+        for (ControllerStatus status : statuses) {
+            pendingWrites.putIfAbsent(status.getControllerId(), status);
+        }
+    }
+
+    /**
+     * Writes the collected status changes and heartbeat timestamps, one row per controller.
+     * Only one write is in flight at a time; a flush requested meanwhile runs after it.
+     * @return a Future that completes when the write has finished.
+     */
+    public Future<Void> flush() {
+        List<ControllerStatus> statuses;
+        synchronized (this) {
+            if (inFlight != null) {
+                return inFlight.transform(ar -> flush());
+            }
+            if (pendingWrites.isEmpty()) {
+                return Future.succeededFuture();
+            }
+            statuses = new ArrayList<>(pendingWrites.values());
+            pendingWrites = new LinkedHashMap<>();
+        }
+
+        List<Future<Void>> writes = new ArrayList<>();
+        for (int from = 0; from < statuses.size(); from += MAX_ROWS_PER_WRITE) {
+            List<ControllerStatus> chunk = statuses.subList(from, Math.min(statuses.size(), from + MAX_ROWS_PER_WRITE));
+            // The next flush retries a failed chunk
+            writes.add(objectRepository.updateControllerStatuses(chunk).onFailure(cause -> requeue(chunk)));
+        }
+        Future<Void> write = Future.join(writes)
+            .<Void>mapEmpty()
+            .onFailure(cause -> logger.error("Failed to write status of {} controllers, retrying with the next flush: {}", statuses.size(), cause.getMessage()));
+        synchronized (this) {
+            inFlight = write;
+        }
+        write.onComplete(ar -> {
+            synchronized (this) {
+                inFlight = null;
+            }
+        });
+        return write;
+    }
+
+    /**
+     * Stops the timers and writes the remaining status changes.
+     * @return a Future that completes when the last write has finished.
+     */
+    public Future<Void> close() {
+        synchronized (this) {
+            if (tickTimerId >= 0) {
+                vertx.cancelTimer(tickTimerId);
+                vertx.cancelTimer(flushTimerId);
+            }
+        }
+        return flush();
+    }
+
+    /**
+     * Deadline and current wheel slot of one controller.
+     */
+    private static class Presence {
+        private long deadline;
+        private int slot = -1;
+
+        Presence(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * @file GameStateStore.java
+ * @brief In-memory, authoritative game state keyed by controller ID.
+ *
+ * The store holds the active session of every controller (player, username, round and points) so that
+ * scoring can be decided without any database round-trip. MariaDB is only written asynchronously afterwards
+ * and is used to rebuild the store when the backend starts.
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @ingroup ObjectService
+ * The GameStateStore keeps one PlayerState per controller with an active session.
+ */
+public class GameStateStore {
+
+    private final Map<String, PlayerState> states = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the sessions loaded from the database. Of several open sessions of a controller the one with the
+     * highest round is used. The MQTT handlers may already be running while they load, so the state of a
+     * controller that is in the store already is newer than its rows and is kept.
+     * @param sessions rows with controller_id, player_id, user_name, round, login_method and points.
+     * @return the number of sessions added.
+     */
+    public int merge(JsonArray sessions) {
+        Map<String, JsonObject> latest = new HashMap<>();
+        for (int i = 0; i < sessions.size(); i++) {
+            JsonObject session = sessions.getJsonObject(i);
+            latest.merge(session.getString("controller_id"), session,
+                (current, candidate) -> candidate.getInteger("round", 1) > current.getInteger("round", 1) ? candidate : current);
+        }
+        int added = 0;
+        for (Map.Entry<String, JsonObject> entry : latest.entrySet()) {
+            if (states.putIfAbsent(entry.getKey(), toState(entry.getValue())) == null) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Stores the state described by a single session row, replacing any previous state of the controller.
+     * @param session row with controller_id, player_id, user_name, round, login_method and points.
+     * @return the stored state.
+     */
+    public PlayerState put(JsonObject session) {
+        PlayerState state = toState(session);
+        states.put(state.getControllerId(), state);
+        return state;
+    }
+
+    private static PlayerState toState(JsonObject session) {
+        return new PlayerState(
+            session.getString("controller_id"),
+            session.getInteger("player_id"),
+            session.getString("user_name"),
+            session.getString("login_method"),
+            session.getInteger("round", 1),
+            session.getInteger("points", 0));
+    }
+
+    /**
+     * Starts a fresh session for a controller at round 1 with no points.
+     * @param controllerId the ID of the controller.
+     * @param playerId the ID of the player using the controller.
+     * @param username the name of the player.
+     * @param loginMethod how the player logged in ("RFID" or "Frontend").
+     * @return the stored state.
+     */
+    public PlayerState startSession(String controllerId, int playerId, String username, String loginMethod) {
+        PlayerState state = new PlayerState(controllerId, playerId, username, loginMethod, 1, 0);
+        states.put(controllerId, state);
+        return state;
+    }
+
+    /**
+     * Returns the state of a controller.
+     * @param controllerId the ID of the controller.
+     * @return the state, or null if the controller has no active session in memory.
+     */
+    public PlayerState get(String controllerId) {
+        return states.get(controllerId);
+    }
+
+    /**
+     * Drops the state of a controller, forcing the next lookup to go to the database.
+     * @param controllerId the ID of the controller.
+     */
+    public void remove(String controllerId) {
+        states.remove(controllerId);
+    }
+
+    /**
+     * @return a read-only view of all states.
+     */
+    public Collection<PlayerState> all() {
+        return Collections.unmodifiableCollection(states.values());
+    }
+
+    /**
+     * @return the number of controllers with an active session.
+     */
+    public int size() {
+        return states.size();
+    }
+}
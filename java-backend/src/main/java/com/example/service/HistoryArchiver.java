@@ -0,0 +1,143 @@
+/**
+ * @file HistoryArchiver.java
+ * @brief Background job that moves finished sessions out of the live tables into the partitioned history tables.
+ *
+ * Sessions and DisplayInfo get one row per player and round and were never cleaned up, so every query that
+ * scans them got slower with each week of play. The archiver keeps them down to the running games: sessions that
+ * ended longer ago than the archival delay are moved to SessionsHistory and DisplayInfoHistory, which are
+ * partitioned by month and stay queryable (see the DisplayInfoAll view).
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.time.YearMonth;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.repository.ObjectRepository;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+/**
+ * @ingroup ObjectService
+ * The HistoryArchiver runs the archival on a timer, in batches of bounded size.
+ *
+ * Every batch is its own transaction, so the live tables are only locked for a short time and the game keeps
+ * writing in between. A run stops after maxBatchesPerRun batches and the next tick picks up the rest, so a large
+ * backlog after an upgrade is worked off gradually. At most one run is in flight at any time.
+ */
+public class HistoryArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryArchiver.class);
+
+    private final Vertx vertx;
+    private final ObjectRepository objectRepository;
+    private final int minAgeSeconds;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long intervalMs;
+    private long timerId = -1;
+
+    private YearMonth partitionsReadyThrough;
+    private Future<Void> inFlight;
+    private boolean closed = false;
+
+    /**
+     * Constructor for HistoryArchiver. The archival only runs periodically once start() has been called.
+     * @param vertx the Vert.x instance used for the archival timer.
+     * @param objectRepository the repository that moves the rows.
+     * @param intervalMs how often the archival runs.
+     * @param minAgeSeconds time a session must have been finished before it is archived.
+     * @param batchSize maximum number of sessions moved per transaction.
+     * @param maxBatchesPerRun maximum number of batches per run.
+     */
+    public HistoryArchiver(Vertx vertx, ObjectRepository objectRepository, long intervalMs, int minAgeSeconds, int batchSize, int maxBatchesPerRun) {
+        this.vertx = vertx;
+        this.objectRepository = objectRepository;
+        this.minAgeSeconds = minAgeSeconds;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchesPerRun = Math.max(1, maxBatchesPerRun);
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Starts the archival timer. Does nothing if it is running already or the archiver is closed.
+     * @return this archiver.
+     */
+    public synchronized HistoryArchiver start() {
+        if (timerId < 0 && !closed) {
+            timerId = vertx.setPeriodic(intervalMs, id -> archive());
+        }
+        return this;
+    }
+
+    /**
+     * Runs the archival now, unless a run is in flight already.
+     * @return a Future with the number of sessions archived by this run, 0 if none was started.
+     */
+    public synchronized Future<Integer> archive() {
+        if (closed || inFlight != null) {
+            return Future.succeededFuture(0);
+        }
+        Future<Integer> run = ensurePartitions()
+            .compose(v -> archiveBatches(0, 0))
+            .onSuccess(archived -> {
+                if (archived > 0) {
+                    logger.info("Archived {} finished sessions", archived);
+                }
+            })
+            .onFailure(cause -> logger.error("History archival failed: {}", cause.getMessage()));
+        inFlight = run.<Void>mapEmpty().otherwiseEmpty();
+        inFlight.onComplete(ar -> {
+            synchronized (this) {
+                inFlight = null;
+            }
+        });
+        return run;
+    }
+
+    /**
+     * Makes sure the history tables have a partition for this and the next month.
+     * A failure is logged and the rows land in the p_future partition until the next attempt succeeds.
+     */
+    private Future<Void> ensurePartitions() {
+        YearMonth through = YearMonth.now().plusMonths(1);
+        if (through.equals(partitionsReadyThrough)) {
+            return Future.succeededFuture();
+        }
+        return objectRepository.ensureHistoryPartitions(through)
+            .onSuccess(v -> partitionsReadyThrough = through)
+            .otherwiseEmpty();
+    }
+
+    private Future<Integer> archiveBatches(int batches, int archived) {
+        return objectRepository.archiveFinishedSessions(minAgeSeconds, batchSize).compose(count -> {
+            int total = archived + count;
+            // A short batch means the backlog is gone
+            if (count < batchSize || batches + 1 >= maxBatchesPerRun || isClosed()) {
+                return Future.succeededFuture(total);
+            }
+            return archiveBatches(batches + 1, total);
+        });
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops the timer and waits for the batch in flight.
+     * @return a Future that completes once no batch is running anymore.
+     */
+    public synchronized Future<Void> close() {
+        closed = true;
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+        return inFlight != null ? inFlight : Future.succeededFuture();
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * @file Leaderboard.java
+ * @brief In-memory ranking of the points of every round and of the all-time high scores.
+ *
+ * The leaderboard is loaded from DisplayInfo and Players once at startup and afterwards updated on every point
+ * award, so round winners, rankings and high scores are answered without querying the database.
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @ingroup ObjectService
+ * The Leaderboard class keeps one sorted board per round plus the best score of every player.
+ *
+ * Every change increments a version number, which the HTTP layer uses as ETag.
+ */
+public class Leaderboard {
+
+    private static final Comparator<Entry> RANKING = Comparator
+        .comparingInt(Entry::getPoints).reversed()
+        .thenComparing(Entry::getControllerId);
+
+    private final NavigableMap<Integer, RoundBoard> rounds = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Entry> highScores = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Records the points a player has reached in a round, e.g. right after a point was awarded.
+     * @param controllerId the ID of the controller.
+     * @param playerId the ID of the player.
+     * @param username the name of the player.
+     * @param round the round the points belong to.
+     * @param points the player's points in that round.
+     */
+    public void record(String controllerId, int playerId, String username, int round, int points) {
+        Entry entry = new Entry(controllerId, playerId, username, round, points);
+        rounds.computeIfAbsent(round, r -> new RoundBoard()).update(entry);
+        highScores.merge(playerId, entry, (current, candidate) -> candidate.points > current.points ? candidate : current);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Lowers the points of a player in a round after a point was taken back because it could not be written.
+     * A high score reached with the taken-back point is lowered to the corrected points.
+     * @param controllerId the ID of the controller.
+     * @param playerId the ID of the player.
+     * @param username the name of the player.
+     * @param round the round the points belong to.
+     * @param points the player's corrected points in that round.
+     */
+    public void correct(String controllerId, int playerId, String username, int round, int points) {
+        Entry entry = new Entry(controllerId, playerId, username, round, points);
+        rounds.computeIfAbsent(round, r -> new RoundBoard()).update(entry);
+        highScores.computeIfPresent(playerId, (id, current) -> current.round == round
+            && controllerId.equals(current.controllerId) && current.points > points ? entry : current);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Records the all-time high score of a player, as stored in the Players table.
+     * @param playerId the ID of the player.
+     * @param username the name of the player.
+     * @param highScore the stored high score.
+     */
+    public void recordHighScore(int playerId, String username, int highScore) {
+        Entry entry = new Entry(null, playerId, username, 0, highScore);
+        highScores.merge(playerId, entry, (current, candidate) -> candidate.points > current.points ? candidate : current);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Adds the rows loaded from the database. Points may have been recorded while they loaded; a row never
+     * lowers the points already recorded for its controller and round.
+     * @param displayInfo rows with controller_id, player_id, username, round and points.
+     * @param players rows with player_id, user_name and high_score.
+     */
+    public void merge(JsonArray displayInfo, JsonArray players) {
+        for (int i = 0; i < displayInfo.size(); i++) {
+            JsonObject row = displayInfo.getJsonObject(i);
+            Entry entry = new Entry(row.getString("controller_id"), row.getInteger("player_id"), row.getString("username"),
+                row.getInteger("round"), row.getInteger("points"));
+            rounds.computeIfAbsent(entry.round, r -> new RoundBoard()).mergeLoaded(entry);
+            highScores.merge(entry.playerId, entry, (current, candidate) -> candidate.points > current.points ? candidate : current);
+        }
+        version.incrementAndGet();
+        for (int i = 0; i < players.size(); i++) {
+            JsonObject row = players.getJsonObject(i);
+            recordHighScore(row.getInteger("player_id"), row.getString("user_name"), row.getInteger("high_score"));
+        }
+    }
+
+    /**
+     * @return the number of the latest round with points, or 0 if no points were scored yet.
+     */
+    public int latestRound() {
+        Map.Entry<Integer, RoundBoard> latest = rounds.lastEntry();
+        return latest == null ? 0 : latest.getKey();
+    }
+
+    /**
+     * @return the best player of the latest round as JsonObject (round, name, points), or null if there is none.
+     */
+    public JsonObject roundWinner() {
+        List<Entry> top = top(latestRound(), 1);
+        if (top.isEmpty()) {
+            return null;
+        }
+        Entry winner = top.get(0);
+        return new JsonObject()
+            .put("round", winner.round)
+            .put("name", winner.username)
+            .put("points", winner.points);
+    }
+
+    /**
+     * @param round the round.
+     * @param limit the maximum number of entries.
+     * @return the best entries of a round, best first.
+     */
+    public List<Entry> top(int round, int limit) {
+        RoundBoard board = rounds.get(round);
+        return board == null ? List.of() : board.top(limit);
+    }
+
+    /**
+     * @param limit the maximum number of entries.
+     * @return the best all-time high scores, best first. The round of an entry is the round it was reached in, if known.
+     */
+    public List<Entry> topHighScores(int limit) {
+        List<Entry> entries = new ArrayList<>(highScores.values());
+        entries.sort(Comparator.comparingInt(Entry::getPoints).reversed().thenComparingInt(Entry::getPlayerId));
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    /**
+     * @param playerId the ID of the player.
+     * @return the best score of the player, 0 if the player never scored.
+     */
+    public int highScore(int playerId) {
+        Entry entry = highScores.get(playerId);
+        return entry == null ? 0 : entry.points;
+    }
+
+    /**
+     * @return a number that changes whenever the leaderboard changes.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Sorted entries of one round, at most one per controller.
+     */
+    private static class RoundBoard {
+        private final TreeSet<Entry> ranking = new TreeSet<>(RANKING);
+        private final Map<String, Entry> byController = new HashMap<>();
+
+        synchronized void update(Entry entry) {
+            Entry previous = byController.put(entry.controllerId, entry);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            ranking.add(entry);
+        }
+
+        synchronized void mergeLoaded(Entry entry) {
+            Entry previous = byController.get(entry.controllerId);
+            if (previous == null || previous.points < entry.points) {
+                update(entry);
+            }
+        }
+
+        synchronized List<Entry> top(int limit) {
+            List<Entry> top = new ArrayList<>(Math.min(limit, ranking.size()));
+            for (Entry entry : ranking) {
+                if (top.size() >= limit) {
+                    break;
+                }
+                top.add(entry);
+            }
+            return top;
+        }
+    }
+
+    /**
+     * Points of one player, immutable.
+     */
+    public static class Entry {
+        private final String controllerId;
+        private final int playerId;
+        private final String username;
+        private final int round;
+        private final int points;
+
+        Entry(String controllerId, int playerId, String username, int round, int points) {
+            this.controllerId = controllerId;
+            this.playerId = playerId;
+            this.username = username;
+            this.round = round;
+            this.points = points;
+        }
+
+        public String getControllerId() {
+            return controllerId;
+        }
+
+        public int getPlayerId() {
+            return playerId;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getRound() {
+            return round;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        /**
+         * @return the entry as JsonObject (controllerId, playerId, username, round, points).
+         */
+        public JsonObject toJson() {
+            return new JsonObject()
+                .put("controllerId", controllerId)
+                .put("playerId", playerId)
+                .put("username", username)
+                .put("round", round)
+                .put("points", points);
+        }
+    }
+}
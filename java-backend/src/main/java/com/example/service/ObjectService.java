@@ -16,9 +16,19 @@
 
 package com.example.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
+import com.example.game.ColorSequence;
+import com.example.journal.GameJournal;
+import com.example.journal.PointsSnapshot;
 import com.example.repository.ObjectRepository;
 
 import io.vertx.core.AsyncResult;
@@ -40,7 +50,16 @@ public class ObjectService {
     private static final Logger logger = LoggerFactory.getLogger(ObjectService.class);
 
     private final ObjectRepository objectRepository;
-    private static final List<String> COLORS = List.of("RED", "GREEN", "BLUE", "YELLOW");
+    private final ScoreWriteBehindBuffer scoreBuffer;
+    private final GameJournal journal;
+    private final GameStateStore gameStateStore = new GameStateStore();
+    private final Leaderboard leaderboard = new Leaderboard();
+    private volatile boolean leaderboardLoaded = false;
+    private final LongAdder rejectedPoints = new LongAdder();
+    private final LongAdder droppedPoints = new LongAdder();
+    private final Set<String> assignedControllers = ConcurrentHashMap.newKeySet();
+    private volatile boolean assignmentsLoaded = false;
+    private volatile VirtualThreadServices virtualThreads;
     private final Random random = new Random();
     private final int minSequenceLength = 1; // Minimum sequence length
     private final int maxSequenceLength = 4; // Maximum sequence length
@@ -50,7 +69,115 @@ public class ObjectService {
      * @param objectRepository the repository to handle database operations.
      */
     public ObjectService(ObjectRepository objectRepository) {
+        this(objectRepository, null, GameJournal.disabled());
+    }
+
+    /**
+     * Constructor for ObjectService with write-behind batching of point updates.
+     * @param objectRepository the repository to handle database operations.
+     * @param scoreBuffer the buffer that batches point updates, or null to write every point immediately.
+     * @param journal the game journal, corrected when a point is taken back.
+     */
+    public ObjectService(ObjectRepository objectRepository, ScoreWriteBehindBuffer scoreBuffer, GameJournal journal) {
         this.objectRepository = objectRepository;
+        this.scoreBuffer = scoreBuffer;
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the in-memory game state used for scoring.
+     * @return the game state store.
+     */
+    public GameStateStore getGameStateStore() {
+        return gameStateStore;
+    }
+
+    /**
+     * Rebuilds the in-memory game state from the Sessions and DisplayInfo tables. The MQTT handlers may run while
+     * it loads; sessions and points they changed meanwhile are newer than the loaded rows and are kept.
+     * @return a Future that completes once the store has been populated.
+     */
+    public Future<Void> loadGameState() {
+        Future<Void> sessions = objectRepository.loadActiveSessions()
+            .onSuccess(rows -> {
+                int added = gameStateStore.merge(rows);
+                logger.info("Game state loaded {} of {} active sessions, {} in memory", added, rows.size(), gameStateStore.size());
+            })
+            .mapEmpty();
+        return Future.all(sessions, loadLeaderboard(), loadAssignments()).mapEmpty();
+    }
+
+    /**
+     * Loads the controllers that have an assignment into the in-memory index used by the usage check.
+     * Controllers reserved before the load completes stay in the index.
+     * @return a Future that completes once the index has been populated.
+     */
+    private Future<Void> loadAssignments() {
+        return objectRepository.loadAssignedControllers()
+            .onSuccess(controllerIds -> {
+                assignedControllers.addAll(controllerIds);
+                assignmentsLoaded = true;
+                logger.info("Loaded {} assigned controllers", controllerIds.size());
+            })
+            .mapEmpty();
+    }
+
+    /**
+     * Builds the leaderboard from the DisplayInfo and Players tables. Until it has been loaded,
+     * round winners are read from the database.
+     * @return a Future that completes once the leaderboard has been populated.
+     */
+    private Future<Void> loadLeaderboard() {
+        return Future.all(objectRepository.loadDisplayInfo(), objectRepository.loadHighScores())
+            .onSuccess(rows -> {
+                leaderboard.merge(rows.resultAt(0), rows.resultAt(1));
+                leaderboardLoaded = true;
+                logger.info("Leaderboard loaded up to round {}", leaderboard.latestRound());
+            })
+            .mapEmpty();
+    }
+
+    /**
+     * Adds the points the game journal recorded but the database does not have yet, e.g. because the backend
+     * stopped before the write-behind buffer was flushed. Call after loadGameState.
+     * @param journaled the last journaled points of every controller.
+     */
+    public void restorePoints(Collection<PointsSnapshot> journaled) {
+        int restored = 0;
+        for (PointsSnapshot snapshot : journaled) {
+            PlayerState state = gameStateStore.get(snapshot.getControllerId());
+            // Points of an earlier round belong to a finished session
+            if (state == null || state.getRound() != snapshot.getRound()) {
+                continue;
+            }
+            int missing = state.raisePoints(snapshot.getPoints());
+            if (missing > 0) {
+                for (int i = 0; i < missing; i++) {
+                    if (!persistPoint(state).failed()) {
+                        restored++;
+                    }
+                }
+                leaderboard.record(state.getControllerId(), state.getPlayerId(), state.getUsername(), state.getRound(), state.getPoints());
+            }
+        }
+        if (restored > 0) {
+            logger.info("Restored {} points from the game journal", restored);
+        }
+    }
+
+    /**
+     * @return the in-memory leaderboard.
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Hands the controller and player registrations to verticles running on virtual threads.
+     * @param services the deployed virtual-thread services, or null to register with asynchronous callbacks again.
+     */
+    public void useVirtualThreads(VirtualThreadServices services) {
+        this.virtualThreads = services;
     }
     /**
      * Registers a controller.
@@ -58,6 +185,11 @@ public class ObjectService {
      * @param resultHandler handles the result of the operation.
      */
     public void registerController(String controllerId, Handler<AsyncResult<Void>> resultHandler) {
+        VirtualThreadServices virtualThreads = this.virtualThreads;
+        if (virtualThreads != null) {
+            virtualThreads.registerController(controllerId).onComplete(resultHandler);
+            return;
+        }
         // Delegate the operation to the repository
         objectRepository.insertController(controllerId, resultHandler);
     } 
@@ -80,165 +212,136 @@ public class ObjectService {
     
     /**
      * Registers a player and creates a session for them.
+     * The usage check is answered from the in-memory assignment index; the player, session and assignment
+     * rows are written in one transaction.
      * @param username the username of the player.
      * @param controllerId the controller ID associated with the player.
      * @param resultHandler handles the result of the registration and session creation.
      */
     public void registerPlayerAndCreateSession(String username, String controllerId, Handler<AsyncResult<Void>> resultHandler) {
-         // Check if the controller is already in use
-         logger.info("Check if the controller is already in use: {}",controllerId );
-         checkControllerUsage(controllerId, usageCheckResult -> {
-             if (usageCheckResult.succeeded() && usageCheckResult.result()) {
-                 // Controller is already in use, handle the error
-                 resultHandler.handle(Future.failedFuture("Controller is already in use by another player"));
-                 logger.info("Controller is already in use by another player: {}", controllerId);
-             } else {
-
-        // Call the insertPlayer method to add the player to the database
-        objectRepository.insertPlayer(username, insertPlayerResult -> {
-            if (insertPlayerResult.succeeded()) {
-                // Retrieve the playerId from the result of the insertPlayer operation
-                int playerId = insertPlayerResult.result();
-    
-                // Call the createSession method to create a session for the player
-                objectRepository.createSession(playerId, controllerId, "Frontend", createSessionResult -> {
-                    if (createSessionResult.succeeded()) {
-                        // Call the recordFrontendAssignment method to record the player's assignment to the frontend
-                        objectRepository.recordFrontendAssignment(playerId, controllerId, resultHandler);
-                    } else {
-                        // Handle the failure in creating a session by passing the cause to the result handler
-                        resultHandler.handle(Future.failedFuture(createSessionResult.cause()));
-                    }
-                });
-            } else {
-                // Handle the failure in inserting a player by passing the cause to the result handler
-                resultHandler.handle(Future.failedFuture(insertPlayerResult.cause()));
-            }
-        });
-            }
-        });
+        VirtualThreadServices virtualThreads = this.virtualThreads;
+        if (virtualThreads != null) {
+            virtualThreads.registerFrontendPlayer(username, controllerId).onComplete(resultHandler);
+            return;
+        }
+        register(controllerId, username, "Frontend", () -> objectRepository.registerFrontendPlayer(username, controllerId))
+            .onComplete(resultHandler);
     }
     /**
      * Registers a player using an RFID tag and creates a session.
-     * @param payload the payload containing player information including RFID tag.
+     * A known tag re-uses its player, an unknown one creates a player with the given username.
+     * @param username the username of the player.
+     * @param rfidTag the scanned RFID tag.
+     * @param controllerId the controller ID associated with the player.
      * @param resultHandler handles the result of the operation.
      */
-    public void registerPlayerWithRfid(String payload, Handler<AsyncResult<Void>> resultHandler) {
-        JsonObject json = new JsonObject(payload);
-        String rfidTag = json.getString("rfidTag");
-        String controllerId = json.getString("controllerId");
-        String username = json.getString("username");
-    
-        // Check if the controller is already in use
-        logger.info("Check if the controller is already in use: {}",controllerId );
-        checkControllerUsage(controllerId, usageCheckResult -> {
-            if (usageCheckResult.succeeded() && usageCheckResult.result()) {
-                // Controller is already in use, handle the error
-                resultHandler.handle(Future.failedFuture("Controller is already in use by another player"));
+    public void registerPlayerWithRfid(String username, String rfidTag, String controllerId, Handler<AsyncResult<Void>> resultHandler) {
+        VirtualThreadServices virtualThreads = this.virtualThreads;
+        if (virtualThreads != null) {
+            virtualThreads.registerRfidPlayer(username, rfidTag, controllerId).onComplete(resultHandler);
+            return;
+        }
+
+        register(controllerId, username, "RFID", () -> objectRepository.registerRfidPlayer(username, rfidTag, controllerId))
+            .onComplete(resultHandler);
+    }
+
+    /**
+     * Reserves the controller, runs the registration writes and starts the in-memory session.
+     * The reservation is given back if the writes fail, so the controller can be registered again.
+     * @param controllerId the controller to register the player on.
+     * @param username the name of the player.
+     * @param loginMethod the login method stored with the session.
+     * @param writes the repository call that writes the registration and returns the player ID.
+     * @return a Future that fails if the controller is in use or the writes failed.
+     */
+    private Future<Void> register(String controllerId, String username, String loginMethod, Supplier<Future<Integer>> writes) {
+        return reserveController(controllerId).compose(reserved -> {
+            if (!reserved) {
                 logger.info("Controller is already in use by another player: {}", controllerId);
-            } else {
-                // Proceed with the existing logic to register the player with RFID
-                objectRepository.findPlayerByRfid(rfidTag, findResult -> {
-                    if (findResult.succeeded()) {
-                        int playerId = findResult.result();
-                        if (playerId == -1) {
-                            // Player not found, create a new player with the RFID tag
-                            objectRepository.insertPlayerWithRfid(username, rfidTag, insertResult -> {
-                                if (insertResult.succeeded()) {
-                                    int newPlayerId = insertResult.result();
-                                    createRfidSession(newPlayerId, controllerId, rfidTag, resultHandler);
-                                } else {
-                                    resultHandler.handle(Future.failedFuture(insertResult.cause()));
-                                }
-                            });
-                        } else {
-                            // Player found, create a session for the existing player
-                            createRfidSession(playerId, controllerId, rfidTag, resultHandler);
-                        }
-                    } else {
-                        resultHandler.handle(Future.failedFuture(findResult.cause()));
-                    }
-                });
+                return Future.failedFuture("Controller is already in use by another player");
             }
+            return writes.get()
+                .onSuccess(playerId -> gameStateStore.startSession(controllerId, playerId, username, loginMethod))
+                .onFailure(cause -> releaseController(controllerId))
+                .mapEmpty();
         });
     }
 
-    
     /**
-     * Checks if a controller is in use.
-     * @param controllerId the ID of the controller to check.
-     * @param resultHandler handles the result of the usage check.
-     */
-    private void checkControllerUsage(String controllerId, Handler<AsyncResult<Boolean>> resultHandler) {
-        // Check if the controller is in use in the RFIDAssignments table
-        objectRepository.isControllerInUse(controllerId, rfidCheckResult -> {
-            if (rfidCheckResult.succeeded() && rfidCheckResult.result()) {
-                // Controller is in use in RFID assignments
-                resultHandler.handle(Future.succeededFuture(true));
-            } else if (rfidCheckResult.failed()) {
-                // Error in checking RFID assignments
-                resultHandler.handle(Future.failedFuture(rfidCheckResult.cause()));
-            } else {
-                // Controller is not in use in RFID assignments, check FrontendAssignments
-        objectRepository.isControllerInUseInFrontend(controllerId, frontendCheckResult -> {
-                    if (frontendCheckResult.succeeded()) {
-                        resultHandler.handle(Future.succeededFuture(frontendCheckResult.result()));
-                    } else {
-                        // Error in checking frontend assignments
-                        resultHandler.handle(Future.failedFuture(frontendCheckResult.cause()));
-                    }
-                });
-            }
-        });
+     * Marks a controller as in use unless it already is.
+     * Adding to the concurrent index is atomic, so of two simultaneous registrations on the same controller
+     * only one gets through. Until the index has been loaded, the database is asked first.
+     * @param controllerId the ID of the controller to reserve.
+     * @return a Future with true if the controller was free and is now reserved.
+     */
+    private Future<Boolean> reserveController(String controllerId) {
+        if (assignmentsLoaded) {
+            return Future.succeededFuture(reserveLoadedController(controllerId));
+        }
+        logger.debug("Check if the controller is already in use: {}", controllerId);
+        return objectRepository.isControllerAssigned(controllerId).map(inUse -> reserveCheckedController(controllerId, inUse));
     }
 
     /**
-     * Creates a session and assigns an RFID tag to the player.
-     * @param playerId the player's ID.
-     * @param controllerId the controller ID to associate.
-     * @param rfidTag the RFID tag to assign.
-     * @param resultHandler handles the result of session creation.
+     * @return true once the assignment index has been loaded and answers the usage check alone.
      */
-    private void createRfidSession(int playerId, String controllerId, String rfidTag, Handler<AsyncResult<Void>> resultHandler) {
-        // Create a new session and record RFID assignment
-        objectRepository.createSession(playerId, controllerId, "RFID", createSessionResult -> {
-            if (createSessionResult.succeeded()) {
-                objectRepository.RfidAssignments(playerId, controllerId, rfidTag, resultHandler);
-            } else {
-                resultHandler.handle(Future.failedFuture(createSessionResult.cause()));
-            }
-        });
+    boolean assignmentsLoaded() {
+        return assignmentsLoaded;
+    }
+
+    /**
+     * Reserves a controller using the loaded assignment index only.
+     * @param controllerId the ID of the controller to reserve.
+     * @return true if the controller was free and is now reserved.
+     */
+    boolean reserveLoadedController(String controllerId) {
+        return assignedControllers.add(controllerId);
+    }
+
+    /**
+     * Reserves a controller after the database has been asked whether it is assigned.
+     * @param controllerId the ID of the controller to reserve.
+     * @param inUse whether the database has an assignment for the controller.
+     * @return true if the controller was free and is now reserved.
+     */
+    boolean reserveCheckedController(String controllerId, boolean inUse) {
+        if (inUse) {
+            assignedControllers.add(controllerId);
+            return false;
+        }
+        return assignedControllers.add(controllerId);
+    }
+
+    /**
+     * Gives back the reservation of a registration whose writes failed.
+     * @param controllerId the ID of the reserved controller.
+     */
+    void releaseController(String controllerId) {
+        assignedControllers.remove(controllerId);
     }
 
 
-    private JsonArray storedSequence;
-    
     /**
      * Generates a random color sequence.
+     * The caller (the game room) keeps the sequence for later comparison.
      * @return the generated color sequence.
      */
-    public JsonArray generateColorSequence() {
+    public ColorSequence generateColorSequence() {
         // Generate a random sequence length between min and max
         int sequenceLength = random.nextInt(maxSequenceLength - minSequenceLength + 1) + minSequenceLength;
-
-        JsonArray colorSequence = new JsonArray();
-        for (int i = 0; i < sequenceLength; i++) {
-            String color = COLORS.get(random.nextInt(COLORS.size()));
-            colorSequence.add(color);
-        }
-
-        //Store the generated sequence
-        this.storedSequence = colorSequence;
-        return colorSequence;
+        return ColorSequence.random(random, sequenceLength);
     }
     
     /**
      * Compares the received color sequence with the stored sequence and awards points if they match.
+     * Scoring is decided on the in-memory game state; the database is updated asynchronously afterwards.
      * @param controllerId the ID of the controller.
+     * @param storedSequence the sequence sent to the controller's game room.
      * @param receivedSequence the received color sequence.
      * @return a Future indicating success or failure.
      */
-    public Future<Boolean> compareSequenceAndAwardPoints(String controllerId, JsonArray receivedSequence) {
+    public Future<Boolean> compareSequenceAndAwardPoints(String controllerId, ColorSequence storedSequence, ColorSequence receivedSequence) {
         if (controllerId == null || receivedSequence == null) {
             logger.error("Invalid input: controllerId or receivedSequence is null");
             return Future.succeededFuture(false);
@@ -249,67 +352,116 @@ public class ObjectService {
             return Future.succeededFuture(false);
         }
     
-        logger.debug("Stored sequence: {}", storedSequence.encode());
-        logger.debug("Received sequence: {}", receivedSequence.encode());
-    
-        return objectRepository.fetchPlayerIdByControllerId(controllerId)
-            .compose(playerId -> {
-                if (playerId == null) {
+        logger.debug("Comparing sequence of {}: stored {}, received {}", controllerId, storedSequence, receivedSequence);
+
+        return awardPointIfMatched(controllerId, compareSequences(storedSequence, receivedSequence));
+    }
+
+    /**
+     * Awards a point for an answer that was already checked, e.g. by comparing the packed colors of a binary answer.
+     * @param controllerId the ID of the controller.
+     * @param sequencesMatch whether the answer matched the stored sequence.
+     * @return a Future with sequencesMatch, or false if the controller has no active session.
+     */
+    public Future<Boolean> awardPointIfMatched(String controllerId, boolean sequencesMatch) {
+        return getPlayerState(controllerId)
+            .compose(state -> {
+                if (state == null) {
                     logger.error("No player found for controllerId: {}", controllerId);
                     return Future.succeededFuture(false);
                 }
-    
-                return objectRepository.fetchCurrentRoundByControllerId(controllerId,playerId)
-                    .compose(round -> {
-                        if (round == null) {
-                            logger.error("Failed to fetch the current round for controllerId: {}", controllerId);
-                            return Future.succeededFuture(false);
-                        }
-    
-                        boolean sequencesMatch = compareSequences(storedSequence, receivedSequence);
-    
-                        if (sequencesMatch) {
-                            return objectRepository.updatePoints(controllerId, playerId, round)
-                                .map(v -> true)
-                                .recover(cause -> {
-                                    logger.error("Failed to update points for controller {}: {}", controllerId, cause.getMessage());
-                                    return Future.succeededFuture(false);
-                                });
-                        } else {
-                            return Future.succeededFuture(false);
-                        }
-                    });
+
+                if (sequencesMatch) {
+                    int points = state.awardPoint();
+                    Future<Void> write = persistPoint(state);
+                    if (write.failed()) {
+                        return Future.failedFuture(write.cause());
+                    }
+                    leaderboard.record(controllerId, state.getPlayerId(), state.getUsername(), state.getRound(), points);
+                }
+                return Future.succeededFuture(sequencesMatch);
             });
     }
 
+    /**
+     * Returns the in-memory state of a controller, loading it from the database on a miss.
+     * @param controllerId the ID of the controller.
+     * @return a Future containing the state, or null if the controller has no active session.
+     */
+    private Future<PlayerState> getPlayerState(String controllerId) {
+        PlayerState state = gameStateStore.get(controllerId);
+        if (state != null) {
+            return Future.succeededFuture(state);
+        }
+        return objectRepository.fetchActiveSession(controllerId)
+            .map(session -> session == null ? null : gameStateStore.put(session));
+    }
+
+    /**
+     * Writes a point the state already holds to the DisplayInfo table without waiting for the result.
+     * The point goes through the write-behind buffer when one is configured. The point is taken back from the
+     * state if the write is rejected at once, e.g. by a full buffer, which the caller sees in the returned Future,
+     * or if it fails later, so the state never shows points the database will not get. A point taken back later
+     * has been recorded on the leaderboard and in the journal already; both get the corrected points.
+     * @param state the state of the controller that scored.
+     * @return the write; already failed if it was rejected.
+     */
+    private Future<Void> persistPoint(PlayerState state) {
+        int round = state.getRound();
+        Future<Void> write = scoreBuffer != null
+            ? scoreBuffer.increment(state.getControllerId(), state.getPlayerId(), round, state.getUsername())
+            : objectRepository.updatePoints(state.getControllerId(), state.getPlayerId(), round, state.getUsername());
+        if (write.failed()) {
+            state.revokePoint(round);
+            rejectedPoints.increment();
+            logger.warn("Rejected a point of controller {}: {}", state.getControllerId(), write.cause().getMessage());
+            return write;
+        }
+        write.onFailure(cause -> {
+            int corrected = state.revokePoint(round);
+            if (corrected >= 0) {
+                leaderboard.correct(state.getControllerId(), state.getPlayerId(), state.getUsername(), round, corrected);
+                journal.pointAwarded(state.getControllerId(), round, corrected);
+            }
+            droppedPoints.increment();
+            logger.error("Dropped a point of controller {} in round {}: {}", state.getControllerId(), round, cause.getMessage());
+        });
+        return write;
+    }
+
+    /**
+     * @return the number of points taken back because their write was rejected at once.
+     */
+    public long getRejectedPoints() {
+        return rejectedPoints.sum();
+    }
+
+    /**
+     * @return the number of points taken back because their write failed after it was accepted.
+     */
+    public long getDroppedPoints() {
+        return droppedPoints.sum();
+    }
+
     /**
      * Compares two sequences of colors.
+     * Package-private and static so the benchmarks can call it directly.
      * @param generated the generated color sequence.
      * @param received the received color sequence.
      * @return true if the sequences match, false otherwise.
      */
-    private boolean compareSequences(JsonArray generated, JsonArray received) {
+    static boolean compareSequences(ColorSequence generated, ColorSequence received) {
         if (generated == null || received == null) {
             logger.error("Either generated or received sequence is null");
             return false;
         }
     
-        if (generated.size() != received.size()) {
-            logger.debug("Sequence size mismatch. Generated: {}, Received: {}", generated.size(), received.size());
+        if (generated.length() != received.length()) {
+            logger.debug("Sequence size mismatch. Generated: {}, Received: {}", generated.length(), received.length());
             return false;
         }
     
-        for (int i = 0; i < generated.size(); i++) {
-            String genColor = generated.getString(i);
-            String recColor = received.getString(i);
-            logger.debug("Comparing color at index {}: Generated '{}' vs Received '{}'", i, genColor, recColor);
-            if (!genColor.equalsIgnoreCase(recColor)) {
-                logger.debug("Mismatch at index {}", i);
-                return false;
-            }
-        }
-    
-        return true;
+        return generated.equals(received);
     }
     
     /**
@@ -321,14 +473,62 @@ public class ObjectService {
     public Future<JsonObject> fetchDisplayInfo(String controllerId,int currentRound) {
         return objectRepository.fetchDisplayInfo(controllerId,currentRound);
     }
-    
+
     /**
-     * Creates a new round for a controller.
+     * Fetches display information for the current round of a controller from the in-memory game state.
      * @param controllerId the ID of the controller.
+     * @return a Future containing display information, or an empty JsonObject if the controller has no session.
+     */
+    public Future<JsonObject> fetchDisplayInfo(String controllerId) {
+        return getPlayerState(controllerId)
+            .map(state -> state == null ? new JsonObject() : state.toDisplayInfo());
+    }
+    
+    /**
+     * Builds the scoreboard of a group of controllers from the in-memory game state, best player first.
+     * Controllers without an active session are left out.
+     * @param controllerIds the controllers to include, e.g. the players of a game room.
+     * @return a JsonArray of objects with controllerId, username, points and round.
+     */
+    public JsonArray scoreboard(Collection<String> controllerIds) {
+        List<PlayerState> states = new ArrayList<>(controllerIds.size());
+        for (String controllerId : controllerIds) {
+            PlayerState state = gameStateStore.get(controllerId);
+            if (state != null) {
+                states.add(state);
+            }
+        }
+        states.sort(Comparator.comparingInt(PlayerState::getPoints).reversed());
+
+        JsonArray scores = new JsonArray();
+        for (PlayerState state : states) {
+            scores.add(state.toDisplayInfo().put("controllerId", state.getControllerId()));
+        }
+        return scores;
+    }
+
+    /**
+     * Moves all controllers of a game to their next round with one database transaction.
+     * Controllers without an active session are dropped from the in-memory game state.
+     * @param controllerIds the controllers of the game.
      * @return a Future indicating success or failure.
      */
-    public Future<Void> createNewRound(String controllerId) {
-        return objectRepository.createNewRound(controllerId);
+    public Future<Void> advanceRound(List<String> controllerIds) {
+        return objectRepository.advanceRound(controllerIds)
+            .onSuccess(newRounds -> {
+                for (String controllerId : controllerIds) {
+                    Integer newRound = newRounds.get(controllerId);
+                    PlayerState state = gameStateStore.get(controllerId);
+                    if (newRound == null) {
+                        logger.warn("No active session found for controller: {}", controllerId);
+                        gameStateStore.remove(controllerId);
+                    } else if (state != null) {
+                        state.startRound(newRound);
+                    }
+                }
+            })
+            .onFailure(cause -> controllerIds.forEach(gameStateStore::remove))
+            .mapEmpty();
     }
     
     /**
@@ -337,6 +537,10 @@ public class ObjectService {
      * @return a Future containing the current round number.
      */
     public Future<Integer> fetchCurrentRound(String controllerId) {
+        PlayerState state = gameStateStore.get(controllerId);
+        if (state != null) {
+            return Future.succeededFuture(state.getRound());
+        }
         return objectRepository.fetchCurrentRound(controllerId);
     }
     
@@ -345,8 +549,13 @@ public class ObjectService {
      * @param resultHandler handles the result containing the round winner information.
      */
     public void getRoundWinner(Handler<AsyncResult<JsonObject>> resultHandler) {
-        // Delegate the operation to the repository
-        objectRepository.getRoundWinner(resultHandler);
+        if (!leaderboardLoaded) {
+            // Cold start: the leaderboard is still loading
+            objectRepository.getRoundWinner(resultHandler);
+            return;
+        }
+        JsonObject winner = leaderboard.roundWinner();
+        resultHandler.handle(Future.succeededFuture(winner != null ? winner : new JsonObject().put("message", "No winner for this round yet.")));
     }
     
 
@@ -356,12 +565,15 @@ public class ObjectService {
      * @return a Future indicating success or failure.
      */
     public Future<Void> updatePlayerHighScore(String controllerId) {
-        return objectRepository.fetchPlayerIdByControllerId(controllerId)
-            .compose(playerId -> {
-                if (playerId == null) {
+        return getPlayerState(controllerId)
+            .compose(state -> {
+                if (state == null) {
                     return Future.failedFuture("No player found for controller: " + controllerId);
                 }
-                return objectRepository.updateHighScore(playerId);
+                if (!leaderboardLoaded) {
+                    return objectRepository.updateHighScore(state.getPlayerId());
+                }
+                return objectRepository.saveHighScore(state.getPlayerId(), leaderboard.highScore(state.getPlayerId()));
             })
             .onSuccess(v -> logger.info("High score updated for player with controller: {}", controllerId))
             .onFailure(cause -> logger.error("Failed to update high score for player with controller: {}", controllerId, cause));
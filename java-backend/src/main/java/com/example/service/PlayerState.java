@@ -0,0 +1,118 @@
+/**
+ * @file PlayerState.java
+ * @brief Live session state of one controller: player, round and points.
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @ingroup ObjectService
+ * The PlayerState class holds the active session of a single controller.
+ * Identity fields are immutable; round and points change as the game progresses.
+ */
+public class PlayerState {
+
+    private final String controllerId;
+    private final int playerId;
+    private final String username;
+    private final String loginMethod;
+    private volatile int round;
+    private final AtomicInteger points;
+
+    /**
+     * Constructor for PlayerState.
+     * @param controllerId the ID of the controller.
+     * @param playerId the ID of the player.
+     * @param username the name of the player.
+     * @param loginMethod how the player logged in ("RFID" or "Frontend").
+     * @param round the current round.
+     * @param points the points in the current round.
+     */
+    public PlayerState(String controllerId, int playerId, String username, String loginMethod, int round, int points) {
+        this.controllerId = controllerId;
+        this.playerId = playerId;
+        this.username = username;
+        this.loginMethod = loginMethod;
+        this.round = round;
+        this.points = new AtomicInteger(points);
+    }
+
+    public String getControllerId() {
+        return controllerId;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getLoginMethod() {
+        return loginMethod;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public int getPoints() {
+        return points.get();
+    }
+
+    /**
+     * Awards one point in the current round.
+     * @return the new number of points.
+     */
+    public int awardPoint() {
+        return points.incrementAndGet();
+    }
+
+    /**
+     * Takes back a point that could not be written, unless the session moved to another round meanwhile.
+     * @param round the round the point was awarded in.
+     * @return the points left in the round, or -1 if the session is in another round now.
+     */
+    public int revokePoint(int round) {
+        if (this.round != round) {
+            return -1;
+        }
+        return points.updateAndGet(current -> Math.max(0, current - 1));
+    }
+
+    /**
+     * Raises the points of the current round, e.g. to points recovered from the game journal.
+     * @param total the points the player is known to have reached.
+     * @return the number of points added, 0 if the player has at least total points already.
+     */
+    public int raisePoints(int total) {
+        int previous = points.getAndAccumulate(total, Math::max);
+        return Math.max(0, total - previous);
+    }
+
+    /**
+     * Moves the session to a new round and resets the points.
+     * @param newRound the number of the new round.
+     */
+    public void startRound(int newRound) {
+        this.round = newRound;
+        this.points.set(0);
+    }
+
+    /**
+     * @return the display information sent to the controller's OLED (username, points and round).
+     */
+    public JsonObject toDisplayInfo() {
+        return new JsonObject()
+            .put("username", username)
+            .put("points", points.get())
+            .put("round", round);
+    }
+}
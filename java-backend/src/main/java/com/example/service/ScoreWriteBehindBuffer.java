@@ -0,0 +1,323 @@
+/**
+ * @file ScoreWriteBehindBuffer.java
+ * @brief Write-behind buffer that coalesces point increments before they reach the DisplayInfo table.
+ *
+ * Every correct answer adds one point to the buffer instead of issuing its own UPDATE. Increments for the same
+ * controller and round are merged, and the buffer is flushed as one multi-row upsert either periodically or as
+ * soon as enough distinct rows are pending. The number of database writes per second therefore depends on the
+ * flush interval rather than on how fast players press buttons.
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.repository.DatabaseCircuitBreaker;
+import com.example.repository.ObjectRepository;
+import com.example.repository.PointsIncrement;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+
+/**
+ * @ingroup ObjectService
+ * The ScoreWriteBehindBuffer batches point increments per (controller_id, round).
+ *
+ * At most one flush is in flight at any time; increments arriving meanwhile are collected for the next batch.
+ * When more than maxPending rows are waiting, new increments are rejected so a stalled database cannot make
+ * the buffer grow without bound. Accepted points are not given up while the database is unavailable: a batch that
+ * failed because of the database, or that the open circuit breaker rejected, stays pending until a flush succeeds.
+ * A batch the database refuses because of its content is written again in halves until the refused rows are
+ * isolated, so one bad row never holds back the others. Only a row refused on its own MAX_ATTEMPTS times is
+ * dropped, and points still pending when close() gives up; their waiters fail, so the caller can count them.
+ * Points added while a refused row waits for its retry are kept apart from it and start with no failed attempts.
+ */
+public class ScoreWriteBehindBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScoreWriteBehindBuffer.class);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String RETRY_SUFFIX = "#retry";
+
+    private final ObjectRepository objectRepository;
+    private final Vertx vertx;
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final long flushIntervalMs;
+    private long timerId = -1;
+
+    private Map<String, PendingPoints> pending = new LinkedHashMap<>();
+    private boolean flushing = false;
+    private boolean closed = false;
+
+    /**
+     * Constructor for ScoreWriteBehindBuffer. Pending increments are only flushed by size until start() is called.
+     * @param vertx the Vert.x instance used for the flush timer.
+     * @param objectRepository the repository that writes the batches.
+     * @param flushIntervalMs how often pending increments are flushed.
+     * @param maxBatchSize number of pending rows that triggers an immediate flush.
+     * @param maxPending number of pending rows above which new increments are rejected.
+     */
+    public ScoreWriteBehindBuffer(Vertx vertx, ObjectRepository objectRepository, long flushIntervalMs, int maxBatchSize, int maxPending) {
+        this.vertx = vertx;
+        this.objectRepository = objectRepository;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = Math.max(maxPending, maxBatchSize);
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * Starts the flush timer. Does nothing if it is running already or the buffer is closed.
+     * @return this buffer.
+     */
+    public synchronized ScoreWriteBehindBuffer start() {
+        if (timerId < 0 && !closed) {
+            timerId = vertx.setPeriodic(flushIntervalMs, id -> flush());
+        }
+        return this;
+    }
+
+    /**
+     * Adds one point for a controller in a round.
+     * @param controllerId the ID of the controller.
+     * @param playerId the ID of the player.
+     * @param round the round the point was scored in.
+     * @param username the name of the player.
+     * @return a Future that completes once the point has been written, or fails if the buffer is full or closed.
+     */
+    public Future<Void> increment(String controllerId, int playerId, int round, String username) {
+        Promise<Void> promise = Promise.promise();
+        boolean flushNow;
+        synchronized (this) {
+            if (closed) {
+                return Future.failedFuture("Score buffer is closed");
+            }
+            String key = controllerId + '#' + round;
+            PendingPoints points = pending.get(key);
+            if (points == null) {
+                if (pending.size() >= maxPending) {
+                    return Future.failedFuture("Score buffer is full (" + pending.size() + " pending rows)");
+                }
+                points = new PendingPoints(controllerId, playerId, round, username);
+                pending.put(key, points);
+            }
+            points.delta++;
+            points.waiters.add(promise);
+            flushNow = pending.size() >= maxBatchSize;
+        }
+        if (flushNow) {
+            flush();
+        }
+        return promise.future();
+    }
+
+    /**
+     * @return the number of rows waiting to be written.
+     */
+    public synchronized int pendingRows() {
+        return pending.size();
+    }
+
+    /**
+     * Writes all pending increments as one batch, unless a batch is already in flight.
+     * @return a Future that completes when the batch started by this call (if any) has been written, and fails if
+     *         any of its rows was not.
+     */
+    public Future<Void> flush() {
+        Map<String, PendingPoints> batch;
+        synchronized (this) {
+            if (flushing || pending.isEmpty()) {
+                return Future.succeededFuture();
+            }
+            flushing = true;
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        BatchOutcome outcome = new BatchOutcome();
+        return write(new ArrayList<>(batch.entrySet()), outcome)
+            .transform(ar -> {
+                boolean more;
+                synchronized (this) {
+                    flushing = false;
+                    requeue(outcome.unwritten, false);
+                    requeue(outcome.refused, true);
+                    // After a failure the next timer tick, or drain() on close, retries, not an immediate flush
+                    more = ar.succeeded() && outcome.refused.isEmpty()
+                        && (pending.size() >= maxBatchSize || (closed && !pending.isEmpty()));
+                }
+                if (!outcome.written.isEmpty()) {
+                    logger.debug("Flushed {} point updates", outcome.written.size());
+                    outcome.written.forEach(entry -> entry.getValue().waiters.forEach(Promise::complete));
+                }
+                if (more) {
+                    flush();
+                }
+                if (ar.failed()) {
+                    return Future.failedFuture(ar.cause());
+                }
+                return outcome.refused.isEmpty() ? Future.succeededFuture()
+                    : Future.failedFuture("The database refused " + outcome.refused.size() + " point updates");
+            });
+    }
+
+    /**
+     * Writes rows as one upsert. If the database refuses them because of their content, the halves are written
+     * separately until the refused rows are found. A single upsert statement is atomic, so a refused batch wrote
+     * nothing and its rows can be written again.
+     * @param rows the rows to write.
+     * @param outcome collects the written, refused and unwritten rows.
+     * @return a Future that fails if the database is unavailable; the rows not tried yet are then unwritten.
+     */
+    private Future<Void> write(List<Map.Entry<String, PendingPoints>> rows, BatchOutcome outcome) {
+        List<PointsIncrement> increments = new ArrayList<>(rows.size());
+        for (Map.Entry<String, PendingPoints> entry : rows) {
+            PendingPoints points = entry.getValue();
+            increments.add(new PointsIncrement(points.controllerId, points.playerId, points.round, points.username, points.delta));
+        }
+        return objectRepository.upsertPoints(increments).transform(ar -> {
+            if (ar.succeeded()) {
+                outcome.written.addAll(rows);
+                return Future.succeededFuture();
+            }
+            Throwable cause = ar.cause();
+            if (cause instanceof DatabaseCircuitBreaker.CircuitOpenException || DatabaseCircuitBreaker.isDatabaseFailure(cause)) {
+                // The rows themselves are fine, retry them once the database is back
+                outcome.unwritten.addAll(rows);
+                return Future.failedFuture(cause);
+            }
+            if (rows.size() == 1) {
+                outcome.refused.addAll(rows);
+                return Future.succeededFuture();
+            }
+            logger.warn("The database refused {} point updates, writing them in halves", rows.size());
+            int half = rows.size() / 2;
+            List<Map.Entry<String, PendingPoints>> second = rows.subList(half, rows.size());
+            return write(rows.subList(0, half), outcome).transform(first -> {
+                if (first.failed()) {
+                    outcome.unwritten.addAll(second);
+                    return Future.failedFuture(first.cause());
+                }
+                return write(second, outcome);
+            });
+        });
+    }
+
+    /**
+     * Puts rows that were not written back into the pending increments. A row the database refused on its own
+     * counts a failed attempt and is dropped after MAX_ATTEMPTS; a row with failed attempts waits under its own
+     * key, so points added meanwhile do not share its attempts. Must be called while holding the lock.
+     * @param rows the rows that were not written.
+     * @param refused true if the database refused each of the rows on its own.
+     */
+    private void requeue(List<Map.Entry<String, PendingPoints>> rows, boolean refused) {
+        for (Map.Entry<String, PendingPoints> entry : rows) {
+            PendingPoints failed = entry.getValue();
+            if (refused) {
+                failed.attempts++;
+            }
+            if (failed.attempts >= MAX_ATTEMPTS) {
+                logger.error("Dropping {} points for controller {} in round {} after {} failed writes",
+                    failed.delta, failed.controllerId, failed.round, failed.attempts);
+                failed.waiters.forEach(waiter -> waiter.fail("Failed to write points for controller " + failed.controllerId));
+                continue;
+            }
+            String key = failed.controllerId + '#' + failed.round + (failed.attempts > 0 ? RETRY_SUFFIX : "");
+            PendingPoints queued = pending.get(key);
+            if (queued != null) {
+                // Both are fresh increments, or both were refused before; the older attempts count
+                failed.delta += queued.delta;
+                failed.waiters.addAll(queued.waiters);
+                failed.attempts = Math.max(failed.attempts, queued.attempts);
+            }
+            pending.put(key, failed);
+        }
+    }
+
+    /**
+     * Stops the flush timer and writes everything that is still pending. Points that could not be written
+     * within MAX_ATTEMPTS + 1 flushes are given up and their waiters fail.
+     * @return a Future that completes when the buffer has been drained.
+     */
+    public Future<Void> close() {
+        synchronized (this) {
+            if (closed) {
+                return Future.succeededFuture();
+            }
+            closed = true;
+            if (timerId >= 0) {
+                vertx.cancelTimer(timerId);
+            }
+        }
+        return drain(MAX_ATTEMPTS + 1).onComplete(v -> abandonPending());
+    }
+
+    private void abandonPending() {
+        Map<String, PendingPoints> abandoned;
+        synchronized (this) {
+            if (flushing || pending.isEmpty()) {
+                return;
+            }
+            abandoned = pending;
+            pending = new LinkedHashMap<>();
+        }
+        int points = abandoned.values().stream().mapToInt(row -> row.delta).sum();
+        logger.error("Dropping {} unwritten points of {} rows on shutdown", points, abandoned.size());
+        abandoned.values().forEach(row -> row.waiters.forEach(waiter -> waiter.fail("Score buffer closed before the points were written")));
+    }
+
+    private Future<Void> drain(int remainingFlushes) {
+        if (pendingRows() == 0 || remainingFlushes == 0) {
+            return Future.succeededFuture();
+        }
+        return flush().recover(cause -> Future.succeededFuture())
+            .compose(v -> {
+                synchronized (this) {
+                    if (flushing) {
+                        // Another flush is still running; give it time to finish before checking again
+                        Promise<Void> wait = Promise.promise();
+                        vertx.setTimer(50, id -> wait.complete());
+                        return wait.future().compose(w -> drain(remainingFlushes));
+                    }
+                }
+                return drain(remainingFlushes - 1);
+            });
+    }
+
+    /**
+     * Rows of one flush by what became of them.
+     */
+    private static class BatchOutcome {
+        private final List<Map.Entry<String, PendingPoints>> written = new ArrayList<>();
+        private final List<Map.Entry<String, PendingPoints>> refused = new ArrayList<>();
+        private final List<Map.Entry<String, PendingPoints>> unwritten = new ArrayList<>();
+    }
+
+    /**
+     * Accumulated points of one controller and round, together with the callers waiting for them.
+     */
+    private static class PendingPoints {
+        private final String controllerId;
+        private final int playerId;
+        private final int round;
+        private final String username;
+        private final List<Promise<Void>> waiters = new ArrayList<>();
+        private int delta;
+        private int attempts;
+
+        PendingPoints(String controllerId, int playerId, int round, String username) {
+            this.controllerId = controllerId;
+            this.playerId = playerId;
+            this.round = round;
+            this.username = username;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * @file VirtualThreadServices.java
+ * @brief Runs the registration paths of the ObjectService as straight-line blocking code on virtual threads.
+ *
+ * The asynchronous registration chains a Future stage and a lambda per statement. Here every call runs on a
+ * virtual thread of a verticle deployed with ThreadingModel.VIRTUAL_THREAD and waits for the database through the
+ * BlockingObjectRepository; a waiting call parks its virtual thread and releases the carrier, so thousands of
+ * concurrent registrations need neither a worker thread each nor a callback per step.
+ *
+ * @ingroup ObjectService
+ */
+
+package com.example.service;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntSupplier;
+
+import com.example.repository.BlockingObjectRepository;
+import com.example.repository.ObjectRepository;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.Vertx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @ingroup ObjectService
+ * The VirtualThreadServices execute registrations on a set of virtual-thread verticle contexts.
+ *
+ * A virtual-thread context runs one task at a time and lets the next one start while a task waits in
+ * Future.await, so the CPU work of the registrations on one context is serialized. Calls are therefore spread over
+ * several contexts by controller ID, like game rooms over the lobby shards; the calls for one controller stay on
+ * one context and keep their order.
+ *
+ * The registrations share the in-memory state of the ObjectService (assignment index, game state store), so both
+ * execution modes can serve requests side by side. Results are completed on the caller's context, so callers
+ * continue on the event loop they started from, as with the asynchronous methods.
+ */
+public class VirtualThreadServices {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadServices.class);
+
+    private final ObjectService objectService;
+    private final BlockingObjectRepository repository;
+    private final List<Context> contexts = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor for VirtualThreadServices.
+     * @param objectService the service whose in-memory state the registrations update.
+     * @param repository the blocking view of the service's repository.
+     */
+    public VirtualThreadServices(ObjectService objectService, BlockingObjectRepository repository) {
+        this.objectService = objectService;
+        this.repository = repository;
+    }
+
+    /**
+     * Deploys the virtual-thread verticles.
+     * @param vertx the Vert.x instance to deploy on.
+     * @param objectService the service whose registrations are run.
+     * @param objectRepository the repository of that service.
+     * @param instances number of virtual-thread contexts the calls are spread over.
+     * @return a Future with the services, once all verticles are running.
+     */
+    public static Future<VirtualThreadServices> deploy(Vertx vertx, ObjectService objectService, ObjectRepository objectRepository, int instances) {
+        VirtualThreadServices services = new VirtualThreadServices(objectService, new BlockingObjectRepository(objectRepository));
+        return vertx.deployVerticle(() -> new ServiceVerticle(services.contexts), new DeploymentOptions()
+                .setThreadingModel(ThreadingModel.VIRTUAL_THREAD)
+                .setInstances(Math.max(1, instances)))
+            .onSuccess(id -> logger.info("Virtual-thread services started on {} contexts", services.contexts.size()))
+            .map(id -> services);
+    }
+
+    /**
+     * Registers a controller, see ObjectService.registerController.
+     * @param controllerId the ID of the controller to register.
+     * @return a Future that completes once the controller is stored.
+     */
+    public Future<Void> registerController(String controllerId) {
+        return call(controllerId, () -> {
+            repository.insertController(controllerId);
+            return null;
+        });
+    }
+
+    /**
+     * Registers a player on the frontend and creates a session, see ObjectService.registerPlayerAndCreateSession.
+     * @param username the username of the player.
+     * @param controllerId the controller ID associated with the player.
+     * @return a Future that fails if the controller is in use or the writes failed.
+     */
+    public Future<Void> registerFrontendPlayer(String username, String controllerId) {
+        return call(controllerId, () -> {
+            register(controllerId, username, "Frontend", () -> repository.registerFrontendPlayer(username, controllerId));
+            return null;
+        });
+    }
+
+    /**
+     * Registers a player using an RFID tag and creates a session, see ObjectService.registerPlayerWithRfid.
+     * @param username the name of a new player.
+     * @param rfidTag the RFID tag of the player.
+     * @param controllerId the controller ID associated with the player.
+     * @return a Future that fails if the controller is in use or the writes failed.
+     */
+    public Future<Void> registerRfidPlayer(String username, String rfidTag, String controllerId) {
+        return call(controllerId, () -> {
+            register(controllerId, username, "RFID", () -> repository.registerRfidPlayer(username, rfidTag, controllerId));
+            return null;
+        });
+    }
+
+    /**
+     * Reserves the controller, runs the registration writes and starts the in-memory session.
+     * Same steps as ObjectService.register, in blocking style.
+     * @throws IllegalStateException if the controller is in use.
+     */
+    private void register(String controllerId, String username, String loginMethod, IntSupplier writes) {
+        boolean reserved = objectService.assignmentsLoaded()
+            ? objectService.reserveLoadedController(controllerId)
+            : objectService.reserveCheckedController(controllerId, repository.isControllerAssigned(controllerId));
+        if (!reserved) {
+            logger.info("Controller is already in use by another player: {}", controllerId);
+            throw new IllegalStateException("Controller is already in use by another player");
+        }
+        int playerId;
+        try {
+            playerId = writes.getAsInt();
+        } catch (RuntimeException e) {
+            objectService.releaseController(controllerId);
+            throw e;
+        }
+        objectService.getGameStateStore().startSession(controllerId, playerId, username, loginMethod);
+    }
+
+    /**
+     * Runs an action on a virtual thread of the controller's context and completes the result on the caller's context.
+     */
+    private <T> Future<T> call(String controllerId, Callable<T> action) {
+        Context caller = Vertx.currentContext();
+        Promise<T> promise = Promise.promise();
+        Context context = contexts.get(Math.floorMod(String.valueOf(controllerId).hashCode(), contexts.size()));
+        context.runOnContext(v -> {
+            try {
+                T result = action.call();
+                complete(caller, () -> promise.complete(result));
+            } catch (Exception e) {
+                complete(caller, () -> promise.fail(e));
+            }
+        });
+        return promise.future();
+    }
+
+    private static void complete(Context caller, Runnable completion) {
+        if (caller != null) {
+            caller.runOnContext(v -> completion.run());
+        } else {
+            completion.run();
+        }
+    }
+
+    /**
+     * @brief Verticle whose only purpose is to own a virtual-thread context that registrations run on.
+     */
+    private static class ServiceVerticle extends AbstractVerticle {
+        private final List<Context> contexts;
+
+        ServiceVerticle(List<Context> contexts) {
+            this.contexts = contexts;
+        }
+
+        @Override
+        public void start() {
+            contexts.add(context);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/**
+ * @file LoadGenerator.java
+ * @brief Command-line load generator simulating a fleet of ESP32 game controllers.
+ *
+ * Every virtual controller opens its own MQTT connection and follows the firmware protocol: connect, status,
+ * RFID login, heartbeats every 10 seconds, and an answer on controller/color_sequence for every sequence
+ * received on neopixel/display<id>. The generator reports throughput, error counts and latency percentiles
+ * while it runs and a summary at the end.
+ *
+ * Run it from the backend jar against a local broker and backend:
+ *   java -cp target/java-backend-1.0-SNAPSHOT.jar com.example.tools.LoadGenerator --controllers=1000 --duration=120
+ *
+ * @date 2024
+ *
+ * @defgroup Tools Tools
+ * @brief Development tools shipped with the backend jar, not used by the backend itself.
+ *
+ * @{
+ */
+
+package com.example.tools;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * @class LoadGenerator
+ * @brief Ramps up the virtual controllers, drives the game and prints the statistics.
+ *
+ * Options are passed as --name=value, see Options for the names and defaults.
+ *
+ * @ingroup Tools
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final Vertx vertx;
+    private final Options options;
+    private final LoadStats stats = new LoadStats();
+    private final List<VirtualController> controllers = new ArrayList<>();
+    private HttpClient httpClient;
+    private long startedAt;
+    private long lastReportAt;
+    private long lastPublished;
+    private long lastReceived;
+
+    /**
+     * @class Options
+     * @brief Settings of a load run.
+     *
+     * @ingroup Tools
+     */
+    static class Options {
+        int controllers = 100;
+        String host = "localhost";
+        int port = 1883;
+        String username = System.getenv("MQTT_USERNAME");
+        String password = System.getenv("MQTT_PASSWORD");
+        /** Controllers connected per second while ramping up. */
+        int rampPerSecond = 200;
+        /** Seconds of load once all controllers are connected. */
+        int duration = 60;
+        /** Number of game rooms the controllers are spread over (load-0, load-1, ...). */
+        int rooms = 10;
+        /** Upper bound of the random delay before a controller answers a sequence. */
+        long thinkMs = 200;
+        /** Share of answers that are deliberately wrong. */
+        double errorRate = 0.05;
+        long heartbeatMs = 10_000;
+        /** Time after which a missing sequence or score counts as a timeout. */
+        long responseTimeoutMs = 10_000;
+        /** "request": controllers request their sequences; "game": games are started over the HTTP API. */
+        String mode = "request";
+        /** Base URL of the backend HTTP API, used in game mode. */
+        String api = "http://localhost:8080";
+        /** Interval between game starts of a room in game mode. */
+        long gameIntervalMs = 15_000;
+        int qos = 0;
+        /** "json" like the firmware, or "binary" to negotiate the binary sequence protocol at connect. */
+        String protocol = "json";
+        /** Subscribe to the sequence topic of the room and ask the backend to broadcast game rounds there. */
+        boolean broadcast = false;
+        long reportEveryMs = 5_000;
+
+        /**
+         * @brief Parses --name=value arguments.
+         *
+         * @param args Command-line arguments.
+         * @return The options, with defaults for everything not given.
+         * @throws IllegalArgumentException If an option is unknown or has an invalid value.
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                }
+                String name = arg.substring(2, separator);
+                String value = arg.substring(separator + 1);
+                switch (name) {
+                    case "controllers" -> options.controllers = Integer.parseInt(value);
+                    case "host" -> options.host = value;
+                    case "port" -> options.port = Integer.parseInt(value);
+                    case "username" -> options.username = value;
+                    case "password" -> options.password = value;
+                    case "rampPerSecond" -> options.rampPerSecond = Integer.parseInt(value);
+                    case "duration" -> options.duration = Integer.parseInt(value);
+                    case "rooms" -> options.rooms = Integer.parseInt(value);
+                    case "thinkMs" -> options.thinkMs = Long.parseLong(value);
+                    case "errorRate" -> options.errorRate = Double.parseDouble(value);
+                    case "heartbeatMs" -> options.heartbeatMs = Long.parseLong(value);
+                    case "responseTimeoutMs" -> options.responseTimeoutMs = Long.parseLong(value);
+                    case "mode" -> options.mode = value;
+                    case "api" -> options.api = value;
+                    case "gameIntervalMs" -> options.gameIntervalMs = Long.parseLong(value);
+                    case "qos" -> options.qos = Integer.parseInt(value);
+                    case "reportEveryMs" -> options.reportEveryMs = Long.parseLong(value);
+                    case "protocol" -> options.protocol = value;
+                    case "broadcast" -> options.broadcast = Boolean.parseBoolean(value);
+                    default -> throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            }
+            if (!"request".equals(options.mode) && !"game".equals(options.mode)) {
+                throw new IllegalArgumentException("--mode must be request or game, got " + options.mode);
+            }
+            if (!"json".equals(options.protocol) && !"binary".equals(options.protocol)) {
+                throw new IllegalArgumentException("--protocol must be json or binary, got " + options.protocol);
+            }
+            if (options.controllers < 1 || options.rooms < 1 || options.rampPerSecond < 1 || options.qos < 0 || options.qos > 2) {
+                throw new IllegalArgumentException("controllers, rooms and rampPerSecond must be positive, qos between 0 and 2");
+            }
+            return options;
+        }
+    }
+
+    LoadGenerator(Vertx vertx, Options options) {
+        this.vertx = vertx;
+        this.options = options;
+    }
+
+    /**
+     * @brief Entry point of the load generator.
+     *
+     * @param args Options as --name=value.
+     * @throws InterruptedException If interrupted while waiting for the run to finish.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            logger.error("{}", e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        Vertx vertx = Vertx.vertx();
+        LoadGenerator generator = new LoadGenerator(vertx, options);
+        try {
+            generator.run();
+        } finally {
+            CountDownLatch closed = new CountDownLatch(1);
+            vertx.close().onComplete(ar -> closed.countDown());
+            closed.await(10, TimeUnit.SECONDS);
+        }
+        System.exit(generator.stats.connected.sum() < options.controllers ? 1 : 0);
+    }
+
+    /**
+     * @brief Connects the fleet, keeps it running for the configured duration and disconnects it.
+     *
+     * Runs on the calling thread, which must not be a Vert.x thread: every controller created here gets its own
+     * event-loop context, so the fleet is spread over all event loops.
+     *
+     * @throws InterruptedException If interrupted while ramping up or waiting.
+     */
+    void run() throws InterruptedException {
+        logger.info("Starting {} controllers in {} rooms against {}:{} ({} mode, {} per second)",
+            options.controllers, options.rooms, options.host, options.port, options.mode, options.rampPerSecond);
+        startedAt = System.nanoTime();
+        lastReportAt = startedAt;
+        long reportTimerId = vertx.setPeriodic(options.reportEveryMs, id -> report());
+
+        // Ramp up in batches of a tenth of a second
+        List<Future<Void>> started = new ArrayList<>();
+        int batch = Math.max(1, options.rampPerSecond / 10);
+        for (int i = 0; i < options.controllers; i++) {
+            String controllerId = String.format("load-%05d", i);
+            VirtualController controller = new VirtualController(vertx, options, stats, controllerId, "load-" + (i % options.rooms));
+            controllers.add(controller);
+            started.add(controller.start());
+            if ((i + 1) % batch == 0) {
+                Thread.sleep(100);
+            }
+        }
+        await(Future.join(started), options.responseTimeoutMs + 10_000);
+        logger.info("{} of {} controllers connected in {} ms", stats.connected.sum(), options.controllers,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+
+        long gameTimerId = -1;
+        if ("game".equals(options.mode)) {
+            URI api = URI.create(options.api);
+            httpClient = vertx.createHttpClient(new HttpClientOptions()
+                .setDefaultHost(api.getHost())
+                .setDefaultPort(api.getPort() > 0 ? api.getPort() : 80));
+            startGames();
+            gameTimerId = vertx.setPeriodic(options.gameIntervalMs, id -> startGames());
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.duration));
+
+        vertx.cancelTimer(reportTimerId);
+        vertx.cancelTimer(gameTimerId);
+        List<Future<Void>> stopped = new ArrayList<>();
+        for (VirtualController controller : controllers) {
+            stopped.add(controller.stop());
+        }
+        await(Future.join(stopped), 10_000);
+        summary();
+    }
+
+    /**
+     * @brief Starts a game in every room through the HTTP API.
+     */
+    private void startGames() {
+        for (int i = 0; i < options.rooms; i++) {
+            String roomId = "load-" + i;
+            httpClient.request(HttpMethod.POST, "/api/generate-sequence?room=" + roomId)
+                .compose(request -> request.send())
+                .onSuccess(response -> {
+                    if (response.statusCode() >= 400) {
+                        stats.httpFailures.increment();
+                    }
+                })
+                .onFailure(cause -> {
+                    stats.httpFailures.increment();
+                    logger.debug("Failed to start game in room {}: {}", roomId, cause.getMessage());
+                });
+        }
+    }
+
+    /**
+     * @brief Logs the rates since the last report and the latency percentiles so far.
+     */
+    private void report() {
+        long now = System.nanoTime();
+        double seconds = (now - lastReportAt) / 1e9;
+        long published = stats.published.sum();
+        long received = stats.received.sum();
+        logger.info("t={}s connected={} pub/s={} recv/s={} sequences={} scored={} lost={} timeouts={} errors={} sequence p50/p99={}/{} us scoring p50/p99={}/{} us",
+            TimeUnit.NANOSECONDS.toSeconds(now - startedAt),
+            stats.connected.sum() - stats.disconnects.sum(),
+            Math.round((published - lastPublished) / seconds),
+            Math.round((received - lastReceived) / seconds),
+            stats.sequencesReceived.sum(),
+            stats.pointsScored.sum(),
+            stats.losses.sum(),
+            stats.timeouts.sum(),
+            stats.errors(),
+            micros(stats.sequenceLatency.percentile(50)), micros(stats.sequenceLatency.percentile(99)),
+            micros(stats.scoringLatency.percentile(50)), micros(stats.scoringLatency.percentile(99)));
+        lastReportAt = now;
+        lastPublished = published;
+        lastReceived = received;
+    }
+
+    /**
+     * @brief Logs the totals of the run as JSON, so results of several runs can be compared.
+     */
+    private void summary() {
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        JsonObject summary = new JsonObject()
+            .put("controllers", options.controllers)
+            .put("mode", options.mode)
+            .put("protocol", options.protocol)
+            .put("broadcast", options.broadcast)
+            .put("seconds", Math.round(seconds))
+            .put("connected", stats.connected.sum())
+            .put("disconnects", stats.disconnects.sum())
+            .put("published", stats.published.sum())
+            .put("received", stats.received.sum())
+            .put("publishedPerSecond", Math.round(stats.published.sum() / seconds))
+            .put("receivedPerSecond", Math.round(stats.received.sum() / seconds))
+            .put("sequencesReceived", stats.sequencesReceived.sum())
+            .put("sequencesAnswered", stats.sequencesAnswered.sum())
+            .put("pointsScored", stats.pointsScored.sum())
+            .put("losses", stats.losses.sum())
+            .put("gamesOver", stats.gamesOver.sum())
+            .put("errors", new JsonObject()
+                .put("connectFailures", stats.connectFailures.sum())
+                .put("publishFailures", stats.publishFailures.sum())
+                .put("timeouts", stats.timeouts.sum())
+                .put("invalidMessages", stats.invalidMessages.sum())
+                .put("httpFailures", stats.httpFailures.sum()))
+            .put("sequenceLatency", stats.sequenceLatency.toJson())
+            .put("scoringLatency", stats.scoringLatency.toJson());
+        logger.info("Summary: {}", summary.encodePrettily());
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static void await(Future<?> future, long timeoutMs) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        future.onComplete(ar -> done.countDown());
+        if (!done.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            logger.warn("Gave up waiting after {} ms", timeoutMs);
+        }
+    }
+}
+
+/** @} */
@@ -0,0 +1,49 @@
+/**
+ * @file LoadStats.java
+ * @brief Counters and latency histograms collected by the load generator.
+ *
+ * @date 2024
+ * @ingroup Tools
+ */
+
+package com.example.tools;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.mqtt.LatencyHistogram;
+
+/**
+ * @class LoadStats
+ * @brief Shared by all virtual controllers; every field is safe to update from any event loop.
+ *
+ * @ingroup Tools
+ */
+public class LoadStats {
+
+    final LongAdder connected = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder disconnects = new LongAdder();
+    final LongAdder published = new LongAdder();
+    final LongAdder publishFailures = new LongAdder();
+    final LongAdder received = new LongAdder();
+    final LongAdder sequencesReceived = new LongAdder();
+    final LongAdder sequencesAnswered = new LongAdder();
+    final LongAdder pointsScored = new LongAdder();
+    final LongAdder losses = new LongAdder();
+    final LongAdder gamesOver = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder invalidMessages = new LongAdder();
+    final LongAdder httpFailures = new LongAdder();
+
+    /** From controller/request_sequence to the sequence arriving on neopixel/display<id>. */
+    final LatencyHistogram sequenceLatency = new LatencyHistogram();
+    /** From controller/color_sequence to the score or loss arriving on oled/display/<id>. */
+    final LatencyHistogram scoringLatency = new LatencyHistogram();
+
+    /**
+     * @return Number of failed operations of any kind.
+     */
+    long errors() {
+        return connectFailures.sum() + publishFailures.sum() + timeouts.sum() + invalidMessages.sum() + httpFailures.sum();
+    }
+}
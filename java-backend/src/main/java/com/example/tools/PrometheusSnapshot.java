@@ -0,0 +1,167 @@
+/**
+ * @file PrometheusSnapshot.java
+ * @brief Samples of one scrape of the backend's /metrics endpoint.
+ *
+ * @date 2024
+ * @ingroup Tools
+ */
+
+package com.example.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @class PrometheusSnapshot
+ * @brief Parses the Prometheus text format just far enough to add up samples by name and label.
+ *
+ * Comment lines, timestamps and samples that are not numbers are skipped.
+ *
+ * @ingroup Tools
+ */
+class PrometheusSnapshot {
+
+    private final List<Sample> samples;
+
+    private PrometheusSnapshot(List<Sample> samples) {
+        this.samples = samples;
+    }
+
+    /**
+     * @return A snapshot without samples, used when the backend could not be scraped.
+     */
+    static PrometheusSnapshot empty() {
+        return new PrometheusSnapshot(List.of());
+    }
+
+    /**
+     * @brief Parses a scrape.
+     *
+     * @param text Body of a /metrics response.
+     * @return The samples of the scrape.
+     */
+    static PrometheusSnapshot parse(String text) {
+        List<Sample> samples = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            Sample sample = Sample.parse(line.strip());
+            if (sample != null) {
+                samples.add(sample);
+            }
+        }
+        return new PrometheusSnapshot(samples);
+    }
+
+    /**
+     * @param name Sample name, e.g. db_query_seconds_count.
+     * @return Sum of all samples of that name, whatever their labels.
+     */
+    double sum(String name) {
+        double sum = 0;
+        for (Sample sample : samples) {
+            if (sample.name.equals(name)) {
+                sum += sample.value;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param name Sample name.
+     * @param label Label to group by.
+     * @return Sums of the samples of that name per value of the label; samples without the label are skipped.
+     */
+    Map<String, Double> sumBy(String name, String label) {
+        Map<String, Double> sums = new TreeMap<>();
+        for (Sample sample : samples) {
+            String value = sample.labels.get(label);
+            if (sample.name.equals(name) && value != null) {
+                sums.merge(value, sample.value, Double::sum);
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * @brief One line of the text format: name, labels and value.
+     */
+    private static final class Sample {
+        private final String name;
+        private final Map<String, String> labels;
+        private final double value;
+
+        private Sample(String name, Map<String, String> labels, double value) {
+            this.name = name;
+            this.labels = labels;
+            this.value = value;
+        }
+
+        static Sample parse(String line) {
+            int labelsStart = line.indexOf('{');
+            int nameEnd = line.indexOf(' ');
+            if (nameEnd < 0) {
+                return null;
+            }
+            Map<String, String> labels = new HashMap<>();
+            String name;
+            int valueStart;
+            if (labelsStart >= 0 && labelsStart < nameEnd) {
+                name = line.substring(0, labelsStart);
+                int labelsEnd = parseLabels(line, labelsStart + 1, labels);
+                if (labelsEnd < 0) {
+                    return null;
+                }
+                valueStart = labelsEnd + 1;
+            } else {
+                name = line.substring(0, nameEnd);
+                valueStart = nameEnd;
+            }
+            String[] rest = line.substring(valueStart).strip().split(" ");
+            try {
+                return new Sample(name, labels, Double.parseDouble(rest[0]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return Index of the closing brace, -1 if the labels are malformed.
+         */
+        private static int parseLabels(String line, int start, Map<String, String> labels) {
+            int i = start;
+            while (i < line.length()) {
+                char c = line.charAt(i);
+                if (c == '}') {
+                    return i;
+                }
+                if (c == ',' || c == ' ') {
+                    i++;
+                    continue;
+                }
+                int equals = line.indexOf('=', i);
+                if (equals < 0 || equals + 1 >= line.length() || line.charAt(equals + 1) != '"') {
+                    return -1;
+                }
+                StringBuilder value = new StringBuilder();
+                int j = equals + 2;
+                while (j < line.length() && line.charAt(j) != '"') {
+                    if (line.charAt(j) == '\\' && j + 1 < line.length()) {
+                        char escaped = line.charAt(++j);
+                        value.append(escaped == 'n' ? '\n' : escaped);
+                    } else {
+                        value.append(line.charAt(j));
+                    }
+                    j++;
+                }
+                labels.put(line.substring(i, equals), value.toString());
+                i = j + 1;
+            }
+            return -1;
+        }
+    }
+}
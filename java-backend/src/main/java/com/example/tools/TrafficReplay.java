@@ -0,0 +1,410 @@
+/**
+ * @file TrafficReplay.java
+ * @brief Command-line driver that re-publishes a captured MQTT session and reports how the backend coped.
+ *
+ * A capture recorded with MQTT_CAPTURE_FILE is published again against a broker, with the original spacing of the
+ * messages or sped up by a constant factor, so a real evening of play becomes a repeatable benchmark. Before and
+ * after the replay the backend's /metrics and /api/mqtt/stats are scraped; the summary reports the difference:
+ * messages and handling time per topic filter, database queries and time, and connection-pool waits.
+ *
+ * Run it from the backend jar against a local broker and backend:
+ *   java -cp target/java-backend-1.0-SNAPSHOT.jar com.example.tools.TrafficReplay --file=evening.mqtt --speed=10
+ *
+ * @date 2024
+ * @ingroup Tools
+ */
+
+package com.example.tools;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.mqtt.LatencyHistogram;
+import com.example.mqtt.MqttCapture;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mqtt.MqttClient;
+import io.vertx.mqtt.MqttClientOptions;
+
+/**
+ * @class TrafficReplay
+ * @brief Reads the capture, publishes every record at its scheduled time and prints the summary.
+ *
+ * All messages go out over one MQTT connection; the backend identifies controllers by topic and payload, not by
+ * client ID. Retained messages are replayed as plain publishes, so a replay leaves no state on the broker.
+ * Options are passed as --name=value, see Options for the names and defaults.
+ *
+ * @ingroup Tools
+ */
+public class TrafficReplay {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficReplay.class);
+
+    private final Vertx vertx;
+    private final Options options;
+    private final Context context;
+    private final Semaphore window;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder publishFailures = new LongAdder();
+    /** Time a publish went out after its scheduled time. */
+    private final LatencyHistogram scheduleLag = new LatencyHistogram();
+    private final LongAccumulator maxPoolInUse = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxPoolPending = new LongAccumulator(Math::max, 0);
+    private MqttClient client;
+    private HttpClient httpClient;
+
+    /**
+     * @class Options
+     * @brief Settings of a replay.
+     *
+     * @ingroup Tools
+     */
+    static class Options {
+        String file;
+        String host = "localhost";
+        int port = 1883;
+        String username = System.getenv("MQTT_USERNAME");
+        String password = System.getenv("MQTT_PASSWORD");
+        /** Replay speed as a factor of the captured pace; 0 publishes as fast as the window allows ("max"). */
+        double speed = 1;
+        /** Publishes waiting for the broker (QoS 0: for the socket) before the replay holds back. */
+        int window = 1000;
+        /** Base URL of the backend HTTP API, scraped before and after the replay. */
+        String api = "http://localhost:8080";
+        /** Time the backend gets after the last publish before the metrics are scraped again. */
+        long settleMs = 2_000;
+        /** Interval of the scrapes sampling the database pool during the replay. */
+        long sampleMs = 1_000;
+
+        /**
+         * @brief Parses --name=value arguments.
+         *
+         * @param args Command-line arguments.
+         * @return The options, with defaults for everything not given.
+         * @throws IllegalArgumentException If an option is unknown or has an invalid value.
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (!arg.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got " + arg);
+                }
+                String name = arg.substring(2, separator);
+                String value = arg.substring(separator + 1);
+                switch (name) {
+                    case "file" -> options.file = value;
+                    case "host" -> options.host = value;
+                    case "port" -> options.port = Integer.parseInt(value);
+                    case "username" -> options.username = value;
+                    case "password" -> options.password = value;
+                    case "speed" -> options.speed = "max".equals(value) ? 0 : Double.parseDouble(value);
+                    case "window" -> options.window = Integer.parseInt(value);
+                    case "api" -> options.api = value;
+                    case "settleMs" -> options.settleMs = Long.parseLong(value);
+                    case "sampleMs" -> options.sampleMs = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            }
+            if (options.file == null) {
+                throw new IllegalArgumentException("--file is required");
+            }
+            if (options.speed < 0 || options.window < 1 || options.sampleMs < 1) {
+                throw new IllegalArgumentException("speed must be max or positive, window and sampleMs positive");
+            }
+            return options;
+        }
+    }
+
+    TrafficReplay(Vertx vertx, Options options) {
+        this.vertx = vertx;
+        this.options = options;
+        this.context = vertx.getOrCreateContext();
+        this.window = new Semaphore(options.window);
+    }
+
+    /**
+     * @brief Entry point of the replay driver.
+     *
+     * @param args Options as --name=value.
+     * @throws InterruptedException If interrupted while replaying.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            logger.error("{}", e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        Vertx vertx = Vertx.vertx();
+        TrafficReplay replay = new TrafficReplay(vertx, options);
+        boolean completed;
+        try {
+            completed = replay.run();
+        } catch (IOException e) {
+            logger.error("Failed to read {}: {}", options.file, e.getMessage());
+            completed = false;
+        } finally {
+            CountDownLatch closed = new CountDownLatch(1);
+            vertx.close().onComplete(ar -> closed.countDown());
+            closed.await(10, TimeUnit.SECONDS);
+        }
+        System.exit(completed && replay.publishFailures.sum() == 0 ? 0 : 1);
+    }
+
+    /**
+     * @brief Connects, replays the whole capture and logs the summary.
+     *
+     * Runs on the calling thread, which must not be a Vert.x thread: it sleeps until every record is due.
+     *
+     * @return false if the broker could not be reached.
+     * @throws IOException If the capture cannot be read.
+     * @throws InterruptedException If interrupted while replaying.
+     */
+    boolean run() throws IOException, InterruptedException {
+        URI api = URI.create(options.api);
+        httpClient = vertx.createHttpClient(new HttpClientOptions()
+            .setDefaultHost(api.getHost())
+            .setDefaultPort(api.getPort() > 0 ? api.getPort() : 80));
+
+        Promise<Void> connected = Promise.promise();
+        context.runOnContext(v -> connect().onComplete(connected));
+        if (!await(connected.future(), 10_000)) {
+            logger.error("Failed to connect to {}:{}", options.host, options.port);
+            return false;
+        }
+
+        PrometheusSnapshot metricsBefore = scrapeMetrics();
+        JsonObject statsBefore = fetchMqttStats();
+        long samplerId = vertx.setPeriodic(options.sampleMs, id -> samplePool());
+
+        long records = 0;
+        long capturedNanos = 0;
+        long startedAt = System.nanoTime();
+        try (MqttCapture.Reader reader = new MqttCapture.Reader(Path.of(options.file))) {
+            logger.info("Replaying {} captured at {} against {}:{} at {}", options.file,
+                Instant.ofEpochMilli(reader.getStartEpochMillis()), options.host, options.port,
+                options.speed == 0 ? "max speed" : options.speed + "x");
+            for (MqttCapture.Record record = reader.next(); record != null; record = reader.next()) {
+                long due = options.speed == 0 ? startedAt : startedAt + (long) (record.getOffsetNanos() / options.speed);
+                long wait = due - System.nanoTime();
+                while (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    wait = due - System.nanoTime();
+                }
+                window.acquire();
+                scheduleLag.record(System.nanoTime() - due);
+                publish(record);
+                records++;
+                capturedNanos = record.getOffsetNanos();
+            }
+        }
+        // Wait for the publishes still in the window
+        window.acquire(options.window);
+        long replayNanos = System.nanoTime() - startedAt;
+        Thread.sleep(options.settleMs);
+        vertx.cancelTimer(samplerId);
+
+        summary(records, capturedNanos, replayNanos, metricsBefore, scrapeMetrics(), statsBefore, fetchMqttStats());
+        await(client.disconnect(), 5_000);
+        return true;
+    }
+
+    private Future<Void> connect() {
+        client = MqttClient.create(vertx, new MqttClientOptions()
+            .setClientId("traffic-replay-" + ProcessHandle.current().pid())
+            .setAutoKeepAlive(true)
+            .setCleanSession(true)
+            .setMaxInflightQueue(options.window)
+            .setUsername(options.username)
+            .setPassword(options.password));
+        // QoS 1 and 2 publishes leave the window when the broker has acknowledged them
+        client.publishCompletionHandler(packetId -> window.release());
+        client.publishCompletionExpirationHandler(packetId -> {
+            publishFailures.increment();
+            window.release();
+        });
+        return client.connect(options.port, options.host).mapEmpty();
+    }
+
+    private void publish(MqttCapture.Record record) {
+        MqttQoS qos = MqttQoS.valueOf(record.getQos());
+        context.runOnContext(v -> client.publish(record.getTopic(), record.getPayload(), qos, false, false)
+            .onComplete(ar -> {
+                if (ar.succeeded()) {
+                    published.increment();
+                    if (qos == MqttQoS.AT_MOST_ONCE) {
+                        window.release();
+                    }
+                } else {
+                    publishFailures.increment();
+                    window.release();
+                    logger.debug("Failed to publish to {}: {}", record.getTopic(), ar.cause().getMessage());
+                }
+            }));
+    }
+
+    /**
+     * @brief Records the peak usage of the database pool, which the scrapes before and after cannot show.
+     */
+    private void samplePool() {
+        get("/metrics").onSuccess(body -> {
+            PrometheusSnapshot snapshot = PrometheusSnapshot.parse(body);
+            maxPoolInUse.accumulate((long) snapshot.sum("db_pool_in_use"));
+            maxPoolPending.accumulate((long) snapshot.sum("db_pool_pending"));
+        });
+    }
+
+    private PrometheusSnapshot scrapeMetrics() throws InterruptedException {
+        String body = fetch("/metrics");
+        return body != null ? PrometheusSnapshot.parse(body) : PrometheusSnapshot.empty();
+    }
+
+    private JsonObject fetchMqttStats() throws InterruptedException {
+        String body = fetch("/api/mqtt/stats");
+        return body != null ? new JsonObject(body) : new JsonObject();
+    }
+
+    /**
+     * @return The body of a GET request to the backend, or null if it failed; a failure is logged.
+     */
+    private String fetch(String path) throws InterruptedException {
+        Future<String> body = get(path);
+        await(body, 10_000);
+        if (body.failed() || !body.isComplete()) {
+            logger.warn("Failed to fetch {}{}, the summary will miss the backend side: {}", options.api, path,
+                body.failed() ? body.cause().getMessage() : "timeout");
+            return null;
+        }
+        return body.result();
+    }
+
+    private Future<String> get(String path) {
+        return httpClient.request(HttpMethod.GET, path)
+            .compose(request -> request.send())
+            .compose(response -> response.statusCode() == 200
+                ? response.body().map(Object::toString)
+                : Future.failedFuture("HTTP " + response.statusCode()));
+    }
+
+    /**
+     * @brief Logs the replay and the backend's work during it as JSON, so results of several runs can be compared.
+     *
+     * Handling and query times are means over the replay, computed from the counters before and after it.
+     * The percentiles come from /api/mqtt/stats and cover the backend's whole uptime; restart the backend before
+     * a replay to get percentiles of the replay alone.
+     */
+    private void summary(long records, long capturedNanos, long replayNanos, PrometheusSnapshot metricsBefore,
+                         PrometheusSnapshot metricsAfter, JsonObject statsBefore, JsonObject statsAfter) {
+        double seconds = replayNanos / 1e9;
+        JsonObject topics = new JsonObject();
+        Map<String, Double> handled = delta(metricsBefore.sumBy("mqtt_handler_seconds_count", "topic"),
+            metricsAfter.sumBy("mqtt_handler_seconds_count", "topic"));
+        Map<String, Double> handlingSeconds = delta(metricsBefore.sumBy("mqtt_handler_seconds_sum", "topic"),
+            metricsAfter.sumBy("mqtt_handler_seconds_sum", "topic"));
+        JsonObject topicsBefore = statsBefore.getJsonObject("topics", new JsonObject());
+        JsonObject topicsAfter = statsAfter.getJsonObject("topics", new JsonObject());
+        for (String filter : topicsAfter.fieldNames()) {
+            JsonObject after = topicsAfter.getJsonObject(filter);
+            JsonObject before = topicsBefore.getJsonObject(filter, new JsonObject());
+            long messages = after.getLong("messages", 0L) - before.getLong("messages", 0L);
+            if (messages == 0) {
+                continue;
+            }
+            double count = handled.getOrDefault(filter, 0.0);
+            topics.put(filter, new JsonObject()
+                .put("messages", messages)
+                .put("failures", after.getLong("failures", 0L) - before.getLong("failures", 0L))
+                .put("mean_us", count > 0 ? handlingSeconds.getOrDefault(filter, 0.0) / count * 1e6 : null)
+                .put("latencySinceStart", after.getJsonObject("latency")));
+        }
+
+        JsonObject queries = new JsonObject();
+        Map<String, Double> queryCounts = delta(metricsBefore.sumBy("db_query_seconds_count", "query"),
+            metricsAfter.sumBy("db_query_seconds_count", "query"));
+        Map<String, Double> querySeconds = delta(metricsBefore.sumBy("db_query_seconds_sum", "query"),
+            metricsAfter.sumBy("db_query_seconds_sum", "query"));
+        queryCounts.forEach((query, count) -> {
+            if (count > 0) {
+                queries.put(query, new JsonObject()
+                    .put("count", Math.round(count))
+                    .put("mean_us", querySeconds.getOrDefault(query, 0.0) / count * 1e6));
+            }
+        });
+        Map<String, Double> outcomes = delta(metricsBefore.sumBy("db_query_seconds_count", "outcome"),
+            metricsAfter.sumBy("db_query_seconds_count", "outcome"));
+        double poolWaits = difference(metricsBefore, metricsAfter, "db_pool_wait_seconds_count");
+
+        JsonObject summary = new JsonObject()
+            .put("file", options.file)
+            .put("speed", options.speed == 0 ? "max" : Double.toString(options.speed))
+            .put("records", records)
+            .put("capturedSeconds", Math.round(capturedNanos / 1e9))
+            .put("replaySeconds", Math.round(seconds))
+            .put("published", published.sum())
+            .put("publishFailures", publishFailures.sum())
+            .put("publishedPerSecond", Math.round(published.sum() / seconds))
+            .put("scheduleLag", scheduleLag.toJson())
+            .put("backend", new JsonObject()
+                .put("topics", topics)
+                .put("unrouted", statsAfter.getLong("unrouted", 0L) - statsBefore.getLong("unrouted", 0L)))
+            .put("database", new JsonObject()
+                .put("queries", Math.round(difference(metricsBefore, metricsAfter, "db_query_seconds_count")))
+                .put("querySeconds", difference(metricsBefore, metricsAfter, "db_query_seconds_sum"))
+                .put("queriesPerSecond", Math.round(difference(metricsBefore, metricsAfter, "db_query_seconds_count") / seconds))
+                .put("failedQueries", Math.round(outcomes.getOrDefault("failure", 0.0)))
+                .put("byQuery", queries)
+                .put("poolWaits", Math.round(poolWaits))
+                .put("poolWaitMeanUs", poolWaits > 0
+                    ? difference(metricsBefore, metricsAfter, "db_pool_wait_seconds_sum") / poolWaits * 1e6 : 0.0)
+                .put("poolAcquireFailures", Math.round(difference(metricsBefore, metricsAfter, "db_pool_acquire_failures_total")))
+                .put("maxPoolInUse", maxPoolInUse.get())
+                .put("maxPoolPending", maxPoolPending.get()));
+        logger.info("Summary: {}", summary.encodePrettily());
+    }
+
+    private static double difference(PrometheusSnapshot before, PrometheusSnapshot after, String name) {
+        return after.sum(name) - before.sum(name);
+    }
+
+    private static Map<String, Double> delta(Map<String, Double> before, Map<String, Double> after) {
+        after.replaceAll((key, value) -> value - before.getOrDefault(key, 0.0));
+        return after;
+    }
+
+    /**
+     * @return true if the future completed within the timeout.
+     */
+    private static boolean await(Future<?> future, long timeoutMs) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        future.onComplete(ar -> done.countDown());
+        if (!done.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            logger.warn("Gave up waiting after {} ms", timeoutMs);
+            return false;
+        }
+        return future.succeeded();
+    }
+}
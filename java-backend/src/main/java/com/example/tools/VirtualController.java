@@ -0,0 +1,295 @@
+/**
+ * @file VirtualController.java
+ * @brief One simulated ESP32 game controller speaking the same MQTT protocol as the firmware.
+ *
+ * @date 2024
+ * @ingroup Tools
+ */
+
+package com.example.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.example.controller.ObjectController;
+import com.example.game.ColorSequence;
+import com.example.mqtt.SequenceWireFormat;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.mqtt.MqttClient;
+import io.vertx.mqtt.MqttClientOptions;
+import io.vertx.mqtt.messages.MqttPublishMessage;
+
+/**
+ * @class VirtualController
+ * @brief Connects, logs in with an RFID tag, sends heartbeats and answers every color sequence it receives.
+ *
+ * In "request" mode the controller asks for the next sequence (controller/request_sequence) as soon as the
+ * previous one has been scored, so the fleet drives the backend on its own. In "game" mode sequences only arrive
+ * after a game was started over HTTP. With the binary protocol the controller negotiates binary sequence frames at
+ * connect and answers with binary frames. With broadcast it also subscribes to the sequence topic of its room.
+ *
+ * Each controller is bound to one event-loop context, like a real device has one connection, so its state needs
+ * no synchronization; create it from a non-Vert.x thread to spread the fleet over all event loops.
+ *
+ * @ingroup Tools
+ */
+class VirtualController {
+
+    private final Vertx vertx;
+    private final LoadGenerator.Options options;
+    private final LoadStats stats;
+    private final String controllerId;
+    private final String roomId;
+    private final MqttQoS qos;
+    private final boolean binary;
+    private final Context context;
+    private MqttClient client;
+
+    // Only touched on the controller's context
+    private long heartbeatTimerId = -1;
+    private long timeoutTimerId = -1;
+    private long sequenceRequestedAt = -1;
+    private long sequenceAnsweredAt = -1;
+    private boolean stopped = false;
+    // Sequence number of the JSON answers, for the backend's duplicate filter
+    private long seq;
+
+    VirtualController(Vertx vertx, LoadGenerator.Options options, LoadStats stats, String controllerId, String roomId) {
+        this.vertx = vertx;
+        this.options = options;
+        this.stats = stats;
+        this.controllerId = controllerId;
+        this.roomId = roomId;
+        this.qos = MqttQoS.valueOf(options.qos);
+        this.binary = "binary".equals(options.protocol);
+        this.context = vertx.getOrCreateContext();
+    }
+
+    /**
+     * @brief Connects to the broker and runs the firmware start-up sequence: subscribe, connect, status, RFID login.
+     *
+     * @return A Future that completes once the controller is logged in.
+     */
+    Future<Void> start() {
+        Promise<Void> promise = Promise.promise();
+        context.runOnContext(v -> connect().onComplete(promise));
+        return promise.future();
+    }
+
+    /**
+     * @brief Reports the controller as disconnected and closes the connection.
+     *
+     * @return A Future that completes once the connection is closed.
+     */
+    Future<Void> stop() {
+        Promise<Void> promise = Promise.promise();
+        context.runOnContext(v -> disconnect().onComplete(promise));
+        return promise.future();
+    }
+
+    private Future<Void> connect() {
+        MqttClientOptions clientOptions = new MqttClientOptions()
+            .setClientId("ESP32Client-" + controllerId)
+            .setAutoKeepAlive(true)
+            .setCleanSession(true)
+            .setUsername(options.username)
+            .setPassword(options.password);
+        client = MqttClient.create(vertx, clientOptions);
+        client.publishHandler(this::handleMessage);
+        client.closeHandler(v -> {
+            if (!stopped) {
+                stats.disconnects.increment();
+            }
+        });
+
+        Map<String, Integer> topics = new LinkedHashMap<>();
+        topics.put("neopixel/display" + controllerId, qos.value());
+        topics.put("oled/display/" + controllerId, qos.value());
+        topics.put("controller/action/" + controllerId, qos.value());
+        if (options.broadcast) {
+            topics.put(ObjectController.roomSequenceTopic(roomId, binary), qos.value());
+        }
+
+        return client.connect(options.port, options.host)
+            .compose(ack -> client.subscribe(topics))
+            .compose(packetId -> publish("controller/connect", binary || options.broadcast
+                ? new JsonObject()
+                    .put("controllerId", controllerId)
+                    .put("protocol", binary ? "binary" : "json")
+                    .put("broadcast", options.broadcast)
+                    .encode()
+                : controllerId))
+            .compose(v -> publish("controller/status", new JsonObject().put("controllerId", controllerId).put("status", "connected").encode()))
+            .compose(v -> publish("controller/rfid", new JsonObject()
+                .put("controllerId", controllerId)
+                .put("rfidTag", "load-" + controllerId)
+                .put("username", "load-" + controllerId)
+                .put("room", roomId)
+                .encode()))
+            .onSuccess(v -> {
+                stats.connected.increment();
+                heartbeatTimerId = vertx.setPeriodic(options.heartbeatMs, id -> publish("controller/heartbeat",
+                    new JsonObject().put("controllerId", controllerId).put("status", "alive").encode()));
+                timeoutTimerId = vertx.setPeriodic(1000, id -> checkTimeout(System.nanoTime()));
+                if ("request".equals(options.mode)) {
+                    // Leave the backend time to process the RFID login before the first request
+                    vertx.setTimer(1000 + ThreadLocalRandom.current().nextLong(1000), id -> requestSequence());
+                }
+            })
+            .onFailure(cause -> stats.connectFailures.increment());
+    }
+
+    private Future<Void> disconnect() {
+        stopped = true;
+        vertx.cancelTimer(heartbeatTimerId);
+        vertx.cancelTimer(timeoutTimerId);
+        if (client == null || !client.isConnected()) {
+            return Future.succeededFuture();
+        }
+        return publish("controller/status", new JsonObject().put("controllerId", controllerId).put("status", "disconnected").encode())
+            .eventually(() -> client.disconnect());
+    }
+
+    /**
+     * @brief Counts a sequence or score that did not arrive in time and keeps the request loop going.
+     *
+     * @param now Current time in nanoseconds.
+     */
+    private void checkTimeout(long now) {
+        long timeout = options.responseTimeoutMs * 1_000_000L;
+        boolean timedOut = false;
+        if (sequenceRequestedAt >= 0 && now - sequenceRequestedAt > timeout) {
+            sequenceRequestedAt = -1;
+            timedOut = true;
+        }
+        if (sequenceAnsweredAt >= 0 && now - sequenceAnsweredAt > timeout) {
+            sequenceAnsweredAt = -1;
+            timedOut = true;
+        }
+        if (timedOut) {
+            stats.timeouts.increment();
+            if ("request".equals(options.mode)) {
+                requestSequence();
+            }
+        }
+    }
+
+    private void requestSequence() {
+        if (stopped) {
+            return;
+        }
+        sequenceRequestedAt = System.nanoTime();
+        publish("controller/request_sequence", controllerId);
+    }
+
+    private void handleMessage(MqttPublishMessage message) {
+        stats.received.increment();
+        String topic = message.topicName();
+        try {
+            boolean sequence = topic.startsWith("neopixel/display") || topic.startsWith("game/");
+            if (sequence && SequenceWireFormat.isBinary(message.payload())) {
+                handleBinarySequence(message.payload());
+            } else if (sequence) {
+                handleSequence(message.payload().toJsonArray());
+            } else if (topic.startsWith("oled/display/")) {
+                handleDisplay(message.payload().toJsonObject());
+            }
+            // controller/action/<id> only carries the countdown, which needs no answer
+        } catch (DecodeException | ClassCastException e) {
+            stats.invalidMessages.increment();
+        }
+    }
+
+    private void handleSequence(JsonArray sequence) {
+        sequenceReceived();
+
+        // A player presses the buttons, sometimes the wrong one
+        JsonArray answer = sequence.copy();
+        if (ThreadLocalRandom.current().nextDouble() < options.errorRate && !answer.isEmpty()) {
+            answer.set(answer.size() - 1, "WRONG");
+        }
+        reply(Buffer.buffer(new JsonObject().put("controllerId", controllerId).put("seq", ++seq).put("sequence", answer).encode()));
+    }
+
+    private void handleBinarySequence(Buffer frame) {
+        sequenceReceived();
+
+        ColorSequence answer = SequenceWireFormat.readSequence(frame);
+        if (ThreadLocalRandom.current().nextDouble() < options.errorRate) {
+            // Two bits only hold valid colors, so a wrong button is just another color
+            answer = answer.withColorAt(0, (answer.colorAt(0) + 1) % ColorSequence.COLORS.size());
+        }
+        reply(SequenceWireFormat.encodeAnswer(answer, SequenceWireFormat.round(frame), SequenceWireFormat.nonce(frame), controllerId));
+    }
+
+    private void sequenceReceived() {
+        stats.sequencesReceived.increment();
+        if (sequenceRequestedAt >= 0) {
+            stats.sequenceLatency.record(System.nanoTime() - sequenceRequestedAt);
+            sequenceRequestedAt = -1;
+        }
+    }
+
+    /**
+     * @brief Publishes the answer to a sequence after the player's think time.
+     *
+     * @param answer JSON payload or binary answer frame.
+     */
+    private void reply(Buffer answer) {
+        long thinkTime = options.thinkMs > 0 ? ThreadLocalRandom.current().nextLong(options.thinkMs) + 1 : 0;
+        Runnable reply = () -> {
+            if (stopped) {
+                return;
+            }
+            sequenceAnsweredAt = System.nanoTime();
+            stats.sequencesAnswered.increment();
+            publish("controller/color_sequence", answer);
+        };
+        if (thinkTime > 0) {
+            vertx.setTimer(thinkTime, id -> reply.run());
+        } else {
+            reply.run();
+        }
+    }
+
+    private void handleDisplay(JsonObject display) {
+        String text = display.getString("message");
+        if ("Game Over!".equals(text)) {
+            stats.gamesOver.increment();
+            return;
+        }
+        if (sequenceAnsweredAt >= 0) {
+            stats.scoringLatency.record(System.nanoTime() - sequenceAnsweredAt);
+            sequenceAnsweredAt = -1;
+        }
+        if ("You lost!".equals(text)) {
+            stats.losses.increment();
+        } else {
+            stats.pointsScored.increment();
+        }
+        if ("request".equals(options.mode)) {
+            requestSequence();
+        }
+    }
+
+    private Future<Void> publish(String topic, String payload) {
+        return publish(topic, Buffer.buffer(payload));
+    }
+
+    private Future<Void> publish(String topic, Buffer payload) {
+        return client.publish(topic, payload, qos, false, false)
+            .onSuccess(packetId -> stats.published.increment())
+            .onFailure(cause -> stats.publishFailures.increment())
+            .mapEmpty();
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * @file ColorSequenceTest.java
+ * @brief Tests of the color codes, the packed form and the JSON encodings of ColorSequence.
+ *
+ * @ingroup GameRoom
+ */
+package com.example.game;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+
+class ColorSequenceTest {
+
+    @Test
+    void packsTheFirstColorIntoTheHighBits() {
+        ColorSequence sequence = ColorSequence.of((byte) 3, (byte) 2, (byte) 1, (byte) 0, (byte) 2, (byte) 1);
+
+        assertEquals(2, sequence.packedLength());
+        assertEquals((byte) 0b11_10_01_00, sequence.packedByte(0));
+        // Two colors in the last byte, the unused bits are zero
+        assertEquals((byte) 0b10_01_00_00, sequence.packedByte(1));
+        assertArrayEquals(new byte[] { 7, (byte) 0b11_10_01_00, (byte) 0b10_01_00_00 },
+            sequence.appendPacked(Buffer.buffer().appendByte((byte) 7)).getBytes());
+    }
+
+    @Test
+    void packedLengthRoundsUpToWholeBytes() {
+        Random random = new Random(7);
+        for (int length = 0; length <= 9; length++) {
+            ColorSequence sequence = ColorSequence.random(random, length);
+            assertEquals((length + 3) / 4, sequence.packedLength());
+            for (int i = 0; i < length; i++) {
+                int packed = sequence.packedByte(i / 4) & 0xFF;
+                assertEquals(sequence.colorAt(i), (packed >> (6 - 2 * (i % 4))) & 0b11);
+            }
+        }
+    }
+
+    @Test
+    void rejectsUnknownColorCodes() {
+        assertThrows(IllegalArgumentException.class, () -> ColorSequence.of((byte) 4));
+        assertThrows(IllegalArgumentException.class, () -> ColorSequence.of((byte) -1));
+    }
+
+    @Test
+    void copiesTheCodesItIsBuiltFrom() {
+        byte[] codes = { 0, 1 };
+        ColorSequence sequence = ColorSequence.of(codes);
+        codes[0] = 3;
+
+        assertEquals(0, sequence.colorAt(0));
+        ColorSequence changed = sequence.withColorAt(0, 2);
+        assertEquals(0, sequence.colorAt(0));
+        assertEquals(2, changed.colorAt(0));
+    }
+
+    @Test
+    void parsesColorNamesInAnyCase() {
+        ColorSequence sequence = ColorSequence.fromJson(new JsonArray().add("red").add("Green").add("BLUE").add("yellow"));
+
+        assertEquals(ColorSequence.of((byte) 0, (byte) 1, (byte) 2, (byte) 3), sequence);
+        assertThrows(IllegalArgumentException.class, () -> ColorSequence.fromJson(new JsonArray().add("PURPLE")));
+        assertThrows(IllegalArgumentException.class, () -> ColorSequence.fromJson(new JsonArray().add(1)));
+    }
+
+    @Test
+    void encodesAsJsonAndCachesTheBuffer() {
+        ColorSequence sequence = ColorSequence.of((byte) 1, (byte) 3);
+
+        assertEquals("[\"GREEN\",\"YELLOW\"]", sequence.toJson());
+        assertEquals(new JsonArray().add("GREEN").add("YELLOW"), sequence.toJsonArray());
+        assertEquals(sequence, ColorSequence.fromJson(new JsonArray(sequence.toJson())));
+        assertSame(sequence.toJsonBuffer(), sequence.toJsonBuffer());
+    }
+
+    @Test
+    void comparesByColors() {
+        ColorSequence sequence = ColorSequence.of((byte) 0, (byte) 1, (byte) 2);
+
+        assertEquals(ColorSequence.of((byte) 0, (byte) 1, (byte) 2), sequence);
+        assertEquals(ColorSequence.of((byte) 0, (byte) 1, (byte) 2).hashCode(), sequence.hashCode());
+        assertNotEquals(ColorSequence.of((byte) 0, (byte) 1), sequence);
+        assertTrue(sequence.startsWith(ColorSequence.of((byte) 0, (byte) 1)));
+        assertTrue(sequence.startsWith(ColorSequence.of()));
+        assertFalse(sequence.startsWith(ColorSequence.of((byte) 1)));
+        assertFalse(ColorSequence.of((byte) 0).startsWith(sequence));
+    }
+}
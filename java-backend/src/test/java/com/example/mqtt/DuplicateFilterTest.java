@@ -0,0 +1,93 @@
+/**
+ * @file DuplicateFilterTest.java
+ * @brief Tests of the sequence window and the answered nonces of DuplicateFilter.
+ *
+ * @ingroup MqttRouting
+ */
+package com.example.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class DuplicateFilterTest {
+
+    private final DuplicateFilter filter = new DuplicateFilter();
+
+    @Test
+    void rejectsARepeatedSequenceNumber() {
+        assertTrue(filter.acceptSequence("c1", 1));
+        assertTrue(filter.acceptSequence("c1", 2));
+        assertFalse(filter.acceptSequence("c1", 2));
+        assertFalse(filter.acceptSequence("c1", 1));
+        assertEquals(2, filter.getDuplicates());
+    }
+
+    @Test
+    void acceptsMessagesReorderedWithinTheWindowOnce() {
+        assertTrue(filter.acceptSequence("c1", 10));
+        assertTrue(filter.acceptSequence("c1", 13));
+        assertTrue(filter.acceptSequence("c1", 12));
+        assertTrue(filter.acceptSequence("c1", 11));
+        assertFalse(filter.acceptSequence("c1", 12));
+
+        long oldest = 13 + DuplicateFilter.WINDOW - 1;
+        assertTrue(filter.acceptSequence("c1", oldest));
+        assertFalse(filter.acceptSequence("c1", 13));
+    }
+
+    @Test
+    void treatsANumberOlderThanTheWindowAsARestart() {
+        assertTrue(filter.acceptSequence("c1", 1000));
+        assertTrue(filter.acceptSequence("c1", 1000 - DuplicateFilter.WINDOW));
+        assertEquals(1, filter.getRestarts());
+
+        // The window starts over at the restarted number
+        assertFalse(filter.acceptSequence("c1", 1000 - DuplicateFilter.WINDOW));
+        assertTrue(filter.acceptSequence("c1", 1000 - DuplicateFilter.WINDOW + 1));
+    }
+
+    @Test
+    void jumpBeyondTheWindowForgetsOlderNumbers() {
+        assertTrue(filter.acceptSequence("c1", 1));
+        assertTrue(filter.acceptSequence("c1", 1 + DuplicateFilter.WINDOW + 5));
+        // Older than the window again, so it counts as a restart rather than a duplicate
+        assertTrue(filter.acceptSequence("c1", 1));
+        assertEquals(0, filter.getDuplicates());
+        assertEquals(1, filter.getRestarts());
+    }
+
+    @Test
+    void keepsOneWindowPerController() {
+        assertTrue(filter.acceptSequence("c1", 5));
+        assertTrue(filter.acceptSequence("c2", 5));
+        assertFalse(filter.acceptSequence("c2", 5));
+        assertEquals(2, filter.getControllers());
+    }
+
+    @Test
+    void forgetStartsTheControllerOver() {
+        assertTrue(filter.acceptSequence("c1", 5));
+        filter.forget("c1");
+        assertTrue(filter.acceptSequence("c1", 5));
+        assertEquals(0, filter.getDuplicates());
+    }
+
+    @Test
+    void rejectsAnAnswerToTheSameNonceUntilItLeavesTheWindow() {
+        assertTrue(filter.acceptNonce("c1", 42));
+        assertFalse(filter.acceptNonce("c1", 42));
+        assertTrue(filter.acceptNonce("c2", 42));
+
+        for (int nonce = 0; nonce < DuplicateFilter.NONCE_WINDOW - 1; nonce++) {
+            assertTrue(filter.acceptNonce("c1", nonce));
+        }
+        assertFalse(filter.acceptNonce("c1", 42));
+
+        // One more nonce pushes 42 out of the window
+        assertTrue(filter.acceptNonce("c1", 100));
+        assertTrue(filter.acceptNonce("c1", 42));
+    }
+}
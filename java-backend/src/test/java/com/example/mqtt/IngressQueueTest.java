@@ -0,0 +1,155 @@
+/**
+ * @file IngressQueueTest.java
+ * @brief Tests of the priority order, coalescing and shedding of IngressQueue.
+ *
+ * @ingroup MqttRouting
+ */
+package com.example.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.mqtt.IngressQueue.Priority;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+
+class IngressQueueTest {
+
+    private final List<String> started = new ArrayList<>();
+    private final List<String> shed = new ArrayList<>();
+
+    private Supplier<Future<?>> handler(String name) {
+        return () -> {
+            started.add(name);
+            return null;
+        };
+    }
+
+    private void submit(IngressQueue queue, Priority priority, String key, String name) {
+        queue.submit(priority, key == null ? null : () -> key, handler(name), () -> shed.add(name));
+    }
+
+    /**
+     * Occupies the only handler slot until the returned promise completes.
+     */
+    private Promise<Void> block(IngressQueue queue) {
+        Promise<Void> running = Promise.promise();
+        queue.submit(Priority.HIGH, null, () -> running.future(), () -> shed.add("blocker"));
+        return running;
+    }
+
+    @Test
+    void startsAtOnceWhileThereIsRoom() {
+        IngressQueue queue = new IngressQueue(10, 2);
+        submit(queue, Priority.LOW, null, "a");
+        submit(queue, Priority.LOW, null, "b");
+
+        assertEquals(List.of("a", "b"), started);
+        assertEquals(0, queue.getQueued());
+        assertEquals(0, queue.getInFlight());
+    }
+
+    @Test
+    void startsWaitingMessagesByPriorityThenInArrivalOrder() {
+        IngressQueue queue = new IngressQueue(10, 1);
+        Promise<Void> blocker = block(queue);
+        submit(queue, Priority.LOW, null, "low");
+        submit(queue, Priority.NORMAL, null, "normal-1");
+        submit(queue, Priority.HIGH, null, "high");
+        submit(queue, Priority.NORMAL, null, "normal-2");
+        assertEquals(4, queue.getQueued());
+        assertEquals(2, queue.getQueued(Priority.NORMAL));
+
+        blocker.complete();
+
+        assertEquals(List.of("high", "normal-1", "normal-2", "low"), started);
+        assertEquals(0, queue.getQueued());
+    }
+
+    @Test
+    void coalescesWaitingMessagesWithTheSameKey() {
+        IngressQueue queue = new IngressQueue(10, 1);
+        Promise<Void> blocker = block(queue);
+        submit(queue, Priority.LOW, "heartbeat/c1", "c1-old");
+        submit(queue, Priority.LOW, "heartbeat/c2", "c2");
+        submit(queue, Priority.LOW, "heartbeat/c1", "c1-new");
+
+        assertEquals(List.of("c1-old"), shed);
+        assertEquals(1, queue.getCoalesced());
+        assertEquals(2, queue.getQueued());
+
+        blocker.complete();
+
+        // The newer message takes the older one's place in the queue
+        assertEquals(List.of("c1-new", "c2"), started);
+    }
+
+    @Test
+    void asksForTheCoalescingKeyOnlyWhenTheMessageWaits() {
+        IngressQueue queue = new IngressQueue(10, 1);
+        List<String> asked = new ArrayList<>();
+        queue.submit(Priority.LOW, () -> {
+            asked.add("now");
+            return "key";
+        }, handler("now"), () -> shed.add("now"));
+        Promise<Void> blocker = block(queue);
+        queue.submit(Priority.LOW, () -> {
+            asked.add("later");
+            return "key";
+        }, handler("later"), () -> shed.add("later"));
+
+        assertEquals(List.of("later"), asked);
+        blocker.complete();
+        assertEquals(List.of("now", "later"), started);
+    }
+
+    @Test
+    void shedsTheOldestMessageOfTheLowestPriorityWhenFull() {
+        IngressQueue queue = new IngressQueue(2, 1);
+        Promise<Void> blocker = block(queue);
+        submit(queue, Priority.LOW, null, "low-1");
+        submit(queue, Priority.LOW, null, "low-2");
+        submit(queue, Priority.HIGH, null, "high");
+
+        assertEquals(List.of("low-1"), shed);
+        assertEquals(1, queue.getShed(Priority.LOW));
+
+        blocker.complete();
+        assertEquals(List.of("high", "low-2"), started);
+    }
+
+    @Test
+    void shedsTheNewMessageIfItIsNotMoreImportant() {
+        IngressQueue queue = new IngressQueue(2, 1);
+        Promise<Void> blocker = block(queue);
+        submit(queue, Priority.NORMAL, null, "normal-1");
+        submit(queue, Priority.NORMAL, null, "normal-2");
+        submit(queue, Priority.NORMAL, null, "normal-3");
+        submit(queue, Priority.LOW, null, "low");
+
+        assertEquals(List.of("normal-3", "low"), shed);
+        assertEquals(1, queue.getShed(Priority.NORMAL));
+        assertEquals(1, queue.getShed(Priority.LOW));
+
+        blocker.complete();
+        assertEquals(List.of("normal-1", "normal-2"), started);
+    }
+
+    @Test
+    void handlerFailureFreesItsSlot() {
+        IngressQueue queue = new IngressQueue(10, 1);
+        queue.submit(Priority.HIGH, null, () -> {
+            throw new IllegalStateException("handler bug");
+        }, () -> shed.add("failing"));
+        submit(queue, Priority.HIGH, null, "next");
+
+        assertEquals(List.of("next"), started);
+        assertEquals(0, queue.getInFlight());
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * @file SequenceWireFormatTest.java
+ * @brief Tests of the frame layout and the 2-bit color packing of SequenceWireFormat.
+ *
+ * @ingroup MqttRouting
+ */
+package com.example.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.game.ColorSequence;
+
+import io.vertx.core.buffer.Buffer;
+
+class SequenceWireFormatTest {
+
+    @Test
+    void encodesTheHeaderAndPacksFourColorsPerByte() {
+        ColorSequence sequence = ColorSequence.of((byte) 0, (byte) 1, (byte) 2, (byte) 3, (byte) 3);
+        Buffer frame = SequenceWireFormat.encodeSequence(sequence, 70_000, 0xCAFEBABE);
+
+        assertEquals(SequenceWireFormat.HEADER_LENGTH + 2, frame.length());
+        assertEquals(SequenceWireFormat.VERSION, frame.getByte(0));
+        assertEquals(5, SequenceWireFormat.length(frame));
+        assertEquals(70_000 & 0xFFFF, SequenceWireFormat.round(frame));
+        assertEquals(0xCAFEBABE, SequenceWireFormat.nonce(frame));
+        assertEquals(0b00_01_10_11, frame.getUnsignedByte(8));
+        // The fifth color sits in the high bits of the second byte, the unused bits are zero
+        assertEquals(0b11_00_00_00, frame.getUnsignedByte(9));
+    }
+
+    @Test
+    void readsBackEverySequenceLength() {
+        Random random = new Random(42);
+        for (int length = 1; length <= SequenceWireFormat.MAX_LENGTH; length++) {
+            ColorSequence sequence = ColorSequence.random(random, length);
+            Buffer frame = SequenceWireFormat.encodeSequence(sequence, length, length);
+
+            assertEquals(SequenceWireFormat.HEADER_LENGTH + SequenceWireFormat.packedLength(length), frame.length());
+            assertEquals(sequence, SequenceWireFormat.readSequence(frame));
+            for (int i = 0; i < length; i++) {
+                assertEquals(sequence.colorAt(i), SequenceWireFormat.colorAt(frame, i));
+            }
+        }
+    }
+
+    @Test
+    void rejectsLengthsOutsideOneByte() {
+        assertThrows(IllegalArgumentException.class, () -> SequenceWireFormat.encodeSequence(ColorSequence.of(), 1, 1));
+        ColorSequence tooLong = ColorSequence.random(new Random(1), SequenceWireFormat.MAX_LENGTH + 1);
+        assertThrows(IllegalArgumentException.class, () -> SequenceWireFormat.encodeSequence(tooLong, 1, 1));
+    }
+
+    @Test
+    void answerCarriesTheControllerIdAfterTheColors() {
+        ColorSequence answer = ColorSequence.of((byte) 2, (byte) 1, (byte) 0);
+        Buffer frame = SequenceWireFormat.encodeAnswer(answer, 3, 77, "controller-7");
+
+        assertTrue(SequenceWireFormat.isBinary(frame));
+        assertEquals(3, SequenceWireFormat.round(frame));
+        assertEquals(77, SequenceWireFormat.nonce(frame));
+        assertEquals(answer, SequenceWireFormat.readSequence(frame));
+        assertEquals("controller-7", SequenceWireFormat.controllerId(frame));
+    }
+
+    @Test
+    void truncatedAnswerHasNoControllerId() {
+        Buffer frame = SequenceWireFormat.encodeAnswer(ColorSequence.of((byte) 1), 1, 1, "controller-7");
+
+        assertNull(SequenceWireFormat.controllerId(frame.getBuffer(0, frame.length() - 1)));
+        assertNull(SequenceWireFormat.controllerId(frame.getBuffer(0, SequenceWireFormat.HEADER_LENGTH + 1)));
+    }
+
+    @Test
+    void matchesComparesOnlyTheBitsThatHoldColors() {
+        ColorSequence expected = ColorSequence.of((byte) 3, (byte) 0, (byte) 1, (byte) 2, (byte) 1, (byte) 3);
+        Buffer answer = SequenceWireFormat.encodeAnswer(expected, 1, 1, "c1");
+        assertTrue(SequenceWireFormat.matches(answer, expected));
+
+        // Garbage in the unused low bits of the last packed byte is ignored
+        int last = SequenceWireFormat.HEADER_LENGTH + 1;
+        answer.setUnsignedByte(last, (short) (answer.getUnsignedByte(last) | 0b1111));
+        assertTrue(SequenceWireFormat.matches(answer, expected));
+
+        assertFalse(SequenceWireFormat.matches(SequenceWireFormat.encodeAnswer(expected.withColorAt(5, 0), 1, 1, "c1"), expected));
+        assertFalse(SequenceWireFormat.matches(SequenceWireFormat.encodeAnswer(expected.withColorAt(0, 0), 1, 1, "c1"), expected));
+        ColorSequence shorter = ColorSequence.of((byte) 3, (byte) 0, (byte) 1, (byte) 2, (byte) 1);
+        assertFalse(SequenceWireFormat.matches(SequenceWireFormat.encodeAnswer(shorter, 1, 1, "c1"), expected));
+    }
+
+    @Test
+    void tellsJsonPayloadsApart() {
+        assertFalse(SequenceWireFormat.isBinary(Buffer.buffer("[\"RED\",\"GREEN\"]")));
+        assertFalse(SequenceWireFormat.isBinary(Buffer.buffer("{\"controllerId\":\"c1\"}")));
+        assertFalse(SequenceWireFormat.isBinary(Buffer.buffer(new byte[] { SequenceWireFormat.VERSION })));
+    }
+}
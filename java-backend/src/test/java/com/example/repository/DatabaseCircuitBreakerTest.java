@@ -0,0 +1,155 @@
+/**
+ * @file DatabaseCircuitBreakerTest.java
+ * @brief Tests of the failure window, the trial permit and the failure classification of DatabaseCircuitBreaker.
+ *
+ * @ingroup object_repository
+ */
+package com.example.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.sqlclient.TransactionRollbackException;
+
+class DatabaseCircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static void call(DatabaseCircuitBreaker breaker, boolean succeeded) {
+        long permit = breaker.tryAcquire();
+        assertTrue(permit >= 0, "call rejected");
+        breaker.record(permit, FAST, succeeded);
+    }
+
+    @Test
+    void staysClosedUntilMinCallsAreKnown() {
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(60_000, 1_000);
+        for (int i = 0; i < DatabaseCircuitBreaker.MIN_CALLS - 1; i++) {
+            call(breaker, false);
+        }
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, false);
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void opensAtTheFailureRateAndRejectsWhileOpen() {
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(60_000, 1_000);
+        for (int i = 0; i < DatabaseCircuitBreaker.MIN_CALLS / 2; i++) {
+            call(breaker, true);
+        }
+        for (int i = 0; i < DatabaseCircuitBreaker.MIN_CALLS / 2 - 1; i++) {
+            call(breaker, false);
+        }
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.getState());
+
+        call(breaker, false);
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(-1, breaker.tryAcquire());
+        assertEquals(-1, breaker.tryAcquire());
+        assertEquals(2, breaker.getRejected());
+        assertEquals(1, breaker.getOpened());
+    }
+
+    @Test
+    void failureRateCoversOnlyTheLastWindowOfCalls() {
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(60_000, 1_000);
+        int failuresToOpen = DatabaseCircuitBreaker.WINDOW * DatabaseCircuitBreaker.FAILURE_PERCENT / 100;
+        for (int i = 0; i < DatabaseCircuitBreaker.WINDOW - failuresToOpen + 1; i++) {
+            call(breaker, true);
+        }
+        // The window is full with one failure short of the rate
+        for (int i = 0; i < failuresToOpen - 1; i++) {
+            call(breaker, false);
+        }
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.getState());
+
+        // The next failure pushes the oldest success out of the window
+        call(breaker, false);
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void slowCallsCountAsFailures() {
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(60_000, 100);
+        for (int i = 0; i < DatabaseCircuitBreaker.MIN_CALLS; i++) {
+            breaker.record(breaker.tryAcquire(), TimeUnit.MILLISECONDS.toNanos(101), true);
+        }
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void halfOpenLetsOneTrialCallThrough() {
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(0, 1_000);
+        for (int i = 0; i < DatabaseCircuitBreaker.MIN_CALLS; i++) {
+            call(breaker, false);
+        }
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, breaker.getState());
+
+        long trial = breaker.tryAcquire();
+        assertTrue(trial >= 0);
+        assertEquals(DatabaseCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(-1, breaker.tryAcquire());
+
+        breaker.record(trial, FAST, false);
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpened());
+
+        trial = breaker.tryAcquire();
+        breaker.record(trial, FAST, true);
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.getState());
+        call(breaker, true);
+    }
+
+    @Test
+    void ignoresOutcomesOfCallsAdmittedBeforeTheLastStateChange() {
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(0, 1_000);
+        long stale = breaker.tryAcquire();
+        for (int i = 0; i < DatabaseCircuitBreaker.MIN_CALLS; i++) {
+            call(breaker, false);
+        }
+        long trial = breaker.tryAcquire();
+        assertEquals(DatabaseCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.record(stale, FAST, true);
+        assertEquals(DatabaseCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.record(trial, FAST, true);
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void classifiesFailuresBySqlState() {
+        assertFalse(DatabaseCircuitBreaker.isDatabaseFailure(new SQLException("Duplicate entry", "23000")));
+        assertFalse(DatabaseCircuitBreaker.isDatabaseFailure(new SQLException("Syntax error", "42000")));
+        assertTrue(DatabaseCircuitBreaker.isDatabaseFailure(new SQLException("Communications link failure", "08S01")));
+        assertTrue(DatabaseCircuitBreaker.isDatabaseFailure(new SQLException("No state")));
+        assertTrue(DatabaseCircuitBreaker.isDatabaseFailure(new RuntimeException(new TimeoutException("pool"))));
+        assertFalse(DatabaseCircuitBreaker.isDatabaseFailure(TransactionRollbackException.INSTANCE));
+        assertFalse(DatabaseCircuitBreaker.isDatabaseFailure(new IllegalStateException("repository bug")));
+    }
+
+    @Test
+    void bindsItsMeters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DatabaseCircuitBreaker breaker = new DatabaseCircuitBreaker(60_000, 1_000);
+        breaker.bindTo(registry);
+        for (int i = 0; i < DatabaseCircuitBreaker.MIN_CALLS; i++) {
+            call(breaker, false);
+        }
+        breaker.tryAcquire();
+
+        assertEquals(DatabaseCircuitBreaker.State.OPEN.ordinal(), registry.get("db.circuit.state").gauge().value());
+        assertEquals(1, registry.get("db.circuit.rejected").functionCounter().count());
+        assertEquals(1, registry.get("db.circuit.opened").functionCounter().count());
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * @file ScoreWriteBehindBufferTest.java
+ * @brief Tests of the batching, backpressure and requeueing of ScoreWriteBehindBuffer.
+ *
+ * @ingroup ObjectService
+ */
+package com.example.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.repository.DatabaseCircuitBreaker;
+import com.example.repository.DatabaseMetrics;
+import com.example.repository.ObjectRepository;
+import com.example.repository.PointsIncrement;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+
+class ScoreWriteBehindBufferTest {
+
+    private Vertx vertx;
+    private FakeRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        vertx = Vertx.vertx();
+        repository = new FakeRepository();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    private ScoreWriteBehindBuffer buffer(int maxBatchSize, int maxPending) {
+        // The timer is never started, the tests flush explicitly
+        return new ScoreWriteBehindBuffer(vertx, repository, 60_000, maxBatchSize, maxPending);
+    }
+
+    @Test
+    void mergesIncrementsOfTheSameControllerAndRound() {
+        ScoreWriteBehindBuffer buffer = buffer(100, 100);
+        Future<Void> first = buffer.increment("c1", 1, 1, "alice");
+        Future<Void> second = buffer.increment("c1", 1, 1, "alice");
+        buffer.increment("c1", 1, 2, "alice");
+        assertEquals(2, buffer.pendingRows());
+
+        assertTrue(buffer.flush().succeeded());
+
+        assertEquals(1, repository.batches.size());
+        assertEquals(List.of(2, 1), repository.batches.get(0).stream().map(PointsIncrement::getDelta).toList());
+        assertTrue(first.succeeded());
+        assertTrue(second.succeeded());
+        assertEquals(0, buffer.pendingRows());
+    }
+
+    @Test
+    void flushesOnceTheBatchIsFull() {
+        ScoreWriteBehindBuffer buffer = buffer(2, 10);
+        buffer.increment("c1", 1, 1, "alice");
+        assertTrue(repository.batches.isEmpty());
+
+        buffer.increment("c2", 2, 1, "bob");
+
+        assertEquals(1, repository.batches.size());
+        assertEquals(0, buffer.pendingRows());
+    }
+
+    @Test
+    void rejectsNewRowsWhenFull() {
+        repository.upsert = increments -> Future.failedFuture(new DatabaseCircuitBreaker.CircuitOpenException());
+        ScoreWriteBehindBuffer buffer = buffer(2, 2);
+        buffer.increment("c1", 1, 1, "alice");
+        // Fills the batch; its flush fails and the rows stay pending
+        buffer.increment("c2", 2, 1, "bob");
+
+        assertTrue(buffer.increment("c3", 3, 1, "carol").failed());
+        // Points of a row that is pending already are still accepted
+        assertFalse(buffer.increment("c1", 1, 1, "alice").failed());
+        assertEquals(2, buffer.pendingRows());
+    }
+
+    @Test
+    void keepsRowsPendingWhileTheDatabaseIsUnavailable() {
+        repository.upsert = increments -> Future.failedFuture(new DatabaseCircuitBreaker.CircuitOpenException());
+        ScoreWriteBehindBuffer buffer = buffer(100, 100);
+        Future<Void> point = buffer.increment("c1", 1, 1, "alice");
+
+        // Unavailability never uses up attempts
+        for (int i = 0; i < 5; i++) {
+            assertTrue(buffer.flush().failed());
+        }
+        assertEquals(1, buffer.pendingRows());
+        assertFalse(point.isComplete());
+
+        buffer.increment("c1", 1, 1, "alice");
+        repository.upsert = increments -> Future.succeededFuture();
+        assertTrue(buffer.flush().succeeded());
+
+        assertTrue(point.succeeded());
+        assertEquals(2, repository.batches.get(repository.batches.size() - 1).get(0).getDelta());
+    }
+
+    @Test
+    void isolatesRefusedRowsAndWritesTheOthers() {
+        repository.upsert = increments -> increments.stream().anyMatch(row -> "bad".equals(row.getControllerId()))
+            ? Future.failedFuture(new SQLException("Out of range value", "22003"))
+            : Future.succeededFuture();
+        ScoreWriteBehindBuffer buffer = buffer(100, 100);
+        List<Future<Void>> good = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            good.add(buffer.increment("c" + i, i, 1, "player" + i));
+        }
+        Future<Void> bad = buffer.increment("bad", 9, 1, "mallory");
+        for (int i = 3; i < 6; i++) {
+            good.add(buffer.increment("c" + i, i, 1, "player" + i));
+        }
+
+        assertTrue(buffer.flush().failed());
+
+        good.forEach(point -> assertTrue(point.succeeded()));
+        assertFalse(bad.isComplete());
+        assertEquals(1, buffer.pendingRows());
+    }
+
+    @Test
+    void dropsRowsRefusedTooOftenWithoutCountingNewerPointsAgainstThem() {
+        repository.upsert = increments -> increments.stream().anyMatch(row -> row.getDelta() == 1)
+            ? Future.failedFuture(new SQLException("Out of range value", "22003"))
+            : Future.succeededFuture();
+        ScoreWriteBehindBuffer buffer = buffer(100, 100);
+        Future<Void> refused = buffer.increment("c1", 1, 1, "alice");
+        assertTrue(buffer.flush().failed());
+
+        // Newer points wait under their own row and do not share the failed attempts
+        buffer.increment("c1", 1, 1, "alice");
+        Future<Void> newer = buffer.increment("c1", 1, 1, "alice");
+        assertEquals(2, buffer.pendingRows());
+
+        assertTrue(buffer.flush().failed());
+        assertTrue(newer.succeeded());
+        assertFalse(refused.isComplete());
+
+        buffer.flush();
+        assertTrue(refused.failed());
+        assertEquals(0, buffer.pendingRows());
+    }
+
+    @Test
+    void closeWritesWhatIsPending() throws Exception {
+        ScoreWriteBehindBuffer buffer = buffer(100, 100).start();
+        Future<Void> point = buffer.increment("c1", 1, 1, "alice");
+
+        buffer.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertTrue(point.succeeded());
+        assertTrue(buffer.increment("c1", 1, 1, "alice").failed());
+    }
+
+    /**
+     * Repository whose upsertPoints answers synchronously with the configured result and records the batches.
+     */
+    private static class FakeRepository extends ObjectRepository {
+        private final List<List<PointsIncrement>> batches = new ArrayList<>();
+        private Function<List<PointsIncrement>, Future<Void>> upsert = increments -> Future.succeededFuture();
+
+        FakeRepository() {
+            super(null, DatabaseMetrics.detached());
+        }
+
+        @Override
+        public Future<Void> upsertPoints(List<PointsIncrement> increments) {
+            Future<Void> result = upsert.apply(increments);
+            if (result.succeeded()) {
+                batches.add(List.copyOf(increments));
+            }
+            return result;
+        }
+    }
+}
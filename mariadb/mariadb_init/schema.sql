@@ -104,3 +104,64 @@ CREATE TABLE DisplayUpdates (
     FOREIGN KEY (controller_id) REFERENCES Controllers(controller_id)  -- Reference to Controllers table
 );
 
+
+/**
+ * @brief Indexes used by the round winner query and the archival job
+ * @details The round winner looks up the latest round, the archival job scans sessions by end time.
+ */
+CREATE INDEX idx_displayinfo_round ON DisplayInfo (round, points);
+CREATE INDEX idx_sessions_end_time ON Sessions (end_time);
+
+/**
+ * @brief History of finished sessions
+ * @details Sessions that ended longer ago than the archival delay are moved here from Sessions.
+ * Partitioned by month of end_time; the backend adds the partition of the current and the next month before
+ * it archives. Rows of months without own partition land in p_future until that partition is split off.
+ * Partitioned tables cannot have foreign keys, so player_id and controller_id are plain columns.
+ */
+CREATE TABLE SessionsHistory (
+    session_id INT NOT NULL,  -- ID the session had in Sessions
+    player_id INT,  -- Player of the session
+    controller_id VARCHAR(50),  -- Controller used in the session
+    login_method ENUM('RFID', 'Frontend') NOT NULL,  -- Method used to login
+    start_time DATETIME,  -- Time the session started
+    end_time DATETIME NOT NULL,  -- Time the session ended, partitioning column
+    round INT,  -- Round of the session
+
+    PRIMARY KEY (session_id, end_time),
+    KEY idx_sessions_history_player (player_id, end_time),
+    KEY idx_sessions_history_controller (controller_id, end_time)
+)
+PARTITION BY RANGE COLUMNS (end_time) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+/**
+ * @brief History of the points of finished sessions
+ * @details DisplayInfo rows are moved here together with their session, with the end time of the session as
+ * partitioning column.
+ */
+CREATE TABLE DisplayInfoHistory (
+    controller_id VARCHAR(50) NOT NULL,  -- Identifier for the controller
+    player_id INT,  -- Player the points belong to
+    points INT,  -- Points reached in the round
+    round INT NOT NULL,  -- Round number
+    username VARCHAR(50),  -- Username of the player at that time
+    last_update DATETIME,  -- Time of the last point
+    end_time DATETIME NOT NULL,  -- End of the session, partitioning column
+
+    PRIMARY KEY (controller_id, round, end_time),
+    KEY idx_displayinfo_history_player (player_id, end_time)
+)
+PARTITION BY RANGE COLUMNS (end_time) (
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+/**
+ * @brief Points of live and archived rounds
+ * @details Lets reports read the full history without knowing which rows were archived already.
+ */
+CREATE VIEW DisplayInfoAll AS
+    SELECT controller_id, player_id, points, round, username, last_update, NULL AS end_time FROM DisplayInfo
+    UNION ALL
+    SELECT controller_id, player_id, points, round, username, last_update, end_time FROM DisplayInfoHistory;